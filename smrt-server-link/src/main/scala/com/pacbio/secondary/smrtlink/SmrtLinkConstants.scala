@@ -23,6 +23,16 @@ trait SmrtLinkConstants {
         SupportedAcquisitionStates.ERROR,
         SupportedAcquisitionStates.ABORTED,
         SupportedAcquisitionStates.TRANSFER_FAILED)
+
+  // Postgres NOTIFY channel for Job state changes. The payload is "{job-id}:{state}"
+  val JOB_STATE_NOTIFY_CHANNEL = "smrtlink_job_state"
+
+  // Time (ms) of the last write of a client (see the read-your-writes of the read replica)
+  val LAST_WRITE_COOKIE = "smrtlink-last-write"
+  val LAST_WRITE_HEADER = "X-SmrtLink-Last-Write"
+
+  // Epoch (attempts) of the lease of the job run by the client (see JobLeaseFence)
+  val JOB_LEASE_EPOCH_HEADER = "X-SmrtLink-Job-Lease-Epoch"
 }
 
 object SmrtLinkConstants extends SmrtLinkConstants
@@ -41,6 +51,16 @@ trait JobServiceConstants {
   val ENGINE_CONFIG_PREFIX = "config"
   // Enum of Job Types
   val JOB_TYPES_PREFIX = "job-types"
+  // SUBMITTED Jobs in run order
+  val JOB_QUEUE_PREFIX = "queue"
+  // Metrics of the dedicated Engine thread pools
+  val JOB_POOLS_PREFIX = "pools"
+  // Metrics of the (JobsDao) job, dataset, datastore file and project caches
+  val JOB_CACHES_PREFIX = "caches"
+  // Metrics of the db connection pools (engine, api and maintenance)
+  val JOB_DB_POOLS_PREFIX = "db-pools"
+  // Number of datasets, jobs (by type and state), job events and datastore files
+  val JOB_SYSTEM_SUMMARY_PREFIX = "system-summary"
   // Job Events
   val JOB_EVENT_PREFIX = "events"
   // Datastore (and files in Datastore)
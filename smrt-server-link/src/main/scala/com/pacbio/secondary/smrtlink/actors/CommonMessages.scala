@@ -14,8 +14,8 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.AnalysisJobStates
 
 object CommonMessages {
 
-  // New Job model
-  case class RunEngineJob(job: EngineJob)
+  // New Job model. The leaseEpoch is the epoch of the lease acquired by the claim of the job
+  case class RunEngineJob(job: EngineJob, leaseEpoch: Option[Int] = None)
 
   // Not sure if this is the best model for doing this
   sealed trait WorkerType
@@ -25,6 +25,10 @@ object CommonMessages {
   // Messages for communicating between the EngineManager and EngineWorker
   case object StartingWork
   case class CompletedWork(worker: ActorRef, workerType: WorkerType)
+  // The job was started on a thread of the (job category) pool, i.e., it's no longer queued
+  case class StartedWork(worker: ActorRef, jobId: Int)
+  // Interrupt the thread of the job run by the worker (e.g., a stale job)
+  case object InterruptRunningJob
 
   // Some endpoints were originally implemented to return string-typed
   // responses, but the smrt-link client has been sending an Accept:
@@ -1,9 +1,17 @@
 package com.pacbio.secondary.smrtlink.actors
 
-import java.io.{PrintWriter, StringWriter}
+import java.nio.file.Paths
 
 import akka.pattern._
-import akka.actor.{Actor, ActorLogging, ActorRef, Props}
+import akka.actor.{
+  Actor,
+  ActorLogging,
+  ActorRef,
+  Cancellable,
+  PoisonPill,
+  Props,
+  Terminated
+}
 import akka.util.Timeout
 import com.pacbio.common.models.CommonModelImplicits
 import com.pacbio.secondary.smrtlink.SmrtLinkConstants
@@ -11,8 +19,7 @@ import com.pacbio.secondary.smrtlink.actors.CommonMessages._
 import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.{
   EngineJob,
   EngineManagerStatus,
-  JobTypeIds,
-  NoAvailableWorkError
+  JobTypeIds
 }
 import com.pacbio.secondary.smrtlink.analysis.jobs.{
   AnalysisJobStates,
@@ -20,21 +27,74 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.{
 }
 import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
 import com.pacbio.secondary.smrtlink.dependency.Singleton
-import com.pacbio.secondary.smrtlink.jobtypes.ServiceJobRunner
-import com.pacbio.secondary.smrtlink.models.ConfigModels.SystemJobConfig
+import com.pacbio.secondary.smrtlink.jobtypes.{
+  PbsmrtpipeJobUtils,
+  ServiceJobRunner
+}
+import com.pacbio.secondary.smrtlink.models.ConfigModels.{
+  JobWatchdogConfig,
+  SystemJobConfig
+}
 import com.pacbio.secondary.smrtlink.models.{
   JobChangeStateMessage,
+  JobLeaseFence,
   RunChangedStateMessage,
   RunSummary
 }
 import com.pacificbiosciences.pacbiobasedatamodel.SupportedRunStates
+import org.joda.time.{DateTime => JodaDateTime}
 
 import scala.collection.mutable
 import scala.concurrent.duration._
 import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.{Future, blocking}
 import scala.util.control.NonFatal
-import scala.util.{Failure, Success, Try}
+import scala.util.{Failure, Success}
+
+object EngineCoreJobManagerActor {
+
+  /**
+    * Result of claiming runnable jobs for the reserved (idle) workers
+    *
+    * @param leaseEpochs Epoch (attempts) of the acquired lease by job id
+    */
+  case class ClaimedJobs(jobs: Seq[EngineJob],
+                         workers: Seq[ActorRef],
+                         workerType: WorkerType,
+                         budget: JobResources,
+                         leaseEpochs: Map[Int, Int] = Map.empty)
+
+  case class FailedToStartWork(engineJob: EngineJob,
+                               worker: ActorRef,
+                               workerType: WorkerType,
+                               message: String,
+                               leaseEpoch: Option[Int] = None)
+
+  // Heartbeat of the node. Renew the leases of the jobs run by this node
+  case object RenewJobLeases
+
+  // Requeue (or fail) the jobs of any node with an expired lease
+  case object ReapExpiredJobLeases
+
+  /**
+    * Job that is run by a worker of this node
+    *
+    * @param startedAt          When the job was sent to the worker
+    * @param executionStartedAt When the job was started on a thread of the pool of the
+    *                           worker. None while the job is queued in the pool.
+    * @param leaseEpoch         Epoch of the lease acquired by the claim of the job
+    */
+  case class RunningJob(engineJob: EngineJob,
+                        workerType: WorkerType,
+                        startedAt: JodaDateTime,
+                        executionStartedAt: Option[JodaDateTime] = None,
+                        leaseEpoch: Option[Int] = None)
+
+  // Check for RUNNING jobs of this node without any recent activity
+  case object CheckForStaleJobs
+
+  case class StaleJobs(jobs: Seq[(ActorRef, RunningJob)])
+}
 
 /**
   * Created by mkocher on 8/24/17.
@@ -43,13 +103,16 @@ import scala.util.{Failure, Success, Try}
   */
 class EngineCoreJobManagerActor(dao: JobsDao,
                                 resolver: JobResourceResolver,
-                                config: SystemJobConfig)
+                                config: SystemJobConfig,
+                                pools: EngineExecutionContexts)
     extends Actor
     with ActorLogging {
 
   import CommonModelImplicits._
+  import EngineCoreJobManagerActor._
 
   // The core model for this is to listen for Job state changes from CREATED to SUBMITTED.
+  // If the LISTEN/NOTIFY listener is enabled, this poll is only a safety net.
   val checkForWorkInterval = 60.seconds
 
   val checkForWorkTick = context.system.scheduler.schedule(
@@ -67,16 +130,39 @@ class EngineCoreJobManagerActor(dao: JobsDao,
     self,
     GetEngineManagerStatus)
 
+  // Leases of the claimed jobs. Several nodes (i.e., processes) can run jobs against
+  // the same db. The jobs of a node that stopped heartbeating are requeued or failed by any node.
+  val leaseTicks: Seq[Cancellable] = config.jobLease.toSeq.flatMap { lease =>
+    Seq(
+      context.system.scheduler.schedule(lease.heartbeatInterval,
+                                        lease.heartbeatInterval,
+                                        self,
+                                        RenewJobLeases),
+      context.system.scheduler.schedule(lease.ttl,
+                                        lease.ttl,
+                                        self,
+                                        ReapExpiredJobLeases)
+    )
+  }
+
+  // Watchdog of the running jobs of this node. A stale (e.g., hung) job is FAILED or requeued and
+  // the worker is replaced, so the job doesn't keep the worker slot until the server is restarted.
+  val watchdogTick: Option[Cancellable] = config.watchdog.map { watchdog =>
+    context.system.scheduler.schedule(watchdog.pollInterval,
+                                      watchdog.pollInterval,
+                                      self,
+                                      CheckForStaleJobs)
+  }
+
   // Keep track of workers
   val workers = mutable.Queue[ActorRef]()
 
   // For jobs that are small and can completed in a relatively short amount of time (~seconds) and have minimal resource usage
   val quickWorkers = mutable.Queue[ActorRef]()
 
-  //FIXME(mpkocher)(2017-12-17) This might be better to be more granular
-  val ec = scala.concurrent.ExecutionContext.Implicits.global
-  //val ec: ExecutionContext = context.dispatcher
-  val serviceRunner = new ServiceJobRunner(dao, config)(ec)
+  // The jobs are run on the dedicated pools (see EngineExecutionContexts), the Future callbacks
+  // of the runner are isolated from the global ExecutionContext
+  val serviceRunner = new ServiceJobRunner(dao, config)(pools.dao)
 
   def andLog(sx: String): Future[String] = Future.successful {
     log.info(sx)
@@ -89,18 +175,58 @@ class EngineCoreJobManagerActor(dao: JobsDao,
     EngineManagerStatus(config.numGeneralWorkers, n, config.numQuickWorkers, m)
   }
 
+  private def workerQueueFor(workerType: WorkerType): mutable.Queue[ActorRef] =
+    workerType match {
+      case QuickWorkType => quickWorkers
+      case StandardWorkType => workers
+    }
+
+  // Number of claims against the db that haven't completed. While a claim is in-flight,
+  // the reserved workers are removed from the idle worker queues.
+  private var claimsInFlight: Int = 0
+
+  // Set if a check for work was requested while a claim was in-flight
+  private var recheckRequested: Boolean = false
+
+  // Host resource budget. If None, the number of workers is the only limit
+  val resourceScheduler: Option[EngineResourceScheduler] =
+    config.engineResources.map(c =>
+      new EngineResourceScheduler(c, config.pbSmrtPipeEngineOptions))
+
+  // Resources used by the job that is running on the worker
+  private val workerResources = mutable.Map.empty[ActorRef, JobResources]
+
+  // Job that is running on the (busy) worker
+  private val runningJobs = mutable.Map.empty[ActorRef, RunningJob]
+
+  // Replaced workers of stale jobs that will be requeued when the interrupted run completes
+  private val retiredWorkers =
+    mutable.Map.empty[ActorRef, (RunningJob, JodaDateTime)]
+
+  private var numReplacedWorkers: Int = 0
+
+  private var quickFirst: Boolean = true
+
+  // Number of additional SUBMITTED jobs to consider for backfilling
+  val backfillWindow = 50
+
+  private def releaseWorkerResources(worker: ActorRef): Unit =
+    workerResources
+      .remove(worker)
+      .foreach(r => resourceScheduler.foreach(_.release(r)))
+
   /**
     * Returns a status message
     *
     * @param engineJob Engine Job to run
-    * @param workerQueue Worker queue to mutate
     * @param worker worker to send EngineJob to
+    * @param leaseEpoch Epoch of the lease acquired by the claim of the job
     * @return
     */
   def addJobToWorker(
       engineJob: EngineJob,
-      workerQueue: mutable.Queue[ActorRef],
       worker: ActorRef,
+      leaseEpoch: Option[Int] = None,
       workerTimeOut: FiniteDuration = 15.seconds): Future[String] = {
     // This should be extended to support a list of Status Updates, to avoid another ask call and a separate db call
     // e.g., UpdateJobStatus(runnableJobWithId.job.uuid, Seq(AnalysisJobStates.SUBMITTED, AnalysisJobStates.RUNNING)
@@ -109,7 +235,7 @@ class EngineCoreJobManagerActor(dao: JobsDao,
     val f: Future[String] = for {
       _ <- andLog(
         s"Sending Worker $worker job id:${engineJob.id} uuid:${engineJob.uuid} type:${engineJob.jobTypeId} state:${engineJob.state}")
-      _ <- worker ? RunEngineJob(engineJob)
+      _ <- worker ? RunEngineJob(engineJob, leaseEpoch)
       workerMsg <- andLog(
         s"Started job id:${engineJob.id} type:${engineJob.jobTypeId} on Engine worker $worker")
     } yield workerMsg
@@ -117,96 +243,351 @@ class EngineCoreJobManagerActor(dao: JobsDao,
     f
   }
 
-  def checkForWorker(
-      workerQueue: mutable.Queue[ActorRef],
-      isQuick: Boolean): Future[Either[NoAvailableWorkError, EngineJob]] = {
+  /**
+    * Reserve all the idle workers of the worker type and claim (up to) that many
+    * runnable jobs from the db.
+    *
+    * If the resource budget is enabled, the entire available budget is reserved for
+    * the in-flight claim and only the jobs that fit are claimed. The unused
+    * budget is released when the claim completes.
+    *
+    * This is non-blocking. The claim is done with SKIP LOCKED in the dao, and the result
+    * is sent back to self as a ClaimedJobs message. The worker queues are only mutated
+    * from within the actor.
+    */
+  def claimWorkForWorkers(workerType: WorkerType): Unit = {
+    val workerQueue = workerQueueFor(workerType)
+    val budget = resourceScheduler
+      .map(_.getAvailable)
+      .getOrElse(JobResources.ZERO)
 
-    /**
-      * Util to sort out the compatibility with the dao engine interface
-      *
-      * @param et Either results from checking for work
-      * @return
-      */
-    def workerToFuture(et: Either[NoAvailableWorkError, EngineJob])
-      : Future[Either[NoAvailableWorkError, EngineJob]] = {
-      et match {
-        case Right(engineJob) => {
-
-          val worker = workerQueue.dequeue()
-          log.info(
-            s"Attempting to add job id:${engineJob.id} type:${engineJob.jobTypeId} state:${engineJob.state} to worker $worker")
-
-          // This needs to handle failure case and enqueue the worker
-          val f = addJobToWorker(engineJob, workers, worker)
-            .map(_ => Right(engineJob))
-            .recoverWith {
-              case NonFatal(ex) =>
-                val msg =
-                  s"Failed to add Job ${engineJob.id} jobtype:${engineJob.jobTypeId} to worker $worker ${ex.getMessage}"
-                log.error(msg)
-                workerQueue.enqueue(worker)
-                // Not sure exactly what should return from here? This should update the db to make sure the engine job
-                // is marked as failed.
-                Future.successful(Left(NoAvailableWorkError(
-                  s"WARNING Failed to add worker to worker. Enqueued worker to $workerQueue ${ex.getMessage} ")))
-            }
-          f
-        }
-        case Left(_) =>
-          Future.successful(Left(NoAvailableWorkError("No work found")))
+    val hasResources = resourceScheduler.isEmpty || !budget.isEmpty
+
+    // The budget is reserved by an in-flight claim, check again when it completes
+    if (workerQueue.nonEmpty && !hasResources && claimsInFlight > 0) {
+      recheckRequested = true
+    }
+
+    if (workerQueue.nonEmpty && hasResources) {
+      val reserved = workerQueue.dequeueAll(_ => true)
+      claimsInFlight += 1
+
+      val fx = resourceScheduler match {
+        case Some(scheduler) =>
+          scheduler.reserve(budget)
+          dao.claimRunnableEngineCoreJobsWithLeases(
+            reserved.length,
+            workerType == QuickWorkType,
+            backfillWindow,
+            scheduler.select(budget, reserved.length),
+            config.jobLease)
+        case None =>
+          dao.claimRunnableEngineCoreJobsWithLeases(
+            reserved.length,
+            workerType == QuickWorkType,
+            lease = config.jobLease)
       }
+
+      fx.map { claimed =>
+          val leaseEpochs = claimed.flatMap {
+            case (job, lease) => lease.map(l => (job.id, l.attempts))
+          }.toMap
+          ClaimedJobs(claimed.map(_._1), reserved, workerType, budget, leaseEpochs)
+        }
+        .recover {
+          case NonFatal(ex) =>
+            log.error(
+              s"Failed to claim runnable jobs for worker-type:$workerType ${ex.getMessage}")
+            ClaimedJobs(Nil, reserved, workerType, budget)
+        } pipeTo self
     }
+  }
 
-    if (workerQueue.nonEmpty) {
-      for {
-        engineJobOrNoWork <- dao.getNextRunnableEngineCoreJob(isQuick)
-        _ <- workerToFuture(engineJobOrNoWork)
-      } yield engineJobOrNoWork
-    } else {
-      Future.successful(Left(
-        NoAvailableWorkError(s"Worker queue (${workerQueue.length}) is full")))
+  def checkForWork(): Unit = {
+    if (claimsInFlight > 0) {
+      recheckRequested = true
     }
+    // Alternate the order, so that (with a resource budget) neither worker
+    // type always gets the first claim on the available resources
+    val workerTypes =
+      if (quickFirst) Seq(QuickWorkType, StandardWorkType)
+      else Seq(StandardWorkType, QuickWorkType)
+    quickFirst = !quickFirst
+    workerTypes.foreach(claimWorkForWorkers)
   }
 
-  // This should return a future
-  def checkForWork(timeout: FiniteDuration = 30.seconds): String = {
-    // This must be blocking so that a different workers don't
-    // pull the same job. I expected this to be handled by postgres
-    val x1 = Await.result(checkForWorker(quickWorkers, true), timeout)
-    val x2 = Await.result(checkForWorker(workers, false), timeout)
+  /**
+    * Assign the claimed jobs to the reserved workers and return the unused
+    * workers to the idle queue.
+    */
+  def onClaimedJobs(claimed: ClaimedJobs): Unit = {
+    claimsInFlight -= 1
+    resourceScheduler.foreach(_.release(claimed.budget))
+
+    val (usedWorkers, unusedWorkers) =
+      claimed.workers.splitAt(claimed.jobs.length)
+    workerQueueFor(claimed.workerType).enqueue(unusedWorkers: _*)
+
+    claimed.jobs.zip(usedWorkers).foreach {
+      case (engineJob, worker) =>
+        resourceScheduler.foreach { scheduler =>
+          val r = scheduler.requirement(
+            engineJob.jobTypeId,
+            EngineResourceScheduler.toMaxNproc(engineJob.jobTypeId,
+                                               engineJob.jsonSettings))
+          scheduler.reserve(r)
+          workerResources(worker) = r
+        }
+        val leaseEpoch = claimed.leaseEpochs.get(engineJob.id)
+        runningJobs(worker) = RunningJob(engineJob,
+                                         claimed.workerType,
+                                         JodaDateTime.now(),
+                                         leaseEpoch = leaseEpoch)
+        log.info(
+          s"Attempting to add job id:${engineJob.id} type:${engineJob.jobTypeId} state:${engineJob.state} to worker $worker")
+        addJobToWorker(engineJob, worker, leaseEpoch).failed.foreach { ex =>
+          self ! FailedToStartWork(engineJob,
+                                   worker,
+                                   claimed.workerType,
+                                   ex.getMessage,
+                                   leaseEpoch)
+        }
+    }
+
+    if (recheckRequested && claimsInFlight == 0) {
+      recheckRequested = false
+      self ! CheckForRunnableJob
+    }
+  }
 
+  /**
+    * The job was claimed (and is RUNNING in the db), but the worker never
+    * started the job. Mark the job as FAILED and return the worker to the queue.
+    */
+  def onFailedToStartWork(failed: FailedToStartWork): Unit = {
+    val engineJob = failed.engineJob
     val msg =
-      s"Completed checking for work ${getManagerStatus().prettySummary}"
-    //log.debug(msg)
+      s"Failed to add Job ${engineJob.id} jobtype:${engineJob.jobTypeId} to worker ${failed.worker} ${failed.message}"
+    log.error(msg)
 
-    // If either worker found work to run, then send a self check for work message
-    // to attempt to continue to process other work in queue
-    if (x1.isRight || x2.isRight) {
-      self ! CheckForRunnableJob
+    releaseWorkerResources(failed.worker)
+    if (runningJobs.remove(failed.worker).isDefined) {
+      workerQueueFor(failed.workerType).enqueue(failed.worker)
+    }
+
+    logResultsMessage(
+      dao
+        .updateJobState(engineJob.id,
+                        AnalysisJobStates.FAILED,
+                        msg,
+                        Some(msg),
+                        JobLeaseFence.fromEpoch(failed.leaseEpoch))
+        .map(j => s"Updated job ${j.id} to state ${j.state}"))
+
+    self ! CheckForRunnableJob
+  }
+
+  /**
+    * Create a worker and add it to the idle worker queue. The workers are watched,
+    * the job of a stopped worker is recovered by the watchdog policy.
+    */
+  def addWorker(workerType: WorkerType, name: String): ActorRef = {
+    val worker = workerType match {
+      case QuickWorkType =>
+        context.actorOf(
+          QuickEngineCoreJobWorkerActor.props(self, serviceRunner, pools),
+          name)
+      case StandardWorkType =>
+        context.actorOf(
+          EngineCoreJobWorkerActor.props(self, serviceRunner, pools),
+          name)
+    }
+    context.watch(worker)
+    workerQueueFor(workerType).enqueue(worker)
+    log.info(s"Creating worker-type:$workerType worker $worker")
+    worker
+  }
+
+  private def replaceWorker(workerType: WorkerType): ActorRef = {
+    numReplacedWorkers += 1
+    val prefix = workerType match {
+      case QuickWorkType => "engine-quick-worker"
+      case StandardWorkType => "engine-worker"
+    }
+    addWorker(workerType, s"$prefix-r$numReplacedWorkers")
+  }
+
+  private def staleAfter(watchdog: JobWatchdogConfig,
+                         workerType: WorkerType): FiniteDuration =
+    workerType match {
+      case QuickWorkType => watchdog.quickStaleAfter
+      case StandardWorkType => watchdog.staleAfter
+    }
+
+  /**
+    * Check the last activity (job update, job event or job task update) of the
+    * jobs run by the workers of this node. The result is sent to self as StaleJobs.
+    *
+    * The window starts when the worker started to execute the job. A job that is still
+    * queued in the pool of the worker is never stale.
+    */
+  def checkForStaleJobs(watchdog: JobWatchdogConfig): Unit = {
+    failUnresponsiveRetiredWorkers(watchdog)
+
+    val running = runningJobs.toSeq.filter(_._2.executionStartedAt.isDefined)
+    if (running.nonEmpty) {
+      dao
+        .getJobsLastActivity(running.map(_._2.engineJob.id))
+        .map { activity =>
+          val now = JodaDateTime.now()
+          val stale = running.filter {
+            case (_, r) =>
+              val window = staleAfter(watchdog, r.workerType)
+              (activity.get(r.engineJob.id).toSeq ++ r.executionStartedAt)
+                .reduceOption((a, b) => if (a.isAfter(b)) a else b)
+                .exists(_.plus(window.toMillis).isBefore(now))
+          }
+          StaleJobs(stale)
+        }
+        .recover {
+          case NonFatal(ex) =>
+            log.error(s"Failed to check for stale jobs ${ex.getMessage}")
+            StaleJobs(Nil)
+        } pipeTo self
     }
-    msg
+  }
+
+  /**
+    * Kill the external processes of the job. Interrupting the thread of the job only
+    * stops the (bash) wrapper process, pbsmrtpipe writes a terminate script to the job
+    * dir that kills the pbsmrtpipe master process and the running tasks.
+    */
+  private def terminateJobProcesses(engineJob: EngineJob): Future[String] =
+    Future {
+      val jobDir = Paths.get(engineJob.path)
+      if (PbsmrtpipeJobUtils.canTerminateJobFromDir(jobDir)) {
+        blocking {
+          PbsmrtpipeJobUtils
+            .terminateJobFromDir(jobDir)
+            .map(ex =>
+              s"Failed to terminate the processes of job ${engineJob.id} ${ex.msg}")
+            .getOrElse(s"Terminated the processes of job ${engineJob.id}")
+        }
+      } else s"No external processes to terminate of job ${engineJob.id}"
+    }
+
+  /**
+    * Free the worker slot of the job. The external processes of the job are killed, the
+    * thread of the job is interrupted, the worker is stopped and replaced by a new idle
+    * worker.
+    *
+    * The job is marked as FAILED, or with the requeue policy, requeued when the interrupted
+    * run completes (i.e., after the runner has updated the job state).
+    */
+  def recoverJob(worker: ActorRef, r: RunningJob, reason: String): Unit = {
+    val engineJob = r.engineJob
+    val msg =
+      s"Recovering job ${engineJob.id} type:${engineJob.jobTypeId} from worker $worker. $reason"
+    log.warning(msg)
+
+    runningJobs.remove(worker)
+    releaseWorkerResources(worker)
+    logResultsMessage(terminateJobProcesses(engineJob))
+    worker ! InterruptRunningJob
+    worker ! PoisonPill
+    replaceWorker(r.workerType)
+
+    if (config.watchdog.exists(_.requeue)) {
+      retiredWorkers(worker) = (r, JodaDateTime.now())
+    } else {
+      logResultsMessage(
+        dao
+          .updateJobState(engineJob.id,
+                          AnalysisJobStates.FAILED,
+                          msg,
+                          Some(msg),
+                          JobLeaseFence.fromEpoch(r.leaseEpoch))
+          .map(j => s"Updated job ${j.id} to state ${j.state}"))
+    }
+
+    self ! CheckForRunnableJob
+  }
+
+  /**
+    * The interrupted run of a stale job completed. Requeue the job (unless it was
+    * SUCCESSFUL).
+    */
+  def onRetiredWorkerCompleted(worker: ActorRef): Unit =
+    retiredWorkers.remove(worker).foreach {
+      case (r, _) =>
+        val jobId = r.engineJob.id
+        logResultsMessage(
+          dao.getJobById(jobId).flatMap { job =>
+            if (job.state == AnalysisJobStates.SUCCESSFUL)
+              Future.successful(s"Stale job $jobId completed. Skipping requeue")
+            else
+              dao
+                .requeueJob(jobId,
+                            s"Requeuing stale job $jobId (state:${job.state})")
+                .map(j => s"Updated job ${j.id} to state ${j.state}")
+          })
+    }
+
+  /**
+    * The interrupted run of a stale job didn't complete within the poll interval
+    * (e.g., blocked on IO). The job is marked as FAILED to not run it twice.
+    */
+  private def failUnresponsiveRetiredWorkers(
+      watchdog: JobWatchdogConfig): Unit = {
+    val cutoff = JodaDateTime.now().minus(watchdog.pollInterval.toMillis)
+    retiredWorkers.toSeq
+      .filter { case (_, (_, retiredAt)) => retiredAt.isBefore(cutoff) }
+      .foreach {
+        case (worker, (r, _)) =>
+          retiredWorkers.remove(worker)
+          val msg =
+            s"Failed to interrupt stale job ${r.engineJob.id}. Unable to requeue the job"
+          log.error(msg)
+          logResultsMessage(
+            dao
+              .updateJobState(r.engineJob.id,
+                              AnalysisJobStates.FAILED,
+                              msg,
+                              Some(msg),
+                              JobLeaseFence.fromEpoch(r.leaseEpoch))
+              .map(j => s"Updated job ${j.id} to state ${j.state}"))
+      }
   }
 
   override def preStart(): Unit = {
     log.info(s"Starting engine manager actor $self with $config")
+    config.jobLease.foreach(lease =>
+      log.info(s"Running jobs as Engine node ${lease.nodeId}"))
 
     (0 until config.numQuickWorkers).foreach { x =>
-      val worker = context.actorOf(
-        QuickEngineCoreJobWorkerActor.props(self, serviceRunner),
-        s"engine-quick-worker-$x")
-      quickWorkers.enqueue(worker)
-      log.info(s"Creating Quick worker $worker")
+      addWorker(QuickWorkType, s"engine-quick-worker-$x")
     }
 
     (0 until config.numGeneralWorkers).foreach { x =>
-      val worker =
-        context.actorOf(EngineCoreJobWorkerActor.props(self, serviceRunner),
-                        s"engine-worker-$x")
-      workers.enqueue(worker)
-      log.info(s"Creating worker $worker")
+      addWorker(StandardWorkType, s"engine-worker-$x")
+    }
+
+    config.jobNotifyPollInterval.foreach { pollInterval =>
+      val listener = context.actorOf(
+        JobStateNotifyListenerActor.props(config.dbConfig,
+                                          dao,
+                                          self,
+                                          pollInterval),
+        "job-state-notify-listener")
+      log.info(s"Creating Job state notify listener $listener")
     }
   }
 
+  override def postStop(): Unit = {
+    leaseTicks.foreach(_.cancel())
+    watchdogTick.foreach(_.cancel())
+  }
+
   override def preRestart(reason: Throwable, message: Option[Any]) {
     super.preRestart(reason, message)
     log.error(
@@ -415,28 +796,77 @@ class EngineCoreJobManagerActor(dao: JobsDao,
         }
       }
 
-    case CheckForRunnableJob => {
-      // This blocks. :(
-      Try(checkForWork()) match {
-        case Success(msg) =>
-        //log.debug(s"Completed checking for work $msg")
-        case Failure(ex) =>
-          val sw = new StringWriter
-          ex.printStackTrace(new PrintWriter(sw))
-          log.error(s"Failed check for runnable jobs ${ex.getMessage}")
-          log.error(sw.toString)
+    case CheckForRunnableJob =>
+      checkForWork()
+
+    case RenewJobLeases =>
+      config.jobLease.foreach { lease =>
+        dao.renewJobLeases(lease).failed.foreach { ex =>
+          log.error(
+            s"Failed to renew job leases of node ${lease.nodeId} ${ex.getMessage}")
+        }
       }
-    }
+
+    case ReapExpiredJobLeases =>
+      config.jobLease.foreach { lease =>
+        logResultsMessage(
+          dao
+            .reapExpiredJobLeases(lease.maxAttempts)
+            .map(jobs => s"Reaped ${jobs.length} jobs with an expired lease"))
+      }
+
+    case CheckForStaleJobs =>
+      config.watchdog.foreach(checkForStaleJobs)
+
+    case StartedWork(worker, jobId) =>
+      runningJobs.get(worker).filter(_.engineJob.id == jobId).foreach { r =>
+        runningJobs(worker) =
+          r.copy(executionStartedAt = Some(JodaDateTime.now()))
+      }
+
+    case StaleJobs(jobs) =>
+      jobs.foreach {
+        case (worker, r) =>
+          // The job might have completed while the activity was fetched
+          if (runningJobs.get(worker).contains(r)) {
+            val window = config.watchdog.map(staleAfter(_, r.workerType))
+            val reason = s"No job activity within ${window.getOrElse("")}"
+            if (config.watchdog.exists(_.logOnly))
+              log.warning(
+                s"Detected stale job ${r.engineJob.id} type:${r.engineJob.jobTypeId} on worker $worker. $reason")
+            else recoverJob(worker, r, reason)
+          }
+      }
+
+    case Terminated(worker) =>
+      runningJobs.get(worker) match {
+        case Some(r) =>
+          recoverJob(worker, r, s"Worker $worker was stopped")
+        case None =>
+          Seq(QuickWorkType, StandardWorkType).foreach { workerType =>
+            val queue = workerQueueFor(workerType)
+            if (queue.contains(worker)) {
+              queue.dequeueAll(_ == worker)
+              replaceWorker(workerType)
+            }
+          }
+      }
+
+    case claimed: ClaimedJobs =>
+      onClaimedJobs(claimed)
+
+    case failed: FailedToStartWork =>
+      onFailedToStartWork(failed)
 
     case CompletedWork(worker, workerType) => {
       log.info(s"Completed worker-type:$workerType worker:$worker")
-      workerType match {
-        case QuickWorkType =>
-          log.info(s"Enqueuing worker-type:$workerType worker:$worker")
-          quickWorkers.enqueue(worker)
-        case StandardWorkType =>
-          log.info(s"Enqueuing worker-type:$workerType worker:$worker")
-          workers.enqueue(worker)
+      // The worker of a recovered (stale) job was replaced
+      if (runningJobs.remove(worker).isDefined) {
+        releaseWorkerResources(worker)
+        log.info(s"Enqueuing worker-type:$workerType worker:$worker")
+        workerQueueFor(workerType).enqueue(worker)
+      } else {
+        onRetiredWorkerCompleted(worker)
       }
 
       self ! CheckForRunnableJob
@@ -446,6 +876,8 @@ class EngineCoreJobManagerActor(dao: JobsDao,
     case GetEngineManagerStatus => {
       val status = getManagerStatus()
       log.info(s"EngineManager status ${status.prettySummary}")
+      resourceScheduler.foreach(x => log.info(x.summary))
+      pools.metrics.foreach(m => log.info(m.summary))
       sender ! status
     }
 
@@ -459,6 +891,7 @@ class EngineCoreJobManagerActor(dao: JobsDao,
 trait EngineCoreJobManagerActorProvider {
   this: ActorRefFactoryProvider
     with JobsDaoProvider
+    with EngineExecutionContextsProvider
     with SmrtLinkConfigProvider =>
 
   val engineManagerActor: Singleton[ActorRef] =
@@ -467,6 +900,7 @@ trait EngineCoreJobManagerActorProvider {
         actorRefFactory().actorOf(Props(classOf[EngineCoreJobManagerActor],
                                         jobsDao(),
                                         jobResolver(),
-                                        systemJobConfig()),
+                                        systemJobConfig(),
+                                        engineExecutionContexts()),
                                   "EngineCoreJobManagerActor"))
 }
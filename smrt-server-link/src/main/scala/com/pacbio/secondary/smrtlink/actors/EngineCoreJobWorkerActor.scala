@@ -1,22 +1,32 @@
 package com.pacbio.secondary.smrtlink.actors
 
+import java.util.concurrent.atomic.AtomicReference
+
 import akka.actor.{Actor, ActorLogging, ActorRef, Props}
 import com.pacbio.common.models.CommonModelImplicits
 import CommonMessages._
 import com.pacbio.secondary.smrtlink.analysis.tools.timeUtils
 import com.pacbio.secondary.smrtlink.jobtypes.ServiceJobRunner
 
-import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.{Future, blocking}
 import scala.util.{Try, Success, Failure}
 
 object EngineCoreJobWorkerActor {
   def props(engineManagerActor: ActorRef,
-            serviceRunner: ServiceJobRunner): Props =
-    Props(new EngineCoreJobWorkerActor(engineManagerActor, serviceRunner))
+            serviceRunner: ServiceJobRunner,
+            pools: EngineExecutionContexts): Props =
+    Props(
+      new EngineCoreJobWorkerActor(engineManagerActor, serviceRunner, pools))
 }
 
+/**
+  * The job is run on the dedicated (bounded) pool of the job category and
+  * the actor is not blocked while the job is running. The EngineManager will only
+  * send work to an idle worker.
+  */
 class EngineCoreJobWorkerActor(engineManagerActor: ActorRef,
-                               serviceRunner: ServiceJobRunner)
+                               serviceRunner: ServiceJobRunner,
+                               pools: EngineExecutionContexts)
     extends Actor
     with ActorLogging
     with timeUtils {
@@ -24,6 +34,9 @@ class EngineCoreJobWorkerActor(engineManagerActor: ActorRef,
   val WORK_TYPE: WorkerType = StandardWorkType
   import CommonModelImplicits._
 
+  // Thread of the running job (if any). Used to interrupt a stale job
+  private val runningThread = new AtomicReference[Option[Thread]](None)
+
   override def preStart(): Unit = {
     log.debug(s"Starting engine-worker $self")
   }
@@ -33,7 +46,7 @@ class EngineCoreJobWorkerActor(engineManagerActor: ActorRef,
   }
 
   def receive: Receive = {
-    case RunEngineJob(engineJob) => {
+    case RunEngineJob(engineJob, leaseEpoch) => {
 
       sender ! StartingWork
 
@@ -41,34 +54,60 @@ class EngineCoreJobWorkerActor(engineManagerActor: ActorRef,
       // Within this runEngineJob, it should handle all updating of state on failure
       log.info(s"Worker $self attempting to run $engineJob")
 
-      // This blocks and is already wrapped in a Try
-      val tx = serviceRunner.run(engineJob)
-
-      log.info(s"Worker $self Results from ServiceRunner $tx")
-
+      val pool = pools.forJob(WORK_TYPE, engineJob.jobTypeId)
       val completedWork = CompletedWork(self, WORK_TYPE)
 
-      // We don't care about the result. This is captured and handled in the service runner layer
-      val message = tx.map(_ => completedWork).getOrElse(completedWork)
-      log.info(s"sending $message to $sender from $self")
-
-      // Make an explicit call to the EngineManagerActor. Using sender ! message doesn't appear to work because of
-      // the Future context
-      engineManagerActor ! message
+      // This blocks and is already wrapped in a Try
+      val fx = Future {
+        runningThread.set(Some(Thread.currentThread()))
+        // The job might have been queued in the pool, the watchdog window starts now
+        engineManagerActor ! StartedWork(self, engineJob.id)
+        try {
+          blocking {
+            serviceRunner.run(engineJob, leaseEpoch = leaseEpoch)
+          }
+        } finally {
+          runningThread.set(None)
+        }
+      }(pool)
+
+      fx.onComplete { tx =>
+        log.info(s"Worker $self Results from ServiceRunner $tx")
+
+        // We don't care about the result. This is captured and handled in the service runner layer
+        log.info(s"sending $completedWork from $self")
+
+        // Make an explicit call to the EngineManagerActor. Using sender ! message doesn't appear to work because of
+        // the Future context
+        engineManagerActor ! completedWork
+      }(pool)
     }
 
+    case InterruptRunningJob =>
+      runningThread.get().foreach { t =>
+        log.warning(s"Worker $self interrupting thread ${t.getName}")
+        t.interrupt()
+      }
+
     case x => log.debug(s"Unhandled Message to Engine Worker $x")
   }
 }
 
 object QuickEngineCoreJobWorkerActor {
   def props(engineManagerActor: ActorRef,
-            serviceRunner: ServiceJobRunner): Props =
-    Props(new QuickEngineCoreJobWorkerActor(engineManagerActor, serviceRunner))
+            serviceRunner: ServiceJobRunner,
+            pools: EngineExecutionContexts): Props =
+    Props(
+      new QuickEngineCoreJobWorkerActor(engineManagerActor,
+                                        serviceRunner,
+                                        pools))
 }
 
 class QuickEngineCoreJobWorkerActor(engineManagerActor: ActorRef,
-                                    serviceRunner: ServiceJobRunner)
-    extends EngineCoreJobWorkerActor(engineManagerActor, serviceRunner) {
+                                    serviceRunner: ServiceJobRunner,
+                                    pools: EngineExecutionContexts)
+    extends EngineCoreJobWorkerActor(engineManagerActor,
+                                     serviceRunner,
+                                     pools) {
   override val WORK_TYPE = QuickWorkType
 }
@@ -0,0 +1,183 @@
+package com.pacbio.secondary.smrtlink.actors
+
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+import java.util.concurrent.{
+  LinkedBlockingQueue,
+  ThreadFactory,
+  ThreadPoolExecutor,
+  TimeUnit
+}
+
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.{
+  QuickWorkType,
+  StandardWorkType,
+  WorkerType
+}
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.JobTypeIds
+import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
+import com.pacbio.secondary.smrtlink.dependency.Singleton
+import com.pacbio.secondary.smrtlink.models.ConfigModels.SystemJobConfig
+import com.pacbio.secondary.smrtlink.models.ExecutionPoolMetrics
+import com.typesafe.scalalogging.LazyLogging
+
+import scala.concurrent.ExecutionContextExecutor
+
+/**
+  * Fixed size thread pool that records the time tasks are waiting in the queue and
+  * running. Tasks are queued (unbounded) when all the threads are busy, the number of
+  * threads is the bound of the number of concurrently blocked threads.
+  *
+  * The threads are daemon threads to not block the shutdown of the JVM.
+  *
+  * @param name       Name of the pool (used as the thread name prefix)
+  * @param numThreads Number of threads
+  */
+class InstrumentedExecutionContext(val name: String, numThreads: Int)
+    extends ExecutionContextExecutor
+    with LazyLogging {
+
+  private val threadCounter = new AtomicInteger(0)
+
+  private val threadFactory = new ThreadFactory {
+    override def newThread(r: Runnable): Thread = {
+      val t = new Thread(r, s"$name-${threadCounter.incrementAndGet()}")
+      t.setDaemon(true)
+      t
+    }
+  }
+
+  private val executor = new ThreadPoolExecutor(
+    numThreads,
+    numThreads,
+    60L,
+    TimeUnit.SECONDS,
+    new LinkedBlockingQueue[Runnable](),
+    threadFactory)
+
+  private val submitted = new AtomicLong(0)
+  private val completed = new AtomicLong(0)
+  private val totalQueueWaitMs = new AtomicLong(0)
+  private val maxQueueWaitMs = new AtomicLong(0)
+  private val totalRunMs = new AtomicLong(0)
+
+  override def execute(runnable: Runnable): Unit = {
+    val submittedAt = System.currentTimeMillis()
+    submitted.incrementAndGet()
+    executor.execute(new Runnable {
+      override def run(): Unit = {
+        val startedAt = System.currentTimeMillis()
+        val waitMs = startedAt - submittedAt
+        totalQueueWaitMs.addAndGet(waitMs)
+        maxQueueWaitMs.accumulateAndGet(waitMs,
+                                        (a: Long, b: Long) => Math.max(a, b))
+        try {
+          runnable.run()
+        } finally {
+          totalRunMs.addAndGet(System.currentTimeMillis() - startedAt)
+          completed.incrementAndGet()
+        }
+      }
+    })
+  }
+
+  override def reportFailure(cause: Throwable): Unit =
+    logger.error(s"Unhandled failure in execution pool $name", cause)
+
+  def metrics: ExecutionPoolMetrics = {
+    val active = executor.getActiveCount
+    val maxThreads = executor.getMaximumPoolSize
+    val n = completed.get()
+    def mean(total: Long): Double = if (n > 0) total.toDouble / n else 0.0
+
+    ExecutionPoolMetrics(
+      name,
+      maxThreads,
+      active,
+      active.toDouble / maxThreads,
+      executor.getQueue.size(),
+      submitted.get(),
+      n,
+      mean(totalQueueWaitMs.get()),
+      maxQueueWaitMs.get(),
+      mean(totalRunMs.get())
+    )
+  }
+
+  def shutdown(): Unit = executor.shutdown()
+}
+
+/**
+  * Dedicated pools of the job running layer. The blocking job runs (and the Await calls
+  * within the jobs) are isolated on these pools, so a stalled filesystem, or a large number
+  * of long running jobs can't starve the default dispatcher or the global ExecutionContext
+  * that the http layer and db callbacks are using.
+  *
+  * @param quick     Quick jobs
+  * @param general   General (long running) jobs
+  * @param importing IO heavy import jobs. These are run on this pool regardless of the worker type
+  * @param dao       Future callbacks of the ServiceJobRunner
+  */
+class EngineExecutionContexts(val quick: InstrumentedExecutionContext,
+                              val general: InstrumentedExecutionContext,
+                              val importing: InstrumentedExecutionContext,
+                              val dao: InstrumentedExecutionContext) {
+
+  import EngineExecutionContexts._
+
+  def all: Seq[InstrumentedExecutionContext] =
+    Seq(quick, general, importing, dao)
+
+  def forJob(workerType: WorkerType,
+             jobTypeId: String): InstrumentedExecutionContext =
+    if (IMPORT_JOB_TYPE_IDS contains jobTypeId) importing
+    else
+      workerType match {
+        case QuickWorkType => quick
+        case StandardWorkType => general
+      }
+
+  def metrics: Seq[ExecutionPoolMetrics] = all.map(_.metrics)
+
+  def shutdown(): Unit = all.foreach(_.shutdown())
+}
+
+object EngineExecutionContexts {
+
+  val IMPORT_JOB_TYPE_IDS: Set[String] = Set(
+    JobTypeIds.IMPORT_DATASET,
+    JobTypeIds.IMPORT_JOB,
+    JobTypeIds.MERGE_DATASETS,
+    JobTypeIds.CONVERT_FASTA_REFERENCE,
+    JobTypeIds.CONVERT_FASTA_GMAPREFERENCE,
+    JobTypeIds.CONVERT_FASTA_BARCODES,
+    JobTypeIds.CONVERT_RS_MOVIE,
+    JobTypeIds.DS_COPY
+  ).map(_.id)
+
+  def apply(config: SystemJobConfig): EngineExecutionContexts = {
+    val c = config.executionPools
+    def orDefault(n: Int, default: Int) =
+      Seq(if (n > 0) n else default, 1).max
+
+    new EngineExecutionContexts(
+      new InstrumentedExecutionContext(
+        "engine-quick",
+        orDefault(c.quickThreads, config.numQuickWorkers)),
+      new InstrumentedExecutionContext(
+        "engine-general",
+        orDefault(c.generalThreads, config.numGeneralWorkers)),
+      new InstrumentedExecutionContext(
+        "engine-import",
+        orDefault(c.importThreads, config.numQuickWorkers)),
+      new InstrumentedExecutionContext("engine-dao",
+                                       orDefault(c.daoThreads, 4))
+    )
+  }
+}
+
+trait EngineExecutionContextsProvider {
+  this: SmrtLinkConfigProvider =>
+
+  val engineExecutionContexts: Singleton[EngineExecutionContexts] =
+    Singleton(() => EngineExecutionContexts(systemJobConfig()))
+}
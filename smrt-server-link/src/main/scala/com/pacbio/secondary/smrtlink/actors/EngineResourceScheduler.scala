@@ -0,0 +1,183 @@
+package com.pacbio.secondary.smrtlink.actors
+
+import java.lang.management.ManagementFactory
+
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.JobTypeIds
+import com.pacbio.secondary.smrtlink.analysis.pbsmrtpipe.{
+  PbsmrtpipeConstants,
+  PbsmrtpipeEngineOptions
+}
+import com.pacbio.secondary.smrtlink.models.ConfigModels.EngineResourceConfig
+import org.joda.time.{DateTime => JodaDateTime}
+import spray.json._
+
+import scala.util.Try
+
+/**
+  * Host resources (number of processors and memory)
+  */
+case class JobResources(nproc: Int, memoryMb: Int) {
+
+  def +(other: JobResources) =
+    JobResources(nproc + other.nproc, memoryMb + other.memoryMb)
+
+  def -(other: JobResources) =
+    JobResources(nproc - other.nproc, memoryMb - other.memoryMb)
+
+  def fitsIn(other: JobResources): Boolean =
+    (nproc <= other.nproc) && (memoryMb <= other.memoryMb)
+
+  def isEmpty: Boolean = (nproc <= 0) || (memoryMb <= 0)
+
+  def summary: String = s"nproc:$nproc memoryMb:$memoryMb"
+}
+
+object JobResources {
+  val ZERO = JobResources(0, 0)
+}
+
+/**
+  * SUBMITTED job that can be claimed by the EngineManager
+  *
+  * @param maxNproc    Max number of processors per task of the job (pbsmrtpipe jobs only)
+  * @param submittedAt When the job was (last) SUBMITTED, e.g., a requeued job
+  */
+case class RunnableJobCandidate(jobId: Int,
+                                jobTypeId: String,
+                                maxNproc: Option[Int] = None,
+                                submittedAt: Option[JodaDateTime] = None)
+
+/**
+  * Tracks a host-wide nproc and memory budget of the jobs run by the EngineManager.
+  *
+  * Only the pbsmrtpipe jobs declare their resource needs (from the max nproc of the
+  * job, or the system configured pbsmrtpipe engine options). If pbsmrtpipe is run in
+  * distributed mode, the tasks are submitted to the cluster and only the pbsmrtpipe
+  * master process is run locally. All other job types are assumed to be single threaded.
+  *
+  * This is NOT thread-safe and must only be mutated from the EngineManager actor.
+  *
+  * @param config           Host Resource configuration
+  * @param pbsmrtpipeOptions System pbsmrtpipe engine options
+  */
+class EngineResourceScheduler(config: EngineResourceConfig,
+                              pbsmrtpipeOptions: PbsmrtpipeEngineOptions) {
+
+  import EngineResourceScheduler._
+
+  val total: JobResources = JobResources(
+    if (config.maxNproc > 0) config.maxNproc else hostNproc,
+    if (config.maxMemoryMb > 0) config.maxMemoryMb
+    else hostMemoryMb.getOrElse(Int.MaxValue))
+
+  private var available: JobResources = total
+
+  def getAvailable: JobResources = available
+
+  def reserve(r: JobResources): Unit = available = available - r
+
+  def release(r: JobResources): Unit = available = available + r
+
+  private def forNproc(nproc: Int): JobResources =
+    JobResources(nproc, nproc * config.memoryPerProcMb)
+
+  private def pbsmrtpipeResources(maxNproc: Int): JobResources = {
+    if (pbsmrtpipeOptions.distributedMode) forNproc(1)
+    else
+      forNproc(
+        Seq(maxNproc * pbsmrtpipeOptions.maxNWorkers,
+            pbsmrtpipeOptions.maxTotalNproc).min)
+  }
+
+  /**
+    * Resources required to run a job of the job type. A job that requires more than the
+    * total budget is clamped to the total budget, i.e., it will run when it has the host to itself.
+    *
+    * @param maxNproc Max nproc of the (pbsmrtpipe) job. If None, the system pbsmrtpipe
+    *                 engine options are used.
+    */
+  def requirement(jobTypeId: String,
+                  maxNproc: Option[Int] = None): JobResources = {
+    val r =
+      if (jobTypeId == JobTypeIds.PBSMRTPIPE.id)
+        pbsmrtpipeResources(maxNproc.getOrElse(pbsmrtpipeOptions.maxNproc))
+      else forNproc(1)
+
+    JobResources(Seq(r.nproc, total.nproc).min,
+                 Seq(r.memoryMb, total.memoryMb).min)
+  }
+
+  def requirement(candidate: RunnableJobCandidate): JobResources =
+    requirement(candidate.jobTypeId, candidate.maxNproc)
+
+  /**
+    * A candidate that doesn't fit and has waited (since it was submitted) longer than
+    * the max backfill wait reserves the resources for itself.
+    */
+  private def isReserved(candidate: RunnableJobCandidate,
+                         now: JodaDateTime): Boolean =
+    candidate.submittedAt.exists(
+      t => now.getMillis - t.getMillis > config.maxBackfillWait.toMillis)
+
+  /**
+    * Select (in order) the candidate jobs that fit in the budget. A candidate that
+    * doesn't fit is skipped, so smaller jobs can backfill around it.
+    *
+    * Backfill stops at the first candidate that doesn't fit and has waited longer
+    * than the max backfill wait. No candidates behind it are selected, so the
+    * running jobs drain until it fits (i.e., a large job can't be starved by a
+    * stream of small jobs).
+    */
+  def select(budget: JobResources,
+             maxJobs: Int,
+             now: JodaDateTime = JodaDateTime.now())(
+      candidates: Seq[RunnableJobCandidate]): Seq[RunnableJobCandidate] = {
+    val (selected, _, _) =
+      candidates.foldLeft(
+        (Seq.empty[RunnableJobCandidate], budget, false)) {
+        case ((acc, remaining, reserved), candidate) =>
+          val r = requirement(candidate)
+          if (reserved || acc.length >= maxJobs) (acc, remaining, reserved)
+          else if (r.fitsIn(remaining))
+            (acc :+ candidate, remaining - r, reserved)
+          else (acc, remaining, isReserved(candidate, now))
+      }
+    selected
+  }
+
+  def summary: String =
+    s"Resources available ${available.summary} of total ${total.summary}"
+}
+
+object EngineResourceScheduler {
+
+  /**
+    * Max nproc (workflow option) of a pbsmrtpipe job from the json settings of
+    * the job. None if it's not a pbsmrtpipe job or the option isn't set.
+    */
+  def toMaxNproc(jobTypeId: String, jsonSettings: String): Option[Int] =
+    if (jobTypeId != JobTypeIds.PBSMRTPIPE.id) None
+    else
+      Try {
+        jsonSettings.parseJson.asJsObject.fields
+          .get("workflowOptions")
+          .collect { case JsArray(opts) => opts }
+          .getOrElse(Vector.empty[JsValue])
+          .map(_.asJsObject.fields)
+          .find { o =>
+            o.get("id").orElse(o.get("optionId")) == Some(
+              JsString(PbsmrtpipeConstants.MAX_NPROC.id))
+          }
+          .flatMap(_.get("value"))
+          .collect { case JsNumber(n) => n.toInt }
+      }.toOption.flatten.filter(_ > 0)
+
+  def hostNproc: Int = Runtime.getRuntime.availableProcessors()
+
+  def hostMemoryMb: Option[Int] =
+    Try {
+      ManagementFactory.getOperatingSystemMXBean
+        .asInstanceOf[com.sun.management.OperatingSystemMXBean]
+        .getTotalPhysicalMemorySize / (1024 * 1024)
+    }.toOption.map(_.toInt)
+}
@@ -0,0 +1,83 @@
+package com.pacbio.secondary.smrtlink.actors
+
+import akka.actor.{Actor, ActorRef, Props}
+import akka.pattern.pipe
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.MessageResponse
+import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
+import com.pacbio.secondary.smrtlink.dependency.Singleton
+import com.pacbio.secondary.smrtlink.models.ConfigModels.JobArchiveConfig
+import com.typesafe.scalalogging.LazyLogging
+import org.joda.time.{DateTime => JodaDateTime}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.util.{Failure, Success}
+
+object JobArchiveActor {
+  case object ArchiveJobs
+  case object ArchiveJobsCompleted
+}
+
+/**
+  * Archives the job events and job tasks of the jobs completed before the configured
+  * window (see JobsDao.archiveJobs). Only a single archive runs at a time.
+  */
+class JobArchiveActor(dao: JobsDao, config: JobArchiveConfig)
+    extends Actor
+    with LazyLogging {
+
+  import JobArchiveActor._
+
+  private var isRunning = false
+
+  override def preStart() = {
+    logger.info(
+      s"Starting $self archiving jobs completed more than ${config.archiveAfter.toDays} days ago")
+  }
+
+  override def receive: Receive = {
+    case ArchiveJobs =>
+      if (isRunning) {
+        sender ! MessageResponse("Job archive is already running")
+      } else {
+        isRunning = true
+        val completedBefore =
+          JodaDateTime.now().minus(config.archiveAfter.toMillis)
+
+        val fx = dao
+          .archiveJobs(completedBefore, config.maxNumJobs)
+          .map(n =>
+            MessageResponse(
+              s"Archived the job events and tasks of $n jobs completed before $completedBefore"))
+
+        fx.onComplete { result =>
+          result match {
+            case Success(m) => logger.info(m.message)
+            case Failure(ex) =>
+              logger.error(s"Failed to archive jobs ${ex.getMessage}")
+          }
+          self ! ArchiveJobsCompleted
+        }
+
+        fx pipeTo sender
+      }
+
+    case ArchiveJobsCompleted =>
+      isRunning = false
+  }
+}
+
+trait JobArchiveActorProvider {
+  this: ActorRefFactoryProvider
+    with JobsDaoProvider
+    with SmrtLinkConfigProvider =>
+
+  // None if the job archive is disabled
+  val jobArchiveActor: Singleton[Option[ActorRef]] =
+    Singleton(
+      () =>
+        jobArchiveConfig().map(
+          config =>
+            actorRefFactory().actorOf(
+              Props(classOf[JobArchiveActor], jobsDao(), config),
+              "JobArchiveActor")))
+}
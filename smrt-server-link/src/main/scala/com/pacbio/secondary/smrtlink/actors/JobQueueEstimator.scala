@@ -0,0 +1,103 @@
+package com.pacbio.secondary.smrtlink.actors
+
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.{
+  EngineJob,
+  JobTypeIds
+}
+import com.pacbio.secondary.smrtlink.models.JobQueueEntry
+import org.joda.time.{DateTime => JodaDateTime}
+
+import scala.collection.mutable
+
+/**
+  * Estimate the wait time of the SUBMITTED jobs in the run queue.
+  *
+  * This simulates the EngineManager assigning the queued jobs (in claim order)
+  * to the first available worker, using the average run time of recently completed
+  * jobs of the same job type. Quick jobs can run on either worker pool, all other
+  * jobs only run on the general workers.
+  *
+  * This is only an estimate. The host resource budget is not taken into account.
+  */
+object JobQueueEstimator {
+
+  private def isQuick(jobTypeId: String): Boolean =
+    JobTypeIds.fromString(jobTypeId).exists(_.isQuick)
+
+  // Min-heap of the time (in sec from now) when each worker will be available
+  private def toWorkerPool(numWorkers: Int): mutable.PriorityQueue[Double] =
+    mutable.PriorityQueue(Seq.fill(numWorkers)(0.0): _*)(
+      Ordering[Double].reverse)
+
+  /**
+    * @param queue             SUBMITTED jobs in claim order
+    * @param running           RUNNING jobs
+    * @param runTimes          Average run time (in sec) by job type id
+    * @param numGeneralWorkers Number of general workers
+    * @param numQuickWorkers   Number of quick workers
+    */
+  def estimate(queue: Seq[EngineJob],
+               running: Seq[EngineJob],
+               runTimes: Map[String, Double],
+               numGeneralWorkers: Int,
+               numQuickWorkers: Int,
+               now: JodaDateTime = JodaDateTime.now()): Seq[JobQueueEntry] = {
+
+    val defaultRunTime: Option[Double] =
+      if (runTimes.isEmpty) None
+      else Some(runTimes.values.sum / runTimes.size)
+
+    def runTimeOf(job: EngineJob): Option[Double] =
+      runTimes.get(job.jobTypeId).orElse(defaultRunTime)
+
+    val generalPool = toWorkerPool(numGeneralWorkers)
+    val quickPool = toWorkerPool(numQuickWorkers)
+
+    // Select the pool with the worker that will be available first
+    def poolFor(job: EngineJob): Option[mutable.PriorityQueue[Double]] = {
+      val pools =
+        if (isQuick(job.jobTypeId)) Seq(quickPool, generalPool)
+        else Seq(generalPool)
+      pools.filter(_.nonEmpty).sortBy(_.head).headOption
+    }
+
+    // The running jobs are occupying workers until their (estimated) completion
+    running.sortBy(_.id).foreach { job =>
+      val elapsed = (now.getMillis - job.updatedAt.getMillis) / 1000.0
+      val remaining = runTimeOf(job).map(r => Seq(r - elapsed, 0.0).max)
+      for {
+        pool <- poolFor(job)
+        r <- remaining
+      } {
+        pool.dequeue()
+        pool.enqueue(r)
+      }
+    }
+
+    queue.zipWithIndex.map {
+      case (job, position) =>
+        val waitSeconds: Option[Double] = for {
+          runTime <- runTimeOf(job)
+          pool <- poolFor(job)
+        } yield {
+          val startAt = pool.dequeue()
+          pool.enqueue(startAt + runTime)
+          startAt
+        }
+
+        JobQueueEntry(
+          position,
+          job.id,
+          job.uuid,
+          job.name,
+          job.jobTypeId,
+          job.priority,
+          job.projectId,
+          job.createdBy,
+          job.createdAt,
+          waitSeconds.map(_.toLong),
+          waitSeconds.map(w => now.plus((w * 1000).toLong))
+        )
+    }
+  }
+}
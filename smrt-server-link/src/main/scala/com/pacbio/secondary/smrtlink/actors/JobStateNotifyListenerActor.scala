@@ -0,0 +1,169 @@
+package com.pacbio.secondary.smrtlink.actors
+
+import java.sql.{Connection, SQLException}
+
+import akka.actor.{Actor, ActorLogging, ActorRef, Cancellable, Props}
+import com.pacbio.secondary.smrtlink.SmrtLinkConstants
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.CheckForRunnableJob
+import com.pacbio.secondary.smrtlink.analysis.jobs.AnalysisJobStates
+import com.pacbio.secondary.smrtlink.database.SmrtLinkDatabaseConfig
+import org.postgresql.PGConnection
+
+import scala.concurrent.duration._
+import scala.util.Try
+import scala.util.control.NonFatal
+
+object JobStateNotifyListenerActor {
+
+  case object PollNotifications
+
+  // Dedicated (pinned) thread of the blocking JDBC calls of the LISTEN connection
+  final val DISPATCHER_ID = "smrtflow.engine.jobNotifyDispatcher"
+
+  def props(dbConfig: SmrtLinkDatabaseConfig,
+            dao: JobsDao,
+            engineManagerActor: ActorRef,
+            pollInterval: FiniteDuration): Props =
+    Props(
+      new JobStateNotifyListenerActor(dbConfig,
+                                      dao,
+                                      engineManagerActor,
+                                      pollInterval))
+      .withDispatcher(DISPATCHER_ID)
+
+  /**
+    * Extract the Job id and state from the NOTIFY payload "{job-id}:{state}"
+    */
+  def parseJobStateChange(
+      payload: String): Option[(Int, AnalysisJobStates.JobStates)] =
+    payload.split(":").toList match {
+      case jobId :: state :: Nil =>
+        for {
+          i <- Try(jobId.toInt).toOption
+          s <- AnalysisJobStates.toState(state)
+        } yield (i, s)
+      case _ => None
+    }
+}
+
+/**
+  * LISTEN to Job state change NOTIFY events (from JobsDao) and trigger the EngineManager
+  * to check for runnable work when a Job is SUBMITTED. The (cached) Job of each event is
+  * invalidated in the entity cache of the dao.
+  *
+  * The NOTIFY is sent by any process that is connected to the same db, hence
+  * jobs that are submitted from a different server process will also be dispatched.
+  *
+  * This uses a dedicated (non-pooled) connection. The pgjdbc driver only
+  * receives the notifications when the connection is used, hence the connection is
+  * polled with a trivial query. The JDBC calls are blocking, the actor runs on a
+  * dedicated thread (see DISPATCHER_ID) and not on the default dispatcher. If the connection is lost, it will be reopened
+  * on the next poll, the EngineManager will be triggered to check for work and all
+  * the cached Jobs are invalidated (notifications could have been missed).
+  *
+  * @param dbConfig     Database config used to create the LISTEN connection
+  * @param dao          Dao of the cached Jobs to invalidate
+  * @param engineManagerActor EngineManager to send CheckForRunnableJob to
+  * @param pollInterval Poll interval of the LISTEN connection
+  */
+class JobStateNotifyListenerActor(dbConfig: SmrtLinkDatabaseConfig,
+                                  dao: JobsDao,
+                                  engineManagerActor: ActorRef,
+                                  pollInterval: FiniteDuration)
+    extends Actor
+    with ActorLogging {
+
+  import JobStateNotifyListenerActor._
+
+  private var connection: Option[Connection] = None
+
+  private var pollTick: Option[Cancellable] = None
+
+  override def preStart(): Unit = {
+    log.info(
+      s"Starting $self listening to channel ${SmrtLinkConstants.JOB_STATE_NOTIFY_CHANNEL} with poll interval $pollInterval")
+    implicit val ec = context.dispatcher
+    pollTick = Some(
+      context.system.scheduler
+        .schedule(pollInterval, pollInterval, self, PollNotifications))
+  }
+
+  override def postStop(): Unit = {
+    pollTick.foreach(_.cancel())
+    closeConnection()
+  }
+
+  private def closeConnection(): Unit = {
+    connection.foreach { c =>
+      try { c.close() } catch {
+        case NonFatal(ex) =>
+          log.warning(s"Unable to close LISTEN connection ${ex.getMessage}")
+      }
+    }
+    connection = None
+  }
+
+  private def openConnection(): Connection = {
+    val c = dbConfig.toDataSource.getConnection()
+    val st = c.createStatement()
+    try {
+      st.execute(s"LISTEN ${SmrtLinkConstants.JOB_STATE_NOTIFY_CHANNEL}")
+    } finally {
+      st.close()
+    }
+    log.info(
+      s"Listening to ${SmrtLinkConstants.JOB_STATE_NOTIFY_CHANNEL} on ${dbConfig.server}:${dbConfig.port}/${dbConfig.dbName}")
+    c
+  }
+
+  /**
+    * Returns the (parsed) Job ids and states of the pending notifications
+    */
+  private def getNotifications(
+      c: Connection): Seq[(Int, AnalysisJobStates.JobStates)] = {
+    // Notifications are only received from the server when the connection is used
+    val st = c.createStatement()
+    try {
+      st.execute("SELECT 1")
+    } finally {
+      st.close()
+    }
+
+    Option(c.unwrap(classOf[PGConnection]).getNotifications)
+      .map(_.toSeq)
+      .getOrElse(Nil)
+      .flatMap(n => parseJobStateChange(n.getParameter))
+  }
+
+  private def poll(): Unit = {
+    connection match {
+      case Some(c) =>
+        val changes = getNotifications(c)
+        changes.foreach {
+          case (jobId, _) => dao.entityCaches.jobs.invalidate(jobId)
+        }
+        if (changes.exists(_._2 == AnalysisJobStates.SUBMITTED)) {
+          engineManagerActor ! CheckForRunnableJob
+        }
+      case None =>
+        connection = Some(openConnection())
+        // Any notifications sent while disconnected are lost
+        dao.entityCaches.jobs.invalidateAll()
+        engineManagerActor ! CheckForRunnableJob
+    }
+  }
+
+  override def receive: Receive = {
+    case PollNotifications =>
+      try {
+        poll()
+      } catch {
+        case ex: SQLException =>
+          log.error(
+            s"Failed to poll ${SmrtLinkConstants.JOB_STATE_NOTIFY_CHANNEL} notifications ${ex.getMessage}. Will reconnect on next poll.")
+          closeConnection()
+      }
+
+    case x => log.warning(s"Unhandled message $x to $self")
+  }
+}
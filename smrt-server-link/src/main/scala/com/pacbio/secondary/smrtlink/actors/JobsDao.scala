@@ -6,6 +6,7 @@ import java.util.UUID
 import com.google.common.annotations.VisibleForTesting
 import com.pacbio.secondary.smrtlink.dependency.Singleton
 import com.pacbio.secondary.smrtlink.services.PacBioServiceErrors.{
+  ConflictError,
   ResourceNotFoundError,
   UnprocessableEntityError
 }
@@ -14,11 +15,13 @@ import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes.DataSetMetaType
 import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetCache,
   DataSetJsonUtils,
   DataSetLoader
 }
 import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels._
 import com.pacbio.secondary.smrtlink.analysis.jobs._
+import com.pacbio.secondary.smrtlink.analysis.pbsmrtpipe.PbsmrtpipeConstants
 import com.pacbio.secondary.smrtlink.SmrtLinkConstants
 import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
 import com.pacbio.secondary.smrtlink.database.TableModels._
@@ -32,16 +35,25 @@ import scala.concurrent.{Await, ExecutionContext, Future, blocking}
 import scala.language.postfixOps
 import scala.util.control.NonFatal
 import scala.collection.mutable
+import scala.collection.JavaConverters._
+import scala.reflect.ClassTag
 import slick.sql.FixedSqlAction
 import slick.jdbc.PostgresProfile.api._
+import slick.jdbc.GetResult
+import slick.lifted.AppliedCompiledFunction
 import java.sql.SQLException
 
+import akka.NotUsed
 import akka.actor.ActorRef
+import akka.stream.scaladsl.Source
 import com.pacbio.common.models.CommonModels.{IdAble, IntIdAble, UUIDIdAble}
 import com.pacbio.secondary.smrtlink.actors.CommonMessages.MessageResponse
 import com.pacbio.secondary.smrtlink.analysis.configloaders.ConfigLoader
 import com.pacbio.secondary.smrtlink.analysis.datasets.io.ImplicitDataSetLoader.BarcodeSetLoader
 import com.pacbio.secondary.smrtlink.database.{
+  DaoEntityCaches,
+  DbConnectionPools,
+  DbWriteBehindBatcher,
   SmrtLinkDatabaseConfig => SmrtLinkDbConfig
 }
 import com.pacbio.secondary.smrtlink.jobtypes.{
@@ -52,6 +64,12 @@ import com.pacbio.secondary.smrtlink.jsonprotocols.{
   ServiceJobTypeJsonProtocols,
   SmrtLinkJsonProtocols
 }
+import com.pacbio.secondary.smrtlink.models.ConfigModels.{
+  DbPoolConfig,
+  EntityCacheConfig,
+  JobLeaseConfig,
+  WriteBehindConfig
+}
 import com.pacbio.secondary.smrtlink.models.QueryOperators._
 import com.pacificbiosciences.pacbiobasedatamodel.SupportedAcquisitionStates
 import com.pacificbiosciences.pacbiodatasets._
@@ -63,6 +81,12 @@ import spray.json._
 trait DalProvider {
   val db: Singleton[Database]
   val dbConfig: SmrtLinkDbConfig
+  // Optional read replica of the db. None will read from the primary db
+  val replicaDb: Singleton[Option[Database]] = Singleton(() => None)
+  val replicaReadYourWritesWindow: Singleton[FiniteDuration] = Singleton(
+    () => 5.seconds)
+  // Optional separate pools of the engine, api and maintenance work. None will use the db
+  val dbPools: Singleton[Option[DbConnectionPools]] = Singleton(() => None)
   // this is duplicated for the cake vs provider model
   val dbConfigSingleton: Singleton[SmrtLinkDbConfig] = Singleton(
     () => dbConfig)
@@ -93,8 +117,55 @@ trait DbConfigLoader extends ConfigLoader {
 
 trait SmrtLinkDalProvider extends DalProvider with DbConfigLoader {
 
+  private def loadDbPoolConfig(name: String): DbPoolConfig = {
+    val key = s"smrtflow.db-pools.$name"
+    DbPoolConfig(
+      name,
+      conf.getInt(s"$key.maxConnections"),
+      conf.getInt(s"$key.queueSize"),
+      conf.getInt("smrtflow.db-pools.connectionTimeoutMillis").millis
+    )
+  }
+
+  // All the smrtflow.db (PGSimpleDataSource) properties, e.g., ssl or socketTimeout
+  private def loadDbProperties(): Map[String, String] =
+    conf
+      .getConfig("smrtflow.db.properties")
+      .entrySet()
+      .asScala
+      .map(e => e.getKey -> e.getValue.unwrapped().toString)
+      .toMap
+
+  override val dbPools: Singleton[Option[DbConnectionPools]] = Singleton {
+    () =>
+      if (conf.getBoolean("smrtflow.db-pools.enabled"))
+        Some(
+          DbConnectionPools(dbConfig,
+                            loadDbPoolConfig("engine"),
+                            loadDbPoolConfig("api"),
+                            loadDbPoolConfig("maintenance"),
+                            loadDbProperties()))
+      else None
+  }
+
+  // The other DAOs (e.g., runs and samples) share the api pool. The Engine work uses
+  // the engine pool explicitly (see DalComponent.engineDb)
   override val db: Singleton[Database] =
-    Singleton(() => Database.forConfig("smrtflow.db"))
+    Singleton(
+      () =>
+        dbPools()
+          .map(_.api.db)
+          .getOrElse(Database.forConfig("smrtflow.db")))
+
+  override val replicaDb: Singleton[Option[Database]] = Singleton { () =>
+    if (conf.getBoolean("smrtflow.db-replica.enabled"))
+      Some(Database.forConfig("smrtflow.db-replica"))
+    else None
+  }
+
+  override val replicaReadYourWritesWindow: Singleton[FiniteDuration] =
+    Singleton(
+      () => conf.getInt("smrtflow.db-replica.readYourWritesMillis").millis)
 }
 
 @VisibleForTesting
@@ -127,6 +198,81 @@ trait SmrtLinkTestDalProvider extends DalProvider with ConfigLoader {
 trait DalComponent extends LazyLogging {
   val db: Database
 
+  // Read-through caches of the entities looked up by id. The writes in this trait
+  // must invalidate the updated entities.
+  val entityCaches: DaoEntityCaches
+
+  // Optional read replica of the db. Only the (read only) searches and listings are
+  // read from the replica (see runRead), writes and the engine always use the primary.
+  val replicaDb: Option[Database]
+
+  // Reads are routed to the primary within this window after a write of the same client
+  // (see readDb), the replica might not have the write yet (i.e., replication lag)
+  val readYourWritesWindow: FiniteDuration
+
+  // Separate pools of the Engine (claiming jobs, job leases and job state transitions),
+  // the api reads and the maintenance work (e.g., imports, deletes and integrity runners).
+  // If None, all the work uses the db (pool).
+  val dbPools: Option[DbConnectionPools]
+
+  def engineDb: Database = dbPools.map(_.engine.db).getOrElse(db)
+
+  def apiDb: Database = dbPools.map(_.api.db).getOrElse(db)
+
+  def maintenanceDb: Database = dbPools.map(_.maintenance.db).getOrElse(db)
+
+  /**
+    * The read replica, or the primary (api pool) if the replica isn't configured, the
+    * client made a write within the read-your-writes window or the read isn't made for a
+    * client request (the last write of the client is unknown).
+    */
+  def readDb(routing: ReadRouting): Database =
+    replicaDb
+      .filter(_ =>
+        routing.clientLastWriteAt.exists(t =>
+          System.currentTimeMillis() - t > readYourWritesWindow.toMillis))
+      .getOrElse(apiDb)
+
+  def runRead[R](action: DBIOAction[R, NoStream, Effect.Read],
+                 routing: ReadRouting = ReadRouting.PRIMARY): Future[R] =
+    readDb(routing).run(action)
+
+  // Number of rows read per page of a streamed listing
+  val STREAM_PAGE_SIZE = 500
+
+  /**
+    * Stream a listing ordered by id (descending) as keyset pages. Each page is a separate
+    * read, the next page is only read on demand of the consumer. A connection (and a
+    * transaction) is not held while a (slow) client reads the stream, the number of rows
+    * held in memory is bounded by the page size.
+    *
+    * The pages are not read from the same snapshot, rows inserted while the listing is
+    * streamed are not included (the ids are increasing).
+    *
+    * @param limit Max number of rows of the listing
+    * @param page  Read the page of (at most) n rows after the id of the last row of the
+    *              previous page. None for the first page.
+    * @param toId  Id of a row
+    */
+  def streamPages[T](limit: Int, routing: ReadRouting = ReadRouting.PRIMARY)(
+      page: (Option[Int], Int) => DBIOAction[Seq[T], NoStream, Effect.Read])(
+      toId: T => Int): Source[T, NotUsed] =
+    Source
+      .unfoldAsync[(Option[Int], Int, Boolean), Seq[T]]((None, limit, false)) {
+        case (_, remaining, isLast) if isLast || remaining <= 0 =>
+          Future.successful(None)
+        case (afterId, remaining, _) =>
+          val n = math.min(STREAM_PAGE_SIZE, remaining)
+          runRead(page(afterId, n), routing).map { rows =>
+            if (rows.isEmpty) None
+            else
+              Some(
+                ((Some(rows.map(toId).min), remaining - rows.length, rows.length < n),
+                 rows))
+          }
+      }
+      .mapConcat(_.toList)
+
   // https://www.postgresql.org/docs/9.6/static/errcodes-appendix.html
   final private val integrityConstraintViolationSqlStateCodes =
     Set("23000", "230001", "23502", "23503", "23505", "23514", "23P01")
@@ -143,6 +289,26 @@ trait DalComponent extends LazyLogging {
 
 // Need to find a central home for these util funcs
 trait DaoFutureUtils {
+
+  // Escape character of the LIKE patterns
+  val LIKE_ESCAPE = '\\'
+
+  /**
+    * LIKE pattern of a substring match. The LIKE wildcards in the value are matched
+    * literally (the pattern must be used with LIKE_ESCAPE).
+    *
+    * The substring matches of the names, comments and paths are backed by trigram
+    * indexes if the pg_trgm extension is available (see V26). Otherwise this is a
+    * sequential scan.
+    */
+  def toContainsPattern(value: String): String = {
+    val escaped = value
+      .replace(s"$LIKE_ESCAPE", s"$LIKE_ESCAPE$LIKE_ESCAPE")
+      .replace("%", s"$LIKE_ESCAPE%")
+      .replace("_", s"${LIKE_ESCAPE}_")
+    s"%$escaped%"
+  }
+
   def failIfNone[T](message: String): (Option[T] => Future[T]) = {
     case Some(value) => Future.successful(value)
     case _ => Future.failed(ResourceNotFoundError(message))
@@ -179,8 +345,9 @@ trait DaoFutureUtils {
 trait ProjectDataStore extends LazyLogging {
   this: DalComponent with SmrtLinkConstants with DaoFutureUtils =>
 
-  def getProjects(limit: Int = 1000): Future[Seq[Project]] =
-    db.run(projects.filter(_.isActive).take(limit).result)
+  def getProjects(limit: Int = 1000,
+                  routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[Project]] =
+    runRead(projects.filter(_.isActive).take(limit).result, routing)
 
   def getProjectByName(name: String): Future[Project] = {
     val q = projects.filter(_.name === name)
@@ -190,7 +357,16 @@ trait ProjectDataStore extends LazyLogging {
   }
 
   def getProjectById(projId: Int): Future[Option[Project]] =
-    db.run(projects.filter(_.id === projId).result.headOption)
+    entityCaches.projects.getOrLoad(projId) {
+      db.run(projects.filter(_.id === projId).result.headOption)
+    }
+
+  // The datasets and jobs are moved between projects
+  private def invalidateProject(projId: Int): Unit = {
+    entityCaches.projects.invalidate(projId)
+    entityCaches.dataSets.invalidateAll()
+    entityCaches.jobs.invalidateAll()
+  }
 
   def createProject(projReq: ProjectRequest): Future[Project] = {
     val now = JodaDateTime.now()
@@ -207,7 +383,10 @@ trait ProjectDataStore extends LazyLogging {
          i) => p.copy(id = i)) += proj
     val fullAction =
       insert.flatMap(proj => setMembersAndDatasets(proj, projReq))
-    db.run(fullAction.transactionally)
+    db.run(fullAction.transactionally).map { proj =>
+      invalidateProject(proj.id)
+      proj
+    }
   }
 
   def setMembersAndDatasets(proj: Project,
@@ -292,7 +471,9 @@ trait ProjectDataStore extends LazyLogging {
       }
     )
 
-    db.run(fullAction.transactionally)
+    db.run(fullAction.transactionally).andThen {
+      case _ => invalidateProject(projId)
+    }
   }
 
   def deleteProjectById(projId: Int): Future[Option[Project]] = {
@@ -318,6 +499,7 @@ trait ProjectDataStore extends LazyLogging {
         .andThen(
           projects.filter(_.id === projId).result.headOption
         ))
+      .andThen { case _ => invalidateProject(projId) }
   }
 
   def getProjectUsers(projId: Int): Future[Seq[ProjectUser]] =
@@ -362,15 +544,18 @@ trait ProjectDataStore extends LazyLogging {
           s"Project ${project.id} does not grant a role to all users, and no user-specific role found")
     }
 
-  def getUserProjects(login: String): Future[Seq[UserProjectResponse]] = {
+  def getUserProjects(
+      login: String,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[UserProjectResponse]] = {
     val userProjects = userProjectsQuery(login).result
       .map(_.map(j => UserProjectResponse(maxRole(j._1, j._2), j._1)))
 
-    db.run(userProjects)
+    runRead(userProjects, routing)
   }
 
   def getUserProjectsDatasets(
-      login: String): Future[Seq[ProjectDatasetResponse]] = {
+      login: String,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ProjectDatasetResponse]] = {
     val userJoin = for {
       (p, pu) <- userProjectsQuery(login)
       d <- dsMetaData2 if p.id === d.projectId
@@ -379,7 +564,7 @@ trait ProjectDataStore extends LazyLogging {
     val userDatasets = userJoin.result
       .map(_.map(j => ProjectDatasetResponse(j._1, j._2, maxRole(j._1, j._3))))
 
-    db.run(userDatasets)
+    runRead(userDatasets, routing)
   }
 
   def userHasProjectRole(
@@ -429,6 +614,16 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
 
   val resolver: JobResourceResolver
 
+  val writeBehindConfig: WriteBehindConfig
+
+  /**
+    * Job state updates, Job task updates and Job events are written in batches
+    * (see DbWriteBehindBatcher). A burst of updates (e.g., import-dataset jobs or a MultiJob
+    * submitting the children jobs) will be written in a few transactions on the engine pool.
+    */
+  lazy val jobWriteBehind =
+    new DbWriteBehindBatcher(engineDb, writeBehindConfig)
+
   /**
     * Raw Insert of an Engine Job into the system. If the job is in the CREATED state it will be
     * eligible to be run.
@@ -438,9 +633,14 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     * @return
     */
   def insertJob(job: EngineJob): Future[EngineJob] = {
-    val action = (engineJobs returning engineJobs.map(_.id) into (
-        (j,
-         i) => j.copy(id = i))) += job
+    val action = for {
+      insertedJob <- (engineJobs returning engineJobs.map(_.id) into (
+          (j,
+           i) => j.copy(id = i))) += job
+      _ <- qUpdateMultiJobStateCounts(job.parentMultiJobId,
+                                      None,
+                                      Some(job.state))
+    } yield insertedJob
     db.run(action.transactionally)
   }
 
@@ -448,8 +648,13 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     db.run(engineJobsDataSets += ep).map(_ => ep)
 
   def getJobById(ix: IdAble): Future[EngineJob] =
-    db.run(qEngineJobById(ix).result.headOption)
-      .flatMap(failIfNone(s"Failed to find Job ${ix.toIdString}"))
+    entityCaches.getJob(ix) {
+      db.run(cEngineJobById(ix).result.headOption)
+        .flatMap(failIfNone(s"Failed to find Job ${ix.toIdString}"))
+    }
+
+  private def invalidateJobs(jobs: Seq[EngineJob]): Unit =
+    jobs.foreach(entityCaches.invalidateJob)
 
   val qEngineMultiJobs = engineJobs.filter(_.isMultiJob === true)
 
@@ -473,54 +678,487 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     db.run(q.result)
   }
 
+  private val quickJobTypeIds: Set[String] = JobTypeIds.ALL
+    .filter(_.isQuick)
+    .map(_.id)
+    .toSet
+
+  // Row of the fairShareQueueSql
+  private implicit val getRunnableJobCandidate: GetResult[RunnableJobCandidate] =
+    GetResult { r =>
+      RunnableJobCandidate(
+        r.nextInt(),
+        r.nextString(),
+        r.nextIntOption().filter(_ > 0),
+        r.nextTimestampOption().map(t => new JodaDateTime(t.getTime)))
+    }
+
   /**
-    * Get next runnable job. Look for any SUBMITTED jobs and update the
-    * state to RUNNING.
+    * Ordered SUBMITTED (non MultiJob) jobs.
     *
-    * @param isQuick Only select quick job types.
-    * @return
+    * Jobs are ordered by priority (highest first). Jobs with the same priority are ordered
+    * round-robin across the (project, user) "shares", so that a single user (or project) with many
+    * submitted jobs can't starve the other users. Within a share, the jobs are run in submission order.
+    *
+    * The max nproc workflow option of the pbsmrtpipe jobs is extracted from the json settings
+    * in the db (see EngineResourceScheduler.toMaxNproc), the settings aren't parsed within
+    * the claim transaction. The submitted time is the most recent SUBMITTED event of the job,
+    * i.e., a requeued job (or a MultiJob child) waits from when it was (re)submitted.
+    *
+    * @param jobTypeIds Optional filter of the job types.
+    * @return SQL of the ordered job_id, job_type_id, max_nproc, submitted_at of the queue
     */
-  def getNextRunnableEngineCoreJob(isQuick: Boolean = false)
-    : Future[Either[NoAvailableWorkError, EngineJob]] = {
+  private def fairShareQueueSql(jobTypeIds: Option[Set[String]]): String = {
+    // The job type ids are internal constants (not user input), hence the literal splice
+    val jobTypeFilter = jobTypeIds
+      .map(ids => ids.map(i => s"'$i'").mkString("AND job_type_id IN (", ",", ")"))
+      .getOrElse("")
+
+    s"""WITH queue AS (
+          SELECT job_id, priority,
+                 row_number() OVER (PARTITION BY priority, project_id, COALESCE(created_by, '') ORDER BY job_id) AS share_rank
+          FROM engine_jobs
+          WHERE state = '${AnalysisJobStates.SUBMITTED.toString}' AND is_multi_job = false $jobTypeFilter
+        )
+        SELECT j.job_id, j.job_type_id,
+               CASE WHEN j.job_type_id = '${JobTypeIds.PBSMRTPIPE.id}' THEN (
+                 SELECT trunc((o ->> 'value')::numeric)::int
+                 FROM jsonb_array_elements(
+                   CASE WHEN jsonb_typeof(j.json_settings::jsonb -> 'workflowOptions') = 'array'
+                        THEN j.json_settings::jsonb -> 'workflowOptions'
+                        ELSE '[]'::jsonb END) AS o
+                 WHERE COALESCE(o ->> 'id', o ->> 'optionId') = '${PbsmrtpipeConstants.MAX_NPROC.id}'
+                   AND jsonb_typeof(o -> 'value') = 'number'
+                 LIMIT 1)
+               END AS max_nproc,
+               COALESCE(
+                 (SELECT MAX(e.created_at) FROM job_events e
+                  WHERE e.job_id = j.job_id AND e.state = '${AnalysisJobStates.SUBMITTED.toString}'),
+                 j.updated_at) AS submitted_at
+        FROM queue q
+        JOIN engine_jobs j ON j.job_id = q.job_id
+        WHERE j.state = '${AnalysisJobStates.SUBMITTED.toString}'
+        ORDER BY q.priority DESC, q.share_rank, q.job_id"""
+  }
 
-    //logger.debug(s"Checking for next runnable isQuick? $isQuick EngineJobs")
+  /**
+    * Lock (at most) maxJobs SUBMITTED (non MultiJob) jobs, in fair-share order.
+    *
+    * Rows that are already locked by a concurrent claim are skipped, not waited on. This
+    * must be run within a transaction, the row locks are held until the transaction
+    * is committed.
+    */
+  private def qLockRunnableJobs(
+      maxJobs: Int,
+      jobTypeIds: Option[Set[String]]): DBIO[Seq[RunnableJobCandidate]] = {
+    sql"""#${fairShareQueueSql(jobTypeIds)}
+          LIMIT $maxJobs
+          FOR UPDATE OF j SKIP LOCKED""".as[RunnableJobCandidate]
+  }
 
-    val quickJobTypeIds = JobTypeIds.ALL
-      .filter(_.isQuick)
-      .map(_.id)
-      .toSet
+  private def qRunnableJobCandidates(
+      limit: Int): DBIO[Seq[RunnableJobCandidate]] =
+    sql"""#${fairShareQueueSql(None)} LIMIT $limit""".as[RunnableJobCandidate]
 
-    val q0 = qGetEngineJobByState(AnalysisJobStates.SUBMITTED)
-      .filter(_.isMultiJob === false)
-    val q = if (isQuick) q0.filter(_.jobTypeId inSet quickJobTypeIds) else q0
-    val q1 = q.sortBy(_.id).take(1)
+  /**
+    * Get the SUBMITTED (non MultiJob) jobs, with their resource needs, in the order
+    * they will be claimed to run
+    *
+    * @param limit Max number of jobs to return
+    */
+  def getRunnableJobCandidates(
+      limit: Int = DEFAULT_MAX_DATASET_LIMIT): Future[Seq[RunnableJobCandidate]] =
+    db.run(qRunnableJobCandidates(limit))
 
-    // This needs to be thought out a bit more. The entire engine job table needs to be locked in a worker-queue model
-    // This is using a head call that fail in the caught and recover block
-    def fx =
-      for {
-        job <- q1.result.head
-        _ <- qEngineJobById(job.id)
-          .map(j => (j.state, j.updatedAt, j.jobUpdatedAt))
-          .update(
-            (AnalysisJobStates.RUNNING,
-             JodaDateTime.now(),
-             JodaDateTime.now()))
-        _ <- jobEvents += JobEvent(
+  /**
+    * Get the SUBMITTED (non MultiJob) jobs in the order they will be claimed to run
+    *
+    * @param limit Max number of jobs to return
+    */
+  def getJobQueue(limit: Int = DEFAULT_MAX_DATASET_LIMIT): Future[Seq[EngineJob]] = {
+    val q = for {
+      jobIds <- qRunnableJobCandidates(limit).map(_.map(_.jobId))
+      jobs <- engineJobs.filter(_.id inSet jobIds).result
+    } yield {
+      val jobsById = jobs.map(j => (j.id, j)).toMap
+      jobIds.flatMap(jobsById.get)
+    }
+    db.run(q)
+  }
+
+  /**
+    * Get the RUNNING (non MultiJob) jobs
+    */
+  def getRunningJobs(): Future[Seq[EngineJob]] =
+    db.run(cGetEngineJobsByState((AnalysisJobStates.RUNNING, false)).result)
+
+  /**
+    * Average run time (in seconds) of the recent SUCCESSFUL jobs by job type.
+    *
+    * The run time is computed from the most recent RUNNING job event to the last update of the job.
+    */
+  def getJobTypeRunTimes(
+      since: JodaDateTime = JodaDateTime.now().minusDays(30))
+    : Future[Map[String, Double]] = {
+    val successfulJobs = engineJobs.filter(j =>
+      j.state === AnalysisJobStates.SUCCESSFUL && j.updatedAt > since)
+    val runningEvents =
+      jobEvents.filter(_.state === AnalysisJobStates.RUNNING)
+
+    val q = for {
+      (job, event) <- successfulJobs join runningEvents on (_.id === _.jobId)
+    } yield (job.id, job.jobTypeId, job.updatedAt, event.createdAt)
+
+    db.run(q.result).map { rows =>
+      rows
+        .groupBy(_._1)
+        .values
+        .map { xs =>
+          val (_, jobTypeId, updatedAt, _) = xs.head
+          val startedAt = xs.map(_._4.getMillis).max
+          (jobTypeId, (updatedAt.getMillis - startedAt) / 1000.0)
+        }
+        .groupBy(_._1)
+        .map {
+          case (jobTypeId, xs) =>
+            (jobTypeId, xs.map(_._2).sum / xs.size)
+        }
+    }
+  }
+
+  /**
+    * Update the priority of a CREATED or SUBMITTED job. The job row is locked
+    * (FOR UPDATE), a concurrent claim can't change the state between the check
+    * and the update.
+    */
+  private def qUpdateJobPriority(jobId: IdAble, priority: Int): DBIO[Unit] = {
+    val states = Set(AnalysisJobStates.CREATED, AnalysisJobStates.SUBMITTED)
+    qEngineJobById(jobId).forUpdate.result.headOption.flatMap {
+      case Some(j) if states contains j.state =>
+        qEngineJobById(jobId)
+          .map(j => (j.priority, j.updatedAt))
+          .update((priority, JodaDateTime.now()))
+          .map(_ => ())
+      case Some(j) =>
+        DBIO.failed(UnprocessableEntityError(
+          s"Priority can only be updated for jobs in $states. Job ${j.id} is in state ${j.state}"))
+      case None =>
+        DBIO.failed(
+          ResourceNotFoundError(s"Unable to find Job ${jobId.toIdString}"))
+    }
+  }
+
+  /**
+    * Update the priority of a CREATED or SUBMITTED job
+    */
+  def updateJobPriority(jobId: IdAble, priority: Int): Future[EngineJob] = {
+    val q = for {
+      _ <- qUpdateJobPriority(jobId, priority)
+      updatedJob <- cEngineJobById(jobId).result.head
+    } yield updatedJob
+    db.run(q.transactionally).map { job =>
+      entityCaches.invalidateJob(job)
+      job
+    }
+  }
+
+  /**
+    * Claim up to maxJobs SUBMITTED jobs and update the state to RUNNING.
+    *
+    * The candidate jobs are selected with FOR UPDATE SKIP LOCKED and the state
+    * is changed within the same transaction, hence this is safe to call concurrently.
+    * Two concurrent callers will never claim the same job. Candidates that are
+    * not selected are left in the SUBMITTED state.
+    *
+    * @param maxJobs        Max number of jobs to claim (e.g., the number of idle workers)
+    * @param isQuick        Only select quick job types.
+    * @param backfillWindow Number of additional candidates to lock (and pass to select) beyond maxJobs.
+    * @param select         Select the jobs to claim from the ordered candidates (e.g., the jobs that fit in the
+    *                       resource budget)
+    * @param lease          Acquire a lease of the claimed jobs for the Engine node
+    * @return The claimed jobs (in the RUNNING state) sorted by job id. Empty if no work is available.
+    */
+  def claimRunnableEngineCoreJobs(
+      maxJobs: Int,
+      isQuick: Boolean = false,
+      backfillWindow: Int = 0,
+      select: Seq[RunnableJobCandidate] => Seq[RunnableJobCandidate] =
+        identity,
+      lease: Option[JobLeaseConfig] = None): Future[Seq[EngineJob]] =
+    claimRunnableEngineCoreJobsWithLeases(maxJobs,
+                                          isQuick,
+                                          backfillWindow,
+                                          select,
+                                          lease).map(_.map(_._1))
+
+  /**
+    * Claim the runnable jobs (see claimRunnableEngineCoreJobs) with the acquired lease of
+    * each job. The attempts of the lease is the epoch the run of the job must provide to
+    * update the job (see JobLeaseFence).
+    *
+    * @return The claimed jobs sorted by job id and the lease of the job (None if no lease
+    *         was acquired)
+    */
+  def claimRunnableEngineCoreJobsWithLeases(
+      maxJobs: Int,
+      isQuick: Boolean = false,
+      backfillWindow: Int = 0,
+      select: Seq[RunnableJobCandidate] => Seq[RunnableJobCandidate] =
+        identity,
+      lease: Option[JobLeaseConfig] = None)
+    : Future[Seq[(EngineJob, Option[EngineJobLease])]] = {
+
+    val jobTypeIds = if (isQuick) Some(quickJobTypeIds) else None
+
+    def claim(jobIds: Seq[Int]): DBIO[Seq[EngineJob]] = {
+      val now = JodaDateTime.now()
+      val events = jobIds.map { i =>
+        JobEvent(
           UUID.randomUUID(),
-          job.id,
+          i,
           AnalysisJobStates.RUNNING,
-          s"Updating state to ${AnalysisJobStates.RUNNING} (from get-next-job)",
-          JodaDateTime.now())
-        job <- qEngineJobById(job.id).result.head
-      } yield job
+          s"Updating state to ${AnalysisJobStates.RUNNING} (from claim-runnable-jobs)",
+          now)
+      }
 
-    db.run(fx.transactionally)
-      .map { engineJob =>
-        logger.info(
-          s"Found runnable job id:${engineJob.id} type:${engineJob.jobTypeId} in state ${engineJob.state} isQuick:$isQuick")
-        Right(engineJob)
+      for {
+        _ <- engineJobs
+          .filter(_.id inSet jobIds)
+          .map(j => (j.state, j.updatedAt, j.jobUpdatedAt))
+          .update((AnalysisJobStates.RUNNING, now, now))
+        _ <- jobEvents ++= events
+        _ <- DBIO.seq(
+          lease.toSeq.map(l => qAcquireJobLeases(jobIds, l, now)): _*)
+        jobs <- engineJobs.filter(_.id inSet jobIds).sortBy(_.id).result
+        leases <- {
+          if (lease.isDefined) jobLeases.filter(_.jobId inSet jobIds).result
+          else DBIO.successful(Seq.empty[EngineJobLease])
+        }
+        // The claimed jobs were all SUBMITTED
+        _ <- DBIO.seq(
+          jobs.flatMap(_.parentMultiJobId).groupBy(identity).toSeq.map {
+            case (multiJobId, xs) =>
+              qAdjustMultiJobStateCounts(
+                multiJobId,
+                Map(AnalysisJobStates.SUBMITTED -> -xs.length,
+                    AnalysisJobStates.RUNNING -> xs.length))
+          }: _*)
+      } yield (jobs, leases)
+    }
+
+    val action = qLockRunnableJobs(maxJobs + backfillWindow, jobTypeIds)
+      .map(candidates => select(candidates).take(maxJobs).map(_.jobId))
+      .flatMap {
+        case Seq() =>
+          DBIO.successful((Seq.empty[EngineJob], Seq.empty[EngineJobLease]))
+        case jobIds => claim(jobIds)
+      }
+
+    if (maxJobs <= 0)
+      Future.successful(Seq.empty[(EngineJob, Option[EngineJobLease])])
+    else
+      engineDb.run(action.transactionally).map {
+        case (jobs, leases) =>
+          invalidateJobs(jobs)
+          jobs.foreach { engineJob =>
+            logger.info(
+              s"Claimed runnable job id:${engineJob.id} type:${engineJob.jobTypeId} in state ${engineJob.state} isQuick:$isQuick")
+          }
+          val leasesByJobId = leases.map(l => (l.jobId, l)).toMap
+          jobs.map(j => (j, leasesByJobId.get(j.id)))
       }
+  }
+
+  private def toTimestamp(d: JodaDateTime) = new java.sql.Timestamp(d.getMillis)
+
+  /**
+    * Acquire (or re-acquire for a requeued job) the lease of the jobs for the Engine node.
+    */
+  private def qAcquireJobLeases(jobIds: Seq[Int],
+                                lease: JobLeaseConfig,
+                                now: JodaDateTime): DBIO[Unit] = {
+    val acquiredAt = toTimestamp(now)
+    val expiresAt = toTimestamp(now.plus(lease.ttl.toMillis))
+
+    DBIO.seq(jobIds.map { jobId =>
+      sqlu"""INSERT INTO engine_job_leases (job_id, node_id, acquired_at, expires_at, attempts)
+             VALUES ($jobId, ${lease.nodeId}, $acquiredAt, $expiresAt, 1)
+             ON CONFLICT (job_id) DO UPDATE SET
+               node_id = EXCLUDED.node_id,
+               acquired_at = EXCLUDED.acquired_at,
+               expires_at = EXCLUDED.expires_at,
+               attempts = engine_job_leases.attempts + 1"""
+    }: _*)
+  }
+
+  /**
+    * Check the lease of a job against the fence of the caller (see JobLeaseFence). The
+    * lease is released when the job is requeued, acquired again (with attempts + 1) when
+    * the job is claimed and deleted when the job is completed.
+    *
+    * The lease row is locked to serialize the check with the reaper of expired leases
+    * and with the claim of the job.
+    */
+  def qCheckJobLease(
+      jobId: Int,
+      fence: JobLeaseFence): DBIOAction[Unit, NoStream, Effect.Read] = {
+
+    def lockLease() =
+      jobLeases.filter(_.jobId === jobId).forUpdate.result.headOption
+
+    fence match {
+      case JobLeaseFence.NotFenced => DBIO.successful(())
+      case JobLeaseFence.Epoch(attempts) =>
+        lockLease().flatMap {
+          case Some(l) if l.attempts == attempts && l.expiresAt.isDefined =>
+            DBIO.successful(())
+          case lease =>
+            val held = lease
+              .filter(_.expiresAt.isDefined)
+              .map(l => s"attempt ${l.attempts} by Engine node ${l.nodeId}")
+              .getOrElse("none")
+            DBIO.failed(ConflictError(
+              s"Lease (attempt $attempts) of job $jobId is no longer held. Current lease $held"))
+        }
+      case JobLeaseFence.LeaseHeld =>
+        lockLease().flatMap {
+          case Some(l) if l.expiresAt.isEmpty =>
+            DBIO.failed(ConflictError(
+              s"Lease (attempt ${l.attempts}) of job $jobId was released, the job was requeued"))
+          case _ => DBIO.successful(())
+        }
+    }
+  }
+
+  def getJobLease(jobId: Int): Future[Option[EngineJobLease]] =
+    engineDb.run(jobLeases.filter(_.jobId === jobId).result.headOption)
+
+  /**
+    * Heartbeat of an Engine node. Renew the leases of all the jobs held by the node.
+    *
+    * @return Number of renewed leases
+    */
+  def renewJobLeases(lease: JobLeaseConfig): Future[Int] = {
+    val expiresAt = JodaDateTime.now().plus(lease.ttl.toMillis)
+    engineDb.run(
+      jobLeases
+        .filter(_.nodeId === lease.nodeId)
+        .filter(_.expiresAt.isDefined)
+        .map(_.expiresAt)
+        .update(Some(expiresAt)))
+  }
+
+  /**
+    * Update the state of a job to SUBMITTED, the job will be claimed again. The lease of the
+    * job (if any) is released, the number of attempts is kept.
+    */
+  private def qRequeueJob(jobId: Int, message: String): DBIO[EngineJob] =
+    for {
+      _ <- jobLeases
+        .filter(_.jobId === jobId)
+        .map(_.expiresAt)
+        .update(None)
+      job <- qUpdateJobState(jobId, AnalysisJobStates.SUBMITTED, message)
+    } yield job
+
+  def requeueJob(jobId: Int, message: String): Future[EngineJob] =
+    engineDb.run(qRequeueJob(jobId, message).transactionally).map { job =>
+      sendEventToManager[JobChangeStateMessage](JobChangeStateMessage(job))
+      job
+    }
+
+  /**
+    * Most recent activity of the jobs, i.e., the last update of the job or the most recent
+    * job event (the job task updates are also recorded as job events).
+    *
+    * @param jobIds Job Ids
+    * @return Map of Job id to the time of the most recent activity
+    */
+  def getJobsLastActivity(jobIds: Seq[Int]): Future[Map[Int, JodaDateTime]] = {
+    val qJobs = engineJobs.filter(_.id inSet jobIds).map(j => (j.id, j.updatedAt))
+    val qEvents = jobEvents
+      .filter(_.jobId inSet jobIds)
+      .groupBy(_.jobId)
+      .map { case (jobId, events) => (jobId, events.map(_.createdAt).max) }
+
+    val q = for {
+      jobs <- qJobs.result
+      events <- qEvents.result
+    } yield {
+      val lastEvents = events.collect { case (i, Some(t)) => (i, t) }.toMap
+      jobs.map {
+        case (i, updatedAt) =>
+          val lastActivity = lastEvents
+            .get(i)
+            .filter(_.isAfter(updatedAt))
+            .getOrElse(updatedAt)
+          (i, lastActivity)
+      }.toMap
+    }
+
+    if (jobIds.isEmpty) Future.successful(Map.empty[Int, JodaDateTime])
+    else db.run(q)
+  }
+
+  /**
+    * Requeue, or mark as FAILED, the RUNNING jobs with an expired lease (e.g., the Engine node
+    * running the job crashed or lost the connection to the db).
+    *
+    * The expired leases are selected with FOR UPDATE SKIP LOCKED, hence every Engine node can
+    * safely run this concurrently.
+    *
+    * @param maxAttempts A job is requeued if it was claimed less than maxAttempts times
+    * @return The updated jobs
+    */
+  def reapExpiredJobLeases(
+      maxAttempts: Int,
+      now: JodaDateTime = JodaDateTime.now()): Future[Seq[EngineJob]] = {
+
+    def reap(lease: EngineJobLease): DBIO[EngineJob] = {
+      val msg =
+        s"Lease of Engine node ${lease.nodeId} expired (attempt ${lease.attempts} of $maxAttempts)."
+      if (lease.attempts < maxAttempts)
+        qRequeueJob(lease.jobId, s"$msg Requeuing job")
+      else
+        qUpdateJobState(lease.jobId,
+                        AnalysisJobStates.FAILED,
+                        s"$msg Marking job as FAILED",
+                        Some(msg))
+    }
+
+    val q = for {
+      jobIds <- sql"""SELECT l.job_id FROM engine_job_leases l
+                      JOIN engine_jobs j ON j.job_id = l.job_id
+                      WHERE l.expires_at < ${toTimestamp(now)}
+                        AND j.state = ${AnalysisJobStates.RUNNING.toString}
+                      FOR UPDATE OF l, j SKIP LOCKED""".as[Int]
+      leases <- jobLeases.filter(_.jobId inSet jobIds).result
+      jobs <- DBIO.sequence(leases.map(reap))
+    } yield jobs
+
+    engineDb.run(q.transactionally).map { jobs =>
+      jobs.foreach { job =>
+        logger.warn(
+          s"Detected expired lease of job ${job.id}. Updated state to ${job.state}")
+        sendEventToManager[JobChangeStateMessage](JobChangeStateMessage(job))
+      }
+      jobs
+    }
+  }
+
+  /**
+    * Get next runnable job. Look for any SUBMITTED jobs and update the
+    * state to RUNNING.
+    *
+    * See claimRunnableEngineCoreJobs for claiming several jobs in a single call.
+    *
+    * @param isQuick Only select quick job types.
+    * @return
+    */
+  def getNextRunnableEngineCoreJob(isQuick: Boolean = false)
+    : Future[Either[NoAvailableWorkError, EngineJob]] = {
+    claimRunnableEngineCoreJobs(1, isQuick)
+      .map(_.headOption.toRight(NO_WORK))
       .recover {
         case NonFatal(_) =>
           //logger.debug(s"No available work")
@@ -529,30 +1167,220 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
   }
 
   /**
-    * Get all the Job Events associated with a specific job
+    * Get all the Job Events associated with a specific job (including the archived events)
+    * in the order they were written.
     */
   def getJobEventsByJobId(jobId: Int): Future[Seq[JobEvent]] =
-    db.run(jobEvents.filter(_.jobId === jobId).result)
+    db.run(for {
+      events <- jobEvents.filter(_.jobId === jobId).sortBy(_.seq).result
+      archive <- jobArchives.filter(_.jobId === jobId).result.headOption
+    } yield archive.map(toArchivedJobEvents).getOrElse(Nil) ++ events)
+
+  private def toArchivedJobEvents(archive: JobArchive): Seq[JobEvent] = {
+    import SmrtLinkJsonProtocols._
+    archive.events.parseJson.convertTo[Seq[JobEvent]]
+  }
+
+  private def toArchivedJobTasks(archive: JobArchive): Seq[JobTask] = {
+    import SmrtLinkJsonProtocols._
+    archive.tasks.parseJson.convertTo[Seq[JobTask]]
+  }
+
+  /**
+    * Move the job events and job tasks of a job into the job archive. Events and tasks
+    * added after a previous archive of the job are appended to the archive.
+    */
+  private def actionArchiveJob(jobId: Int): DBIO[JobArchive] = {
+    import SmrtLinkJsonProtocols._
+
+    for {
+      events <- jobEvents.filter(_.jobId === jobId).sortBy(_.seq).result
+      tasks <- jobTasks.filter(_.jobId === jobId).result
+      archive <- jobArchives.filter(_.jobId === jobId).result.headOption
+      allEvents <- DBIO.successful(
+        archive.map(toArchivedJobEvents).getOrElse(Nil) ++ events)
+      allTasks <- DBIO.successful(
+        archive.map(toArchivedJobTasks).getOrElse(Nil) ++ tasks)
+      updatedArchive <- DBIO.successful(
+        JobArchive(jobId,
+                   allEvents.toJson.compactPrint,
+                   allTasks.toJson.compactPrint,
+                   allEvents.length,
+                   allTasks.length,
+                   JodaDateTime.now()))
+      _ <- jobArchives.insertOrUpdate(updatedArchive)
+      _ <- jobEvents.filter(_.id inSet events.map(_.eventId)).delete
+      _ <- jobTasks.filter(_.uuid inSet tasks.map(_.uuid)).delete
+    } yield updatedArchive
+  }
+
+  /**
+    * Archive the job events and job tasks of the jobs completed before the cutoff. Each
+    * job is archived in a separate transaction. The events and tasks of the archived jobs
+    * are still returned by getJobEventsByJobId, getJobTasks and getJobTask.
+    *
+    * The job is completed at its (most recent) terminal state event, the last update of
+    * the job can be more recent (e.g., a rename). A job without a terminal state event
+    * (e.g., an imported job) is completed at its last update.
+    *
+    * @param completedBefore Cutoff of the completion of the jobs
+    * @param maxNumJobs      Max number of jobs archived
+    * @return Number of archived jobs
+    */
+  def archiveJobs(completedBefore: JodaDateTime,
+                  maxNumJobs: Int): Future[Int] = {
+    def completedAt(jobId: Rep[Int]) =
+      jobEvents
+        .filter(e =>
+          e.jobId === jobId && (e.state inSet AnalysisJobStates.COMPLETED_STATES))
+        .map(_.createdAt)
+        .max
+
+    val q = engineJobs
+      .filter(_.state inSet AnalysisJobStates.COMPLETED_STATES)
+      .filter(j =>
+        completedAt(j.id) < completedBefore ||
+          (completedAt(j.id).isEmpty && j.updatedAt < completedBefore))
+      .filter(j =>
+        jobEvents.filter(_.jobId === j.id).exists || jobTasks
+          .filter(_.jobId === j.id)
+          .exists)
+      .sortBy(_.id)
+      .map(_.id)
+      .take(maxNumJobs)
+
+    for {
+      jobIds <- maintenanceDb.run(q.result)
+      _ <- jobIds.foldLeft(Future.successful(())) { (acc, jobId) =>
+        acc.flatMap(_ =>
+          maintenanceDb
+            .run(actionArchiveJob(jobId).transactionally)
+            .map(_ => ()))
+      }
+    } yield jobIds.length
+  }
+
+  /**
+    * Postgres NOTIFY of a Job state change. Listeners in any process connected to the
+    * db will be notified (see JobStateNotifyListenerActor).
+    *
+    * The NOTIFY is transactional, it is only delivered if the enclosing transaction commits.
+    */
+  def qNotifyJobStateChange(
+      jobId: Int,
+      state: AnalysisJobStates.JobStates): DBIOAction[Unit, NoStream, Effect.Write] =
+    SimpleDBIO[Unit] { session =>
+      val ps = session.connection.prepareStatement("SELECT pg_notify(?, ?)")
+      try {
+        ps.setString(1, SmrtLinkConstants.JOB_STATE_NOTIFY_CHANNEL)
+        ps.setString(2, s"$jobId:${state.toString}")
+        ps.execute()
+        ()
+      } finally {
+        ps.close()
+      }
+    }
 
+  /**
+    * Add the deltas to the number of children jobs of the MultiJob in each state.
+    *
+    * The rows are updated in a consistent (state) order to minimize lock conflicts between
+    * concurrent transactions updating children of the same MultiJob.
+    */
+  private def qAdjustMultiJobStateCounts(
+      multiJobId: Int,
+      deltas: Map[AnalysisJobStates.JobStates, Int]): DBIO[Int] = {
+    // The states are internal constants (not user input), hence the literal splice
+    val values = deltas.toSeq
+      .filter(_._2 != 0)
+      .sortBy(_._1.toString)
+      .map { case (state, n) => s"($multiJobId, '${state.toString}', $n)" }
+
+    if (values.isEmpty) DBIO.successful(0)
+    else
+      sqlu"""INSERT INTO engine_multi_job_state_counts (multi_job_id, state, num_jobs)
+             VALUES #${values.mkString(", ")}
+             ON CONFLICT (multi_job_id, state)
+             DO UPDATE SET num_jobs = engine_multi_job_state_counts.num_jobs + EXCLUDED.num_jobs"""
+  }
+
+  /**
+    * Update the MultiJob state counts of a child job transition. This must be run in the
+    * same transaction as the child job update.
+    *
+    * @param parentMultiJobId MultiJob of the job. If None, this is a no-op
+    * @param from             Previous state of the job (None if the job was created)
+    * @param to               New state of the job
+    */
+  private def qUpdateMultiJobStateCounts(
+      parentMultiJobId: Option[Int],
+      from: Option[AnalysisJobStates.JobStates],
+      to: Option[AnalysisJobStates.JobStates]): DBIO[Int] =
+    parentMultiJobId match {
+      case Some(multiJobId) if from != to =>
+        qAdjustMultiJobStateCounts(
+          multiJobId,
+          (from.toSeq.map(_ -> -1) ++ to.toSeq.map(_ -> 1)).toMap)
+      case _ => DBIO.successful(0)
+    }
+
+  /**
+    * Recompute the MultiJob state counts from the children jobs
+    */
+  private def qRecomputeMultiJobStateCounts(multiJobId: Int): DBIO[Int] =
+    for {
+      _ <- multiJobStateCounts.filter(_.multiJobId === multiJobId).delete
+      n <- sqlu"""INSERT INTO engine_multi_job_state_counts (multi_job_id, state, num_jobs)
+                  SELECT parent_multi_job_id, state, COUNT(*)
+                  FROM engine_jobs
+                  WHERE parent_multi_job_id = $multiJobId
+                  GROUP BY parent_multi_job_id, state"""
+    } yield n
+
+  def getMultiJobStateCounts(
+      multiJobId: IdAble): Future[Map[AnalysisJobStates.JobStates, Int]] =
+    db.run(
+      qGetEngineMultiJobById(multiJobId).result.head.flatMap { job =>
+        multiJobStateCounts.filter(_.multiJobId === job.id).result
+      })
+      .map(_.map(c => (c.state, c.numJobs)).toMap)
+
+  /**
+    * Update the state of a job and record the job event.
+    *
+    * @param fence The update is rejected if the lease of the job doesn't pass the fence
+    *              (see qCheckJobLease)
+    */
   def qUpdateJobState(jobId: IdAble,
                       state: AnalysisJobStates.JobStates,
                       message: String,
-                      errorMessage: Option[String] = None)
+                      errorMessage: Option[String] = None,
+                      fence: JobLeaseFence = JobLeaseFence.NotFenced)
     : DBIOAction[EngineJob, NoStream, Effect.Read with Effect.Write] = {
 
     logger.info(s"Updating job state of JobId:${jobId.toIdString} to $state")
     val now = JodaDateTime.now()
 
     // The error handling of this .head call needs to be improved
+    // The job row is locked, the concurrent transitions of the same job are serialized and
+    // the MultiJob state counts are adjusted from the committed old state
     for {
-      job <- qEngineJobById(jobId).result.head
+      job <- qEngineJobById(jobId).forUpdate.result.head
+      _ <- qCheckJobLease(job.id, fence)
+      // The lease (if any) is released when the job is completed
+      _ <- {
+        if (state.isCompleted) jobLeases.filter(_.jobId === job.id).delete
+        else DBIO.successful(0)
+      }
       _ <- DBIO.seq(
-        qEngineJobById(jobId)
-          .map(j => (j.state, j.updatedAt, j.jobUpdatedAt, j.errorMessage))
-          .update(state, now, now, errorMessage),
-        jobEvents += JobEvent(UUID.randomUUID(), job.id, state, message, now)
+        cEngineJobStateById(job.id).update((state, now, now, errorMessage)),
+        jobEvents += JobEvent(UUID.randomUUID(), job.id, state, message, now),
+        qUpdateMultiJobStateCounts(job.parentMultiJobId,
+                                   Some(job.state),
+                                   Some(state)),
+        qNotifyJobStateChange(job.id, state)
       )
-      updatedJob <- qEngineJobById(jobId).result.head
+      updatedJob <- cEngineJobById(job.id).result.head
     } yield updatedJob
   }
 
@@ -564,17 +1392,23 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     * @param message Job progress message message (will be used in the JobEvent)
     * @param errorMessage Optional Error Message. If the state is FAILED, this should be explicitly set to propagate the
     *                     error message.
+    * @param fence The run of the job provides the epoch of the lease (see JobLeaseFence)
     * @return
     */
   def updateJobState(
       jobId: IdAble,
       state: AnalysisJobStates.JobStates,
       message: String,
-      errorMessage: Option[String] = None): Future[EngineJob] = {
+      errorMessage: Option[String] = None,
+      fence: JobLeaseFence = JobLeaseFence.NotFenced): Future[EngineJob] = {
 
-    val q = qUpdateJobState(jobId, state, message, errorMessage)
+    val q = qUpdateJobState(jobId, state, message, errorMessage, fence)
 
-    val f: Future[EngineJob] = db.run(q.transactionally)
+    // The cached job is invalidated before the caller can look up the job again
+    val f: Future[EngineJob] = jobWriteBehind.submit(q).map { job =>
+      entityCaches.invalidateJob(job)
+      job
+    }
 
     f.foreach { job: EngineJob =>
       sendEventToManager[JobChangeStateMessage](JobChangeStateMessage(job))
@@ -623,14 +1457,19 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     * @param jobId   Job Id
     * @param name    Name of the Job
     * @param comment Description of the Job
+    * @param priority Priority of the Job (only a CREATED or SUBMITTED job), updated in the same transaction
     * @return
     */
   def updateJob(jobId: IdAble,
                 name: Option[String],
                 comment: Option[String],
-                tags: Option[String]): Future[EngineJob] = {
+                tags: Option[String],
+                priority: Option[Int] = None): Future[EngineJob] = {
     val q = for {
-      job <- qEngineJobById(jobId).result.head
+      _ <- priority
+        .map(p => qUpdateJobPriority(jobId, p))
+        .getOrElse(DBIO.successful(()))
+      job <- cEngineJobById(jobId).result.head
       _ <- DBIO.seq(
         qEngineJobById(jobId)
           .map(j => (j.name, j.comment, j.tags, j.updatedAt))
@@ -639,10 +1478,14 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
                   tags.getOrElse(job.tags),
                   JodaDateTime.now())
       )
-      updatedJob <- qEngineJobById(jobId).result.headOption
+      updatedJob <- cEngineJobById(jobId).result.headOption
     } yield updatedJob
     db.run(q.transactionally)
       .flatMap(failIfNone(s"Failed to find Job ${jobId.toIdString}"))
+      .map { job =>
+        entityCaches.invalidateJob(job)
+        job
+      }
   }
 
   // This can only be called when the Job is in the CREATED state
@@ -703,12 +1546,16 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
           .filter(_.isMultiJob === false)
           .delete,
         // Insert the "updated" Deferred Jobs
-        aToChildrenJobs(job.id)
+        aToChildrenJobs(job.id),
+        qRecomputeMultiJobStateCounts(job.id)
       )
       updatedJob <- qGetEngineMultiJobById(jobId).result.head
     } yield updatedJob
 
-    db.run(action.transactionally)
+    // The CREATED children jobs are deleted
+    db.run(action.transactionally).andThen {
+      case _ => entityCaches.jobs.invalidateAll()
+    }
   }
 
   // Note, this should only be called when the MultiJob is in the CREATED state
@@ -732,24 +1579,18 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     } yield
       MessageResponse(s"Successfully deleted MultiJob ${jobId.toIdString}")
 
-    db.run(q.transactionally)
+    db.run(q.transactionally).andThen {
+      case _ => entityCaches.jobs.invalidateAll()
+    }
   }
 
-  private def extractJobState(childJobs: Seq[EngineJob],
-                              multiJobState: AnalysisJobStates.JobStates)
-    : (AnalysisJobStates.JobStates, Option[String]) = {
+  private def toErrorMessage(failedChildJobs: Seq[EngineJob]): Option[String] = {
     def toS(j: EngineJob) =
       s"${j.id} ${j.state} ${j.errorMessage.getOrElse("")}"
 
-    val errorMessage = childJobs
-      .filter(j => AnalysisJobStates.hasFailed(j.state))
+    failedChildJobs
       .map(toS)
       .reduceLeftOption(_ + _)
-
-    val finalState =
-      JobUtils.determineMultiJobState(childJobs.map(_.state), multiJobState)
-
-    (finalState, errorMessage)
   }
 
   /**
@@ -770,23 +1611,37 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     val action = a1.flatMap {
       case Some(parentJob) =>
         for {
-          childJobs <- engineJobs
-            .filter(_.parentMultiJobId === parentJob.id)
+          counts <- multiJobStateCounts
+            .filter(_.multiJobId === parentJob.id)
             .result
-          updatedStateMessage <- DBIO.successful(
-            extractJobState(childJobs, parentJob.state))
+          finalState <- DBIO.successful(
+            JobUtils.determineMultiJobStateFromCounts(
+              counts.map(c => (c.state, c.numJobs)).toMap,
+              parentJob.state))
+          // Only the failed children jobs are loaded for the error message
+          failedChildJobs <- {
+            if (finalState == AnalysisJobStates.FAILED)
+              engineJobs
+                .filter(_.parentMultiJobId === parentJob.id)
+                .filter(_.state inSet (AnalysisJobStates.FAILURE_STATES :+ AnalysisJobStates.UNKNOWN))
+                .result
+            else DBIO.successful(Seq.empty[EngineJob])
+          }
           updatedJob <- qUpdateJobState(
             parentJob.id,
-            updatedStateMessage._1,
-            s"MultiJob ${parentJob.id} state:${parentJob.state} to ${updatedStateMessage._1}",
-            updatedStateMessage._2)
+            finalState,
+            s"MultiJob ${parentJob.id} state:${parentJob.state} to $finalState",
+            toErrorMessage(failedChildJobs))
         } yield updatedJob
       case _ =>
         DBIO.failed(ResourceNotFoundError(
           s"Failed to Find MultiJob ${jobId.toIdString}, or job state is not in $multiJobStates"))
     }
 
-    db.run(action.transactionally)
+    db.run(action.transactionally).map { job =>
+      entityCaches.invalidateJob(job)
+      job
+    }
   }
 
   private def qInsertEngineJob(engineJob: EngineJob,
@@ -838,7 +1693,13 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
             .update(resolvedPath.toString),
           jobEvents ++= allEvents,
           engineJobsDataSets ++= entryPoints.toList.map(e =>
-            EngineJobEntryPoint(jobId, e.datasetUUID, e.datasetType))
+            EngineJobEntryPoint(jobId, e.datasetUUID, e.datasetType)),
+          qUpdateMultiJobStateCounts(cEngineJob.parentMultiJobId,
+                                     None,
+                                     Some(cEngineJob.state)),
+          qInsertPendingEntryPoints(cEngineJob.copy(id = jobId),
+                                    entryPoints.map(_.datasetUUID)),
+          qNotifyJobStateChange(jobId, cEngineJob.state)
         )
         .map(_ => cEngineJob.copy(id = jobId, path = resolvedPath.toString))
     }
@@ -1088,12 +1949,19 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
   }
 
   def addJobEvent(jobEvent: JobEvent): Future[JobEvent] =
-    db.run(jobEvents += jobEvent).map(_ => jobEvent)
+    jobWriteBehind.submit(jobEvents += jobEvent).map(_ => jobEvent)
 
   def addJobEvents(events: Seq[JobEvent]): Future[Seq[JobEvent]] =
-    db.run(jobEvents ++= events).map(_ => events)
+    jobWriteBehind.submit(jobEvents ++= events).map(_ => events)
 
-  def getJobEvents: Future[Seq[JobEvent]] = db.run(jobEvents.result)
+  /**
+    * Get all the Job Events (including the archived events)
+    */
+  def getJobEvents: Future[Seq[JobEvent]] =
+    db.run(for {
+      archives <- jobArchives.result
+      events <- jobEvents.sortBy(_.seq).result
+    } yield archives.flatMap(toArchivedJobEvents) ++ events)
 
   def addJobTask(jobTask: JobTask): Future[JobTask] = {
     // when pbsmrtpipe has parity with the AnalysisJobStates, JobTask should have state:AnalysisJobState
@@ -1119,53 +1987,62 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         task <- jobTasks.filter(_.uuid === jobTask.uuid).result
       } yield task
 
-    db.run(fx.transactionally)
+    jobWriteBehind
+      .submit(fx)
       .map(_.headOption)
       .flatMap(failIfNone(errorMessage))
   }
 
+  /**
+    * Record the entry points of a CREATED child job that are not imported yet. The
+    * child job is submitted when the last pending entry point is imported.
+    */
+  private def qInsertPendingEntryPoints(engineJob: EngineJob,
+                                        datasetUUIDs: Set[UUID]): DBIO[Unit] =
+    if (engineJob.parentMultiJobId.isEmpty || datasetUUIDs.isEmpty ||
+        engineJob.state != AnalysisJobStates.CREATED)
+      DBIO.successful(())
+    else
+      for {
+        resolved <- dsMetaData2
+          .filter(_.uuid inSet datasetUUIDs)
+          .map(_.uuid)
+          .result
+        _ <- pendingEntryPoints ++= (datasetUUIDs -- resolved).toSeq.map(
+          u => EngineJobPendingEntryPoint(engineJob.id, u))
+      } yield ()
+
   /**
     * Check a Child Job in the CREATED state for Resolved Entry Points and change the
     * job state from CREATED to SUBMITTED if all Resolved Entry Points are found.
     *
+    * The pending entry points of the job that have been imported are removed. Only the
+    * pending entry points of the job are checked, not all the entry points.
+    *
     * @param childJobId Child Job Id
     * @return
     */
   def qCheckCreatedChildJobForResolvedEntryPoints(
       childJobId: Int): DBIO[String] = {
 
-    implicit val jobStateMapper = jobStateType
-
     val submitMessage =
       s"All Entry points are resolved for child job $childJobId. Submitting Child Job $childJobId"
 
     val notSubmittedMessage =
       s"Cannot Submit. Child Job $childJobId is not in the CREATED state or ALL Entry Points are not resolved."
 
-    // Get the Child Job
-    val q0 = qGetEngineJobByState(AnalysisJobStates.CREATED)
-    val q1 = q0.filter(_.parentMultiJobId.isDefined)
-    val q2 = q1.filter(_.id === childJobId)
-
-    val qNumJobEntryPoints = for {
-      childJob <- q2
-      foundEpoints <- engineJobsDataSets.filter(_.jobId === childJob.id)
-    } yield foundEpoints
-
-    val qNumResolvedDataSets = for {
-      childJob <- q2
-      // Entry Points of the Job
-      childJobEntryPoints <- engineJobsDataSets.filter(_.jobId === childJob.id)
-      // Should this only include Active datasets?
-      resolvedDataSets <- dsMetaData2
-        .filter(_.uuid === childJobEntryPoints.datasetUUID)
-    } yield resolvedDataSets
-
-    // Simple comparison that the Job EntryPoints are all resolved to already imported DataSets
+    val qPending = pendingEntryPoints.filter(_.jobId === childJobId)
+
+    // Should this only include Active datasets?
+    val qResolvedPending = qPending.filter(p =>
+      dsMetaData2.filter(_.uuid === p.datasetUUID).exists)
+
     val q4 = for {
-      numEntryPoints <- qNumJobEntryPoints.result
-      numResolvedDataSets <- qNumResolvedDataSets.result
-    } yield numEntryPoints.length == numResolvedDataSets.length
+      isCreatedChild <- cIsChildJobInState(
+        (childJobId, AnalysisJobStates.CREATED)).result
+      _ <- qResolvedPending.delete
+      hasPending <- qPending.exists.result
+    } yield isCreatedChild && !hasPending
 
     val qSubmit = qUpdateJobState(childJobId,
                                   AnalysisJobStates.SUBMITTED,
@@ -1190,39 +2067,40 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
   def checkCreatedChildJobForResolvedEntryPoints(
       childJobId: Int): Future[String] =
     db.run(
-      qCheckCreatedChildJobForResolvedEntryPoints(childJobId).transactionally)
+        qCheckCreatedChildJobForResolvedEntryPoints(childJobId).transactionally)
+      .andThen { case _ => entityCaches.jobs.invalidate(childJobId) }
 
   /**
-    * When a new DataSet is added to the System, see if any Children
-    * Jobs have
+    * When a new DataSet is added to the System, submit the Children
+    * Jobs that were waiting on the DataSet (and have all the entry points
+    * resolved).
+    *
+    * This is a single (indexed) lookup of the pending entry points of the dataset.
     *
     * @param datasetUUID
     */
   def checkCreatedChildrenJobsForNewlyEnteredDataSet(
       datasetUUID: UUID): Future[String] = {
 
-    // Get all Valid Child Job Jobs
-    val q0 = qGetEngineJobByState(AnalysisJobStates.CREATED)
-    val q1 = q0.filter(_.parentMultiJobId.isDefined)
-
-    val q3 = for {
-      validChildJobs <- q1
-      eJobIds <- engineJobsDataSets
-        .filter(_.datasetUUID === datasetUUID)
-        .filter(_.jobId === validChildJobs.id)
-        .map(_.jobId)
-    } yield eJobIds
+    val q3 = pendingEntryPoints
+      .filter(_.datasetUUID === datasetUUID)
+      .map(_.jobId)
 
-    val total: DBIO[Seq[String]] = q3.result.flatMap { jobIds =>
-      DBIO.sequence(jobIds.map(qCheckCreatedChildJobForResolvedEntryPoints))
+    val total: DBIO[(Seq[Int], Seq[String])] = q3.result.flatMap { jobIds =>
+      DBIO
+        .sequence(jobIds.distinct.sorted.map(
+          qCheckCreatedChildJobForResolvedEntryPoints))
+        .map(updates => (jobIds, updates))
     }
 
     db.run(total.transactionally)
-      .map(
-        updates =>
+      .map {
+        case (jobIds, updates) =>
+          jobIds.foreach(entityCaches.jobs.invalidate)
           updates
             .reduceLeftOption(_ ++ _)
-            .getOrElse(s"No Updates for $datasetUUID"))
+            .getOrElse(s"No Updates for $datasetUUID")
+      }
   }
 
   /**
@@ -1256,7 +2134,8 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
       jobTask <- jobTasks.filter(_.uuid === update.uuid).result
     } yield jobTask
 
-    db.run(fx.transactionally)
+    jobWriteBehind
+      .submit(fx)
       .map(_.headOption)
       .flatMap(failIfNone(futureFailMessage))
   }
@@ -1271,19 +2150,29 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     * @return
     */
   def getJobTasks(ix: IdAble): Future[Seq[JobTask]] = {
+    // The tasks of archived jobs are in the job archive
+    def getTasks(jobId: Int): Future[Seq[JobTask]] =
+      db.run(for {
+        tasks <- jobTasks.filter(_.jobId === jobId).result
+        archive <- jobArchives.filter(_.jobId === jobId).result.headOption
+      } yield archive.map(toArchivedJobTasks).getOrElse(Nil) ++ tasks)
+
     ix match {
-      case IntIdAble(i) =>
-        db.run(jobTasks.filter(_.jobId === i).result)
-      case UUIDIdAble(uuid) =>
-        getJobById(uuid).flatMap(job =>
-          db.run(jobTasks.filter(_.jobId === job.id).result))
+      case IntIdAble(i) => getTasks(i)
+      case UUIDIdAble(uuid) => getJobById(uuid).flatMap(job => getTasks(job.id))
     }
   }
 
-  def getJobTask(taskId: UUID): Future[JobTask] = {
+  /**
+    * Get a task of a job, the tasks of an archived job are in the job archive
+    */
+  def getJobTask(jobId: IdAble, taskId: UUID): Future[JobTask] = {
     val errorMessage = s"Can't find job task $taskId"
-    db.run(jobTasks.filter(_.uuid === taskId).result)
-      .map(_.headOption)
+    db.run(jobTasks.filter(_.uuid === taskId).result.headOption)
+      .flatMap {
+        case Some(task) => Future.successful(Some(task))
+        case None => getJobTasks(jobId).map(_.find(_.uuid == taskId))
+      }
       .flatMap(failIfNone(errorMessage))
   }
 
@@ -1291,9 +2180,10 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
   def getEngineCoreJobs(
       limit: Int = 100,
       includeInactive: Boolean = false): Future[Seq[EngineJob]] = {
+    // All the jobs are only listed by the (maintenance) integrity runners
     if (!includeInactive)
       db.run(engineJobs.filter(_.isActive).sortBy(_.id.desc).result)
-    else db.run(engineJobs.sortBy(_.id.desc).result)
+    else maintenanceDb.run(engineJobs.sortBy(_.id.desc).result)
   }
 
   def getEngineMultiJobs(
@@ -1349,7 +2239,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.name === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.name like s"%${value}%")
+            q.filter(_.name.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) => q.filter(_.name inSet values)
         }
     }
@@ -1358,7 +2248,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.comment === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.comment like s"%${value}%")
+            q.filter(_.comment.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.comment inSet values)
         }
@@ -1405,7 +2295,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.jobTypeId === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.jobTypeId like s"%${value}%")
+            q.filter(_.jobTypeId.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.jobTypeId inSet values)
         }
@@ -1415,7 +2305,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.path === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.path like s"%${value}%")
+            q.filter(_.path.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) => q.filter(_.path inSet values)
         }
     }
@@ -1424,7 +2314,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.createdBy === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.createdBy like s"%${value}%")
+            q.filter(_.createdBy.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.createdBy inSet values)
         }
@@ -1435,7 +2325,8 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
           case StringEqQueryOperator(value) =>
             q.filter(_.createdByEmail === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.createdByEmail like s"%${value}%")
+            q.filter(
+              _.createdByEmail.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.createdByEmail inSet values)
         }
@@ -1446,7 +2337,8 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
           case StringEqQueryOperator(value) =>
             q.filter(_.smrtLinkVersion === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.smrtLinkVersion like s"%${value}%")
+            q.filter(
+              _.smrtLinkVersion.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.smrtLinkVersion inSet values)
         }
@@ -1457,7 +2349,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
           case StringEqQueryOperator(value) =>
             q.filter(_.errorMessage === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.errorMessage like s"%${value}%")
+            q.filter(_.errorMessage.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.errorMessage inSet values)
         }
@@ -1502,7 +2394,7 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.tags === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.tags like s"%${value}%")
+            q.filter(_.tags.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) => q.filter(_.tags inSet values)
         }
     }
@@ -1512,14 +2404,20 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
           case StringEqQueryOperator(value) =>
             q.filter(_.subJobTypeId === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.subJobTypeId like s"%${value}%")
+            q.filter(_.subJobTypeId.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.subJobTypeId inSet values)
         }
     }
 
+    // Keyset pagination. The listing is ordered by id (descending)
+    val qByPageAfterId: QOF = { q =>
+      c.pageAfterId.map(i => q.filter(_.id < i))
+    }
+
     val queries: Seq[QOF] = Seq(
       qIsActive,
+      qByPageAfterId,
       qByJobTypeId,
       qOldProjectIds,
       qById,
@@ -1549,12 +2447,36 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
     qTotal(engineJobs)
   }
 
-  def getJobs(c: JobSearchCriteria): Future[Seq[EngineJob]] = {
+  /**
+    * Criteria of a page of a streamed listing (see streamPages). The first page is the
+    * page of the client criteria (i.e., the offset and page token of the client).
+    */
+  private def toStreamPage(c: JobSearchCriteria,
+                           afterId: Option[Int],
+                           n: Int): JobSearchCriteria =
+    afterId
+      .map(i =>
+        c.copy(limit = n,
+               marker = None,
+               pageToken = Some(KeysetPageToken.encode(i))))
+      .getOrElse(c.copy(limit = n))
+
+  private def qJobsPage(c: JobSearchCriteria) = {
     val q1 = qJobsBySearch(c).sortBy(_.id.desc)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.take(c.limit).result)
+    q2.take(c.limit)
   }
 
+  def getJobs(c: JobSearchCriteria,
+              routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[EngineJob]] =
+    runRead(qJobsPage(c).result, routing)
+
+  def streamJobs(c: JobSearchCriteria,
+                 routing: ReadRouting = ReadRouting.PRIMARY): Source[EngineJob, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qJobsPage(toStreamPage(c, afterId, n)).result
+    }(_.id)
+
   def getJobEntryPoints(jobId: Int): Future[Seq[EngineJobEntryPoint]] =
     db.run(engineJobsDataSets.filter(_.jobId === jobId).result)
 
@@ -1565,10 +2487,14 @@ trait JobDataStore extends LazyLogging with DaoFutureUtils {
         _ <- qEngineJobById(jobId)
           .map(j => (j.isActive, j.updatedAt))
           .update(false, now)
-        job <- qEngineJobById(jobId).result.headOption
+        job <- cEngineJobById(jobId).result.headOption
       } yield job)
       .flatMap(failIfNone(
         s"Unable to Delete job. Unable to find Job id:${jobId.toIdString}"))
+      .map { job =>
+        entityCaches.invalidateJob(job)
+        job
+      }
   }
 }
 
@@ -1606,6 +2532,13 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   val DEFAULT_USER_ID = 1
   import CommonModelImplicits._
 
+  // Parsed DataSet shared with the other readers (see DataSetCache). The DataSet is
+  // converted (e.g., to JSON or a ServiceDataSet), it must NOT be modified.
+  private def loadReadOnly[T <: DataSetType: ClassTag](
+      dst: DataSetMetaType,
+      path: Path): T =
+    DataSetCache.default.getReadOnlyAs[T](dst, path)
+
   /**
     * Import a DataStoreJob File
     *
@@ -1639,8 +2572,10 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   }
 
   def getDataStoreFileByUUID(uuid: UUID): Future[DataStoreServiceFile] =
-    db.run(datastoreServiceFiles.filter(_.uuid === uuid).result.headOption)
-      .flatMap(failIfNone(s"Unable to find DataStore File with uuid `$uuid`"))
+    entityCaches.dataStoreFiles.getOrLoad(uuid) {
+      db.run(datastoreServiceFiles.filter(_.uuid === uuid).result.headOption)
+        .flatMap(failIfNone(s"Unable to find DataStore File with uuid `$uuid`"))
+    }
 
   def qDatastoreServiceFilesByJobId(id: IdAble) = {
     id match {
@@ -1649,16 +2584,42 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     }
   }
 
+  // Precompiled versions of the (job id or job UUID, file type) lookups. They're compiled
+  // once with the ids as bind parameters, as the job lookups (TableModels.cEngineJobById)
+  private lazy val datastoreFilesByJobIntIdC = Compiled(
+    (i: Rep[Int], fileTypeId: Rep[Option[String]]) =>
+      datastoreServiceFiles
+        .filter(_.jobId === i)
+        .filter(f => fileTypeId.isEmpty || f.fileTypeId === fileTypeId))
+
+  private lazy val datastoreFilesByJobUUIDC = Compiled(
+    (uuid: Rep[UUID], fileTypeId: Rep[Option[String]]) =>
+      datastoreServiceFiles
+        .filter(_.jobUUID === uuid)
+        .filter(f => fileTypeId.isEmpty || f.fileTypeId === fileTypeId))
+
+  private def cDatastoreServiceFilesByJobId(id: IdAble,
+                                            fileTypeId: Option[String] = None)
+    : AppliedCompiledFunction[_,
+                              Query[PacBioDataStoreFileT,
+                                    DataStoreServiceFile,
+                                    Seq],
+                              Seq[DataStoreServiceFile]] = {
+    id match {
+      case IntIdAble(i) => datastoreFilesByJobIntIdC((i, fileTypeId))
+      case UUIDIdAble(uuid) => datastoreFilesByJobUUIDC((uuid, fileTypeId))
+    }
+  }
+
   def getDataStoreServiceFilesByJobId(
       i: IdAble): Future[Seq[DataStoreServiceFile]] =
-    db.run(qDatastoreServiceFilesByJobId(i).result)
+    db.run(cDatastoreServiceFilesByJobId(i).result)
 
   def getDataStoreReportFilesByJobId(
       jobId: IdAble): Future[Seq[DataStoreReportFile]] =
-    db.run {
-        qDatastoreServiceFilesByJobId(jobId)
-          .filter(_.fileTypeId === FileTypes.REPORT.fileTypeId)
-          .result
+    runRead {
+        cDatastoreServiceFilesByJobId(jobId,
+                                      Some(FileTypes.REPORT.fileTypeId)).result
       }
       .map(_.map((d: DataStoreServiceFile) =>
         DataStoreReportFile(d, d.sourceId.split("-").head)))
@@ -1700,6 +2661,23 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     }
   }
 
+  private lazy val dsMetaDataByIntIdC =
+    Compiled((i: Rep[Int]) => dsMetaData2.filter(_.id === i))
+
+  private lazy val dsMetaDataByUUIDC =
+    Compiled((uuid: Rep[UUID]) => dsMetaData2.filter(_.uuid === uuid))
+
+  // Precompiled version of qDsMetaDataById (see dsMetaDataByIntIdC and dsMetaDataByUUIDC above)
+  def cDsMetaDataById(id: IdAble)
+    : AppliedCompiledFunction[_,
+                              Query[DataSetMetaT, DataSetMetaDataSet, Seq],
+                              Seq[DataSetMetaDataSet]] = {
+    id match {
+      case IntIdAble(i) => dsMetaDataByIntIdC(i)
+      case UUIDIdAble(uuid) => dsMetaDataByUUIDC(uuid)
+    }
+  }
+
   val qDsMetaDataIsActive = dsMetaData2.filter(_.isActive)
 
   /**
@@ -1714,7 +2692,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       .map(activity => dsMetaData2.filter(_.isActive === activity))
       .getOrElse(dsMetaData2)
     val q = limit.map(x => qActive.take(x)).getOrElse(qActive)
-    db.run(q.sortBy(_.id).result)
+    runRead(q.sortBy(_.id).result)
   }
 
   def getDataSetMetasByJobId(ix: IdAble): Future[Seq[DataSetMetaDataSet]] = {
@@ -1737,22 +2715,29 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       .map(d => (d.isActive, d.updatedAt))
       .update((false, JodaDateTime.now()))
     // Is there a better way to do this?
-    db.run(q.map(_ =>
-      MessageResponse(s"Marked ${ids.size} MetaDataSet as inActive")))
+    maintenanceDb
+      .run(q.map(_ =>
+        MessageResponse(s"Marked ${ids.size} MetaDataSet as inActive")))
+      .andThen { case _ => entityCaches.dataSets.invalidateAll() }
   }
 
   private def getDataSetMetaDataSet(
       id: IdAble): Future[Option[DataSetMetaDataSet]] =
-    db.run(qDsMetaDataById(id).result.headOption)
+    db.run(cDsMetaDataById(id).result.headOption)
 
+  /**
+    * The dataset is cached by the IdAble (i.e., by id and by UUID), the writes of datasets
+    * invalidate all the cached datasets.
+    */
   def getDataSetMetaData(id: IdAble): Future[DataSetMetaDataSet] =
-    getDataSetMetaDataSet(id).flatMap(
-      failIfNone(s"Unable to find dataset with ID ${id.toIdString}"))
-
-  private def insertMetaData(ds: ServiceDataSetMetadata)
-    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] = {
+    entityCaches.dataSets.getOrLoad(id) {
+      getDataSetMetaDataSet(id).flatMap(
+        failIfNone(s"Unable to find dataset with ID ${id.toIdString}"))
+    }
 
-    dsMetaData2 returning dsMetaData2.map(_.id) += DataSetMetaDataSet(
+  private def toDataSetMetaDataSet(
+      ds: ServiceDataSetMetadata): DataSetMetaDataSet =
+    DataSetMetaDataSet(
       -999,
       ds.uuid,
       ds.name,
@@ -1772,7 +2757,11 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       isActive = ds.isActive,
       parentUuid = ds.parentUuid
     )
-  }
+
+  private def insertMetaData(ds: ServiceDataSetMetadata)
+    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] =
+    dsMetaData2 returning dsMetaData2.map(_.id) += toDataSetMetaDataSet(ds)
+
   // Util func for composing the composition of loading the dataset and translation to
   // a necessary file formats.
   // Note, DsServiceJobFile has projectId, jobId is used to populated
@@ -1803,7 +2792,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[SubreadSet,
                                     SubreadServiceDataSet,
                                     ImportAbleSubreadSet](
-      DataSetLoader.loadSubreadSet,
+      p => loadReadOnly[SubreadSet](DataSetMetaTypes.Subread, p),
       Converters.convertSubreadSet,
       ImportAbleSubreadSet.apply)(dsj)
 
@@ -1812,7 +2801,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[HdfSubreadSet,
                                     HdfSubreadServiceDataSet,
                                     ImportAbleHdfSubreadSet](
-      DataSetLoader.loadHdfSubreadSet,
+      p => loadReadOnly[HdfSubreadSet](DataSetMetaTypes.HdfSubread, p),
       Converters.convertHdfSubreadSet,
       ImportAbleHdfSubreadSet.apply)(dsj)
 
@@ -1821,7 +2810,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[AlignmentSet,
                                     AlignmentServiceDataSet,
                                     ImportAbleAlignmentSet](
-      DataSetLoader.loadAlignmentSet,
+      p => loadReadOnly[AlignmentSet](DataSetMetaTypes.Alignment, p),
       Converters.convertAlignmentSet,
       ImportAbleAlignmentSet.apply)(dsj)
 
@@ -1830,7 +2819,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[ReferenceSet,
                                     ReferenceServiceDataSet,
                                     ImportAbleReferenceSet](
-      DataSetLoader.loadReferenceSet,
+      p => loadReadOnly[ReferenceSet](DataSetMetaTypes.Reference, p),
       Converters.convertReferenceSet,
       ImportAbleReferenceSet.apply)(dsj)
 
@@ -1838,7 +2827,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[BarcodeSet,
                                     BarcodeServiceDataSet,
                                     ImportAbleBarcodeSet](
-      DataSetLoader.loadBarcodeSet,
+      p => loadReadOnly[BarcodeSet](DataSetMetaTypes.Barcode, p),
       Converters.convertBarcodeSet,
       ImportAbleBarcodeSet.apply)(dsj)
 
@@ -1847,7 +2836,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[ConsensusReadSet,
                                     ConsensusReadServiceDataSet,
                                     ImportAbleConsensusReadSet](
-      DataSetLoader.loadConsensusReadSet,
+      p => loadReadOnly[ConsensusReadSet](DataSetMetaTypes.CCS, p),
       Converters.convertConsensusReadSet,
       ImportAbleConsensusReadSet.apply)(dsj)
 
@@ -1856,7 +2845,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[ConsensusAlignmentSet,
                                     ConsensusAlignmentServiceDataSet,
                                     ImportAbleConsensusAlignmentSet](
-      DataSetLoader.loadConsensusAlignmentSet,
+      p =>
+        loadReadOnly[ConsensusAlignmentSet](DataSetMetaTypes.AlignmentCCS, p),
       Converters.convertConsensusAlignmentSet,
       ImportAbleConsensusAlignmentSet.apply)(dsj)
 
@@ -1865,7 +2855,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[TranscriptSet,
                                     TranscriptServiceDataSet,
                                     ImportAbleTranscriptSet](
-      DataSetLoader.loadTranscriptSet,
+      p => loadReadOnly[TranscriptSet](DataSetMetaTypes.Transcript, p),
       Converters.convertTranscriptSet,
       ImportAbleTranscriptSet.apply)(dsj)
 
@@ -1873,7 +2863,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[ContigSet,
                                     ContigServiceDataSet,
                                     ImportAbleContigSet](
-      DataSetLoader.loadContigSet,
+      p => loadReadOnly[ContigSet](DataSetMetaTypes.Contig, p),
       Converters.convertContigSet,
       ImportAbleContigSet.apply)(dsj)
 
@@ -1882,7 +2872,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     loadImportAbleServiceFileLoader[GmapReferenceSet,
                                     GmapReferenceServiceDataSet,
                                     ImportAbleGmapReferenceSet](
-      DataSetLoader.loadGmapReferenceSet,
+      p => loadReadOnly[GmapReferenceSet](DataSetMetaTypes.GmapReference, p),
       Converters.convertGmapReferenceSet,
       ImportAbleGmapReferenceSet.apply)(dsj)
 
@@ -1945,10 +2935,10 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   type U = FixedSqlAction[Int, slick.dbio.NoStream, slick.dbio.Effect.Write]
 
-  private def insertSubreadSetRecord(dsId: Int, ds: SubreadServiceDataSet)
-    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] = {
-
-    dsSubread2 returning dsSubread2.map(_.id) forceInsert SubreadServiceSet(
+  private def toSubreadServiceSet(
+      dsId: Int,
+      ds: SubreadServiceDataSet): SubreadServiceSet =
+    SubreadServiceSet(
       dsId,
       ds.uuid,
       ds.cellId,
@@ -1963,12 +2953,17 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       ds.instrumentControlVersion,
       ds.dnaBarcodeName
     )
-  }
 
-  private def insertHdfSubreadSetRecord(dsId: Int,
-                                        ds: HdfSubreadServiceDataSet)
-    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] = {
-    dsHdfSubread2 forceInsert HdfSubreadServiceSet(
+  private def insertSubreadSetRecord(dsId: Int, ds: SubreadServiceDataSet)
+    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] =
+    dsSubread2 returning dsSubread2.map(_.id) forceInsert toSubreadServiceSet(
+      dsId,
+      ds)
+
+  private def toHdfSubreadServiceSet(
+      dsId: Int,
+      ds: HdfSubreadServiceDataSet): HdfSubreadServiceSet =
+    HdfSubreadServiceSet(
       dsId,
       ds.uuid,
       "cell-id",
@@ -1982,7 +2977,11 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       ds.runName,
       "instrument-ctr-version"
     )
-  }
+
+  private def insertHdfSubreadSetRecord(dsId: Int,
+                                        ds: HdfSubreadServiceDataSet)
+    : DBIOAction[Int, NoStream, Effect.Read with Effect.Write] =
+    dsHdfSubread2 forceInsert toHdfSubreadServiceSet(dsId, ds)
 
   private def checkForServiceMetaData(
       ds: DataStoreServiceFile,
@@ -2005,6 +3004,15 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     }
   }
 
+  /**
+    * Run the import of datasets in a transaction. The import updates the numChildren of
+    * the parent datasets, the cached datasets are invalidated after the commit.
+    */
+  private def runImport[T](action: DBIO[T]): Future[T] =
+    maintenanceDb.run(action.transactionally).andThen {
+      case _ => entityCaches.dataSets.invalidateAll()
+    }
+
   /**
     * Update the numChildren (active+inactive) from dataset with a specific UUID.
     *
@@ -2069,7 +3077,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     * 3. Import DataStoreFile
     */
   def importSubreadSet(i: ImportAbleSubreadSet): Future[MessageResponse] =
-    db.run(actionImportSubreadSet(i).transactionally)
+    runImport(actionImportSubreadSet(i))
 
   private def actionImportHdfSubreadSet(
       i: ImportAbleHdfSubreadSet): DBIO[MessageResponse] = {
@@ -2088,7 +3096,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importHdfSubreadSet(
       i: ImportAbleHdfSubreadSet): Future[MessageResponse] =
-    db.run(actionImportHdfSubreadSet(i).transactionally)
+    runImport(actionImportHdfSubreadSet(i))
 
   private def actionImportAlignmentSet(
       i: ImportAbleAlignmentSet): DBIO[MessageResponse] = {
@@ -2107,7 +3115,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   }
 
   def importAlignmentSet(i: ImportAbleAlignmentSet): Future[MessageResponse] =
-    db.run(actionImportAlignmentSet(i).transactionally)
+    runImport(actionImportAlignmentSet(i))
 
   private def actionImportBarcodeSet(
       i: ImportAbleBarcodeSet): DBIO[MessageResponse] = {
@@ -2127,7 +3135,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importImportAbleBarcodeSet(
       i: ImportAbleBarcodeSet): Future[MessageResponse] =
-    db.run(actionImportBarcodeSet(i).transactionally)
+    runImport(actionImportBarcodeSet(i))
 
   private def actionImportConsensusReadSet(
       i: ImportAbleConsensusReadSet): DBIO[MessageResponse] = {
@@ -2145,7 +3153,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importImportAbleConsensusReadSet(
       i: ImportAbleConsensusReadSet): Future[MessageResponse] =
-    db.run(actionImportConsensusReadSet(i).transactionally)
+    runImport(actionImportConsensusReadSet(i))
 
   private def actionImportConsensusAlignmentSet(
       i: ImportAbleConsensusAlignmentSet): DBIO[MessageResponse] = {
@@ -2163,7 +3171,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importImportAbleConsensusAlignmentSet(
       i: ImportAbleConsensusAlignmentSet): Future[MessageResponse] =
-    db.run(actionImportConsensusAlignmentSet(i).transactionally)
+    runImport(actionImportConsensusAlignmentSet(i))
 
   private def actionImportTranscriptSet(
       i: ImportAbleTranscriptSet): DBIO[MessageResponse] = {
@@ -2181,7 +3189,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importImportAbleTranscriptSet(
       i: ImportAbleTranscriptSet): Future[MessageResponse] =
-    db.run(actionImportTranscriptSet(i).transactionally)
+    runImport(actionImportTranscriptSet(i))
 
   private def actionImportContigSet(
       i: ImportAbleContigSet): DBIO[MessageResponse] = {
@@ -2199,7 +3207,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importImportAbleContigSet(
       i: ImportAbleContigSet): Future[MessageResponse] =
-    db.run(actionImportContigSet(i).transactionally)
+    runImport(actionImportContigSet(i))
 
   private def actionImportReferenceSet(
       i: ImportAbleReferenceSet): DBIO[MessageResponse] = {
@@ -2219,7 +3227,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   }
 
   def importReferenceSet(i: ImportAbleReferenceSet): Future[MessageResponse] =
-    db.run(actionImportReferenceSet(i).transactionally)
+    runImport(actionImportReferenceSet(i))
 
   private def actionImportGmapReferenceSet(
       i: ImportAbleGmapReferenceSet): DBIO[MessageResponse] = {
@@ -2238,7 +3246,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   def importGmapReferenceSet(
       i: ImportAbleGmapReferenceSet): Future[MessageResponse] =
-    db.run(actionImportGmapReferenceSet(i).transactionally)
+    runImport(actionImportGmapReferenceSet(i))
 
   private def importImportAbleFile[T >: ImportAbleServiceFile](
       f: T): Future[MessageResponse] = {
@@ -2281,9 +3289,198 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       files: Seq[T]): DBIO[Seq[MessageResponse]] =
     DBIO.sequence(files.map(actionImportAbleFile))
 
-  private def importImportAbleFiles[T >: ImportAbleServiceFile](
-      files: Seq[T]): Future[Seq[MessageResponse]] =
-    db.run(actionImportAbleFiles(files).transactionally)
+  // Max number of files imported in a single transaction of the bulk import
+  val BULK_IMPORT_BATCH_SIZE = 500
+
+  // Max number of concurrent (blocking) loads of the datasets from the file system
+  val BULK_IMPORT_LOAD_PARALLELISM = 8
+
+  private def toServiceDataSetMetadata(
+      f: ImportAbleServiceFile): Option[ServiceDataSetMetadata] = f match {
+    case _: ImportAbleDataStoreFile => None
+    case x: ImportAbleSubreadSet => Some(x.file)
+    case x: ImportAbleHdfSubreadSet => Some(x.file)
+    case x: ImportAbleAlignmentSet => Some(x.file)
+    case x: ImportAbleBarcodeSet => Some(x.file)
+    case x: ImportAbleConsensusReadSet => Some(x.file)
+    case x: ImportAbleConsensusAlignmentSet => Some(x.file)
+    case x: ImportAbleContigSet => Some(x.file)
+    case x: ImportAbleReferenceSet => Some(x.file)
+    case x: ImportAbleGmapReferenceSet => Some(x.file)
+    case x: ImportAbleTranscriptSet => Some(x.file)
+  }
+
+  private def forceInsertAllRows[T](q: Query[_, T, Seq],
+                                    rows: Seq[T]): DBIO[Unit] =
+    if (rows.isEmpty) DBIO.successful(())
+    else (q forceInsertAll rows).map(_ => ())
+
+  /**
+    * Insert the dataset type specific rows (one batched insert per type). The ids are
+    * the ids of the (already inserted) dataset_metadata rows by UUID.
+    */
+  private def actionInsertDataSetTypeRecords(
+      files: Seq[ImportAbleServiceFile],
+      ids: Map[UUID, Int]): DBIO[Unit] =
+    DBIO.seq(
+      forceInsertAllRows(dsSubread2, files.collect {
+        case x: ImportAbleSubreadSet =>
+          toSubreadServiceSet(ids(x.file.uuid), x.file)
+      }),
+      forceInsertAllRows(dsHdfSubread2, files.collect {
+        case x: ImportAbleHdfSubreadSet =>
+          toHdfSubreadServiceSet(ids(x.file.uuid), x.file)
+      }),
+      forceInsertAllRows(dsAlignment2, files.collect {
+        case x: ImportAbleAlignmentSet =>
+          AlignmentServiceSet(ids(x.file.uuid), x.file.uuid)
+      }),
+      forceInsertAllRows(dsBarcode2, files.collect {
+        case x: ImportAbleBarcodeSet =>
+          BarcodeServiceSet(ids(x.file.uuid), x.file.uuid)
+      }),
+      forceInsertAllRows(dsCCSread2, files.collect {
+        case x: ImportAbleConsensusReadSet =>
+          ConsensusReadServiceSet(ids(x.file.uuid), x.file.uuid)
+      }),
+      forceInsertAllRows(dsCCSAlignment2, files.collect {
+        case x: ImportAbleConsensusAlignmentSet =>
+          ConsensusAlignmentServiceSet(ids(x.file.uuid), x.file.uuid)
+      }),
+      forceInsertAllRows(dsContig2, files.collect {
+        case x: ImportAbleContigSet =>
+          ContigServiceSet(ids(x.file.uuid), x.file.uuid)
+      }),
+      forceInsertAllRows(dsReference2, files.collect {
+        case x: ImportAbleReferenceSet =>
+          ReferenceServiceSet(ids(x.file.uuid),
+                              x.file.uuid,
+                              x.file.ploidy,
+                              x.file.organism)
+      }),
+      forceInsertAllRows(dsGmapReference2, files.collect {
+        case x: ImportAbleGmapReferenceSet =>
+          GmapReferenceServiceSet(ids(x.file.uuid),
+                                  x.file.uuid,
+                                  x.file.ploidy,
+                                  x.file.organism)
+      }),
+      forceInsertAllRows(dsTranscript2, files.collect {
+        case x: ImportAbleTranscriptSet =>
+          TranscriptServiceSet(ids(x.file.uuid), x.file.uuid)
+      })
+    )
+
+  /**
+    * Import a batch of files with a fixed number of statements (instead of several
+    * statements per file).
+    *
+    * 1. Filter out the files that are already imported (datasets by the dataset_metadata
+    *    UUID, other files by the datastore_files UUID) or are duplicated in the batch
+    * 2. Insert the dataset_metadata rows and fetch the generated ids by UUID
+    * 3. Insert the dataset type specific rows
+    * 4. Insert the datastore_files rows
+    * 5. Update the numChildren of each (distinct) parent dataset once
+    */
+  private def actionBulkImportAbleFiles(
+      files: Seq[ImportAbleServiceFile]): DBIO[Seq[MessageResponse]] = {
+    val uuids = files.map(_.ds.file.uuid).toSet
+
+    def toNewFiles(existingDataSets: Set[UUID],
+                   existingFiles: Set[UUID]): Seq[ImportAbleServiceFile] =
+      files
+        .foldLeft((Set.empty[UUID], Seq.empty[ImportAbleServiceFile])) {
+          case ((seen, acc), f) =>
+            val uuid = f.ds.file.uuid
+            val isImported = f match {
+              case _: ImportAbleDataStoreFile => existingFiles contains uuid
+              case _ => existingDataSets contains uuid
+            }
+            if (isImported || (seen contains uuid)) (seen, acc)
+            else (seen + uuid, acc :+ f)
+        }
+        ._2
+
+    def toMessage(ds: DataStoreServiceFile, isImported: Boolean) =
+      if (isImported)
+        MessageResponse(
+          s"Job id:${ds.jobId} Successfully imported DataStoreFile ${ds.uuid} type:${ds.fileTypeId}")
+      else
+        MessageResponse(
+          s"Job id:${ds.jobId} DataStoreFile ${ds.uuid} already exists")
+
+    // Only the first of the duplicated files is imported
+    def toMessages(imported: Set[UUID]): Seq[MessageResponse] =
+      files
+        .foldLeft((Set.empty[UUID], Seq.empty[MessageResponse])) {
+          case ((seen, acc), f) =>
+            val ds = f.ds.file
+            val isImported =
+              (imported contains ds.uuid) && !(seen contains ds.uuid)
+            (seen + ds.uuid, acc :+ toMessage(ds, isImported))
+        }
+        ._2
+
+    for {
+      existingDataSets <- dsMetaData2
+        .filter(_.uuid inSet uuids)
+        .map(_.uuid)
+        .result
+      existingFiles <- datastoreServiceFiles
+        .filter(_.uuid inSet uuids)
+        .map(_.uuid)
+        .result
+      newFiles <- DBIO.successful(
+        toNewFiles(existingDataSets.toSet, existingFiles.toSet))
+      _ <- DBIO.successful(logger.info(
+        s"Importing ${newFiles.length} of ${files.length} DataStore files (${files.length - newFiles.length} already imported)"))
+      metadata <- DBIO.successful(newFiles.flatMap(toServiceDataSetMetadata))
+      _ <- if (metadata.isEmpty) DBIO.successful(None)
+      else dsMetaData2 ++= metadata.map(toDataSetMetaDataSet)
+      ids <- dsMetaData2
+        .filter(_.uuid inSet metadata.map(_.uuid))
+        .map(d => (d.uuid, d.id))
+        .result
+      _ <- actionInsertDataSetTypeRecords(newFiles, ids.toMap)
+      _ <- forceInsertAllRows(datastoreServiceFiles, newFiles.map(_.ds.file))
+      _ <- DBIO.sequence(
+        metadata.flatMap(_.parentUuid).distinct.map(actionUpdateNumChildren))
+    } yield toMessages(newFiles.map(_.ds.file.uuid).toSet)
+  }
+
+  /**
+    * Import the files in batches of BULK_IMPORT_BATCH_SIZE files, each batch is imported
+    * in a single transaction.
+    *
+    * If a batch fails on a constraint violation (e.g., the same file is concurrently
+    * imported by another job), the batch is retried with the (slower) per file import
+    * that skips the files that are already imported.
+    */
+  /**
+    * @param check Run (in the transaction) before each batch is imported, e.g., check the
+    *              lease of the job of the files
+    */
+  private def bulkImportImportAbleFiles(
+      files: Seq[ImportAbleServiceFile],
+      check: DBIOAction[Unit, NoStream, Effect.Read] = DBIO.successful(()))
+    : Future[Seq[MessageResponse]] =
+    files
+      .grouped(BULK_IMPORT_BATCH_SIZE)
+      .foldLeft(Future.successful(Seq.empty[MessageResponse])) {
+        (acc, batch) =>
+          for {
+            messages <- acc
+            batchMessages <- runImport(
+              check >> actionBulkImportAbleFiles(batch))
+              .recoverWith {
+                case ex if isConstraintViolation(ex) =>
+                  logger.warn(
+                    s"Failed to bulk import ${batch.length} files (${ex.getMessage}). Importing each file.")
+                  runImport(check >> actionImportAbleFiles(batch))
+              }
+          } yield messages ++ batchMessages
+      }
+  }
 
   private def toDataStoreServiceFile(f: DataStoreFile,
                                      jobId: Int,
@@ -2313,7 +3510,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   private def validateBarcodeSetFile(
       path: Path,
       maxNumRecords: Int): Future[MessageResponse] = {
-    val barcodeSet = BarcodeSetLoader.load(path)
+    val barcodeSet = loadReadOnly[BarcodeSet](DataSetMetaTypes.Barcode, path)
     val numRecords: Int = barcodeSet.getDataSetMetadata.getNumRecords
     if (numRecords > maxNumRecords)
       Future.failed(UnprocessableEntityError(
@@ -2350,11 +3547,16 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     * in the models. If an explicit project id is not passed in, the project id
     * of the companion job (from the jobUUID) project id will be used.
     *
+    * The files are rejected if the lease of the job doesn't pass the fence (see
+    * JobLeaseFence). The run of the job provides the epoch of the lease.
+    *
     */
   def importDataStoreFiles(
       files: Seq[DataStoreFile],
       jobId: UUID,
-      projectId: Option[Int] = None): Future[Seq[MessageResponse]] = {
+      projectId: Option[Int] = None,
+      fence: JobLeaseFence = JobLeaseFence.LeaseHeld)
+    : Future[Seq[MessageResponse]] = {
 
     val importPrefix = "Attempting to import"
     val successPrefix = "Successfully imported"
@@ -2369,19 +3571,32 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     }
 
     // Note, Due to the IO heavy nature, this needs to be wrapped in an explicit blocking
-    // operation to be used within a Future
-    def loadServiceFiles[T >: ImportAbleServiceFile](
-        serviceFiles: Seq[DataStoreServiceFile],
-        createdBy: Option[String],
-        projectId: Int): Future[Seq[T]] = Future {
-      blocking {
-        serviceFiles.map(dsf =>
-          loadImportAbleFile(DsServiceJobFile(dsf, createdBy, projectId)))
-      }
+    // operation to be used within a Future. The files are loaded in (at most)
+    // BULK_IMPORT_LOAD_PARALLELISM concurrent chunks.
+    def loadServiceFiles(serviceFiles: Seq[DataStoreServiceFile],
+                         createdBy: Option[String],
+                         projectId: Int): Future[Seq[ImportAbleServiceFile]] = {
+      val chunkSize = math.max(
+        1,
+        math
+          .ceil(serviceFiles.length.toDouble / BULK_IMPORT_LOAD_PARALLELISM)
+          .toInt)
+      Future
+        .sequence(serviceFiles.grouped(chunkSize).toList.map { chunk =>
+          Future {
+            blocking {
+              chunk.map(dsf =>
+                loadImportAbleFile[ImportAbleServiceFile](
+                  DsServiceJobFile(dsf, createdBy, projectId)))
+            }
+          }
+        })
+        .map(_.flatten)
     }
 
     for {
       job <- getJobById(jobId)
+      _ <- engineDb.run(qCheckJobLease(job.id, fence).transactionally)
       serviceFiles <- Future.successful(files.map(f =>
         toDataStoreServiceFile(f, job.id, job.uuid, isActive = true)))
       _ <- andLog(toMessage(importPrefix, job.id))
@@ -2391,7 +3606,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       importAbleFiles <- loadServiceFiles(serviceFiles,
                                           job.createdBy,
                                           projectId.getOrElse(job.projectId))
-      messages <- importImportAbleFiles(importAbleFiles)
+      messages <- bulkImportImportAbleFiles(importAbleFiles,
+                                            qCheckJobLease(job.id, fence))
       _ <- andLog(toMessage(successPrefix, job.id))
     } yield messages
   }
@@ -2404,24 +3620,28 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   def importDataStoreFile(
       file: DataStoreFile,
       jobId: UUID,
-      projectId: Option[Int] = None): Future[MessageResponse] = {
-    importDataStoreFiles(Seq(file), jobId, projectId).map(
+      projectId: Option[Int] = None,
+      fence: JobLeaseFence = JobLeaseFence.LeaseHeld)
+    : Future[MessageResponse] = {
+    importDataStoreFiles(Seq(file), jobId, projectId, fence).map(
       _ =>
         MessageResponse(
           s"Successfully imported ${file.uniqueId} ${file.fileTypeId}"))
   }
 
   def getDataSetById(id: IdAble): Future[DataSetMetaDataSet] =
-    db.run(qDsMetaDataById(id).result.headOption)
+    db.run(cDsMetaDataById(id).result.headOption)
       .flatMap(failIfNone(s"Unable to find dataSet with id ${id.toIdString}"))
 
   def deleteDataSetById(
       id: IdAble,
       setIsActive: Boolean = false): Future[MessageResponse] = {
-    db.run(
+    maintenanceDb
+      .run(
         qDsMetaDataById(id)
           .map(d => (d.isActive, d.updatedAt))
           .update(setIsActive, JodaDateTime.now()))
+      .andThen { case _ => entityCaches.dataSets.invalidateAll() }
       .map(_ =>
         MessageResponse(
           s"Successfully set isActive=$setIsActive for dataset ${id.toIdString}"))
@@ -2437,6 +3657,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         qDsMetaDataById(id)
           .map(d => (d.isActive, d.path, d.updatedAt))
           .update(setIsActive, path, JodaDateTime.now()))
+      .andThen { case _ => entityCaches.dataSets.invalidateAll() }
       .map(_ => MessageResponse(msg))
   }
 
@@ -2458,6 +3679,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
             .update(Tuple1(JodaDateTime.now()))
         )
       } map { _ =>
+        entityCaches.dataSets.invalidateAll()
         val msg =
           s"Set bioSampleName=$newBioSample and wellSampleName=$newWellSample"
         MessageResponse(msg)
@@ -2532,7 +3754,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   // This might be wrapped in a Try to fail the future downstream with a better HTTP error code
   private def subreadToDetails(ds: SubreadServiceDataSet): String =
     DataSetJsonUtils.subreadSetToJson(
-      DataSetLoader.loadSubreadSet(Paths.get(ds.path)))
+      loadReadOnly[SubreadSet](DataSetMetaTypes.Subread, Paths.get(ds.path)))
 
   def getSubreadDataSetDetailsById(id: IdAble): Future[String] =
     getSubreadDataSetById(id).flatMap { x =>
@@ -2584,7 +3806,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.name === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.name like s"%${value}%")
+            q.filter(_.name.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) => q.filter(_.name inSet values)
         }
     }
@@ -2595,7 +3817,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.path === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.path like s"%${value}%")
+            q.filter(_.path.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) => q.filter(_.path inSet values)
         }
     }
@@ -2646,7 +3868,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.version === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.version like s"%${value}%")
+            q.filter(_.version.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.version inSet values)
         }
@@ -2658,7 +3880,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         .map {
           case StringEqQueryOperator(value) => q.filter(_.createdBy === value)
           case StringMatchQueryOperator(value) =>
-            q.filter(_.createdBy like s"%${value}%")
+            q.filter(_.createdBy.like(toContainsPattern(value), LIKE_ESCAPE))
           case StringInQueryOperator(values) =>
             q.filter(_.createdBy inSet values)
         }
@@ -2728,8 +3950,14 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
         }
     }
 
+    // Keyset pagination. The listing is ordered by id (descending)
+    val qByPageAfterId: QOF = { q =>
+      c.pageAfterId.map(i => q.filter(_.id < i))
+    }
+
     val queries: Seq[QOF] = Seq(
       qInActive,
+      qByPageAfterId,
       qOldProjectIds,
       qById,
       qByName,
@@ -2754,15 +3982,38 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     qTotal(dsMetaData2)
   }
 
-  def getSubreadDataSets(
-      c: DataSetSearchCriteria): Future[Seq[SubreadServiceDataSet]] = {
+  // See the toStreamPage of the jobs
+  private def toStreamPage(c: DataSetSearchCriteria,
+                           afterId: Option[Int],
+                           n: Int): DataSetSearchCriteria =
+    afterId
+      .map(i =>
+        c.copy(limit = n,
+               marker = None,
+               pageToken = Some(KeysetPageToken.encode(i))))
+      .getOrElse(c.copy(limit = n))
+
+  private def qSubreadDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsSubread2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toSds(x._1, x._2)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getSubreadDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[SubreadServiceDataSet]] =
+    runRead(qSubreadDataSets(c).result, routing)
+      .map(_.map(x => toSds(x._1, x._2)))
+
+  def streamSubreadDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[SubreadServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qSubreadDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toSds(x._1, x._2))
+
   /**
     * Convert to the Service Data model
     *
@@ -2793,15 +4044,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getReferenceDataSets(
-      c: DataSetSearchCriteria): Future[Seq[ReferenceServiceDataSet]] = {
+  private def qReferenceDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsReference2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toR(x._1, x._2)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getReferenceDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ReferenceServiceDataSet]] =
+    runRead(qReferenceDataSets(c).result, routing)
+      .map(_.map(x => toR(x._1, x._2)))
+
+  def streamReferenceDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ReferenceServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qReferenceDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toR(x._1, x._2))
+
   def getReferenceDataSetById(id: IdAble): Future[ReferenceServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsReference2 on (_.id === _.id)
     db.run(q.result.headOption)
@@ -2812,7 +4075,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def referenceToDetails(ds: ReferenceServiceDataSet): String =
     DataSetJsonUtils.referenceSetToJson(
-      DataSetLoader.loadReferenceSet(Paths.get(ds.path)))
+      loadReadOnly[ReferenceSet](DataSetMetaTypes.Reference,
+                                 Paths.get(ds.path)))
 
   def getReferenceDataSetDetailsById(id: IdAble): Future[String] =
     getReferenceDataSetById(id).map(referenceToDetails)
@@ -2844,15 +4108,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getGmapReferenceDataSets(
-      c: DataSetSearchCriteria): Future[Seq[GmapReferenceServiceDataSet]] = {
+  private def qGmapReferenceDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsGmapReference2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toGmapR(x._1, x._2)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getGmapReferenceDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[GmapReferenceServiceDataSet]] =
+    runRead(qGmapReferenceDataSets(c).result, routing)
+      .map(_.map(x => toGmapR(x._1, x._2)))
+
+  def streamGmapReferenceDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[GmapReferenceServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qGmapReferenceDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toGmapR(x._1, x._2))
+
   def getGmapReferenceDataSetById(
       id: IdAble): Future[GmapReferenceServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsGmapReference2 on (_.id === _.id)
@@ -2864,20 +4140,33 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def gmapReferenceToDetails(ds: GmapReferenceServiceDataSet): String =
     DataSetJsonUtils.gmapReferenceSetToJson(
-      DataSetLoader.loadGmapReferenceSet(Paths.get(ds.path)))
+      loadReadOnly[GmapReferenceSet](DataSetMetaTypes.GmapReference,
+                                     Paths.get(ds.path)))
 
   def getGmapReferenceDataSetDetailsById(id: IdAble): Future[String] =
     getGmapReferenceDataSetById(id).map(gmapReferenceToDetails)
 
-  def getHdfDataSets(
-      c: DataSetSearchCriteria): Future[Seq[HdfSubreadServiceDataSet]] = {
+  private def qHdfDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsHdfSubread2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toHds(x._1, x._2)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getHdfDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[HdfSubreadServiceDataSet]] =
+    runRead(qHdfDataSets(c).result, routing)
+      .map(_.map(x => toHds(x._1, x._2)))
+
+  def streamHdfDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[HdfSubreadServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qHdfDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toHds(x._1, x._2))
+
   private def toHds(t1: DataSetMetaDataSet,
                     t2: HdfSubreadServiceSet): HdfSubreadServiceDataSet =
     HdfSubreadServiceDataSet(
@@ -2917,7 +4206,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def hdfsubreadToDetails(ds: HdfSubreadServiceDataSet): String =
     DataSetJsonUtils.hdfSubreadSetToJson(
-      DataSetLoader.loadHdfSubreadSet(Paths.get(ds.path)))
+      loadReadOnly[HdfSubreadSet](DataSetMetaTypes.HdfSubread,
+                                  Paths.get(ds.path)))
 
   def getHdfDataSetDetailsById(id: IdAble): Future[String] =
     getHdfDataSetById(id).map(hdfsubreadToDetails)
@@ -2944,16 +4234,28 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getAlignmentDataSets(
-      c: DataSetSearchCriteria): Future[Seq[AlignmentServiceDataSet]] = {
+  private def qAlignmentDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     // DataSets that don't extend the base model don't really need to do a join.
     val q1 = q0 join dsAlignment2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toA(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getAlignmentDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[AlignmentServiceDataSet]] =
+    runRead(qAlignmentDataSets(c).result, routing)
+      .map(_.map(x => toA(x._1)))
+
+  def streamAlignmentDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[AlignmentServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qAlignmentDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toA(x._1))
+
   def getAlignmentDataSetById(id: IdAble): Future[AlignmentServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsAlignment2 on (_.id === _.id)
     db.run(q.result.headOption)
@@ -2963,7 +4265,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def alignmentSetToDetails(ds: AlignmentServiceDataSet): String = {
     DataSetJsonUtils.alignmentSetToJson(
-      DataSetLoader.loadAlignmentSet(Paths.get(ds.path)))
+      loadReadOnly[AlignmentSet](DataSetMetaTypes.Alignment,
+                                 Paths.get(ds.path)))
   }
 
   def getAlignmentDataSetDetailsById(id: IdAble): Future[String] =
@@ -2994,15 +4297,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     )
 
   // TODO(smcclellan): limit is never uesed. add `.take(limit)`?
-  def getConsensusReadDataSets(
-      c: DataSetSearchCriteria): Future[Seq[ConsensusReadServiceDataSet]] = {
+  private def qConsensusReadDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsCCSread2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toCCSread(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getConsensusReadDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ConsensusReadServiceDataSet]] =
+    runRead(qConsensusReadDataSets(c).result, routing)
+      .map(_.map(x => toCCSread(x._1)))
+
+  def streamConsensusReadDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ConsensusReadServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qConsensusReadDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toCCSread(x._1))
+
   def getConsensusReadDataSetById(
       id: IdAble): Future[ConsensusReadServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsCCSread2 on (_.id === _.id)
@@ -3014,7 +4329,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   private def consensusReadSetToDetails(
       ds: ConsensusReadServiceDataSet): String =
     DataSetJsonUtils.consensusSetToJson(
-      DataSetLoader.loadConsensusReadSet(Paths.get(ds.path)))
+      loadReadOnly[ConsensusReadSet](DataSetMetaTypes.CCS, Paths.get(ds.path)))
 
   def getConsensusReadDataSetDetailsById(id: IdAble): Future[String] =
     getConsensusReadDataSetById(id).map(consensusReadSetToDetails)
@@ -3043,15 +4358,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getConsensusAlignmentDataSets(c: DataSetSearchCriteria)
-    : Future[Seq[ConsensusAlignmentServiceDataSet]] = {
+  private def qConsensusAlignmentDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsCCSAlignment2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toCCSA(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getConsensusAlignmentDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ConsensusAlignmentServiceDataSet]] =
+    runRead(qConsensusAlignmentDataSets(c).result, routing)
+      .map(_.map(x => toCCSA(x._1)))
+
+  def streamConsensusAlignmentDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ConsensusAlignmentServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qConsensusAlignmentDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toCCSA(x._1))
+
   def getConsensusAlignmentDataSetById(
       id: IdAble): Future[ConsensusAlignmentServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsCCSAlignment2 on (_.id === _.id)
@@ -3064,7 +4391,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   private def consensusAlignmentSetToDetails(
       ds: ConsensusAlignmentServiceDataSet): String =
     DataSetJsonUtils.consensusAlignmentSetToJson(
-      DataSetLoader.loadConsensusAlignmentSet(Paths.get(ds.path)))
+      loadReadOnly[ConsensusAlignmentSet](DataSetMetaTypes.AlignmentCCS,
+                                          Paths.get(ds.path)))
 
   def getConsensusAlignmentDataSetDetailsById(id: IdAble): Future[String] =
     getConsensusAlignmentDataSetById(id).map(consensusAlignmentSetToDetails)
@@ -3092,15 +4420,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getTranscriptDataSets(
-      c: DataSetSearchCriteria): Future[Seq[TranscriptServiceDataSet]] = {
+  private def qTranscriptDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsTranscript2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toT(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getTranscriptDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[TranscriptServiceDataSet]] =
+    runRead(qTranscriptDataSets(c).result, routing)
+      .map(_.map(x => toT(x._1)))
+
+  def streamTranscriptDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[TranscriptServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qTranscriptDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toT(x._1))
+
   def getTranscriptDataSetById(id: IdAble): Future[TranscriptServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsTranscript2 on (_.id === _.id)
     db.run(q.result.headOption)
@@ -3111,7 +4451,8 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def transcriptSetToDetails(ds: TranscriptServiceDataSet): String =
     DataSetJsonUtils.transcriptSetToJson(
-      DataSetLoader.loadTranscriptSet(Paths.get(ds.path)))
+      loadReadOnly[TranscriptSet](DataSetMetaTypes.Transcript,
+                                  Paths.get(ds.path)))
 
   def getTranscriptDataSetDetailsById(id: IdAble): Future[String] =
     getTranscriptDataSetById(id).map(transcriptSetToDetails)
@@ -3140,15 +4481,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getBarcodeDataSets(
-      c: DataSetSearchCriteria): Future[Seq[BarcodeServiceDataSet]] = {
+  private def qBarcodeDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsBarcode2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toB(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getBarcodeDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[BarcodeServiceDataSet]] =
+    runRead(qBarcodeDataSets(c).result, routing)
+      .map(_.map(x => toB(x._1)))
+
+  def streamBarcodeDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[BarcodeServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qBarcodeDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toB(x._1))
+
   def getBarcodeDataSetById(id: IdAble): Future[BarcodeServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsBarcode2 on (_.id === _.id)
     db.run(q.result.headOption)
@@ -3158,7 +4511,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def barcodeSetToDetails(ds: BarcodeServiceDataSet): String =
     DataSetJsonUtils.barcodeSetToJson(
-      DataSetLoader.loadBarcodeSet(Paths.get(ds.path)))
+      loadReadOnly[BarcodeSet](DataSetMetaTypes.Barcode, Paths.get(ds.path)))
 
   def getBarcodeDataSetDetailsById(id: IdAble): Future[String] =
     getBarcodeDataSetById(id).map(barcodeSetToDetails)
@@ -3187,15 +4540,27 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
       numChildren = t1.numChildren
     )
 
-  def getContigDataSets(
-      c: DataSetSearchCriteria): Future[Seq[ContigServiceDataSet]] = {
+  private def qContigDataSets(c: DataSetSearchCriteria) = {
     val q0 = qDsMetaDataBySearch(c)
     val q1 = q0 join dsContig2 on (_.id === _.id)
     val q2 = c.marker.map(i => q1.drop(i)).getOrElse(q1)
-    db.run(q2.sortBy(_._1.id.desc).take(c.limit).result)
-      .map(_.map(x => toCtg(x._1)))
+    q2.sortBy(_._1.id.desc).take(c.limit)
   }
 
+  def getContigDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ContigServiceDataSet]] =
+    runRead(qContigDataSets(c).result, routing)
+      .map(_.map(x => toCtg(x._1)))
+
+  def streamContigDataSets(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ContigServiceDataSet, NotUsed] =
+    streamPages(c.limit, routing) { (afterId, n) =>
+      qContigDataSets(toStreamPage(c, afterId, n)).result
+    }(_._1.id)
+      .map(x => toCtg(x._1))
+
   def getContigDataSetById(id: IdAble): Future[ContigServiceDataSet] = {
     val q = qDsMetaDataById(id) join dsContig2 on (_.id === _.id)
     db.run(q.result.headOption)
@@ -3205,7 +4570,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
 
   private def contigSetToDetails(ds: ContigServiceDataSet): String =
     DataSetJsonUtils.contigSetToJson(
-      DataSetLoader.loadContigSet(Paths.get(ds.path)))
+      loadReadOnly[ContigSet](DataSetMetaTypes.Contig, Paths.get(ds.path)))
 
   def getContigDataSetDetailsById(id: IdAble): Future[String] =
     getContigDataSetById(id).map(contigSetToDetails)
@@ -3257,6 +4622,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
           .filter(_.uuid === id)
           .map(f => (f.isActive, f.modifiedAt))
           .update(setIsActive, JodaDateTime.now()))
+      .andThen { case _ => entityCaches.dataStoreFiles.invalidate(id) }
       .map(_ =>
         MessageResponse(
           s"Successfully set datastore file $id to isActive=$setIsActive"))
@@ -3290,6 +4656,7 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
             .update((setIsActive, fsize, now)))
     ).flatten
     db.run(DBIO.sequence(q2))
+      .andThen { case _ => entityCaches.dataStoreFiles.invalidate(id) }
       .map(_ =>
         MessageResponse(
           s"Successfully set datastore file $id to path=$path, fileSize=$fileSize and isActive=$setIsActive"))
@@ -3345,44 +4712,57 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     db.run(jobDsJoin.result).map(_.filter(_._1.fileExists).map(_._2))
   }
 
+  /**
+    * Counts of the datasets, jobs, job events, entry points and datastore files. These
+    * are read from the (trigger maintained) system counts, not by counting the tables.
+    */
+  def getSystemSummaryCounts(): Future[SystemSummary] = {
+    val q = systemCounts
+      .groupBy(c => (c.counter, c.key, c.subKey))
+      .map {
+        case ((counter, key, subKey), xs) =>
+          (counter, key, subKey, xs.map(_.num).sum.getOrElse(0L))
+      }
+
+    db.run(q.result).map { counts =>
+      def total(counter: String): Long =
+        counts.filter(_._1 == counter).map(_._4).sum
+
+      SystemSummary(
+        counts.filter(_._1 == "datasets").map(c => (c._2, c._4)).toMap,
+        counts
+          .filter(c => c._1 == "jobs" && c._4 != 0L)
+          .sortBy(c => (c._2, c._3))
+          .map(c => JobTypeStateCount(c._2, c._3, c._4)),
+        total("job_events"),
+        total("entry_points"),
+        total("datastore_files")
+      )
+    }
+  }
+
   def getSystemSummary(header: String = "System Summary"): Future[String] = {
-    for {
-      ssets <- db.run(
-        (dsMetaData2 join dsSubread2 on (_.id === _.id)).length.result)
-      rsets <- db.run(
-        (dsMetaData2 join dsReference2 on (_.id === _.id)).length.result)
-      asets <- db.run(
-        (dsMetaData2 join dsAlignment2 on (_.id === _.id)).length.result)
-      jobCounts <- db.run(
-        engineJobs
-          .groupBy(x => (x.jobTypeId, x.state))
-          .map({
-            case ((jobType, state), list) => (jobType, state, list.length)
-          })
-          .result)
-      jobEvents <- db.run(jobEvents.length.result)
-      dsFiles <- db.run(datastoreServiceFiles.length.result)
-      entryPoints <- db.run(engineJobsDataSets.length.result)
-    } yield
+    getSystemSummaryCounts().map { summary =>
       s"""
          |$header
          |--------
          |DataSets
          |--------
-         |nsubreads            : $ssets
-         |alignments           : $asets
-         |references           : $rsets
+         |nsubreads            : ${summary.numDataSets("subreads")}
+         |alignments           : ${summary.numDataSets("alignments")}
+         |references           : ${summary.numDataSets("references")}
          |--------
          |Jobs
          |--------
-         | ${jobCounts
-           .map(x => f"${x._1}%25s  ${x._2}%10s  ${x._3}%6d")
+         | ${summary.jobs
+           .map(x => f"${x.jobTypeId}%25s  ${x.state}%10s  ${x.numJobs}%6d")
            .mkString("\n         | ")}
          |--------
-         |Total JobEvents      : $jobEvents
-         |Total entryPoints    : $entryPoints
-         |Total DataStoreFiles : $dsFiles
+         |Total JobEvents      : ${summary.numJobEvents}
+         |Total entryPoints    : ${summary.numEntryPoints}
+         |Total DataStoreFiles : ${summary.numDataStoreFiles}
        """.stripMargin
+    }
   }
 
   def addEulaRecord(eulaRecord: EulaRecord): Future[EulaRecord] = {
@@ -3443,7 +4823,10 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
     def toJ(jobs: Seq[EngineJob]) =
       jobs.map(toS).reduceLeftOption(_ ++ " " ++ _).getOrElse("")
 
-    db.run(q2.transactionally).map(jobs => s"Updated Run $runId ${toJ(jobs)}")
+    db.run(q2.transactionally).map { jobs =>
+      jobs.foreach(entityCaches.invalidateJob)
+      s"Updated Run $runId ${toJ(jobs)}"
+    }
   }
 
 }
@@ -3454,10 +4837,17 @@ trait DataSetStore extends DaoFutureUtils with LazyLogging {
   * @param db Postgres Database Config
   * @param resolver Resolver that will determine where to write jobs to
   * @param listeners Event/Message listeners (e.g., accepted Eula, Job changed state, MultiJob Submitted)
+  * @param entityCacheConfig Read-through cache of the job, dataset, datastore file and project lookups
   */
 class JobsDao(val db: Database,
               val resolver: JobResourceResolver,
-              private val listeners: Seq[ActorRef] = Seq.empty[ActorRef])
+              private val listeners: Seq[ActorRef] = Seq.empty[ActorRef],
+              val writeBehindConfig: WriteBehindConfig = WriteBehindConfig(),
+              entityCacheConfig: EntityCacheConfig =
+                EntityCacheConfig(enabled = false),
+              val replicaDb: Option[Database] = None,
+              val readYourWritesWindow: FiniteDuration = 5.seconds,
+              val dbPools: Option[DbConnectionPools] = None)
     extends DalComponent
     with SmrtLinkConstants
     with EventComponent
@@ -3468,6 +4858,8 @@ class JobsDao(val db: Database,
 
   import JobModels._
 
+  val entityCaches = new DaoEntityCaches(entityCacheConfig)
+
   private val eventListeners: mutable.MutableList[ActorRef] =
     new mutable.MutableList()
 
@@ -3480,6 +4872,11 @@ class JobsDao(val db: Database,
   }
 
   override def sendEventToManager[T](message: T): Unit = {
+    // The listeners might look up the updated job
+    message match {
+      case JobChangeStateMessage(job) => entityCaches.invalidateJob(job)
+      case _ => ()
+    }
     eventListeners.foreach(a => a ! message)
   }
 
@@ -3491,5 +4888,13 @@ trait JobsDaoProvider {
     with EventManagerActorProvider =>
 
   val jobsDao: Singleton[JobsDao] =
-    Singleton(() => new JobsDao(db(), jobResolver()))
+    Singleton(
+      () =>
+        new JobsDao(db(),
+                    jobResolver(),
+                    writeBehindConfig = jobWriteBehindConfig(),
+                    entityCacheConfig = entityCacheConfig(),
+                    replicaDb = replicaDb(),
+                    readYourWritesWindow = replicaReadYourWritesWindow(),
+                    dbPools = dbPools()))
 }
@@ -121,9 +121,10 @@ class RunDao(val db: Database, val parser: DataModelParser)
 
     val q3 = criteria.substring
       .map { sx =>
+        val pattern = toContainsPattern(sx)
         q2.filter { r =>
-          (r.name.indexOf(sx) >= 0)
-            .||(r.summary.getOrElse("").indexOf(sx) >= 0)
+          r.name.like(pattern, LIKE_ESCAPE) ||
+          r.summary.like(pattern, LIKE_ESCAPE)
         }
       }
       .getOrElse(q2)
@@ -7,6 +7,7 @@ import scala.xml.XML
 import scala.util.{Try, Success, Failure}
 
 import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetHeaderReader
 import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes.DataSetBaseType
 import com.pacbio.common.models.UUIDJsonProtocol
 import com.pacificbiosciences.pacbiobasedatamodel.{
@@ -137,10 +138,7 @@ object DataSetMetaTypes {
   }
 
   def fromPath(path: Path): Option[DataSetMetaType] = {
-    Try {
-      val ds = scala.xml.XML.loadFile(path.toFile)
-      ds.attributes("MetaType").toString
-    }.toOption.flatMap(toDataSetType)
+    Try(DataSetHeaderReader.getMetaType(path)).toOption.flatten
   }
 
   def fromAnyName(dsType: String): Option[DataSetMetaType] =
@@ -33,6 +33,7 @@ import com.pacificbiosciences.pacbiocollectionmetadata.{
 }
 import com.pacificbiosciences.pacbiosampleinfo.{BioSampleType, BioSamples}
 import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetCache,
   DataSetLoader,
   DataSetWriter
 }
@@ -311,10 +312,13 @@ object DataSetUpdateUtils extends DataSetMetadataUtils {
                       bioSampleName: Option[String] = None,
                       wellSampleName: Option[String] = None,
                       resolvePaths: Boolean = true): Option[String] = {
+    // copy of the cached dataset, the metadata is updated
     val ds = if (resolvePaths) {
-      DataSetLoader.loadAndResolveSubreadSet(dsFile)
+      DataSetCache.default
+        .getAndResolve(DataSetMetaTypes.Subread, dsFile)
+        .asInstanceOf[SubreadSet]
     } else {
-      DataSetLoader.loadSubreadSet(dsFile)
+      DataSetCache.default.getAs[SubreadSet](DataSetMetaTypes.Subread, dsFile)
     }
     logger.info(s"Saving updated dataset XML to $outputFile")
     val errors = applyMetadataUpdates(ds, bioSampleName, wellSampleName)
@@ -0,0 +1,153 @@
+package com.pacbio.secondary.smrtlink.analysis.datasets.io
+
+import java.nio.file.{Files, Path}
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicLong
+import javax.xml.bind.util.JAXBSource
+
+import com.google.common.cache._
+import com.google.common.hash.{HashCode, Hashing}
+import com.pacbio.secondary.smrtlink.analysis.configloaders.ConfigLoader
+import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
+import com.pacbio.secondary.smrtlink.models.EntityCacheMetrics
+import com.pacificbiosciences.pacbiodatasets.DataSetType
+
+import scala.reflect.ClassTag
+
+/**
+  * Key of a parsed DataSet. A modified (or replaced) file is a new key, the stale entry is
+  * evicted by the size bound.
+  *
+  * The key has a hash of the file content, the file modification time (e.g., 1 sec
+  * resolution on some file systems) can't be used to detect a rewrite of the file.
+  * Hashing the (XML) file is cheap compared to the JAXB parsing.
+  */
+case class DataSetCacheKey(metaType: DataSetMetaTypes.DataSetMetaType,
+                           path: Path,
+                           size: Long,
+                           contentHash: HashCode)
+
+object DataSetCacheKey {
+  def apply(metaType: DataSetMetaTypes.DataSetMetaType,
+            path: Path): DataSetCacheKey = {
+    val realPath = path.toRealPath()
+    val content = Files.readAllBytes(realPath)
+    DataSetCacheKey(metaType,
+                    realPath,
+                    content.length.toLong,
+                    Hashing.murmur3_128().hashBytes(content))
+  }
+}
+
+/**
+  * Bounded cache of the parsed DataSet XML files.
+  *
+  * The (JAXB) DataSets are mutable. The cached instance is returned by getReadOnly and
+  * must not be modified by the caller (e.g., converted to JSON or to a service dataset),
+  * get returns a (deep) copy of the cached instance that can be modified (e.g., resolving
+  * or updating the paths).
+  *
+  * The entries are weighted by the size of the XML file, maxSize is the total size (in bytes)
+  * of the cached XML files. The parsed DataSets are a few times larger in memory.
+  *
+  * If disabled, each call loads the DataSet from the file.
+  */
+class DataSetCache(val enabled: Boolean, val maxSize: Long) {
+
+  private val weight = new AtomicLong(0L)
+
+  private def toWeight(key: DataSetCacheKey): Int =
+    Math.min(key.size, Int.MaxValue.toLong).toInt
+
+  private val cache: Cache[DataSetCacheKey, DataSetType] = CacheBuilder
+    .newBuilder()
+    .maximumWeight(maxSize)
+    .weigher(new Weigher[DataSetCacheKey, DataSetType] {
+      override def weigh(key: DataSetCacheKey, value: DataSetType): Int =
+        toWeight(key)
+    })
+    .removalListener(new RemovalListener[DataSetCacheKey, DataSetType] {
+      override def onRemoval(
+          n: RemovalNotification[DataSetCacheKey, DataSetType]): Unit =
+        weight.addAndGet(-toWeight(n.getKey))
+    })
+    .recordStats()
+    .build[DataSetCacheKey, DataSetType]()
+
+  /**
+    * Shared (cached) instance of the DataSet. The DataSet must NOT be modified.
+    */
+  def getReadOnly(dst: DataSetMetaTypes.DataSetMetaType,
+                  path: Path): DataSetType =
+    if (enabled) {
+      val key = DataSetCacheKey(dst, path)
+      cache.get(key, new Callable[DataSetType] {
+        override def call(): DataSetType = {
+          val ds = DataSetLoader.loadType(dst, key.path)
+          weight.addAndGet(toWeight(key))
+          ds
+        }
+      })
+    } else {
+      DataSetLoader.loadType(dst, path)
+    }
+
+  def getReadOnlyAs[T <: DataSetType](dst: DataSetMetaTypes.DataSetMetaType,
+                                      path: Path)(implicit ct: ClassTag[T]): T =
+    ct.runtimeClass.cast(getReadOnly(dst, path)).asInstanceOf[T]
+
+  /**
+    * Copy of the (cached) DataSet that can be modified by the caller
+    */
+  def get(dst: DataSetMetaTypes.DataSetMetaType, path: Path): DataSetType =
+    if (enabled) DataSetCache.copyOf(getReadOnly(dst, path))
+    else DataSetLoader.loadType(dst, path)
+
+  def getAs[T <: DataSetType](dst: DataSetMetaTypes.DataSetMetaType,
+                              path: Path)(implicit ct: ClassTag[T]): T =
+    ct.runtimeClass.cast(get(dst, path)).asInstanceOf[T]
+
+  /**
+    * Copy of the (cached) DataSet with the relative paths resolved
+    */
+  def getAndResolve(dst: DataSetMetaTypes.DataSetMetaType,
+                    path: Path): DataSetType =
+    DataSetLoader.resolveDataSet(get(dst, path), path.toAbsolutePath.getParent)
+
+  def invalidateAll(): Unit = cache.invalidateAll()
+
+  /**
+    * The size and maxSize are the total size (in bytes) of the cached XML files
+    */
+  def metrics: EntityCacheMetrics = {
+    val stats = cache.stats()
+    EntityCacheMetrics("parsed-datasets",
+                       enabled,
+                       weight.get(),
+                       maxSize,
+                       stats.hitCount(),
+                       stats.missCount(),
+                       stats.hitRate(),
+                       stats.evictionCount(),
+                       0L)
+  }
+}
+
+object DataSetCache extends ConfigLoader {
+
+  /**
+    * Deep copy of a DataSet (without serializing to XML)
+    */
+  def copyOf[T <: DataSetType](ds: T): T = {
+    val klass = ds.getClass
+    JaxbContexts
+      .unmarshaller(klass)
+      .unmarshal(new JAXBSource(JaxbContexts.context(klass), ds))
+      .asInstanceOf[T]
+  }
+
+  // Shared by the services, jobs and the dataset export
+  lazy val default = new DataSetCache(
+    conf.getBoolean("smrtflow.datasetCache.enabled"),
+    conf.getBytes("smrtflow.datasetCache.maxSize"))
+}
@@ -206,7 +206,7 @@ abstract class DataSetExporter(zipPath: Path)
         haveFiles += resourceDestPath
         resourceDsType
           .map { dsType =>
-            val ds = DataSetLoader.loadType(dsType, resourcePath)
+            val ds = DataSetCache.default.get(dsType, resourcePath)
             val resources = getResources(ds)
             resources.map { er =>
               writeResourceFile(Paths.get(resourceDestPath).getParent,
@@ -239,7 +239,7 @@ abstract class DataSetExporter(zipPath: Path)
                              dsOutPath: Path,
                              dsType: DataSetMetaTypes.DataSetMetaType,
                              archiveRootPath: Option[Path]): Long = {
-    val ds = ImplicitDataSetLoader.loaderAndResolveType(dsType, dsPath)
+    val ds = DataSetCache.default.getAndResolve(dsType, dsPath)
     writeDataSetImpl(ds, dsPath, dsOutPath.toString, dsType, archiveRootPath)
   }
 
@@ -250,7 +250,7 @@ abstract class DataSetExporter(zipPath: Path)
   protected def writeDataSetAuto(
       dsPath: Path,
       dsType: DataSetMetaTypes.DataSetMetaType): Long = {
-    val ds = ImplicitDataSetLoader.loaderAndResolveType(dsType, dsPath)
+    val ds = DataSetCache.default.getAndResolve(dsType, dsPath)
     val dsId = UUID.fromString(ds.getUniqueId)
     val dsOutPath = s"${dsId}/${dsPath.getFileName.toString}"
     writeDataSetImpl(ds, dsPath, dsOutPath, dsType, None)
@@ -0,0 +1,163 @@
+package com.pacbio.secondary.smrtlink.analysis.datasets.io
+
+import java.io.BufferedInputStream
+import java.nio.file.{Files, Path}
+import java.util.UUID
+import javax.xml.stream.{XMLInputFactory, XMLStreamConstants, XMLStreamReader}
+
+import com.pacbio.secondary.smrtlink.analysis.datasets.{
+  DataSetMetaTypes,
+  DataSetMiniMeta
+}
+import org.joda.time.{DateTime => JodaDateTime}
+
+import scala.util.Try
+
+/**
+  * Header of a DataSet XML
+  *
+  * @param numRecords  NumRecords of the (top level) DataSetMetadata
+  * @param totalLength TotalLength of the (top level) DataSetMetadata
+  */
+case class DataSetHeader(uuid: UUID,
+                         metatype: DataSetMetaTypes.DataSetMetaType,
+                         name: Option[String],
+                         createdAt: Option[JodaDateTime],
+                         numRecords: Option[Long],
+                         totalLength: Option[Long]) {
+  def toMiniMeta: DataSetMiniMeta = DataSetMiniMeta(uuid, metatype)
+}
+
+/**
+  * Streaming (StAX) reader of the header of a DataSet XML.
+  *
+  * The mini metadata is read from the attributes of the root element, the reader
+  * stops after the root element. The header also reads the NumRecords and
+  * TotalLength of the DataSetMetadata and stops before the (large) Collections.
+  *
+  * This is java-ish model that raises, callers should use wrap in Try
+  */
+object DataSetHeaderReader {
+
+  // The factory is thread-safe once configured
+  private val factory = {
+    val f = XMLInputFactory.newInstance()
+    f.setProperty(XMLInputFactory.SUPPORT_DTD, false)
+    f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+    f
+  }
+
+  private def withReader[T](path: Path)(f: XMLStreamReader => T): T = {
+    val stream = new BufferedInputStream(Files.newInputStream(path))
+    try {
+      val reader = factory.createXMLStreamReader(stream)
+      try {
+        f(reader)
+      } finally {
+        reader.close()
+      }
+    } finally {
+      stream.close()
+    }
+  }
+
+  private def toRoot(reader: XMLStreamReader, path: Path): Unit = {
+    while (reader.hasNext && reader.next() != XMLStreamConstants.START_ELEMENT) {}
+    if (!reader.isStartElement)
+      throw new IllegalArgumentException(
+        s"Couldn't parse $path as a DataSet XML file. No root element")
+  }
+
+  private def getAttribute(reader: XMLStreamReader,
+                           name: String): Option[String] =
+    Option(reader.getAttributeValue(null, name))
+
+  private def readMiniMeta(reader: XMLStreamReader,
+                           path: Path): DataSetMiniMeta = {
+    val uniqueId = getAttribute(reader, "UniqueId").getOrElse(
+      throw new IllegalArgumentException(
+        s"Couldn't parse dataset UniqueId from XML file: $path"))
+    val m = getAttribute(reader, "MetaType").getOrElse("")
+
+    val uuid = UUID.fromString(uniqueId)
+
+    val errorMessage =
+      s"Couldn't parse dataset MetaType from '$m' as an XML file: $path"
+
+    val dsMeta = DataSetMetaTypes
+      .toDataSetType(m)
+      .getOrElse(throw new IllegalArgumentException(errorMessage))
+
+    DataSetMiniMeta(uuid, dsMeta)
+  }
+
+  /**
+    * Read the UniqueId and MetaType of the root element
+    */
+  def getMiniMeta(path: Path): DataSetMiniMeta =
+    withReader(path) { reader =>
+      toRoot(reader, path)
+      readMiniMeta(reader, path)
+    }
+
+  /**
+    * Read the MetaType of the root element without validating the UniqueId
+    */
+  def getMetaType(path: Path): Option[DataSetMetaTypes.DataSetMetaType] =
+    withReader(path) { reader =>
+      toRoot(reader, path)
+      getAttribute(reader, "MetaType").flatMap(DataSetMetaTypes.toDataSetType)
+    }
+
+  def getHeader(path: Path): DataSetHeader =
+    withReader(path) { reader =>
+      toRoot(reader, path)
+      val miniMeta = readMiniMeta(reader, path)
+      val name = getAttribute(reader, "Name")
+      val createdAt =
+        getAttribute(reader, "CreatedAt").flatMap(s =>
+          Try(JodaDateTime.parse(s)).toOption)
+
+      // Depth of the root element is 1. Only the DataSetMetadata of the root is
+      // read, not the DataSetMetadata of the nested DataSets.
+      var depth = 1
+      var inMetadata = false
+      var done = false
+      var numRecords: Option[Long] = None
+      var totalLength: Option[Long] = None
+
+      while (!done && reader.hasNext) {
+        reader.next() match {
+          case XMLStreamConstants.START_ELEMENT =>
+            depth += 1
+            reader.getLocalName match {
+              case "DataSetMetadata" if depth == 2 =>
+                inMetadata = true
+              case "TotalLength" if inMetadata && depth == 3 =>
+                // reads through the END_ELEMENT
+                totalLength = Some(reader.getElementText.trim.toLong)
+                depth -= 1
+              case "NumRecords" if inMetadata && depth == 3 =>
+                numRecords = Some(reader.getElementText.trim.toLong)
+                depth -= 1
+              case _ if inMetadata && depth == 3 =>
+                // The counts are the first elements of the DataSetMetadata
+                done = true
+              case _ => ()
+            }
+            done = done || (numRecords.isDefined && totalLength.isDefined)
+          case XMLStreamConstants.END_ELEMENT =>
+            depth -= 1
+            done = inMetadata && depth == 1
+          case _ => ()
+        }
+      }
+
+      DataSetHeader(miniMeta.uuid,
+                    miniMeta.metatype,
+                    name,
+                    createdAt,
+                    numRecords,
+                    totalLength)
+    }
+}
@@ -2,13 +2,6 @@ package com.pacbio.secondary.smrtlink.analysis.datasets.io
 
 import java.io.{ByteArrayOutputStream, StringReader}
 import javax.xml.transform.stream.StreamSource
-import javax.xml.bind._
-
-import org.eclipse.persistence.jaxb.JAXBContextFactory
-import org.eclipse.persistence.jaxb.{
-  MarshallerProperties,
-  UnmarshallerProperties
-}
 
 import spray.json._
 
@@ -21,148 +14,78 @@ import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetFilterProperty
   */
 object DataSetJsonUtils {
 
-  private def contextToMarshaller(jAXBContext: JAXBContext): Marshaller = {
-    //println(s"Context ${jAXBContext.getClass}")
-    val jmarshaller = jAXBContext.createMarshaller()
-    jmarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true)
-    jmarshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false)
-    jmarshaller.setProperty(MarshallerProperties.MEDIA_TYPE,
-                            "application/json")
-    jmarshaller
-  }
-
-  private def contextToUnmarshaller(jAXBContext: JAXBContext): Unmarshaller = {
-    val junmarshaller = jAXBContext.createUnmarshaller()
-    junmarshaller.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, false)
-    junmarshaller.setProperty(UnmarshallerProperties.MEDIA_TYPE,
-                              "application/json")
-    junmarshaller
-  }
-
-  private def contextToJson[A <: DataSetType](jAXBContext: JAXBContext,
+  private def contextToJson[A <: DataSetType](klass: Class[A],
                                               dataset: A): String = {
     val outStream = new ByteArrayOutputStream()
-    contextToMarshaller(jAXBContext).marshal(dataset, outStream)
+    JaxbContexts.jsonMarshaller(klass).marshal(dataset, outStream)
     outStream.toString
   }
 
+  private def fromJson[A <: DataSetType](klass: Class[A], json: String): A =
+    JaxbContexts
+      .jsonUnmarshaller(klass)
+      .unmarshal(new StreamSource(new StringReader(json)), klass)
+      .getValue()
+
   def referenceSetToJson(dataset: ReferenceSet) =
-    contextToJson(JAXBContext.newInstance(classOf[ReferenceSet]), dataset)
+    contextToJson(classOf[ReferenceSet], dataset)
 
-  def referenceSetFromJson(json: String): ReferenceSet = {
-    val ctx = JAXBContext.newInstance(classOf[ReferenceSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[ReferenceSet])
-      .getValue()
-      .asInstanceOf[ReferenceSet]
-  }
+  def referenceSetFromJson(json: String): ReferenceSet =
+    fromJson(classOf[ReferenceSet], json)
 
   def hdfSubreadSetToJson(dataset: HdfSubreadSet) =
-    contextToJson(JAXBContext.newInstance(classOf[HdfSubreadSet]), dataset)
+    contextToJson(classOf[HdfSubreadSet], dataset)
 
-  def hdfSubreadSetFromJson(json: String): HdfSubreadSet = {
-    val ctx = JAXBContext.newInstance(classOf[HdfSubreadSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[HdfSubreadSet])
-      .getValue()
-      .asInstanceOf[HdfSubreadSet]
-  }
+  def hdfSubreadSetFromJson(json: String): HdfSubreadSet =
+    fromJson(classOf[HdfSubreadSet], json)
 
   def subreadSetToJson(dataset: SubreadSet) =
-    contextToJson(JAXBContext.newInstance(classOf[SubreadSet]), dataset)
+    contextToJson(classOf[SubreadSet], dataset)
 
-  def subreadSetFromJson(json: String): SubreadSet = {
-    val ctx = JAXBContext.newInstance(classOf[SubreadSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)), classOf[SubreadSet])
-      .getValue()
-      .asInstanceOf[SubreadSet]
-  }
+  def subreadSetFromJson(json: String): SubreadSet =
+    fromJson(classOf[SubreadSet], json)
 
   def alignmentSetToJson(dataset: AlignmentSet) =
-    contextToJson(JAXBContext.newInstance(classOf[AlignmentSet]), dataset)
+    contextToJson(classOf[AlignmentSet], dataset)
 
-  def alignmentSetFromJson(json: String): AlignmentSet = {
-    val ctx = JAXBContext.newInstance(classOf[AlignmentSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[AlignmentSet])
-      .getValue()
-      .asInstanceOf[AlignmentSet]
-  }
+  def alignmentSetFromJson(json: String): AlignmentSet =
+    fromJson(classOf[AlignmentSet], json)
 
   def barcodeSetToJson(dataset: BarcodeSet) =
-    contextToJson(JAXBContext.newInstance(classOf[BarcodeSet]), dataset)
+    contextToJson(classOf[BarcodeSet], dataset)
 
-  def barcodeSetFromJson(json: String): BarcodeSet = {
-    val ctx = JAXBContext.newInstance(classOf[BarcodeSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)), classOf[BarcodeSet])
-      .getValue()
-      .asInstanceOf[BarcodeSet]
-  }
+  def barcodeSetFromJson(json: String): BarcodeSet =
+    fromJson(classOf[BarcodeSet], json)
 
   def consensusSetToJson(dataset: ConsensusReadSet) =
-    contextToJson(JAXBContext.newInstance(classOf[ConsensusReadSet]), dataset)
+    contextToJson(classOf[ConsensusReadSet], dataset)
 
-  def consensusSetFromJson(json: String): ConsensusReadSet = {
-    val ctx = JAXBContext.newInstance(classOf[ConsensusReadSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[ConsensusReadSet])
-      .getValue()
-      .asInstanceOf[ConsensusReadSet]
-  }
+  def consensusSetFromJson(json: String): ConsensusReadSet =
+    fromJson(classOf[ConsensusReadSet], json)
 
   def consensusAlignmentSetToJson(dataset: ConsensusAlignmentSet) =
-    contextToJson(JAXBContext.newInstance(classOf[ConsensusAlignmentSet]),
-                  dataset)
-
-  def consensusAlignmentSetFromJson(json: String): ConsensusAlignmentSet = {
-    val ctx = JAXBContext.newInstance(classOf[ConsensusAlignmentSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[ConsensusAlignmentSet])
-      .getValue()
-      .asInstanceOf[ConsensusAlignmentSet]
-  }
+    contextToJson(classOf[ConsensusAlignmentSet], dataset)
+
+  def consensusAlignmentSetFromJson(json: String): ConsensusAlignmentSet =
+    fromJson(classOf[ConsensusAlignmentSet], json)
 
   def contigSetToJson(dataset: ContigSet) =
-    contextToJson(JAXBContext.newInstance(classOf[ContigSet]), dataset)
+    contextToJson(classOf[ContigSet], dataset)
 
-  def contigSetFromJson(json: String): ContigSet = {
-    val ctx = JAXBContext.newInstance(classOf[ContigSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)), classOf[ContigSet])
-      .getValue()
-      .asInstanceOf[ContigSet]
-  }
+  def contigSetFromJson(json: String): ContigSet =
+    fromJson(classOf[ContigSet], json)
 
   def gmapReferenceSetToJson(dataset: GmapReferenceSet) =
-    contextToJson(JAXBContext.newInstance(classOf[GmapReferenceSet]), dataset)
+    contextToJson(classOf[GmapReferenceSet], dataset)
 
-  def gmapReferenceSetFromJson(json: String): GmapReferenceSet = {
-    val ctx = JAXBContext.newInstance(classOf[GmapReferenceSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[GmapReferenceSet])
-      .getValue()
-      .asInstanceOf[GmapReferenceSet]
-  }
+  def gmapReferenceSetFromJson(json: String): GmapReferenceSet =
+    fromJson(classOf[GmapReferenceSet], json)
 
   def transcriptSetToJson(dataset: TranscriptSet) =
-    contextToJson(JAXBContext.newInstance(classOf[TranscriptSet]), dataset)
+    contextToJson(classOf[TranscriptSet], dataset)
 
-  def transcriptSetFromJson(json: String): TranscriptSet = {
-    val ctx = JAXBContext.newInstance(classOf[TranscriptSet])
-    contextToUnmarshaller(ctx)
-      .unmarshal(new StreamSource(new StringReader(json)),
-                 classOf[TranscriptSet])
-      .getValue()
-      .asInstanceOf[TranscriptSet]
-  }
+  def transcriptSetFromJson(json: String): TranscriptSet =
+    fromJson(classOf[TranscriptSet], json)
 
 }
 
@@ -2,7 +2,6 @@ package com.pacbio.secondary.smrtlink.analysis.datasets.io
 
 import java.net.URI
 import java.nio.file.{Path, Paths}
-import javax.xml.bind.JAXBContext
 
 import com.typesafe.scalalogging.LazyLogging
 
@@ -33,10 +32,8 @@ import com.pacificbiosciences.pacbiodatasets.{DataSetType, _}
   */
 object DataSetLoader extends LazyLogging {
 
-  private def toUnMarshaller(context: JAXBContext, path: Path) = {
-    val unmarshaller = context.createUnmarshaller()
-    unmarshaller.unmarshal(path.toFile)
-  }
+  private def toUnMarshaller(klass: Class[_], path: Path) =
+    JaxbContexts.unmarshaller(klass).unmarshal(path.toFile)
 
   private def toAbsolute(px: Path, root: Path): Path = {
     if (px.isAbsolute) px else root.resolve(px).toAbsolutePath
@@ -129,7 +126,7 @@ object DataSetLoader extends LazyLogging {
   }
 
   def loadReferenceSet(path: Path): ReferenceSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[ReferenceSet]), path)
+    toUnMarshaller(classOf[ReferenceSet], path)
       .asInstanceOf[ReferenceSet]
 
   def loadAndResolveReferenceSet(path: Path): ReferenceSet =
@@ -139,7 +136,7 @@ object DataSetLoader extends LazyLogging {
     ReferenceSetIO(loadReferenceSet(path), path)
 
   def loadSubreadSet(path: Path): SubreadSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[SubreadSet]), path)
+    toUnMarshaller(classOf[SubreadSet], path)
       .asInstanceOf[SubreadSet]
 
   def loadAndResolveSubreadSet(path: Path): SubreadSet =
@@ -149,7 +146,7 @@ object DataSetLoader extends LazyLogging {
     SubreadSetIO(loadAndResolveSubreadSet(path), path)
 
   def loadHdfSubreadSet(path: Path): HdfSubreadSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[HdfSubreadSet]), path)
+    toUnMarshaller(classOf[HdfSubreadSet], path)
       .asInstanceOf[HdfSubreadSet]
 
   def loadAndResolveHdfSubreadSet(path: Path) =
@@ -159,7 +156,7 @@ object DataSetLoader extends LazyLogging {
     HdfSubreadSetIO(loadHdfSubreadSet(path), path)
 
   def loadAlignmentSet(path: Path): AlignmentSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[AlignmentSet]), path)
+    toUnMarshaller(classOf[AlignmentSet], path)
       .asInstanceOf[AlignmentSet]
 
   def loadAndResolveAlignmentSet(path: Path) =
@@ -169,7 +166,7 @@ object DataSetLoader extends LazyLogging {
     AlignmentSetIO(loadAlignmentSet(path), path)
 
   def loadBarcodeSet(path: Path): BarcodeSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[BarcodeSet]), path)
+    toUnMarshaller(classOf[BarcodeSet], path)
       .asInstanceOf[BarcodeSet]
 
   def loadAndResolveBarcodeSet(path: Path) =
@@ -178,7 +175,7 @@ object DataSetLoader extends LazyLogging {
   def loadBarcodeSetIO(path: Path) = BarcodeSetIO(loadBarcodeSet(path), path)
 
   def loadConsensusReadSet(path: Path): ConsensusReadSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[ConsensusReadSet]), path)
+    toUnMarshaller(classOf[ConsensusReadSet], path)
       .asInstanceOf[ConsensusReadSet]
 
   def loadAndResolveConsensusReadSet(path: Path) =
@@ -188,8 +185,8 @@ object DataSetLoader extends LazyLogging {
     ConsensusReadSetIO(loadConsensusReadSet(path), path)
 
   def loadConsensusAlignmentSet(path: Path): ConsensusAlignmentSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[ConsensusAlignmentSet]),
-                   path).asInstanceOf[ConsensusAlignmentSet]
+    toUnMarshaller(classOf[ConsensusAlignmentSet], path)
+      .asInstanceOf[ConsensusAlignmentSet]
 
   def loadAndResolveConsensusAlignmentSet(path: Path) =
     resolveDataSet(loadConsensusAlignmentSet(path),
@@ -199,7 +196,7 @@ object DataSetLoader extends LazyLogging {
     ConsensusAlignmentSetIO(loadConsensusAlignmentSet(path), path)
 
   def loadContigSet(path: Path): ContigSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[ContigSet]), path)
+    toUnMarshaller(classOf[ContigSet], path)
       .asInstanceOf[ContigSet]
 
   def loadAndResolveContigSet(path: Path) =
@@ -208,7 +205,7 @@ object DataSetLoader extends LazyLogging {
   def loadContigSetIO(path: Path) = ContigSetIO(loadContigSet(path), path)
 
   def loadGmapReferenceSet(path: Path): GmapReferenceSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[GmapReferenceSet]), path)
+    toUnMarshaller(classOf[GmapReferenceSet], path)
       .asInstanceOf[GmapReferenceSet]
 
   def loadAndResolveGmapReferenceSet(path: Path): GmapReferenceSet =
@@ -218,7 +215,7 @@ object DataSetLoader extends LazyLogging {
     GmapReferenceSetIO(loadGmapReferenceSet(path), path)
 
   def loadTranscriptSet(path: Path): TranscriptSet =
-    toUnMarshaller(JAXBContext.newInstance(classOf[TranscriptSet]), path)
+    toUnMarshaller(classOf[TranscriptSet], path)
       .asInstanceOf[TranscriptSet]
 
   def loadAndResolveTranscriptSet(path: Path): TranscriptSet =
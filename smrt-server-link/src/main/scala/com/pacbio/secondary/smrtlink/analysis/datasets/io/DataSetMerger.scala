@@ -7,223 +7,246 @@ import javax.xml.datatype.DatatypeFactory
 import com.pacbio.common.models.Constants
 import com.pacificbiosciences.pacbiobasedatamodel.{
   ExternalResource,
-  IndexedDataType,
   ExternalResources
 }
 import com.pacificbiosciences.pacbiocollectionmetadata.Collections
 import com.pacificbiosciences.pacbiodatasets._
-import com.pacificbiosciences.pacbiosampleinfo.BioSamples
 import com.typesafe.scalalogging.LazyLogging
 import org.joda.time.DateTime
 import collection.JavaConverters._
-import scala.util.Failure
+import scala.collection.mutable
 
-trait DataSetMerger extends LazyLogging {
-  val VERSION = "0.3.0"
-  val TAG_MERGED = "merged"
-
-  /**
-    * Merge a SubreadSet and dataset by using the Unique Id of the Dataset and Merging External Resources using
-    * ResourceId as the hash key.
-    *
-    * The type should be DataSetType, but the XSD model defines numRecords and totalLength on DataSetMetadataType.
-    *
-    * @param datasets
-    * @param name
-    * @tparam T
-    * @return
-    */
-  def merge[T <: DataSetType](datasets: Seq[T],
-                              name: String,
-                              newDataSet: T): T = {
+/**
+  * Streaming merge of DataSets.
+  *
+  * The DataSets are added one at a time and are not retained. Only the unique
+  * External Resources (using ResourceId as the key) and Collections (using the
+  * Context, i.e., movie id, as the key) of the inputs are kept in the merged
+  * DataSet, the NumRecords and TotalLength are summed over the unique DataSets
+  * (using the UniqueId as the key).
+  *
+  * Each input is nested under DataSets as a summary (the attributes, Filters,
+  * counts and references to the shared External Resources) without the
+  * Collections and the nested DataSets of the input.
+  *
+  * @param newDataSet Create a new (empty) DataSet of the output type
+  */
+class DataSetMergeBuilder[T <: DataSetType](newDataSet: () => T) {
 
-    val createdAt = DatatypeFactory
-      .newInstance()
-      .newXMLGregorianCalendar(new DateTime().toGregorianCalendar)
+  private val uniqueIds = mutable.HashSet.empty[String]
+  private val resources = mutable.LinkedHashMap.empty[String, ExternalResource]
+  private val collectionContexts = mutable.HashSet.empty[String]
+  private val collections = new Collections()
+  private val tags = mutable.LinkedHashSet.empty[String]
+  private val dataSets = new DataSetType.DataSets()
 
-    val uds = datasets.map(x => (x.getUniqueId, x)).toMap.values.toList
+  private var metaType: Option[String] = None
+  private var headTags: Option[String] = None
+  private var isReadSet = false
+  private var numRecords = 0L
+  private var totalLength = 0L
 
-    val ds = newDataSet
+  def numDataSets: Int = dataSets.getDataSet.size()
 
-    ds.setName(name)
-    ds.setVersion(Constants.DATASET_VERSION)
-    ds.setUniqueId(UUID.randomUUID().toString)
-    ds.setMetaType(datasets.head.getMetaType)
-    ds.setTags(datasets.head.getTags)
-    // Is this using iso8601 ?
-    ds.setCreatedAt(createdAt)
+  def numUniqueDataSets: Int = uniqueIds.size
 
-    ds.setDescription(
-      s"Merged dataset from ${uds.length} files from ${datasets.length} original files using DatasetMerger $VERSION")
+  def numExternalResources: Int = resources.size
 
-    // Get All Unique External Resources using ResourceId as the key
-    val externalResources = uds
-      .flatMap(_.getExternalResources.getExternalResource.asScala.toList)
-      .map(x => (x.getResourceId, x))
-      .toMap
-      .values
+  // How tags are defined is not clearly defined in the DataSet spec.
+  // This is a bit tragic to try to guess the format based on
+  // a comma separated format that will trim white space on each tag
+  private def parseTags(sx: Option[String]): Seq[String] =
+    sx.map(a => a.split(",").map(_.trim).filter(_.nonEmpty).toSeq)
+      .getOrElse(Nil)
 
-    // Overwrite all External Resources
+  private def addExternalResources(ds: T): ExternalResources = {
     val exs = new ExternalResources()
-    externalResources.foreach { r =>
-      exs.getExternalResource.add(r)
-    }
+    Option(ds.getExternalResources)
+      .map(_.getExternalResource.asScala)
+      .getOrElse(Nil)
+      .foreach { r =>
+        exs.getExternalResource.add(
+          resources.getOrElseUpdate(r.getResourceId, r))
+      }
+    exs
+  }
 
-    val dss = new DataSetType.DataSets()
-    datasets.foreach { ds =>
-      dss.getDataSet.add(ds)
+  private def addReadSetMetadata(ds: ReadSetType,
+                                 isUnique: Boolean): ReadSetMetadataType = {
+    val metadata = new ReadSetMetadataType()
+    Option(ds.getDataSetMetadata).foreach { m =>
+      metadata.setNumRecords(m.getNumRecords)
+      metadata.setTotalLength(m.getTotalLength)
+      if (isUnique) {
+        numRecords += m.getNumRecords
+        totalLength += m.getTotalLength
+        Option(m.getCollections)
+          .map(_.getCollectionMetadata.asScala)
+          .getOrElse(Nil)
+          .foreach { c =>
+            if (collectionContexts.add(c.getContext))
+              collections.getCollectionMetadata.add(c)
+          }
+      }
     }
-
-    ds.setExternalResources(exs)
-    ds.setDataSets(dss)
-    ds
+    metadata
   }
 
   /**
-    * Merge the Collections and BioSamples (SummaryStats not implemented)
-    *
-    *
-    * Unique-ness of Objects:
-    * CollectionMetadata (Context)
-    * BioSamples (UniqueId)
-    *
-    * @param ms
-    * @return
+    * Add a DataSet to the merge. The External Resources and Collections of
+    * the DataSet are shared with the merged DataSet.
     */
-  private def mergeReadSetMetadata(
-      ms: Seq[ReadSetMetadataType]): ReadSetMetadataType = {
-
-    // merge Collections by Context (i.e., movie id)
-    val uniqueCollectionMetadata = ms
-      .filter(_.getCollections != null)
-      .flatMap(
-        _.getCollections.getCollectionMetadata.asScala
-          .map(mx => (mx.getContext, mx))
-          .toMap
-          .values)
+  def add(ds: T): DataSetMergeBuilder[T] = {
+    val isUnique = uniqueIds.add(ds.getUniqueId)
 
-    val collections = new Collections()
-    collections.getCollectionMetadata.addAll(uniqueCollectionMetadata.asJava)
-
-    val metadata = new ReadSetMetadataType()
-    metadata.setCollections(collections)
+    if (metaType.isEmpty) {
+      metaType = Some(ds.getMetaType)
+      headTags = Option(ds.getTags)
+    }
+    parseTags(Option(ds.getTags)).foreach(tags.add)
+
+    val sx = newDataSet()
+    sx.setUniqueId(ds.getUniqueId)
+    sx.setName(ds.getName)
+    sx.setMetaType(ds.getMetaType)
+    sx.setTimeStampedName(ds.getTimeStampedName)
+    sx.setTags(ds.getTags)
+    sx.setVersion(ds.getVersion)
+    sx.setCreatedAt(ds.getCreatedAt)
+    sx.setFilters(ds.getFilters)
+    sx.setExternalResources(addExternalResources(ds))
+
+    (ds, sx) match {
+      case (r: ReadSetType, rx: ReadSetType) =>
+        isReadSet = true
+        rx.setDataSetMetadata(addReadSetMetadata(r, isUnique))
+      case _ => ()
+    }
 
-    metadata
+    dataSets.getDataSet.add(sx)
+    this
   }
 
   /**
-    * Merge subclasses for ReadSet type.
+    * Merged DataSet of the DataSets added so far.
     *
-    * See comments above about the DataSet data model which creates headaches with num records and total length
+    * ReadSets have the union of the tags and the merged tag, the NumRecords
+    * and TotalLength and the Collections of the unique DataSets. Other DataSet
+    * types have the tags of the first DataSet and no merged metadata.
     *
-    * @param datasets Non-empty list of DataSets
-    * @param name     DataSet name
-    * @tparam T Read Type
-    * @return
+    * @param ds (empty) DataSet to write the merged DataSet to
     */
-  private def mergeReadSets[T <: ReadSetType](datasets: Seq[T],
-                                              name: String,
-                                              newDataSet: T): T = {
-    val uuid = UUID.randomUUID()
+  def result(name: String, ds: T = newDataSet()): T = {
+    require(metaType.isDefined, "At least one DataSet is required to merge")
+
     val createdAt = DatatypeFactory
       .newInstance()
       .newXMLGregorianCalendar(new DateTime().toGregorianCalendar)
 
-    val uds = datasets.map(x => (x.getUniqueId, x)).toMap.values.toList
-
-    // Merge common metadata
-    val numRecords = uds.map(_.getDataSetMetadata.getNumRecords).sum
-    val totalLength = uds.map(_.getDataSetMetadata.getTotalLength).sum
-    val description =
-      s"Merged dataset from ${uds.length} files from ${datasets.length} original files using DatasetMerger $VERSION"
-
-    // Overwrite the initial settings
-    val ds = newDataSet
-
-    val mergedReadSetMetadata = mergeReadSetMetadata(
-      uds.map(u => u.getDataSetMetadata))
-
-    // How tags are defined is not clearly defined in the DataSet spec.
-    // This is a bit tragic to try to guess the format based on
-    // a comma separated format that will trim white space on each tag
-    def parseTags(sx: Option[String]): Set[String] = {
-      sx.map(a => a.split(",").map(_.trim).filter(_.nonEmpty).toSet)
-        .getOrElse(Set.empty[String])
-    }
-
-    val tags: Set[String] = datasets
-      .flatMap(x => parseTags(Option(x.getTags)))
-      .toSet ++ Set(TAG_MERGED)
-
-    // Update custom metadata for ReadSet
-    ds.setDataSetMetadata(mergedReadSetMetadata)
-
-    ds.setUniqueId(uuid.toString)
+    ds.setUniqueId(UUID.randomUUID().toString)
     ds.setName(name)
-    ds.setMetaType(datasets.head.getMetaType)
-    ds.setTags(tags.reduceLeftOption(_ + "," + _).getOrElse(""))
+    ds.setMetaType(metaType.get)
     ds.setCreatedAt(createdAt)
     ds.setVersion(Constants.DATASET_VERSION)
-
-    ds.getDataSetMetadata.setNumRecords(numRecords)
-    ds.getDataSetMetadata.setTotalLength(totalLength)
-
-    ds.setDescription(description)
-
-    // Get All Unique External Resources using ResourceId as the key
-    val externalResources = uds
-      .filter(_.getExternalResources != null)
-      .flatMap(_.getExternalResources.getExternalResource.asScala)
-      .map(x => (x.getResourceId, x))
-      .toMap
-      .values
+    ds.setDescription(
+      s"Merged dataset from $numUniqueDataSets files from $numDataSets original files using DatasetMerger ${DataSetMerger.VERSION}")
 
     // Overwrite all External Resources
     val exs = new ExternalResources()
+    exs.getExternalResource.addAll(resources.values.asJavaCollection)
     ds.setExternalResources(exs)
-    ds.getExternalResources.getExternalResource
-      .addAll(externalResources.asJavaCollection)
-
-    val dss = new DataSetType.DataSets()
-    ds.setDataSets(dss)
-    ds.getDataSets.getDataSet.addAll(datasets.asJava)
+    ds.setDataSets(dataSets)
+
+    ds match {
+      case rs: ReadSetType if isReadSet =>
+        val metadata = new ReadSetMetadataType()
+        metadata.setCollections(collections)
+        metadata.setNumRecords(numRecords.toInt)
+        metadata.setTotalLength(totalLength)
+        rs.setDataSetMetadata(metadata)
+        val mergedTags = (tags.toSeq :+ DataSetMerger.TAG_MERGED).distinct
+        ds.setTags(mergedTags.mkString(","))
+      case _ =>
+        ds.setTags(headTags.orNull)
+    }
 
     ds
   }
+}
+
+trait DataSetMerger extends LazyLogging {
+  val VERSION = "0.3.0"
+  val TAG_MERGED = "merged"
+
+  private def mergeAll[T <: DataSetType](datasets: TraversableOnce[T],
+                                         name: String,
+                                         newDataSet: () => T): T = {
+    val builder = new DataSetMergeBuilder[T](newDataSet)
+    datasets.foreach(builder.add)
+    builder.result(name)
+  }
+
+  /**
+    * Merge a SubreadSet and dataset by using the Unique Id of the Dataset and Merging External Resources using
+    * ResourceId as the hash key.
+    *
+    * The type should be DataSetType, but the XSD model defines numRecords and totalLength on DataSetMetadataType.
+    *
+    * @param datasets
+    * @param name
+    * @tparam T
+    * @return
+    */
+  def merge[T <: DataSetType](datasets: Seq[T],
+                              name: String,
+                              newDataSet: T): T = {
+    val builder = new DataSetMergeBuilder[T](
+      () =>
+        newDataSet.getClass
+          .getDeclaredConstructor()
+          .newInstance()
+          .asInstanceOf[T])
+    datasets.foreach(builder.add)
+    builder.result(name, newDataSet)
+  }
 
   def mergeHdfSubreadSets(datasets: Seq[HdfSubreadSet],
                           name: String): HdfSubreadSet =
-    mergeReadSets(datasets, name, new HdfSubreadSet())
+    mergeAll(datasets, name, () => new HdfSubreadSet())
   def mergeSubreadSets(datasets: Seq[SubreadSet], name: String): SubreadSet =
-    mergeReadSets(datasets, name, new SubreadSet())
+    mergeAll(datasets, name, () => new SubreadSet())
 
   def mergeAlignmentSets(datasets: Seq[AlignmentSet],
                          name: String): AlignmentSet =
-    merge[AlignmentSet](datasets, name, new AlignmentSet())
+    mergeAll(datasets, name, () => new AlignmentSet())
 
+  /**
+    * Load and merge the DataSets one at a time. The peak memory is bounded by
+    * the merged DataSet (i.e., the unique External Resources and Collections)
+    * and a single input DataSet.
+    */
   private def mergeDataSetPaths[T <: DataSetType](
       loader: Path => T,
-      merger: (Seq[T], String) => T): (Seq[Path], String) => T = {
-    (paths, name) =>
-      merger(paths.map(px => loader(px)), name)
+      newDataSet: () => T): (Seq[Path], String) => T = { (paths, name) =>
+    mergeAll[T](paths.iterator.map(px => loader(px)), name, newDataSet)
   }
 
   def mergeSubreadSetPaths(paths: Seq[Path],
                            name: String = "merged-subreadset"): SubreadSet =
     mergeDataSetPaths[SubreadSet](DataSetLoader.loadAndResolveSubreadSet,
-                                  mergeSubreadSets)(paths, name)
+                                  () => new SubreadSet())(paths, name)
 
   def mergeHdfSubreadSetPaths(
       paths: Seq[Path],
       name: String = "merged-hdfsubreadset"): HdfSubreadSet =
     mergeDataSetPaths[HdfSubreadSet](DataSetLoader.loadAndResolveHdfSubreadSet,
-                                     mergeHdfSubreadSets)(paths, name)
+                                     () => new HdfSubreadSet())(paths, name)
 
   def mergeAlignmentSetPaths(
       paths: Seq[Path],
       name: String = "merged-alignmentset"): AlignmentSet =
     mergeDataSetPaths[AlignmentSet](DataSetLoader.loadAlignmentSet,
-                                    mergeAlignmentSets)(paths, name)
+                                    () => new AlignmentSet())(paths, name)
 
   /**
     * Merge datasets and write to an output file
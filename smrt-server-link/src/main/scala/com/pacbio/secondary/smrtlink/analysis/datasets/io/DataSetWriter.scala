@@ -1,7 +1,7 @@
 package com.pacbio.secondary.smrtlink.analysis.datasets.io
 
 import java.nio.file.Path
-import javax.xml.bind._
+import javax.xml.bind.Marshaller
 
 import com.pacificbiosciences.pacbiodatasets._
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
@@ -16,72 +16,69 @@ import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
   */
 object DataSetWriter {
 
-  private def toMarshaller(jAXBContext: JAXBContext): Marshaller = {
-    val jaxbMarshaller = jAXBContext.createMarshaller()
-    // output pretty printed
-    jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true)
-    jaxbMarshaller
-  }
+  // output pretty printed (see JaxbContexts)
+  private def toMarshaller(klass: Class[_]): Marshaller =
+    JaxbContexts.marshaller(klass)
 
   def writeSubreadSet(dataset: SubreadSet, path: Path): SubreadSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[SubreadSetType]))
+    toMarshaller(classOf[SubreadSetType])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeHdfSubreadSet(dataset: HdfSubreadSet, path: Path): HdfSubreadSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[HdfSubreadSet]))
+    toMarshaller(classOf[HdfSubreadSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeReferenceSet(dataset: ReferenceSet, path: Path): ReferenceSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[ReferenceSet]))
+    toMarshaller(classOf[ReferenceSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeAlignmentSet(dataset: AlignmentSet, path: Path): AlignmentSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[AlignmentSet]))
+    toMarshaller(classOf[AlignmentSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeBarcodeSet(dataset: BarcodeSet, path: Path): BarcodeSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[BarcodeSet]))
+    toMarshaller(classOf[BarcodeSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeConsensusReadSet(dataset: ConsensusReadSet,
                             path: Path): ConsensusReadSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[ConsensusReadSet]))
+    toMarshaller(classOf[ConsensusReadSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeContigSet(dataset: ContigSet, path: Path): ContigSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[ContigSet]))
+    toMarshaller(classOf[ContigSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeConsensusAlignmentSet(dataset: ConsensusAlignmentSet,
                                  path: Path): ConsensusAlignmentSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[ConsensusAlignmentSet]))
+    toMarshaller(classOf[ConsensusAlignmentSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeGmapReferenceSet(dataset: GmapReferenceSet,
                             path: Path): GmapReferenceSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[GmapReferenceSet]))
+    toMarshaller(classOf[GmapReferenceSet])
       .marshal(dataset, path.toFile)
     dataset
   }
 
   def writeTranscriptSet(dataset: TranscriptSet, path: Path): TranscriptSet = {
-    toMarshaller(JAXBContext.newInstance(classOf[TranscriptSet]))
+    toMarshaller(classOf[TranscriptSet])
       .marshal(dataset, path.toFile)
     dataset
   }
@@ -0,0 +1,89 @@
+package com.pacbio.secondary.smrtlink.analysis.datasets.io
+
+import java.util.concurrent.ConcurrentHashMap
+import javax.xml.bind.{JAXBContext, Marshaller, Unmarshaller}
+
+import org.eclipse.persistence.jaxb.{
+  MarshallerProperties,
+  UnmarshallerProperties
+}
+
+import scala.collection.mutable
+
+/**
+  * Registry of the JAXB contexts of the PacBio dataset and data model classes.
+  *
+  * Creating a JAXBContext is expensive (the classes are introspected), while the
+  * context is thread-safe and is created once per class. The Marshallers and
+  * Unmarshallers are NOT thread-safe, they're cached per thread and must not be
+  * shared with (or retained for) another thread.
+  */
+object JaxbContexts {
+
+  private val contexts = new ConcurrentHashMap[Class[_], JAXBContext]()
+
+  def context(klass: Class[_]): JAXBContext =
+    contexts.computeIfAbsent(
+      klass,
+      new java.util.function.Function[Class[_], JAXBContext] {
+        override def apply(k: Class[_]): JAXBContext =
+          JAXBContext.newInstance(k)
+      }
+    )
+
+  private class PerThread[T](create: JAXBContext => T) {
+    private val local = new ThreadLocal[mutable.Map[Class[_], T]] {
+      override def initialValue(): mutable.Map[Class[_], T] =
+        mutable.Map.empty[Class[_], T]
+    }
+
+    def apply(klass: Class[_]): T =
+      local.get().getOrElseUpdate(klass, create(context(klass)))
+  }
+
+  private val xmlUnmarshallers =
+    new PerThread[Unmarshaller](_.createUnmarshaller())
+
+  private val xmlMarshallers = new PerThread[Marshaller]({ ctx =>
+    val m = ctx.createMarshaller()
+    // output pretty printed
+    m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true)
+    m
+  })
+
+  private val jsonUnmarshallers = new PerThread[Unmarshaller]({ ctx =>
+    val u = ctx.createUnmarshaller()
+    u.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, false)
+    u.setProperty(UnmarshallerProperties.MEDIA_TYPE, "application/json")
+    u
+  })
+
+  private val jsonMarshallers = new PerThread[Marshaller]({ ctx =>
+    val m = ctx.createMarshaller()
+    m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true)
+    m.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false)
+    m.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json")
+    m
+  })
+
+  /**
+    * XML Unmarshaller of the calling thread
+    */
+  def unmarshaller(klass: Class[_]): Unmarshaller = xmlUnmarshallers(klass)
+
+  /**
+    * (Pretty printed) XML Marshaller of the calling thread
+    */
+  def marshaller(klass: Class[_]): Marshaller = xmlMarshallers(klass)
+
+  /**
+    * JSON (without the root element) Unmarshaller of the calling thread
+    */
+  def jsonUnmarshaller(klass: Class[_]): Unmarshaller =
+    jsonUnmarshallers(klass)
+
+  /**
+    * JSON (without the root element) Marshaller of the calling thread
+    */
+  def jsonMarshaller(klass: Class[_]): Marshaller = jsonMarshallers(klass)
+}
@@ -39,24 +39,18 @@ package object datasets {
       * @param path Path to the DataSet
       * @return
       */
-    def getDataSetMiniMeta(path: Path): DataSetMiniMeta = {
-      // This should be a streaming model to parse the XML
-      val xs = scala.xml.XML.loadFile(path.toFile)
+    def getDataSetMiniMeta(path: Path): DataSetMiniMeta =
+      DataSetHeaderReader.getMiniMeta(path)
 
-      val uniqueId = xs.attributes("UniqueId").toString()
-      val m = xs.attributes("MetaType").toString()
-
-      val uuid = UUID.fromString(uniqueId)
-
-      val errorMessage =
-        s"Couldn't parse dataset MetaType from '$m' as an XML file: $path"
-
-      val dsMeta = DataSetMetaTypes
-        .toDataSetType(m)
-        .getOrElse(throw new IllegalArgumentException(errorMessage))
-
-      DataSetMiniMeta(uuid, dsMeta)
-    }
+    /**
+      * Extract the header (mini metadata, name, createdAt, numRecords and totalLength) from
+      * the DataSet without parsing the entire XML.
+      *
+      * @param path Path to the DataSet
+      * @return
+      */
+    def getDataSetHeader(path: Path): DataSetHeader =
+      DataSetHeaderReader.getHeader(path)
 
     private def parseXml(path: Path) = {
       Try { scala.xml.XML.loadFile(path.toFile) } match {
@@ -137,6 +137,9 @@ object JobModels {
     val SUBMIT_DEFAULT_MULTI_JOB = false
 
     val BARCODE_SET_MAX_NUM_RECORDS = 384
+
+    // Job priority. SUBMITTED jobs with a higher priority are run first
+    val DEFAULT_PRIORITY = 0
   }
 
   // This needs to be made a proper type
@@ -323,10 +326,16 @@ object JobModels {
   trait JobResourceBase {
     val jobId: UUID
     val path: Path
+    // Epoch (attempts) of the lease of the job when the run was started. None if the
+    // job was run without a lease.
+    val leaseEpoch: Option[Int]
   }
 
   // This is a terrible name
-  case class JobResource(jobId: UUID, path: Path) extends JobResourceBase
+  case class JobResource(jobId: UUID,
+                         path: Path,
+                         leaseEpoch: Option[Int] = None)
+      extends JobResourceBase
 
   trait JobResult {
     val uuid: UUID
@@ -463,7 +472,8 @@ object JobModels {
                        parentMultiJobId: Option[Int] = None,
                        importedAt: Option[JodaDateTime] = None,
                        tags: String = "",
-                       subJobTypeId: Option[String] = None)
+                       subJobTypeId: Option[String] = None,
+                       priority: Int = JobConstants.DEFAULT_PRIORITY)
       extends SmrtLinkJob {
 
     def toEngineCoreJob: EngineCoreJob = {
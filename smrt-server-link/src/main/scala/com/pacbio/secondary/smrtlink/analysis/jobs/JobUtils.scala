@@ -82,56 +82,6 @@ trait JobUtils extends SecondaryJobJsonProtocol with LazyLogging {
       }
   }
 
-  /**
-    * Collapses a list of core job states into a single state that captures the state
-    * of the MultiJob.
-    *
-    * Any core job in Submitted, or Running state will translate into RUNNING at
-    * the mulit-job level
-    *
-    * @return
-    */
-  private def reduceJobStates(
-      s1: AnalysisJobStates.JobStates,
-      s2: AnalysisJobStates.JobStates): AnalysisJobStates.JobStates = {
-    (s1, s2) match {
-      case (AnalysisJobStates.CREATED, AnalysisJobStates.CREATED) =>
-        AnalysisJobStates.CREATED
-      case (AnalysisJobStates.RUNNING, AnalysisJobStates.RUNNING) =>
-        AnalysisJobStates.RUNNING
-      case (AnalysisJobStates.SUCCESSFUL, AnalysisJobStates.SUCCESSFUL) =>
-        AnalysisJobStates.SUCCESSFUL
-      case (AnalysisJobStates.SUBMITTED, AnalysisJobStates.SUBMITTED) =>
-        AnalysisJobStates.SUBMITTED
-      case (AnalysisJobStates.SUBMITTED, AnalysisJobStates.CREATED) =>
-        AnalysisJobStates.SUBMITTED
-      case (AnalysisJobStates.CREATED, AnalysisJobStates.SUBMITTED) =>
-        AnalysisJobStates.RUNNING
-      case (AnalysisJobStates.SUBMITTED, AnalysisJobStates.SUCCESSFUL) =>
-        AnalysisJobStates.SUBMITTED
-      case (AnalysisJobStates.SUCCESSFUL, AnalysisJobStates.SUBMITTED) =>
-        AnalysisJobStates.SUBMITTED
-      // This is unclear what this means. Defaulting to Failed
-      case (AnalysisJobStates.UNKNOWN, AnalysisJobStates.UNKNOWN) =>
-        AnalysisJobStates.FAILED
-      // If any child job has failed, then fail all jobs
-      case (AnalysisJobStates.FAILED, _) => AnalysisJobStates.FAILED
-      case (_, AnalysisJobStates.FAILED) => AnalysisJobStates.FAILED
-      // If any child job has been Terminated, then mark the MultiJob as failed
-      case (AnalysisJobStates.TERMINATED, _) => AnalysisJobStates.FAILED
-      case (_, AnalysisJobStates.TERMINATED) => AnalysisJobStates.FAILED
-      // If
-      case (AnalysisJobStates.RUNNING, _) => AnalysisJobStates.RUNNING
-      case (_, AnalysisJobStates.RUNNING) => AnalysisJobStates.RUNNING
-      case (_, AnalysisJobStates.CREATED) => AnalysisJobStates.RUNNING
-      case (AnalysisJobStates.CREATED, _) => AnalysisJobStates.RUNNING
-      case (_, _) =>
-        logger.error(
-          s"Unclear mapping of MultiJob state from $s1 and $s2. Defaulting to ${AnalysisJobStates.FAILED}")
-        AnalysisJobStates.FAILED
-    }
-  }
-
   private def reduceFromSingleState(
       state: AnalysisJobStates.JobStates): AnalysisJobStates.JobStates = {
     state match {
@@ -146,16 +96,45 @@ trait JobUtils extends SecondaryJobJsonProtocol with LazyLogging {
   }
 
   /**
-    * Collapse the Children job states into a reflection of the overall state of the MultiJob
+    * Collapse the number of Children jobs in each state into the overall state of the MultiJob.
+    *
+    * This is independent of the order of the children jobs and is computed without loading
+    * the children jobs.
+    *
+    * - A single child job: RUNNING if the child job is CREATED, SUBMITTED or RUNNING,
+    *   FAILED if the child job is FAILED, TERMINATED or UNKNOWN, otherwise SUCCESSFUL
+    * - Any FAILED, TERMINATED or UNKNOWN child job: FAILED
+    * - Any RUNNING child job: RUNNING
+    * - All children jobs in the same (CREATED, SUBMITTED or SUCCESSFUL) state: that state
+    * - Only SUBMITTED and SUCCESSFUL children jobs: SUBMITTED
+    * - Otherwise (CREATED with SUBMITTED or SUCCESSFUL children jobs): RUNNING
+    *
+    * @param counts  Number of children jobs by state
+    * @param default State of a MultiJob without children jobs
     */
-  def determineMultiJobState(
-      states: Seq[AnalysisJobStates.JobStates],
+  def determineMultiJobStateFromCounts(
+      counts: Map[AnalysisJobStates.JobStates, Int],
       default: AnalysisJobStates.JobStates): AnalysisJobStates.JobStates = {
-    states match {
-      case Nil => default
-      case s1 :: Nil => reduceFromSingleState(s1)
-      case _ => states.reduce(reduceJobStates)
-    }
+    def n(state: AnalysisJobStates.JobStates): Int =
+      counts.getOrElse(state, 0)
+
+    val total = counts.values.filter(_ > 0).sum
+    val failed = Seq(AnalysisJobStates.FAILED,
+                     AnalysisJobStates.TERMINATED,
+                     AnalysisJobStates.UNKNOWN).map(n).sum
+
+    if (total == 0) default
+    else if (total == 1)
+      reduceFromSingleState(counts.collectFirst {
+        case (state, 1) => state
+      }.get)
+    else if (failed > 0) AnalysisJobStates.FAILED
+    else if (n(AnalysisJobStates.RUNNING) > 0) AnalysisJobStates.RUNNING
+    else if (n(AnalysisJobStates.SUCCESSFUL) == total)
+      AnalysisJobStates.SUCCESSFUL
+    else if (n(AnalysisJobStates.CREATED) == total) AnalysisJobStates.CREATED
+    else if (n(AnalysisJobStates.CREATED) == 0) AnalysisJobStates.SUBMITTED
+    else AnalysisJobStates.RUNNING
   }
 }
 
@@ -451,8 +451,17 @@ trait EngineJobJsonSupport
 
   implicit object EngineJobJsonFormat extends RootJsonFormat[EngineJob] {
 
+    // Fields added after the last release that are populated with the default value if missing
+    private def withDefaults(json: JsValue): JsValue = json match {
+      case JsObject(fields) if !fields.contains("priority") =>
+        JsObject(fields + ("priority" -> JsNumber(JobConstants.DEFAULT_PRIORITY)))
+      case _ => json
+    }
+
     override def read(json: JsValue): EngineJob =
-      Try(EngineJobNewestJsonSupport.engineJobJsonNewestFormat.read(json)) match {
+      Try(
+        EngineJobNewestJsonSupport.engineJobJsonNewestFormat.read(
+          withDefaults(json))) match {
         case Success(engineJob) => engineJob
         case Failure(_) =>
           EngineJob510JsonSupport.smrtLink510engineJobJson
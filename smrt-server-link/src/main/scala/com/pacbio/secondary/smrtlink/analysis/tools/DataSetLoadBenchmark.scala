@@ -0,0 +1,106 @@
+package com.pacbio.secondary.smrtlink.analysis.tools
+
+import java.io.File
+import javax.xml.bind.JAXBContext
+
+import com.pacbio.common.logging.{LoggerConfig, LoggerOptions}
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetLoader
+import com.pacificbiosciences.pacbiodatasets.SubreadSet
+import org.joda.time.{DateTime => JodaDateTime}
+import scopt.OptionParser
+
+import scala.util.{Failure, Success, Try}
+
+case class DataSetLoadBenchmarkOptions(path: File, numLoads: Int = 20)
+    extends LoggerConfig
+
+/**
+  * Compare the load time of a SubreadSet XML with the shared JAXB context (see
+  * JaxbContexts) and with a new JAXB context per load. The times depend on the host
+  * (e.g., GC, other load), hence this is a tool and not a unit test.
+  */
+object DataSetLoadBenchmark
+    extends CommandLineToolRunner[DataSetLoadBenchmarkOptions] {
+
+  val VERSION = "0.1.0"
+  val DESCRIPTION =
+    "Compare the SubreadSet XML load time with a shared and a new JAXB context"
+  val toolId = "pbscala.tools.dataset_load_benchmark"
+
+  val defaults = DataSetLoadBenchmarkOptions(new File("."))
+
+  val parser =
+    new OptionParser[DataSetLoadBenchmarkOptions]("dataset-load-benchmark") {
+      head(DESCRIPTION, VERSION)
+
+      arg[File]("subreadset-xml") required () action { (x, c) =>
+        c.copy(path = x)
+      } text "Path to SubreadSet XML"
+
+      opt[Int]('n', "num-loads") action { (x, c) =>
+        c.copy(numLoads = x)
+      } validate { x =>
+        if (x > 0) success else failure("num-loads must be > 0")
+      } text s"Number of loads of each mode (default ${defaults.numLoads})"
+
+      opt[Unit]('h', "help") action { (x, c) =>
+        showUsage
+        sys.exit(0)
+      } text "Show Options and exit"
+
+      opt[Unit]("version") action { (x, c) =>
+        showVersion
+        sys.exit(0)
+      } text "Show tool version and exit"
+
+      // add the shared `--debug` and logging options
+      LoggerOptions.add(this.asInstanceOf[OptionParser[LoggerConfig]])
+    }
+
+  // mean time (in ms) of n calls
+  private def meanMs(n: Int)(f: => Any): Double = {
+    val startedAt = System.nanoTime()
+    (0 until n).foreach(_ => f)
+    (System.nanoTime() - startedAt) / n / 1000000.0
+  }
+
+  def run(config: DataSetLoadBenchmarkOptions)
+    : Either[ToolFailure, ToolSuccess] = {
+    val startedAt = JodaDateTime.now()
+    val path = config.path.toPath.toAbsolutePath
+
+    def loadWithNewContext() =
+      JAXBContext
+        .newInstance(classOf[SubreadSet])
+        .createUnmarshaller()
+        .unmarshal(path.toFile)
+
+    def loadWithSharedContext() = DataSetLoader.loadSubreadSet(path)
+
+    val tx = Try {
+      // warm up
+      loadWithNewContext()
+      loadWithSharedContext()
+
+      val newContextMs = meanMs(config.numLoads)(loadWithNewContext())
+      val sharedContextMs = meanMs(config.numLoads)(loadWithSharedContext())
+      f"SubreadSet $path mean load time (${config.numLoads} loads) new context:$newContextMs%.2fms shared context:$sharedContextMs%.2fms"
+    }
+
+    tx match {
+      case Success(msg) =>
+        println(msg)
+        Right(ToolSuccess(toolId, computeTimeDeltaFromNow(startedAt)))
+      case Failure(ex) =>
+        Left(
+          ToolFailure(toolId,
+                      computeTimeDeltaFromNow(startedAt),
+                      s"Failed to load $path. ${ex.getMessage}"))
+    }
+  }
+}
+
+object DataSetLoadBenchmarkApp extends App {
+  import DataSetLoadBenchmark._
+  runner(args)
+}
@@ -5,6 +5,7 @@ import java.nio.file.{Path, Paths}
 
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes.DataSetMetaType
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetHeaderReader
 import scopt.OptionParser
 
 object Modes {
@@ -178,8 +179,7 @@ object PbDataSetToolsApp extends App {
     * @return
     */
   def loadMetaTypeFrom(path: Path): Option[DataSetMetaType] =
-    DataSetMetaTypes.toDataSetType(
-      (scala.xml.XML.loadFile(path.toFile) \ "@MetaType").text)
+    DataSetHeaderReader.getMetaType(path)
 
   def runValidator(opts: ValidOpts): Int = {
     println("Running validator")
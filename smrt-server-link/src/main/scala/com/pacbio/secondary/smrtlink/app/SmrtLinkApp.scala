@@ -11,8 +11,9 @@ import akka.event.Logging.LogLevel
 import akka.event.{Logging, LoggingAdapter}
 import akka.http.scaladsl.Http
 import akka.http.scaladsl.Http.ServerBinding
-import akka.http.scaladsl.model.HttpRequest
-import akka.http.scaladsl.server.{Route, RouteResult}
+import akka.http.scaladsl.model.{HttpMethods, HttpRequest}
+import akka.http.scaladsl.model.headers.{`Set-Cookie`, HttpCookie, RawHeader}
+import akka.http.scaladsl.server.{Directives, Route, RouteResult}
 import akka.http.scaladsl.server.RouteResult.{Complete, Rejected}
 import akka.http.scaladsl.server.directives.{
   DebuggingDirectives,
@@ -42,11 +43,16 @@ import com.pacbio.secondary.smrtlink.models.{
 import com.pacbio.secondary.smrtlink.services._
 import com.pacbio.common.logging.LoggerOptions
 import com.pacbio.common.models.Constants
+import com.pacbio.secondary.smrtlink.SmrtLinkConstants.{
+  LAST_WRITE_COOKIE,
+  LAST_WRITE_HEADER
+}
 import com.pacbio.common.utils.OSUtils
 import com.pacbio.secondary.smrtlink.actors.AlarmManagerRunnerActor.RunAlarms
 import com.pacbio.secondary.smrtlink.actors.CommonMessages.GetEngineManagerStatus
 import com.pacbio.secondary.smrtlink.actors.DataIntegrityManagerActor.RunIntegrityChecks
 import com.pacbio.secondary.smrtlink.actors.DbBackupActor.SubmitDbBackUpJob
+import com.pacbio.secondary.smrtlink.actors.JobArchiveActor.ArchiveJobs
 import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.EngineManagerStatus
 import com.pacbio.secondary.smrtlink.auth.JwtUtilsImplProvider
 import com.pacbio.secondary.smrtlink.file.JavaFileSystemUtilProvider
@@ -170,8 +176,10 @@ trait SmrtLinkProviders
     with ReportViewRulesResourceProvider
     with ReportViewRulesServiceProvider
     with JobsServiceProvider
+    with EngineExecutionContextsProvider
     with EngineCoreJobManagerActorProvider
     with DbBackupActorProvider
+    with JobArchiveActorProvider
     with SmrtLinkEveMetricsProcessActor {
 
   override val baseServiceId: Singleton[String] = Singleton(
@@ -209,6 +217,7 @@ trait SmrtLinkApi
   lazy val alarmManagerRunnerActor = providers.alarmManagerRunnerActor()
   lazy val engineManagerActor = providers.engineManagerActor()
   lazy val dbBackupActor = providers.dbBackupActor()
+  lazy val jobArchiveActor = providers.jobArchiveActor()
 
   lazy val eventManagerActor = providers.eventManagerActor()
   lazy val smrtLinkEveMetricsProcessActor =
@@ -284,11 +293,42 @@ trait SmrtLinkApi
 
   //val routesLogged = DebuggingDirectives.logRequestResult("System", Logging.InfoLevel)(routes)
 
+  /**
+    * The searches and listings of the DAO are read from the read replica (if configured).
+    *
+    * The response of a write request (i.e., not a GET or HEAD) carries the time of the
+    * write as a cookie and a header. The listing routes read the cookie (or the header)
+    * of the client back (see SmrtDirectives.extractReadRouting) and pass it to the DAO,
+    * a read within the read-your-writes window is made from the primary db, so the client
+    * will read its own writes.
+    */
+  private def readYourWritesRoutes(routes: Route): Route = {
+    import Directives._
+
+    extractMethod { method =>
+      if (method == HttpMethods.GET || method == HttpMethods.HEAD) {
+        routes
+      } else {
+        // The window starts when the write is completed
+        mapResponse { response =>
+          val writtenAt = System.currentTimeMillis().toString
+          response.addHeaders(
+            List(`Set-Cookie`(HttpCookie(LAST_WRITE_COOKIE,
+                                         writtenAt,
+                                         path = Some("/"))),
+                 RawHeader(LAST_WRITE_HEADER, writtenAt)))
+        }(routes)
+      }
+    }
+  }
+
   /**
     * Fundamental Starting up of the WebServices
     */
   private def start(host: String, port: Int): Future[ServerBinding] =
-    Http().bindAndHandle(logResponseTimeRoutes(routes), host, port)
+    Http().bindAndHandle(logResponseTimeRoutes(readYourWritesRoutes(routes)),
+                         host,
+                         port)
 
   /**
     * Fundamental Post Startup hook
@@ -313,6 +353,16 @@ trait SmrtLinkApi
                        dataIntegrityManagerActor,
                        RunIntegrityChecks)
 
+    jobArchiveActor match {
+      case Some(actor) =>
+        val jobArchiveSchedule =
+          providers.conf.getString("pacBioSystem.jobArchiveSchedule")
+        logger.info(s"Scheduling $jobArchiveSchedule Job Archive")
+        scheduler.schedule(jobArchiveSchedule, actor, ArchiveJobs)
+      case _ =>
+        logger.info("Job archive is disabled")
+    }
+
     // These are all Unit return types
     providers.rootDataBaseBackUpDir() match {
       case Some(rootBackUpDir) =>
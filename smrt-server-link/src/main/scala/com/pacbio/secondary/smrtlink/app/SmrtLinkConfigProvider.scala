@@ -1,5 +1,6 @@
 package com.pacbio.secondary.smrtlink.app
 
+import java.lang.management.ManagementFactory
 import java.net.URL
 import java.nio.file.{Files, Path, Paths}
 import java.util.UUID
@@ -21,8 +22,15 @@ import com.pacbio.secondary.smrtlink.analysis.pbsmrtpipe.{
 import com.pacbio.secondary.smrtlink.io.PacBioDataBundleIOUtils
 import com.pacbio.secondary.smrtlink.loaders.ManifestLoader
 import com.pacbio.secondary.smrtlink.models.ConfigModels.{
+  EngineExecutionPoolsConfig,
+  EngineResourceConfig,
+  EntityCacheConfig,
+  JobArchiveConfig,
+  JobLeaseConfig,
+  JobWatchdogConfig,
   MailConfig,
-  SystemJobConfig
+  SystemJobConfig,
+  WriteBehindConfig
 }
 import com.pacbio.secondary.smrtlink.models.{EngineConfig, PacBioDataBundleIO}
 import com.pacbio.secondary.smrtlink.utils.SmrtServerIdUtils
@@ -161,6 +169,108 @@ trait SmrtLinkConfigProvider extends SmrtServerIdUtils with LazyLogging {
   // host via https
   val smrtLinkUiPort: Singleton[Int] = Singleton(() => 8243)
 
+  // None will disable the LISTEN/NOTIFY dispatch of SUBMITTED jobs
+  val jobNotifyPollInterval: Singleton[Option[FiniteDuration]] =
+    Singleton(
+      () =>
+        Some(conf.getInt("smrtflow.engine.jobNotifyPollMillis"))
+          .filter(_ > 0)
+          .map(_.millis))
+
+  // None will disable the host resource budget of the job scheduler
+  val engineResourceConfig: Singleton[Option[EngineResourceConfig]] =
+    Singleton { () =>
+      if (conf.getBoolean("smrtflow.engine.resources.enabled"))
+        Some(
+          EngineResourceConfig(
+            conf.getInt("smrtflow.engine.resources.maxNproc"),
+            conf.getInt("smrtflow.engine.resources.maxMemoryMb"),
+            conf.getInt("smrtflow.engine.resources.memoryPerProcMb"),
+            conf
+              .getInt("smrtflow.engine.resources.maxBackfillWaitMinutes")
+              .minutes
+          ))
+      else None
+    }
+
+  // None will disable the leases (and the heartbeat) of the jobs run by this node
+  val jobLeaseConfig: Singleton[Option[JobLeaseConfig]] = Singleton { () =>
+    if (conf.getBoolean("smrtflow.engine.lease.enabled")) {
+      val nodeId = Some(conf.getString("smrtflow.engine.lease.nodeId"))
+        .filter(_.nonEmpty)
+        // pid@hostname
+        .getOrElse(ManagementFactory.getRuntimeMXBean.getName)
+      Some(
+        JobLeaseConfig(nodeId,
+                       conf.getInt("smrtflow.engine.lease.ttlSeconds").seconds,
+                       conf.getInt("smrtflow.engine.lease.maxAttempts")))
+    } else None
+  }
+
+  val jobWatchdogConfig: Singleton[Option[JobWatchdogConfig]] = Singleton {
+    () =>
+      if (conf.getBoolean("smrtflow.engine.watchdog.enabled")) {
+        val policy = conf.getString("smrtflow.engine.watchdog.policy")
+        val (requeue, logOnly) = policy.toLowerCase match {
+          case "fail" => (false, false)
+          case "requeue" => (true, false)
+          case "log" => (false, true)
+          case x =>
+            throw new IllegalArgumentException(
+              s"Invalid smrtflow.engine.watchdog.policy '$x'. Supported values fail, requeue, log")
+        }
+        Some(
+          JobWatchdogConfig(
+            conf.getInt("smrtflow.engine.watchdog.pollSeconds").seconds,
+            conf.getInt("smrtflow.engine.watchdog.staleAfterMinutes").minutes,
+            conf
+              .getInt("smrtflow.engine.watchdog.quickStaleAfterMinutes")
+              .minutes,
+            requeue,
+            logOnly
+          ))
+      } else None
+  }
+
+  // None will disable the archive of the job events and tasks
+  val jobArchiveConfig: Singleton[Option[JobArchiveConfig]] = Singleton {
+    () =>
+      if (conf.getBoolean("smrtflow.engine.jobArchive.enabled")) {
+        Some(
+          JobArchiveConfig(
+            conf.getInt("smrtflow.engine.jobArchive.archiveAfterDays").days,
+            conf.getInt("smrtflow.engine.jobArchive.maxNumJobs")))
+      } else None
+  }
+
+  val jobWriteBehindConfig: Singleton[WriteBehindConfig] = Singleton { () =>
+    WriteBehindConfig(
+      conf.getBoolean("smrtflow.engine.jobStateBatch.enabled"),
+      conf.getInt("smrtflow.engine.jobStateBatch.windowMillis").millis,
+      conf.getInt("smrtflow.engine.jobStateBatch.maxBatchSize")
+    )
+  }
+
+  val entityCacheConfig: Singleton[EntityCacheConfig] = Singleton { () =>
+    EntityCacheConfig(
+      conf.getBoolean("smrtflow.daoCache.enabled"),
+      conf.getInt("smrtflow.daoCache.maxSize"),
+      conf.getInt("smrtflow.daoCache.ttlSeconds").seconds
+    )
+  }
+
+  val engineExecutionPoolsConfig: Singleton[EngineExecutionPoolsConfig] =
+    Singleton { () =>
+      EngineExecutionPoolsConfig(
+        conf.getInt("smrtflow.engine.pools.quickThreads"),
+        conf.getInt("smrtflow.engine.pools.generalThreads"),
+        conf.getInt("smrtflow.engine.pools.importThreads"),
+        conf.getInt("smrtflow.engine.pools.daoThreads"),
+        conf.getInt("smrtflow.engine.pools.datasetIoThreads"),
+        conf.getInt("smrtflow.engine.pools.datasetLoadTimeoutSeconds").seconds
+      )
+    }
+
   // There's some duplication here. and translation from
   val systemJobConfig: Singleton[SystemJobConfig] = Singleton { () =>
     SystemJobConfig(
@@ -177,7 +287,12 @@ trait SmrtLinkConfigProvider extends SmrtServerIdUtils with LazyLogging {
       dbConfigSingleton(),
       mailConfig(),
       smrtLinkUiPort(),
-      apiSecret()
+      apiSecret(),
+      jobNotifyPollInterval(),
+      engineResourceConfig(),
+      engineExecutionPoolsConfig(),
+      jobLeaseConfig(),
+      jobWatchdogConfig()
     )
   }
 
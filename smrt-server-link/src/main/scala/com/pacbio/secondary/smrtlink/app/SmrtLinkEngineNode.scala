@@ -0,0 +1,75 @@
+package com.pacbio.secondary.smrtlink.app
+
+import akka.pattern._
+import akka.util.Timeout
+import com.pacbio.common.logging.LoggerOptions
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.GetEngineManagerStatus
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.EngineManagerStatus
+import com.pacbio.secondary.smrtlink.database.DatabaseUtils
+import com.typesafe.scalalogging.LazyLogging
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+import scala.util.{Failure, Success, Try}
+
+/**
+  * Engine node that runs jobs claimed from the shared SMRT Link db without the webservices.
+  *
+  * Additional nodes add analysis capacity to the SMRT Link Analysis server. The node
+  * must be configured with the same database and job root directory (on a shared file
+  * system) as the server, and a unique node id (PB_ENGINE_NODE_ID). The db migrations are
+  * only run by the server.
+  *
+  * The jobs are claimed with a lease that is renewed by the heartbeat of the node. If the
+  * node dies, the jobs are requeued (or marked as FAILED) by any of the other nodes.
+  *
+  * java -cp smrt-server-link-analysis.jar com.pacbio.secondary.smrtlink.app.SmrtLinkEngineNode
+  */
+object SmrtLinkEngineNode extends App with DatabaseUtils with LazyLogging {
+
+  lazy val providers = new SmrtLinkProviders {}
+
+  implicit lazy val system = providers.actorSystem()
+
+  def startUpNode(implicit timeout: Timeout = Timeout(30.seconds))
+    : Future[String] = {
+    val config = providers.systemJobConfig()
+    val dataSource = providers.dbConfig.toDataSource
+    val jobsDao = providers.jobsDao()
+    val engineManagerActor = providers.engineManagerActor()
+
+    // Job state changes of the jobs run by this node trigger the MultiJob and
+    // imported dataset updates
+    jobsDao.addListener(engineManagerActor)
+
+    if (config.jobLease.isEmpty) {
+      logger.warn(
+        "Job leases are disabled. Jobs of this node will not be recovered if the node dies.")
+    }
+
+    for {
+      connMessage <- Future(TestConnection(dataSource))
+      summary <- jobsDao.getSystemSummary("Engine Node Startup Test")
+      status <- (engineManagerActor ? GetEngineManagerStatus)
+        .mapTo[EngineManagerStatus]
+    } yield s"""$connMessage
+               |$summary
+               |Engine node ${config.jobLease.map(_.nodeId).getOrElse("")}
+               |${status.prettySummary}""".stripMargin
+  }
+
+  sys.addShutdownHook(system.terminate())
+
+  LoggerOptions.parseAddDebug(args)
+
+  Try(Await.result(startUpNode(), 1.minute)) match {
+    case Success(msg) => logger.info(msg)
+    case Failure(ex) =>
+      val msg = s"Failed to startup Engine node ${ex.getMessage}"
+      System.err.println(msg)
+      logger.error(msg)
+      system.terminate()
+      System.exit(1)
+  }
+}
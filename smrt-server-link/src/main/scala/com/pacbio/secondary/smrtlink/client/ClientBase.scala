@@ -19,7 +19,7 @@ import scala.concurrent.duration._
 import scala.util.control.NonFatal
 import scala.util.{Failure, Success, Try}
 
-import com.pacbio.secondary.smrtlink.models.ServiceStatus
+import com.pacbio.secondary.smrtlink.models.{KeysetPageToken, ServiceStatus}
 
 // Move this to a central location
 trait UrlUtils {
@@ -122,6 +122,40 @@ trait ClientBase extends Retrying {
       implicit um: Unmarshaller[HttpResponse, T]): Future[T] =
     getResponse(request).map(decodeResponse).flatMap(um(_))
 
+  /**
+    * Walk the pages of a keyset paginated listing. The next page is requested with the
+    * token returned in the response header of the previous page.
+    *
+    * @param toRequest Request of the page after the (optional) page token
+    * @param maxItems  Max number of items to return
+    */
+  protected def getAllPages[T](toRequest: Option[String] => HttpRequest,
+                               maxItems: Int = Int.MaxValue)(
+      implicit um: Unmarshaller[HttpResponse, Seq[T]]): Future[Seq[T]] = {
+
+    def getPage(pageToken: Option[String],
+                items: Seq[T]): Future[Seq[T]] = {
+      for {
+        response <- getResponse(toRequest(pageToken))
+        page <- um(decodeResponse(response))
+        allItems <- {
+          val acc = items ++ page
+          val nextPageToken =
+            response.headers
+              .find(_.is(KeysetPageToken.HEADER.toLowerCase))
+              .map(_.value)
+          nextPageToken match {
+            case Some(_) if acc.length < maxItems && page.nonEmpty =>
+              getPage(nextPageToken, acc)
+            case _ => Future.successful(acc.take(maxItems))
+          }
+        }
+      } yield allItems
+    }
+
+    getPage(None, Seq.empty[T])
+  }
+
   /**
     * Get Status of the System. The model must adhere to the SmrtServer Status
     * message schema.
@@ -14,6 +14,7 @@ import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport
 import akka.http.scaladsl.model.{HttpRequest, HttpResponse, Uri}
 import akka.http.scaladsl.model.headers.RawHeader
 import akka.http.scaladsl.client.RequestBuilding._
+import akka.http.scaladsl.unmarshalling.Unmarshaller
 import com.typesafe.scalalogging.LazyLogging
 import spray.json._
 
@@ -219,6 +220,20 @@ class SmrtLinkServiceClient(
     toUri(ROOT_DS_URI_PATH / ds.shortName).withQuery(q)
   }
 
+  /**
+    * Get all the datasets of the dataset type (up to maxItems). The datasets are
+    * retrieved in pages of the search criteria limit.
+    */
+  def getAllDataSets[T <: ServiceDataSetMetadata](
+      ds: DataSetMetaTypes.DataSetMetaType,
+      c: DataSetSearchCriteria = DataSetSearchCriteria.default,
+      maxItems: Int = Int.MaxValue)(
+      implicit um: Unmarshaller[HttpResponse, Seq[T]]): Future[Seq[T]] =
+    getAllPages[T](
+      pageToken =>
+        Get(toDataSetUrlWithQuery(ds, Some(c.copy(pageToken = pageToken)))),
+      maxItems)
+
   def getSubreadSets(c: Option[DataSetSearchCriteria] = None)
     : Future[Seq[SubreadServiceDataSet]] =
     getObject[Seq[SubreadServiceDataSet]](
@@ -461,10 +476,31 @@ class SmrtLinkServiceClient(
   def updateJob(jobId: IdAble,
                 name: Option[String],
                 comment: Option[String],
-                tags: Option[String]): Future[EngineJob] =
+                tags: Option[String],
+                priority: Option[Int] = None): Future[EngineJob] =
     getObject[EngineJob](
       Put(toUri(ROOT_JOBS_URI_PATH / jobId.toIdString),
-          UpdateJobRecord(name, comment, tags)))
+          UpdateJobRecord(name, comment, tags, priority)))
+
+  def getJobQueue(): Future[Seq[JobQueueEntry]] =
+    getObject[Seq[JobQueueEntry]](
+      Get(toUri(ROOT_JM_URI_PATH / JOB_QUEUE_PREFIX)))
+
+  def getExecutionPoolMetrics(): Future[Seq[ExecutionPoolMetrics]] =
+    getObject[Seq[ExecutionPoolMetrics]](
+      Get(toUri(ROOT_JM_URI_PATH / JOB_POOLS_PREFIX)))
+
+  def getEntityCacheMetrics(): Future[Seq[EntityCacheMetrics]] =
+    getObject[Seq[EntityCacheMetrics]](
+      Get(toUri(ROOT_JM_URI_PATH / JOB_CACHES_PREFIX)))
+
+  def getDbPoolMetrics(): Future[Seq[DbPoolMetrics]] =
+    getObject[Seq[DbPoolMetrics]](
+      Get(toUri(ROOT_JM_URI_PATH / JOB_DB_POOLS_PREFIX)))
+
+  def getSystemSummary(): Future[SystemSummary] =
+    getObject[SystemSummary](
+      Get(toUri(ROOT_JM_URI_PATH / JOB_SYSTEM_SUMMARY_PREFIX)))
 
   // Runs
   protected def getRunUriPath(runId: UUID): Uri.Path =
@@ -581,6 +617,21 @@ class SmrtLinkServiceClient(
     getObject[Seq[EngineJob]](
       Get(toJobUrlWithQuery(jobType, searchCriteria, projectId)))
 
+  /**
+    * Get all the jobs of the job type (up to maxItems). The jobs are retrieved in pages
+    * of the search criteria limit.
+    */
+  def getAllJobsByType(
+      jobType: String,
+      searchCriteria: JobSearchCriteria = JobSearchCriteria.default,
+      maxItems: Int = Int.MaxValue): Future[Seq[EngineJob]] =
+    getAllPages[EngineJob](
+      pageToken =>
+        Get(
+          toJobUrlWithQuery(jobType,
+                            Some(searchCriteria.copy(pageToken = pageToken)))),
+      maxItems)
+
   def getJobsByProject(projectId: Int): Future[Seq[EngineJob]] = {
     val q = Uri.Query("projectId" -> projectId.toString)
     getObject[Seq[EngineJob]](Get(toUri(ROOT_JOBS_URI_PATH).withQuery(q)))
@@ -0,0 +1,175 @@
+package com.pacbio.secondary.smrtlink.database
+
+import java.io.PrintWriter
+import java.sql.Connection
+import java.util.concurrent.atomic.{AtomicLong, AtomicLongArray}
+import javax.sql.DataSource
+
+import com.pacbio.secondary.smrtlink.models.ConfigModels.DbPoolConfig
+import com.pacbio.secondary.smrtlink.models.DbPoolMetrics
+import com.typesafe.scalalogging.LazyLogging
+import com.zaxxer.hikari.{HikariConfig, HikariDataSource}
+import slick.jdbc.PostgresProfile.api._
+import slick.util.AsyncExecutor
+
+/**
+  * Counts of the connection acquire times by (ms) bucket. The last bucket is the
+  * acquires slower than the last bound.
+  */
+class AcquireTimeHistogram(
+    boundsMs: Seq[Long] = Seq(1L, 5L, 10L, 50L, 100L, 500L, 1000L, 5000L)) {
+
+  private val counts = new AtomicLongArray(boundsMs.length + 1)
+  private val numAcquired = new AtomicLong(0L)
+  private val totalNanos = new AtomicLong(0L)
+  private val maxNanos = new AtomicLong(0L)
+
+  def record(nanos: Long): Unit = {
+    val ms = nanos / 1000000L
+    val ix = boundsMs.indexWhere(ms <= _)
+    counts.incrementAndGet(if (ix < 0) boundsMs.length else ix)
+    numAcquired.incrementAndGet()
+    totalNanos.addAndGet(nanos)
+    maxNanos.accumulateAndGet(nanos, (a: Long, b: Long) => Math.max(a, b))
+  }
+
+  def count: Long = numAcquired.get()
+
+  def meanMs: Double =
+    if (count == 0) 0.0 else totalNanos.get().toDouble / count / 1000000.0
+
+  def maxMs: Long = maxNanos.get() / 1000000L
+
+  def buckets: Map[String, Long] = {
+    val labels = boundsMs.map(b => s"<=${b}ms") :+ s">${boundsMs.last}ms"
+    labels.zipWithIndex.map { case (label, i) => label -> counts.get(i) }.toMap
+  }
+}
+
+/**
+  * DataSource that records the time to acquire each connection from the (Hikari) pool.
+  */
+private class TimedDataSource(ds: DataSource, histogram: AcquireTimeHistogram)
+    extends DataSource {
+
+  private def timed(f: => Connection): Connection = {
+    val startedAt = System.nanoTime()
+    val connection = f
+    histogram.record(System.nanoTime() - startedAt)
+    connection
+  }
+
+  override def getConnection: Connection = timed(ds.getConnection)
+
+  override def getConnection(username: String, password: String): Connection =
+    timed(ds.getConnection(username, password))
+
+  override def getLogWriter: PrintWriter = ds.getLogWriter
+
+  override def setLogWriter(out: PrintWriter): Unit = ds.setLogWriter(out)
+
+  override def setLoginTimeout(seconds: Int): Unit =
+    ds.setLoginTimeout(seconds)
+
+  override def getLoginTimeout: Int = ds.getLoginTimeout
+
+  override def getParentLogger: java.util.logging.Logger = ds.getParentLogger
+
+  override def unwrap[T](iface: Class[T]): T = ds.unwrap(iface)
+
+  override def isWrapperFor(iface: Class[_]): Boolean = ds.isWrapperFor(iface)
+}
+
+/**
+  * Named (Hikari) connection pool of the SMRT Link db.
+  *
+  * The number of threads of the slick executor is the max number of connections, a
+  * db action only holds a thread while it holds a connection.
+  *
+  * @param properties PGSimpleDataSource properties (e.g., ssl or socketTimeout) of the
+  *                   smrtflow.db config. The connection values of the dbConfig take
+  *                   precedence.
+  */
+class DbConnectionPool(dbConfig: SmrtLinkDatabaseConfig,
+                       val config: DbPoolConfig,
+                       properties: Map[String, String] = Map.empty)
+    extends LazyLogging {
+
+  val name: String = config.name
+
+  private val histogram = new AcquireTimeHistogram()
+
+  private val hikari: HikariDataSource = {
+    val c = new HikariConfig()
+    c.setPoolName(s"smrtlink-$name")
+    c.setDataSourceClassName("org.postgresql.ds.PGSimpleDataSource")
+    properties.foreach { case (k, v) => c.addDataSourceProperty(k, v) }
+    c.addDataSourceProperty("serverName", dbConfig.server)
+    c.addDataSourceProperty("portNumber", Int.box(dbConfig.port))
+    c.addDataSourceProperty("databaseName", dbConfig.dbName)
+    c.addDataSourceProperty("user", dbConfig.username)
+    c.addDataSourceProperty("password", dbConfig.password)
+    c.setMaximumPoolSize(config.maxConnections)
+    c.setConnectionTimeout(config.connectionTimeout.toMillis)
+    new HikariDataSource(c)
+  }
+
+  val db: Database = Database.forDataSource(
+    new TimedDataSource(hikari, histogram),
+    Some(config.maxConnections),
+    AsyncExecutor(s"smrtlink-$name",
+                  config.maxConnections,
+                  config.maxConnections,
+                  config.queueSize,
+                  config.maxConnections)
+  )
+
+  def metrics: DbPoolMetrics = {
+    val pool = hikari.getHikariPoolMXBean
+    DbPoolMetrics(
+      name,
+      config.maxConnections,
+      pool.getActiveConnections,
+      pool.getIdleConnections,
+      pool.getTotalConnections,
+      pool.getThreadsAwaitingConnection,
+      histogram.count,
+      histogram.meanMs,
+      histogram.maxMs,
+      histogram.buckets
+    )
+  }
+
+  def close(): Unit = {
+    logger.info(s"Closing db connection pool $name")
+    db.close()
+    hikari.close()
+  }
+}
+
+/**
+  * Separate connection pools of the Engine (claiming jobs and job state updates), the
+  * api (UI and client) reads and the maintenance (imports, deletes and integrity
+  * runners) work. A burst of work of one kind can only exhaust its own pool.
+  */
+class DbConnectionPools(val engine: DbConnectionPool,
+                        val api: DbConnectionPool,
+                        val maintenance: DbConnectionPool) {
+
+  def pools: Seq[DbConnectionPool] = Seq(engine, api, maintenance)
+
+  def metrics: Seq[DbPoolMetrics] = pools.map(_.metrics)
+
+  def close(): Unit = pools.foreach(_.close())
+}
+
+object DbConnectionPools {
+  def apply(dbConfig: SmrtLinkDatabaseConfig,
+            engine: DbPoolConfig,
+            api: DbPoolConfig,
+            maintenance: DbPoolConfig,
+            properties: Map[String, String] = Map.empty): DbConnectionPools =
+    new DbConnectionPools(new DbConnectionPool(dbConfig, engine, properties),
+                          new DbConnectionPool(dbConfig, api, properties),
+                          new DbConnectionPool(dbConfig, maintenance, properties))
+}
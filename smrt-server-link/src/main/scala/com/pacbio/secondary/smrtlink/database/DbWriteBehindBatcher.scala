@@ -0,0 +1,129 @@
+package com.pacbio.secondary.smrtlink.database
+
+import java.util.concurrent.{
+  Executors,
+  ScheduledExecutorService,
+  ThreadFactory,
+  TimeUnit
+}
+
+import com.pacbio.secondary.smrtlink.models.ConfigModels.WriteBehindConfig
+import com.typesafe.scalalogging.LazyLogging
+import slick.jdbc.PostgresProfile.api._
+
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success}
+
+/**
+  * Groups the write actions submitted within a short window into a single transaction
+  * (i.e., a group commit).
+  *
+  * - Actions are run in submission order, and there is at most one batch in flight. The
+  *   ordering of the writes to the same job is preserved across batches.
+  * - The returned Future is completed after the transaction is committed.
+  * - If the batch transaction fails, each action of the batch is retried (in order) in
+  *   its own transaction, so a single bad write will not fail the other writes of the batch.
+  *
+  * If disabled, each action is run in its own transaction.
+  *
+  * @param db     Database
+  * @param config Batch window and size
+  */
+class DbWriteBehindBatcher(db: Database, config: WriteBehindConfig)(
+    implicit ec: ExecutionContext)
+    extends LazyLogging {
+
+  private class PendingWrite[T](
+      val action: DBIOAction[T, NoStream, Effect.All],
+      promise: Promise[T]) {
+
+    // The promise must only be completed after the transaction has been committed
+    def toCompletion: DBIOAction[() => Unit, NoStream, Effect.All] =
+      action.map { result => () =>
+        promise.success(result)
+        ()
+      }
+
+    def failure(ex: Throwable): Unit = promise.failure(ex)
+  }
+
+  private val pending = mutable.Queue.empty[PendingWrite[_]]
+
+  // Guarded by the pending queue
+  private var isFlushing = false
+
+  private lazy val scheduler: ScheduledExecutorService =
+    Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+      override def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "db-write-behind")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+  def submit[T](action: DBIOAction[T, NoStream, Effect.All]): Future[T] = {
+    if (config.enabled) {
+      val p = Promise[T]()
+      val startFlush = pending.synchronized {
+        pending.enqueue(new PendingWrite(action, p))
+        if (isFlushing) false
+        else {
+          isFlushing = true
+          true
+        }
+      }
+      if (startFlush) scheduleFlush()
+      p.future
+    } else {
+      db.run(action.transactionally)
+    }
+  }
+
+  private def scheduleFlush(): Unit =
+    scheduler.schedule(new Runnable {
+      override def run(): Unit = flush()
+    }, config.window.toMillis, TimeUnit.MILLISECONDS)
+
+  private def flush(): Unit = {
+    val batch: Seq[PendingWrite[_]] = pending.synchronized {
+      (0 until Seq(config.maxBatchSize, pending.length).min)
+        .map(_ => pending.dequeue())
+    }
+
+    runBatch(batch).onComplete { _ =>
+      val hasPending = pending.synchronized {
+        if (pending.isEmpty) isFlushing = false
+        pending.nonEmpty
+      }
+      if (hasPending) scheduleFlush()
+    }
+  }
+
+  private def runBatch(batch: Seq[PendingWrite[_]]): Future[Unit] = {
+    if (batch.isEmpty) Future.successful(())
+    else {
+      db.run(DBIO.sequence(batch.map(_.toCompletion)).transactionally)
+        .map(_.foreach(complete => complete()))
+        .recoverWith {
+          case ex if batch.length == 1 =>
+            batch.foreach(_.failure(ex))
+            Future.successful(())
+          case ex =>
+            logger.warn(
+              s"Failed to write batch of ${batch.length} actions. Retrying each action. ${ex.getMessage}")
+            runEach(batch)
+        }
+    }
+  }
+
+  private def runEach(batch: Seq[PendingWrite[_]]): Future[Unit] =
+    batch.foldLeft(Future.successful(())) { (acc, write) =>
+      acc.flatMap { _ =>
+        db.run(write.toCompletion.transactionally).transform {
+          case Success(complete) => Success(complete())
+          case Failure(ex) => Success(write.failure(ex))
+        }
+      }
+    }
+}
@@ -0,0 +1,112 @@
+package com.pacbio.secondary.smrtlink.database
+
+import java.util.UUID
+import java.util.concurrent.{Callable, TimeUnit}
+import java.util.concurrent.atomic.AtomicLong
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.pacbio.common.models.CommonModels.{IdAble, IntIdAble}
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.EngineJob
+import com.pacbio.secondary.smrtlink.models.ConfigModels.EntityCacheConfig
+import com.pacbio.secondary.smrtlink.models.{
+  DataSetMetaDataSet,
+  DataStoreServiceFile,
+  EntityCacheMetrics,
+  Project
+}
+
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.{Failure, Success}
+
+/**
+  * Bounded read-through cache of db entities.
+  *
+  * The (in flight) Future is cached, concurrent lookups of the same key will share a
+  * single db call. Failed lookups (e.g., not found) and empty (None) results are not cached.
+  *
+  * Entries are removed when the entity is updated within this process (see DaoEntityCaches),
+  * or after the ttl. Updates from other processes (e.g., an Engine node) are only visible
+  * after the ttl.
+  *
+  * If disabled, each lookup is loaded from the db.
+  */
+class EntityCache[K, V](val name: String, config: EntityCacheConfig)(
+    implicit ec: ExecutionContext) {
+
+  private val cache: Cache[AnyRef, Future[V]] = CacheBuilder
+    .newBuilder()
+    .maximumSize(config.maxSize)
+    .expireAfterWrite(config.ttl.toMillis, TimeUnit.MILLISECONDS)
+    .recordStats()
+    .build[AnyRef, Future[V]]()
+
+  private val numInvalidations = new AtomicLong(0L)
+
+  private def toKey(key: K): AnyRef = key.asInstanceOf[AnyRef]
+
+  def getOrLoad(key: K)(load: => Future[V]): Future[V] = {
+    if (config.enabled) {
+      val fx = cache.get(toKey(key), new Callable[Future[V]] {
+        override def call(): Future[V] = load
+      })
+      fx.onComplete {
+        case Success(None) | Failure(_) => cache.asMap().remove(toKey(key), fx)
+        case _ => ()
+      }
+      fx
+    } else {
+      load
+    }
+  }
+
+  def invalidate(key: K): Unit = {
+    numInvalidations.incrementAndGet()
+    cache.invalidate(toKey(key))
+  }
+
+  def invalidateAll(): Unit = {
+    numInvalidations.incrementAndGet()
+    cache.invalidateAll()
+  }
+
+  def metrics: EntityCacheMetrics = {
+    val stats = cache.stats()
+    EntityCacheMetrics(name,
+                       config.enabled,
+                       cache.size(),
+                       config.maxSize,
+                       stats.hitCount(),
+                       stats.missCount(),
+                       stats.hitRate(),
+                       stats.evictionCount(),
+                       numInvalidations.get())
+  }
+}
+
+/**
+  * Caches of the entities looked up by id in the (UI and pbsmrtpipe) polling loops.
+  *
+  * The jobs are only cached by (Int) id, the dataset lookups are cached by the IdAble (id or
+  * UUID) and are invalidated together.
+  */
+class DaoEntityCaches(config: EntityCacheConfig)(
+    implicit ec: ExecutionContext) {
+
+  val jobs = new EntityCache[Int, EngineJob]("jobs", config)
+  val dataSets =
+    new EntityCache[IdAble, DataSetMetaDataSet]("datasets", config)
+  val dataStoreFiles =
+    new EntityCache[UUID, DataStoreServiceFile]("datastore-files", config)
+  val projects = new EntityCache[Int, Option[Project]]("projects", config)
+
+  def invalidateJob(job: EngineJob): Unit = jobs.invalidate(job.id)
+
+  def getJob(ix: IdAble)(load: => Future[EngineJob]): Future[EngineJob] =
+    ix match {
+      case IntIdAble(i) => jobs.getOrLoad(i)(load)
+      case _ => load
+    }
+
+  def metrics: Seq[EntityCacheMetrics] =
+    Seq(jobs, dataSets, dataStoreFiles, projects).map(_.metrics)
+}
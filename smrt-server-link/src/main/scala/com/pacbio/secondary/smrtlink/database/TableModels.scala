@@ -8,6 +8,7 @@ import com.pacbio.secondary.smrtlink.time.PacBioDateTimeDatabaseFormat
 import com.pacbio.secondary.smrtlink.analysis.jobs.AnalysisJobStates
 import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.{
   EngineJob,
+  JobConstants,
   JobEvent,
   JobTask
 }
@@ -19,6 +20,7 @@ import com.pacificbiosciences.pacbiobasedatamodel.{
 }
 import org.joda.time.{DateTime => JodaDateTime}
 import slick.jdbc.PostgresProfile.api._
+import slick.lifted.AppliedCompiledFunction
 import shapeless._
 import slickless._
 
@@ -60,6 +62,10 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
 
     def createdAt: Rep[JodaDateTime] = column[JodaDateTime]("created_at")
 
+    // Ordering key of the events of a job (assigned by the db, see V29), the events
+    // of a batch can have the same createdAt
+    def seq: Rep[Long] = column[Long]("event_seq", O.AutoInc)
+
     def jobFK = foreignKey("job_fk", jobId, engineJobs)(_.id)
 
     def jobJoin = engineJobs.filter(_.id === jobId)
@@ -68,6 +74,8 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
       (id, jobId, state, message, createdAt, eventTypeId) <> (JobEvent.tupled, JobEvent.unapply)
 
     def idx = index("job_events_job_id", jobId)
+
+    def seqIdx = index("job_events_job_id_event_seq", (jobId, seq))
   }
 
   /**
@@ -125,6 +133,109 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
 
   }
 
+  /**
+    * Lease of a RUNNING job held by an Engine node. The lease is renewed by the
+    * heartbeat of the node and is removed when the job is completed.
+    *
+    * A lease with expiresAt of None is not held (i.e., the job was requeued). The row is kept to
+    * track the number of attempts to run the job.
+    */
+  class EngineJobLeasesT(tag: Tag)
+      extends Table[EngineJobLease](tag, "engine_job_leases") {
+
+    def jobId: Rep[Int] = column[Int]("job_id", O.PrimaryKey)
+
+    def nodeId: Rep[String] = column[String]("node_id")
+
+    def acquiredAt: Rep[JodaDateTime] = column[JodaDateTime]("acquired_at")
+
+    def expiresAt: Rep[Option[JodaDateTime]] =
+      column[Option[JodaDateTime]]("expires_at")
+
+    def attempts: Rep[Int] = column[Int]("attempts")
+
+    def * =
+      (jobId, nodeId, acquiredAt, expiresAt, attempts) <> (EngineJobLease.tupled, EngineJobLease.unapply)
+
+    def jobFK =
+      foreignKey("job_fk", jobId, engineJobs)(
+        _.id,
+        onDelete = ForeignKeyAction.Cascade)
+
+    def idx = index("engine_job_leases_node_id", nodeId)
+  }
+
+  class MultiJobStateCountsT(tag: Tag)
+      extends Table[MultiJobStateCount](tag, "engine_multi_job_state_counts") {
+
+    def multiJobId: Rep[Int] = column[Int]("multi_job_id")
+
+    def state: Rep[AnalysisJobStates.JobStates] =
+      column[AnalysisJobStates.JobStates]("state")
+
+    def numJobs: Rep[Int] = column[Int]("num_jobs")
+
+    def * =
+      (multiJobId, state, numJobs) <> (MultiJobStateCount.tupled, MultiJobStateCount.unapply)
+
+    def pk =
+      primaryKey("engine_multi_job_state_counts_pk", (multiJobId, state))
+
+    def multiJobFK =
+      foreignKey("multi_job_fk", multiJobId, engineJobs)(
+        _.id,
+        onDelete = ForeignKeyAction.Cascade)
+  }
+
+  /**
+    * Row counts maintained by db triggers. These should only be read.
+    */
+  class SystemCountsT(tag: Tag)
+      extends Table[SystemCount](tag, "system_counts") {
+
+    def counter: Rep[String] = column[String]("counter")
+
+    def key: Rep[String] = column[String]("key")
+
+    def subKey: Rep[String] = column[String]("sub_key")
+
+    def slot: Rep[Int] = column[Int]("slot")
+
+    def num: Rep[Long] = column[Long]("num")
+
+    def * =
+      (counter, key, subKey, slot, num) <> (SystemCount.tupled, SystemCount.unapply)
+
+    def pk =
+      primaryKey("system_counts_pk", (counter, key, subKey, slot))
+  }
+
+  /**
+    * Archived job events and job tasks of the completed jobs (see JobsDao.archiveJobs).
+    */
+  class JobArchivesT(tag: Tag) extends Table[JobArchive](tag, "job_archives") {
+
+    def jobId: Rep[Int] = column[Int]("job_id", O.PrimaryKey)
+
+    def events: Rep[String] = column[String]("events")
+
+    def tasks: Rep[String] = column[String]("tasks")
+
+    def numEvents: Rep[Int] = column[Int]("num_events")
+
+    def numTasks: Rep[Int] = column[Int]("num_tasks")
+
+    def archivedAt: Rep[JodaDateTime] = column[JodaDateTime]("archived_at")
+
+    def * =
+      (jobId, events, tasks, numEvents, numTasks, archivedAt) <> (JobArchive.tupled, JobArchive.unapply)
+
+    def jobFK =
+      foreignKey("job_fk", jobId, engineJobs)(_.id,
+                                              onDelete =
+                                                ForeignKeyAction.Cascade)
+  }
+
   /**
     * Core computational unit of SL Services. Contains metadata of the job, such as name, created at and
     * description.
@@ -201,6 +312,10 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
 
     def tags: Rep[String] = column[String]("tags")
 
+    // Higher priority jobs are run first
+    def priority: Rep[Int] =
+      column[Int]("priority", O.Default(JobConstants.DEFAULT_PRIORITY))
+
     def * =
       (id ::
         uuid ::
@@ -225,6 +340,7 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
         importedAt ::
         tags ::
         subJobTypeId ::
+        priority ::
         HNil).mappedWith(Generic[EngineJob])
 
     def uuidIdx = index("engine_jobs_uuid", uuid, unique = true)
@@ -261,6 +377,49 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
       .filter(_.state inSet states)
       .filter(_.isMultiJob === true)
 
+  /**
+    * Precompiled (Compiled) versions of the job queries used on the hot paths.
+    *
+    * Slick compiles the query to SQL on each run of a Query. These are compiled once, with
+    * the id (or state) as bind parameters. Note, a compiled query can be run (result,
+    * update, delete) but not composed with other queries.
+    */
+  type CompiledEngineJobs =
+    AppliedCompiledFunction[_, Query[EngineJobsT, EngineJob, Seq], Seq[EngineJob]]
+
+  private lazy val engineJobByIntIdC =
+    Compiled((i: Rep[Int]) => engineJobs.filter(_.id === i))
+
+  private lazy val engineJobByUUIDC =
+    Compiled((uuid: Rep[UUID]) => engineJobs.filter(_.uuid === uuid))
+
+  def cEngineJobById(id: IdAble): CompiledEngineJobs = {
+    id match {
+      case IntIdAble(i) => engineJobByIntIdC(i)
+      case UUIDIdAble(uuid) => engineJobByUUIDC(uuid)
+    }
+  }
+
+  lazy val cGetEngineJobsByState = Compiled(
+    (state: Rep[AnalysisJobStates.JobStates], isMultiJob: Rep[Boolean]) =>
+      engineJobs.filter(_.state === state).filter(_.isMultiJob === isMultiJob))
+
+  // State, updated at, job updated at and error message of a job
+  lazy val cEngineJobStateById = Compiled(
+    (i: Rep[Int]) =>
+      engineJobs
+        .filter(_.id === i)
+        .map(j => (j.state, j.updatedAt, j.jobUpdatedAt, j.errorMessage)))
+
+  // Is the job a (MultiJob) child job in the state
+  lazy val cIsChildJobInState = Compiled(
+    (i: Rep[Int], state: Rep[AnalysisJobStates.JobStates]) =>
+      engineJobs
+        .filter(_.id === i)
+        .filter(_.state === state)
+        .filter(_.parentMultiJobId.isDefined)
+        .exists)
+
   implicit val projectStateType =
     MappedColumnType.base[ProjectState.ProjectState, String](
       { s =>
@@ -381,6 +540,30 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
     def idx = index("engine_jobs_datasets_job_id", jobId)
   }
 
+  class EngineJobPendingEntryPointsT(tag: Tag)
+      extends Table[EngineJobPendingEntryPoint](
+        tag,
+        "engine_job_pending_entry_points") {
+
+    def jobId: Rep[Int] = column[Int]("job_id")
+
+    def datasetUUID: Rep[UUID] = column[UUID]("dataset_uuid")
+
+    def * =
+      (jobId, datasetUUID) <> (EngineJobPendingEntryPoint.tupled, EngineJobPendingEntryPoint.unapply)
+
+    def pk =
+      primaryKey("engine_job_pending_entry_points_pk", (jobId, datasetUUID))
+
+    def jobFK =
+      foreignKey("pending_job_fk", jobId, engineJobs)(
+        _.id,
+        onDelete = ForeignKeyAction.Cascade)
+
+    def idx =
+      index("engine_job_pending_entry_points_dataset_uuid", datasetUUID)
+  }
+
   /**
     * Base Metadata for all PacBio DataSets
     *
@@ -918,8 +1101,13 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
 
   lazy val engineJobs = TableQuery[EngineJobsT]
   lazy val engineJobsDataSets = TableQuery[EngineJobDataSetT]
+  lazy val pendingEntryPoints = TableQuery[EngineJobPendingEntryPointsT]
   lazy val jobEvents = TableQuery[JobEventsT]
   lazy val jobTasks = TableQuery[JobTasks]
+  lazy val jobLeases = TableQuery[EngineJobLeasesT]
+  lazy val multiJobStateCounts = TableQuery[MultiJobStateCountsT]
+  lazy val systemCounts = TableQuery[SystemCountsT]
+  lazy val jobArchives = TableQuery[JobArchivesT]
 
   // DataSet types
   lazy val datasetMetaTypes = TableQuery[DataSetTypesT]
@@ -943,6 +1131,11 @@ object TableModels extends PacBioDateTimeDatabaseFormat {
     engineJobsDataSets,
     jobEvents,
     jobTasks,
+    jobLeases,
+    multiJobStateCounts,
+    systemCounts,
+    jobArchives,
+    pendingEntryPoints,
     projectsUsers,
     projects,
     dsMetaData2,
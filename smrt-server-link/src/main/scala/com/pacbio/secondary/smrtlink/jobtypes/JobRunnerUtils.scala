@@ -24,7 +24,8 @@ import scala.util.control.NonFatal
   */
 trait JobRunnerUtils {
 
-  private def setupResources(engineJob: EngineJob)
+  private def setupResources(engineJob: EngineJob,
+                             leaseEpoch: Option[Int] = None)
     : (FileJobResultsWriter, JobResource, Boolean, Path) = {
 
     val output = Paths.get(engineJob.path)
@@ -35,7 +36,7 @@ trait JobRunnerUtils {
     val wasSetup = Files.exists(stdout)
 
     // This abstraction needs to be fixed. This is for legacy interface
-    val resource = JobResource(engineJob.uuid, output)
+    val resource = JobResource(engineJob.uuid, output, leaseEpoch)
 
     val stderrFw = new FileWriter(stderr.toString, true)
     val stdoutFw = new FileWriter(stdout.toString, true)
@@ -57,8 +58,10 @@ trait JobRunnerUtils {
   }
 
   def setupCoreJobResources(
-      engineJob: EngineJob): (FileJobResultsWriter, JobResource) = {
-    val (writer, resource, wasSetup, logPath) = setupResources(engineJob)
+      engineJob: EngineJob,
+      leaseEpoch: Option[Int] = None): (FileJobResultsWriter, JobResource) = {
+    val (writer, resource, wasSetup, logPath) =
+      setupResources(engineJob, leaseEpoch)
     (writer, resource)
   }
 
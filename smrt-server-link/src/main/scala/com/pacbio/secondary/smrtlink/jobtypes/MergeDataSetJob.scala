@@ -6,9 +6,17 @@ import java.util.UUID
 import org.joda.time.{DateTime => JodaDateTime}
 import com.pacbio.common.models.CommonModelImplicits
 import com.pacbio.common.models.CommonModels.IdAble
-import com.pacbio.secondary.smrtlink.actors.JobsDao
+import com.pacbio.secondary.smrtlink.actors.{
+  InstrumentedExecutionContext,
+  JobsDao
+}
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
-import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetMerger
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetLoader,
+  DataSetMergeBuilder,
+  DataSetValidator,
+  DataSetWriter
+}
 import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels._
 import com.pacbio.secondary.smrtlink.analysis.jobs.{
   AnalysisJobStates,
@@ -26,9 +34,14 @@ import com.pacbio.secondary.smrtlink.models.{
 }
 import com.pacbio.secondary.smrtlink.services.PacBioServiceErrors.UnprocessableEntityError
 import com.pacbio.secondary.smrtlink.validators.ValidateServiceDataSetUtils
-import com.pacificbiosciences.pacbiodatasets.DataSetType
+import com.pacificbiosciences.pacbiodatasets.{
+  DataSetType,
+  HdfSubreadSet,
+  SubreadSet
+}
 
-import scala.concurrent.{Await, Future}
+import scala.collection.mutable
+import scala.concurrent.{Await, ExecutionContext, Future}
 import scala.concurrent.duration._
 import scala.concurrent.blocking
 import scala.concurrent.ExecutionContext.Implicits.global
@@ -75,7 +88,42 @@ class MergeDataSetJob(opts: MergeDataSetJobOptions)
 
   val SOURCE_ID = s"pbscala::merge_dataset"
 
-  // There's a bit of duplication here. I can't get the types to work correctly.
+  /**
+    * Load the inputs on a dedicated (per job) pool of datasetIoThreads threads,
+    * merge them in the order of the paths and write the merged DataSet. The merge
+    * jobs run on the import pool, which bounds the total number of IO threads.
+    */
+  private def loadMergeAndWrite[T <: DataSetType](
+      paths: Seq[Path],
+      loader: Path => T,
+      newDataSet: () => T,
+      datasetWriter: (T, Path) => T,
+      outputDataSetPath: Path,
+      name: String,
+      parallelism: Int,
+      loadTimeout: FiniteDuration,
+      writer: String => String): T = {
+    val ec = new InstrumentedExecutionContext("merge-datasets-io", parallelism)
+    try {
+      val startedAt = System.currentTimeMillis()
+      val builder = MergeDataSetJob.loadAndMerge(
+        paths,
+        loader,
+        new DataSetMergeBuilder[T](newDataSet),
+        parallelism,
+        loadTimeout,
+        (path: Path, loadMs: Long) =>
+          writer(s"Loaded and validated $path in $loadMs ms"))(ec)
+      val runTimeMs = System.currentTimeMillis() - startedAt
+      writer(
+        s"Loaded ${builder.numDataSets} DataSets (${builder.numUniqueDataSets} unique) with ${builder.numExternalResources} unique External Resources in $runTimeMs ms")
+      writer(ec.metrics.summary)
+      datasetWriter(builder.result(name), outputDataSetPath)
+    } finally {
+      ec.shutdown()
+    }
+  }
+
   def mergeDataSets[T <: DataSetType](
       jobRoot: Path,
       resultsWriter: JobResultsWriter,
@@ -83,46 +131,51 @@ class MergeDataSetJob(opts: MergeDataSetJobOptions)
       paths: Seq[Path],
       outputDataSetPath: Path,
       name: String,
-      description: String): Try[Seq[DataStoreFile]] = {
-    dataSetType match {
+      description: String,
+      parallelism: Int,
+      loadTimeout: FiniteDuration,
+      writer: String => String): Try[Seq[DataStoreFile]] = {
+
+    val tx: Try[DataSetType] = dataSetType match {
       case DataSetMetaTypes.Subread =>
-        for {
-          dataset <- Try(
-            DataSetMerger
-              .mergeSubreadSetPathsTo(paths, name, outputDataSetPath))
-          dsFile <- Success(
-            toDataStoreFile(dataset,
-                            outputDataSetPath,
-                            description,
-                            SOURCE_ID))
-          reportFiles <- Try(
-            DataSetReports.runAll(outputDataSetPath,
-                                  DataSetMetaTypes.Subread,
-                                  jobRoot,
-                                  jobTypeId,
-                                  resultsWriter))
-        } yield Seq(dsFile) ++ reportFiles
+        Try(
+          loadMergeAndWrite[SubreadSet](paths,
+                                        DataSetLoader.loadAndResolveSubreadSet,
+                                        () => new SubreadSet(),
+                                        DataSetWriter.writeSubreadSet,
+                                        outputDataSetPath,
+                                        name,
+                                        parallelism,
+                                        loadTimeout,
+                                        writer))
       case DataSetMetaTypes.HdfSubread =>
-        for {
-          dataset <- Try(
-            DataSetMerger
-              .mergeHdfSubreadSetPathsTo(paths, name, outputDataSetPath))
-          dsFile <- Success(
-            toDataStoreFile(dataset,
-                            outputDataSetPath,
-                            description,
-                            SOURCE_ID))
-          reportFiles <- Try(
-            DataSetReports.runAll(outputDataSetPath,
-                                  DataSetMetaTypes.HdfSubread,
-                                  jobRoot,
-                                  jobTypeId,
-                                  resultsWriter))
-        } yield Seq(dsFile) ++ reportFiles
+        Try(
+          loadMergeAndWrite[HdfSubreadSet](
+            paths,
+            DataSetLoader.loadAndResolveHdfSubreadSet,
+            () => new HdfSubreadSet(),
+            DataSetWriter.writeHdfSubreadSet,
+            outputDataSetPath,
+            name,
+            parallelism,
+            loadTimeout,
+            writer))
       case x =>
         Failure(new Exception(
           s"Unsupported dataset type $x. Only SubreadSet and HdfSubreadSet are supported."))
     }
+
+    for {
+      dataset <- tx
+      dsFile <- Success(
+        toDataStoreFile(dataset, outputDataSetPath, description, SOURCE_ID))
+      reportFiles <- Try(
+        DataSetReports.runAll(outputDataSetPath,
+                              dataSetType,
+                              jobRoot,
+                              jobTypeId,
+                              resultsWriter))
+    } yield Seq(dsFile) ++ reportFiles
   }
 
   def runner(job: JobResourceBase,
@@ -170,7 +223,11 @@ class MergeDataSetJob(opts: MergeDataSetJobOptions)
                                paths,
                                outputDataSetPath,
                                name,
-                               description)
+                               description,
+                               Math.max(config.executionPools.datasetIoThreads,
+                                        1),
+                               config.executionPools.datasetLoadTimeout,
+                               writer)
       dataStore <- Success(PacBioDataStore.fromFiles(dsFiles ++ Seq(logFile)))
       _ <- Try(writeDataStore(dataStore, datastoreJson))
       _ <- Try(
@@ -211,3 +268,59 @@ class MergeDataSetJob(opts: MergeDataSetJobOptions)
     }
   }
 }
+
+object MergeDataSetJob {
+
+  /**
+    * Load (and validate) the DataSets concurrently on the ExecutionContext and
+    * add them to the merge in the order of the paths.
+    *
+    * At most parallelism DataSets are loaded (or waiting to be merged) at a
+    * time, the peak memory is bounded by the merged DataSet and parallelism
+    * input DataSets.
+    *
+    * @param loadTimeout Max time to wait for each DataSet to be loaded. The merge
+    *                    fails with a TimeoutException (e.g., a stalled filesystem)
+    * @param onLoaded Called (from the calling thread) with the path and the
+    *                 load time (in ms) of each DataSet, in the order of the paths
+    */
+  def loadAndMerge[T <: DataSetType](paths: Seq[Path],
+                                     loader: Path => T,
+                                     builder: DataSetMergeBuilder[T],
+                                     parallelism: Int,
+                                     loadTimeout: FiniteDuration,
+                                     onLoaded: (Path, Long) => Unit)(
+      ec: ExecutionContext): DataSetMergeBuilder[T] = {
+
+    def load(path: Path): (T, Long) = {
+      val startedAt = System.currentTimeMillis()
+      val ds = loader(path)
+      DataSetValidator.validate(ds, path.toAbsolutePath.getParent) match {
+        case Right(_) => (ds, System.currentTimeMillis() - startedAt)
+        case Left(msg) =>
+          throw new IllegalArgumentException(s"Invalid DataSet $path. $msg")
+      }
+    }
+
+    val remaining = paths.iterator
+    val pending = mutable.Queue.empty[(Path, Future[(T, Long)])]
+
+    def submit(): Unit =
+      if (remaining.hasNext) {
+        val path = remaining.next()
+        pending.enqueue((path, Future(load(path))(ec)))
+      }
+
+    (0 until Math.max(parallelism, 1)).foreach(_ => submit())
+
+    while (pending.nonEmpty) {
+      val (path, fx) = pending.dequeue()
+      val (ds, loadMs) = blocking(Await.result(fx, loadTimeout))
+      onLoaded(path, loadMs)
+      builder.add(ds)
+      submit()
+    }
+
+    builder
+  }
+}
@@ -1,7 +1,7 @@
 package com.pacbio.secondary.smrtlink.jobtypes
 
 import java.net.{URI, URL}
-import java.nio.file.Path
+import java.nio.file.{Files, Path}
 import java.util.UUID
 
 import scala.concurrent.{Await, Future}
@@ -70,6 +70,12 @@ object PbsmrtpipeJobUtils {
   private def resolveTerminateScript(jobDir: Path): Path =
     jobDir.resolve(PBSMRTPIPE_PID_KILL_FILE_SCRIPT)
 
+  /**
+    * The terminate script is written by pbsmrtpipe when the (master) process is started
+    */
+  def canTerminateJobFromDir(jobDir: Path): Boolean =
+    Files.exists(resolveTerminateScript(jobDir))
+
   /**
     * This needs a better error handling.
     *
@@ -18,6 +18,7 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.{
 }
 import com.pacbio.secondary.smrtlink.analysis.tools.timeUtils
 import com.pacbio.secondary.smrtlink.models.ConfigModels.SystemJobConfig
+import com.pacbio.secondary.smrtlink.models.JobLeaseFence
 import com.typesafe.scalalogging.LazyLogging
 import org.apache.commons.io.FileUtils
 import org.joda.time.{DateTime => JodaDateTime}
@@ -87,14 +88,16 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
         s"DatastoreFile ${dataStoreFile.uniqueId} name:${dataStoreFile.name} Unable to find path: ${dataStoreFile.path}"))
   }
 
-  private def importDataStore(datastoreFiles: Seq[DataStoreFile],
-                              jobUUID: UUID): Future[Seq[MessageResponse]] = {
+  private def importDataStore(
+      datastoreFiles: Seq[DataStoreFile],
+      jobUUID: UUID,
+      fence: JobLeaseFence): Future[Seq[MessageResponse]] = {
 
     for {
       validFiles <- Future.sequence(datastoreFiles.map(validateDsFile))(
         implicitly,
         ec)
-      results <- dao.importDataStoreFiles(validFiles, jobUUID)
+      results <- dao.importDataStoreFiles(validFiles, jobUUID, fence = fence)
     } yield results
   }
 
@@ -106,16 +109,18 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
     * Filter out non-chunked files. The are presumed to be intermediate files
     *
     */
-  private def importAbleFile(x: ImportAble,
-                             jobUUID: UUID): Future[Seq[MessageResponse]] = {
+  private def importAbleFile(
+      x: ImportAble,
+      jobUUID: UUID,
+      fence: JobLeaseFence): Future[Seq[MessageResponse]] = {
     x match {
-      case x: DataStoreFile => importDataStore(Seq(x), jobUUID)
+      case x: DataStoreFile => importDataStore(Seq(x), jobUUID, fence)
       case x: PacBioDataStore =>
         val dataStoreFiles = loadFiles(x.files, None)
         val nonChunkedFiles = dataStoreFiles.filter(f => !f.isChunked)
         logger.info(
           s"Job $jobUUID Loaded ${dataStoreFiles.length} raw files, ${nonChunkedFiles.length} Non-Chunked files")
-        importDataStore(nonChunkedFiles, jobUUID)
+        importDataStore(nonChunkedFiles, jobUUID, fence)
     }
   }
 
@@ -123,12 +128,14 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
       uuid: UUID,
       state: AnalysisJobStates.JobStates,
       message: Option[String],
-      errorMessage: Option[String]): Future[EngineJob] = {
+      errorMessage: Option[String],
+      fence: JobLeaseFence): Future[EngineJob] = {
     dao.updateJobState(
       uuid,
       state,
       message.getOrElse(s"Updating Job $uuid state to $state"),
-      errorMessage
+      errorMessage,
+      fence
     )
   }
 
@@ -138,9 +145,11 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
       state: AnalysisJobStates.JobStates,
       message: Option[String],
       timeout: FiniteDuration,
+      fence: JobLeaseFence,
       errorMessage: Option[String] = None): Try[EngineJob] = {
     Try {
-      Await.result(updateJobState(uuid, state, message, errorMessage), timeout)
+      Await.result(updateJobState(uuid, state, message, errorMessage, fence),
+                   timeout)
     }
   }
 
@@ -150,13 +159,18 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
     * @param jobId   Job Id
     * @param x       This is the OutType from a job (This should be improved to use this abuse of "any"
     * @param timeout timeout for the entire importing process (file IO + db insert)
+    * @param fence   Fence of the lease of the job (see JobLeaseFence)
     * @return
     */
-  def importer(jobId: UUID, x: Any, timeout: FiniteDuration): Try[String] = {
+  def importer(
+      jobId: UUID,
+      x: Any,
+      timeout: FiniteDuration,
+      fence: JobLeaseFence = JobLeaseFence.LeaseHeld): Try[String] = {
     x match {
       case ds: ImportAble =>
         Try(
-          Await.result(importAbleFile(ds, jobId).map(messages =>
+          Await.result(importAbleFile(ds, jobId, fence).map(messages =>
                          messages.map(_.message).reduce(_ + "\n" + _)),
                        timeout))
       case _ => Success("No ImportAble. Skipping importing")
@@ -179,6 +193,7 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
       timeout: FiniteDuration): Try[String] = {
 
     val jobId = resource.jobId
+    val fence = JobLeaseFence.fromEpoch(resource.leaseEpoch)
 
     def andWrite(msg: String) = Try(writer.writeLine(msg))
 
@@ -187,13 +202,14 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
         .toJob()
         .runTry(resource, writer, dao, config) // Returns Try[#Out] of the job type
       _ <- andWrite(s"Successfully completed running core job. $results")
-      msg <- importer(jobId, results, timeout)
+      msg <- importer(jobId, results, timeout, fence)
       _ <- andWrite(msg)
       updatedEngineJob <- updateJobStateBlock(
         jobId,
         AnalysisJobStates.SUCCESSFUL,
         Some(s"Successfully run job $jobId"),
-        timeout)
+        timeout,
+        fence)
       _ <- andWrite(
         s"Updated job ${updatedEngineJob.id} state to ${updatedEngineJob.state}")
       _ <- andWrite(
@@ -237,15 +253,18 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
     *
     * @param jobId   : Job UUID
     * @param timeout Max timeout for the database operation.
+    * @param fence   Fence of the lease of the job (see JobLeaseFence)
     */
   private def recoverAndUpdateToFailed[T](
       jobId: UUID,
-      timeout: FiniteDuration): PartialFunction[Throwable, Try[T]] = {
+      timeout: FiniteDuration,
+      fence: JobLeaseFence): PartialFunction[Throwable, Try[T]] = {
     case NonFatal(ex) =>
       updateJobStateBlock(jobId,
                           AnalysisJobStates.FAILED,
                           Some(s"Failed to Run Job $jobId"),
                           timeout,
+                          fence,
                           Some(ex.getMessage))
         .flatMap(engineJob =>
           Failure(new Exception(
@@ -279,7 +298,9 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
                                  timeout)
     } yield results
 
-    tx.recoverWith(recoverAndUpdateToFailed(engineJob.uuid, timeout)) match {
+    val fence = JobLeaseFence.fromEpoch(resource.leaseEpoch)
+
+    tx.recoverWith(recoverAndUpdateToFailed(engineJob.uuid, timeout, fence)) match {
       case Success(msg) => Success(msg)
       case Failure(ex) =>
         val msg =
@@ -399,15 +420,22 @@ class ServiceJobRunner(dao: JobsDao, config: SystemJobConfig)(
     * to compose AND also have context to the necessary JobWriter that will enable writing
     * locally to the job log, as well to the system log.
     *
+    * @param leaseEpoch Epoch of the lease acquired by the claim of the job. The state updates and the
+    *                   datastore files of the run are rejected once the lease is no longer held.
     */
-  def run(engineJob: EngineJob, startedAt: Option[JodaDateTime] = None)(
+  def run(engineJob: EngineJob,
+          startedAt: Option[JodaDateTime] = None,
+          leaseEpoch: Option[Int] = None)(
       implicit timeout: FiniteDuration = 3.minutes): Try[String] = {
 
     val logOnlyWriter = new LogJobResultsWriter()
 
     // If the resource failed to setup, the mark the job as failed
-    val tx = Try(setupCoreJobResources(engineJob))
-      .recoverWith(recoverAndUpdateToFailed(engineJob.uuid, timeout))
+    val tx = Try(setupCoreJobResources(engineJob, leaseEpoch))
+      .recoverWith(
+        recoverAndUpdateToFailed(engineJob.uuid,
+                                 timeout,
+                                 JobLeaseFence.fromEpoch(leaseEpoch)))
 
     // to adhere to the transform interface
     def runCoreJob(x: (FileJobResultsWriter, JobResource)): Try[String] =
@@ -29,7 +29,8 @@ import com.pacbio.secondary.smrtlink.jsonprotocols.{
 import com.pacbio.secondary.smrtlink.models.ConfigModels.SystemJobConfig
 import com.pacbio.secondary.smrtlink.models.{
   BoundServiceEntryPoint,
-  EngineJobEntryPointRecord
+  EngineJobEntryPointRecord,
+  JobLeaseFence
 }
 import com.pacbio.secondary.smrtlink.validators.ValidateServiceDataSetUtils
 import com.typesafe.scalalogging.LazyLogging
@@ -146,12 +147,19 @@ package object jobtypes {
         JobConstants.DATASTORE_FILE_MASTER_DESC
       )
 
-      dao.importDataStoreFile(file, resources.jobId, projectId).map(_ => file)
+      dao
+        .importDataStoreFile(file,
+                             resources.jobId,
+                             projectId,
+                             JobLeaseFence.fromEpoch(resources.leaseEpoch))
+        .map(_ => file)
     }
 
+    // The Engine runs the jobs on dedicated pools (see EngineExecutionContexts). The
+    // blocking marker is for callers on a ForkJoin pool (e.g., the http layer)
     def runAndBlock[T](fx: Future[T], timeOut: FiniteDuration): Try[T] =
       Try {
-        Await.result(fx, timeOut)
+        blocking(Await.result(fx, timeOut))
       }
 
     /**
@@ -296,7 +304,7 @@ package object jobtypes {
     def validateOptionsAndBlock[T](
         fx: => Future[T],
         timeout: FiniteDuration): Option[InvalidJobOptionError] = {
-      Try(Await.result(fx, timeout)) match {
+      Try(blocking(Await.result(fx, timeout))) match {
         case Success(_) => None
         case Failure(ex) =>
           Some(
@@ -357,7 +365,7 @@ package object jobtypes {
             EngineJobEntryPointRecord(ds.uuid, datasetType.toString)))
         } yield entryPoints
 
-      Await.result(blocking(fx), timeout)
+      blocking(Await.result(fx, timeout))
     }
   }
 
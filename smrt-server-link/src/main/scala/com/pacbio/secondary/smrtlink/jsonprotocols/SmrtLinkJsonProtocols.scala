@@ -244,7 +244,14 @@ trait SmrtLinkJsonProtocols
   // Jobs
   implicit val pbSimpleStatusFormat = jsonFormat3(SimpleStatus)
   implicit val engineJobEntryPointsFormat = jsonFormat3(EngineJobEntryPoint)
-  implicit val jobUpdateFormat = jsonFormat3(UpdateJobRecord)
+  implicit val jobUpdateFormat = jsonFormat4(UpdateJobRecord)
+  implicit val jobQueueEntryFormat = jsonFormat11(JobQueueEntry)
+  implicit val executionPoolMetricsFormat = jsonFormat10(
+    ExecutionPoolMetrics)
+  implicit val entityCacheMetricsFormat = jsonFormat9(EntityCacheMetrics)
+  implicit val dbPoolMetricsFormat = jsonFormat10(DbPoolMetrics)
+  implicit val jobTypeStateCountFormat = jsonFormat3(JobTypeStateCount)
+  implicit val systemSummaryFormat = jsonFormat5(SystemSummary)
 
   // DataSet
   implicit val dataSetMetadataFormat = jsonFormat19(DataSetMetaDataSet)
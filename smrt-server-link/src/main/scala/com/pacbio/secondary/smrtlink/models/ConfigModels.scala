@@ -8,6 +8,8 @@ import com.pacbio.secondary.smrtlink.analysis.pbsmrtpipe.PbsmrtpipeEngineOptions
 import com.pacbio.secondary.smrtlink.database.SmrtLinkDatabaseConfig
 import spray.json._
 
+import scala.concurrent.duration._
+
 /**
   * Created by mkocher on 1/4/17.
   */
@@ -67,6 +69,120 @@ object ConfigModels {
 
   // Adding a new Job specific "system" config to be used in the new Job running layer
   // This should replace the EngineConfig layer
+  /**
+    * Host resource budget of the jobs run by the engine.
+    *
+    * @param maxNproc        Max number of processors. If <= 0, the number of available processors will be used
+    * @param maxMemoryMb     Max Memory (in MB). If <= 0, the total physical memory will be used
+    * @param memoryPerProcMb Memory required per processor (in MB)
+    * @param maxBackfillWait Max time a job that doesn't fit is backfilled around, then
+    *                        the resources are reserved for it
+    */
+  case class EngineResourceConfig(maxNproc: Int,
+                                  maxMemoryMb: Int,
+                                  memoryPerProcMb: Int,
+                                  maxBackfillWait: FiniteDuration = 1.hour)
+
+  /**
+    * Number of threads of the dedicated (bounded) thread pools used by the engine.
+    * A value <= 0 will use the number of workers of the pool category.
+    *
+    * @param quickThreads   Threads running quick jobs
+    * @param generalThreads Threads running general (i.e., long running) jobs
+    * @param importThreads  Threads running IO heavy import jobs (import-dataset, merge-datasets, ...)
+    * @param daoThreads     Threads running the Future callbacks of the job runner
+    * @param datasetIoThreads Max number of input datasets loaded (and validated) concurrently
+    *                         by a merge-datasets job. Each job uses its own pool, the merge jobs
+    *                         run on the import pool, hence at most importThreads * datasetIoThreads
+    *                         threads are loading datasets.
+    * @param datasetLoadTimeout Max time to wait for an input dataset of a merge-datasets job to be
+    *                           loaded (and validated)
+    */
+  case class EngineExecutionPoolsConfig(
+      quickThreads: Int,
+      generalThreads: Int,
+      importThreads: Int,
+      daoThreads: Int,
+      datasetIoThreads: Int = 8,
+      datasetLoadTimeout: FiniteDuration = 10.minutes)
+
+  /**
+    * Batching (i.e., group commit) of the Job state updates and Job events
+    *
+    * @param enabled      If false, each write is run in its own transaction
+    * @param window       Time to wait for more writes before the batch is written
+    * @param maxBatchSize Max number of writes per transaction
+    */
+  case class WriteBehindConfig(enabled: Boolean = true,
+                               window: FiniteDuration = 5.millis,
+                               maxBatchSize: Int = 200)
+
+  /**
+    * Read-through cache of the jobs, datasets, datastore files and projects looked up
+    * by id (see DaoEntityCaches)
+    *
+    * @param enabled If false, each lookup is loaded from the db
+    * @param maxSize Max number of entries of each cache
+    * @param ttl     Entries are loaded again after this time. This bounds the staleness of
+    *                the updates made by other processes.
+    */
+  case class EntityCacheConfig(enabled: Boolean = true,
+                               maxSize: Int = 10000,
+                               ttl: FiniteDuration = 10.seconds)
+
+  /**
+    * Connection pool of the SMRT Link db (see DbConnectionPools)
+    *
+    * @param maxConnections    Max number of connections (and slick threads) of the pool
+    * @param queueSize         Max number of db actions waiting for a thread
+    * @param connectionTimeout Max time to wait for a connection before the action fails
+    */
+  case class DbPoolConfig(name: String,
+                          maxConnections: Int,
+                          queueSize: Int = 1000,
+                          connectionTimeout: FiniteDuration = 30.seconds)
+
+  /**
+    * Lease of the jobs claimed by an Engine node. Several nodes (i.e., processes) can run jobs
+    * against the same database.
+    *
+    * @param nodeId      Unique id of the Engine node
+    * @param ttl         The lease of a job expires if the node doesn't renew it (by heartbeat) within this time
+    * @param maxAttempts Max number of times a job is claimed. A job with an expired lease is requeued (i.e.,
+    *                    SUBMITTED) if the number of attempts is less than this, otherwise it is marked as FAILED.
+    */
+  case class JobLeaseConfig(nodeId: String,
+                            ttl: FiniteDuration,
+                            maxAttempts: Int) {
+    def heartbeatInterval: FiniteDuration = ttl / 3
+  }
+
+  /**
+    * Watchdog of the RUNNING jobs of the Engine node. A job without any activity (job update,
+    * job event or job task update) within the window (from when the worker started the job)
+    * is stale. The processes of the job are killed, the job is marked as FAILED, or requeued
+    * (i.e., SUBMITTED), and the worker is replaced.
+    *
+    * @param pollInterval    Interval of the stale job check
+    * @param staleAfter      Window of a job run by a general worker
+    * @param quickStaleAfter Window of a job run by a quick worker
+    * @param requeue         Requeue the stale job, otherwise the job is marked as FAILED
+    * @param logOnly         Only log the stale jobs, the jobs are not recovered
+    */
+  case class JobWatchdogConfig(pollInterval: FiniteDuration,
+                               staleAfter: FiniteDuration,
+                               quickStaleAfter: FiniteDuration,
+                               requeue: Boolean = false,
+                               logOnly: Boolean = false)
+
+  /**
+    * Archive of the job events and job tasks of the completed jobs (see JobsDao.archiveJobs).
+    *
+    * @param archiveAfter Jobs completed (i.e., last updated) before this are archived
+    * @param maxNumJobs   Max number of jobs archived per run
+    */
+  case class JobArchiveConfig(archiveAfter: FiniteDuration, maxNumJobs: Int)
+
   case class SystemJobConfig(pbSmrtPipeEngineOptions: PbsmrtpipeEngineOptions,
                              host: String,
                              port: Int,
@@ -81,7 +197,15 @@ object ConfigModels {
                              dbConfig: SmrtLinkDatabaseConfig,
                              mail: Option[MailConfig],
                              wso2Port: Int,
-                             eveApiSecret: String) {
+                             eveApiSecret: String,
+                             jobNotifyPollInterval: Option[FiniteDuration] =
+                               None,
+                             engineResources: Option[EngineResourceConfig] =
+                               None,
+                             executionPools: EngineExecutionPoolsConfig =
+                               EngineExecutionPoolsConfig(0, 0, 4, 8),
+                             jobLease: Option[JobLeaseConfig] = None,
+                             watchdog: Option[JobWatchdogConfig] = None) {
 
     // Attempting to centralize this
     // This might require clarification of how dnsName is set, the
@@ -4,11 +4,12 @@ import java.io.ByteArrayInputStream
 import java.nio.file.{Paths, Path}
 import java.util.UUID
 import javax.xml.XMLConstants
-import javax.xml.bind.{Unmarshaller, JAXBContext}
+import javax.xml.bind.Unmarshaller
 import javax.xml.datatype.XMLGregorianCalendar
 import javax.xml.transform.stream.StreamSource
 import javax.xml.validation.SchemaFactory
 
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.JaxbContexts
 import com.pacbio.secondary.smrtlink.dependency.Singleton
 import com.pacbio.secondary.smrtlink.services.PacBioServiceErrors.UnprocessableEntityError
 import com.pacbio.secondary.smrtlink.time.PacBioDateTimeFormat
@@ -61,10 +62,9 @@ object DataModelParserImpl extends DataModelParser {
 //    val validator = schema.newValidator()
 //    validator.validate(new StreamSource(xmlContentBytes))
 
-      val context: JAXBContext =
-        JAXBContext.newInstance(new PacBioDataModel().getClass)
-      val unmarshaller: Unmarshaller = context.createUnmarshaller()
-      val parsedModel = new PacBioDataModel().getClass
+      val unmarshaller: Unmarshaller =
+        JaxbContexts.unmarshaller(classOf[PacBioDataModel])
+      val parsedModel = classOf[PacBioDataModel]
         .cast(unmarshaller.unmarshal(xmlContentBytes))
 
       val runModels = parsedModel.getExperimentContainer.getRuns.getRun
@@ -406,7 +406,185 @@ case class UpdateJobTaskRecord(uuid: UUID,
 
 case class UpdateJobRecord(name: Option[String],
                            comment: Option[String],
-                           tags: Option[String])
+                           tags: Option[String],
+                           priority: Option[Int] = None)
+
+/**
+  * SUBMITTED Job in the run queue
+  *
+  * @param position             Position in the queue (0 is the next job to run)
+  * @param estimatedWaitSeconds Estimated time (in seconds) until the job is started. Computed from the
+  *                             run time of recently completed jobs of the same job type and the number of workers.
+  */
+case class JobQueueEntry(position: Int,
+                         jobId: Int,
+                         uuid: UUID,
+                         name: String,
+                         jobTypeId: String,
+                         priority: Int,
+                         projectId: Int,
+                         createdBy: Option[String],
+                         createdAt: JodaDateTime,
+                         estimatedWaitSeconds: Option[Long],
+                         estimatedStartAt: Option[JodaDateTime])
+
+/**
+  * Snapshot of a dedicated Engine thread pool
+  *
+  * @param saturation         Fraction of the threads that are busy (0.0 to 1.0)
+  * @param queueDepth         Number of tasks waiting for a thread
+  * @param meanQueueWaitMs    Mean time (in ms) a task waited for a thread
+  * @param meanRunMs          Mean time (in ms) to run a task
+  */
+case class ExecutionPoolMetrics(name: String,
+                                maxThreads: Int,
+                                activeThreads: Int,
+                                saturation: Double,
+                                queueDepth: Int,
+                                submittedTasks: Long,
+                                completedTasks: Long,
+                                meanQueueWaitMs: Double,
+                                maxQueueWaitMs: Long,
+                                meanRunMs: Double) {
+  def summary: String =
+    f"Pool $name active/max $activeThreads/$maxThreads queue:$queueDepth completed:$completedTasks mean-wait:$meanQueueWaitMs%.1fms max-wait:${maxQueueWaitMs}ms mean-run:$meanRunMs%.1fms"
+}
+
+/**
+  * Snapshot of a db connection pool
+  *
+  * @param pendingThreads     Number of threads waiting for a connection
+  * @param numAcquired        Number of connections acquired from the pool
+  * @param meanAcquireMs      Mean time (in ms) to acquire a connection
+  * @param acquireMsHistogram Number of acquired connections by acquire time bucket (e.g., "<=5ms")
+  */
+case class DbPoolMetrics(name: String,
+                         maxConnections: Int,
+                         activeConnections: Int,
+                         idleConnections: Int,
+                         totalConnections: Int,
+                         pendingThreads: Int,
+                         numAcquired: Long,
+                         meanAcquireMs: Double,
+                         maxAcquireMs: Long,
+                         acquireMsHistogram: Map[String, Long]) {
+  def summary: String =
+    f"Db pool $name active/idle/max $activeConnections/$idleConnections/$maxConnections pending:$pendingThreads acquired:$numAcquired mean-acquire:$meanAcquireMs%.1fms max-acquire:${maxAcquireMs}ms"
+}
+
+/**
+  * Snapshot of a (JobsDao) entity cache
+  *
+  * @param hits          Number of lookups returned from the cache
+  * @param misses        Number of lookups loaded from the db
+  * @param evictions     Number of entries removed by the size bound or the ttl
+  * @param invalidations Number of entries (or whole cache) removed by an update of the entity
+  */
+case class EntityCacheMetrics(name: String,
+                              enabled: Boolean,
+                              size: Long,
+                              maxSize: Long,
+                              hits: Long,
+                              misses: Long,
+                              hitRate: Double,
+                              evictions: Long,
+                              invalidations: Long) {
+  def summary: String =
+    f"Cache $name size:$size/$maxSize hits:$hits misses:$misses hit-rate:$hitRate%.2f evictions:$evictions invalidations:$invalidations"
+}
+
+/**
+  * Lease of a RUNNING Job held by an Engine node (see EngineCoreJobManagerActor)
+  *
+  * @param nodeId    Id of the Engine node running the job
+  * @param expiresAt The job is considered orphaned if the lease isn't renewed before this time. None if the
+  *                  lease is not held.
+  * @param attempts  Number of times the job was claimed
+  */
+case class EngineJobLease(jobId: Int,
+                          nodeId: String,
+                          acquiredAt: JodaDateTime,
+                          expiresAt: Option[JodaDateTime],
+                          attempts: Int)
+
+/**
+  * Fence of the state updates and the datastore files of a job against the lease of
+  * the job (see EngineJobLease). The attempts of the lease is the epoch of the lease,
+  * it is incremented each time the job is claimed.
+  */
+sealed trait JobLeaseFence
+
+object JobLeaseFence {
+
+  /**
+    * Not checked against the lease (e.g., the Engine manager failing or requeueing a job)
+    */
+  case object NotFenced extends JobLeaseFence
+
+  /**
+    * The update is from the run of the job started with the lease epoch. Rejected unless
+    * the lease is held with the same epoch (i.e., the job was not requeued, claimed
+    * again or completed by another run).
+    */
+  case class Epoch(attempts: Int) extends JobLeaseFence
+
+  /**
+    * The epoch of the caller is unknown (e.g., the http API). Rejected if the lease of
+    * the job was released (i.e., the job was requeued).
+    */
+  case object LeaseHeld extends JobLeaseFence
+
+  def fromEpoch(leaseEpoch: Option[Int]): JobLeaseFence =
+    leaseEpoch.map(Epoch).getOrElse(LeaseHeld)
+}
+
+/**
+  * Number of children jobs of a MultiJob in the state. The counts are updated in the same
+  * transaction as the children job state changes.
+  */
+case class MultiJobStateCount(multiJobId: Int,
+                              state: AnalysisJobStates.JobStates,
+                              numJobs: Int)
+
+/**
+  * Slot of a row count maintained by the db triggers (see V27__CreateSystemCounts). The
+  * count of the (counter, key, subKey) is the sum of the slots.
+  */
+case class SystemCount(counter: String,
+                       key: String,
+                       subKey: String,
+                       slot: Int,
+                       num: Long)
+
+/**
+  * Archived job events and job tasks of a completed job (see V28__CreateJobArchives). The
+  * events and tasks are stored as JSON arrays.
+  */
+case class JobArchive(jobId: Int,
+                      events: String,
+                      tasks: String,
+                      numEvents: Int,
+                      numTasks: Int,
+                      archivedAt: JodaDateTime)
+
+case class JobTypeStateCount(jobTypeId: String, state: String, numJobs: Long)
+
+/**
+  * Summary of the number of datasets (by dataset short name, e.g., "subreads"), jobs,
+  * job events, entry points and datastore files in the db.
+  */
+case class SystemSummary(dataSets: Map[String, Long],
+                         jobs: Seq[JobTypeStateCount],
+                         numJobEvents: Long,
+                         numEntryPoints: Long,
+                         numDataStoreFiles: Long) {
+  def numDataSets(shortName: String): Long = dataSets.getOrElse(shortName, 0L)
+}
+
+/**
+  * Entry point (dataset) of a CREATED child job of a MultiJob that hasn't been imported yet.
+  */
+case class EngineJobPendingEntryPoint(jobId: Int, datasetUUID: UUID)
 
 case class JobChangeStateMessage(job: EngineJob)
 case class RunChangedStateMessage(run: RunSummary)
@@ -1150,10 +1328,48 @@ object QueryOperators {
   }
 }
 
+/**
+  * Opaque token of the next page of a keyset paginated listing. The listings are ordered
+  * by id (descending), the token encodes the last id of the page and the next page
+  * starts after it. Unlike the offset (marker), the cost of a page doesn't depend on the
+  * depth of the page.
+  */
+object KeysetPageToken {
+
+  // Response header of the next page token. Not set on the last page
+  final val HEADER = "X-Next-Page-Token"
+
+  private val PREFIX = "id:"
+
+  def encode(lastId: Int): String =
+    java.util.Base64.getUrlEncoder.withoutPadding
+      .encodeToString(s"$PREFIX$lastId".getBytes("UTF-8"))
+
+  def decode(token: String): Option[Int] =
+    Try(new String(java.util.Base64.getUrlDecoder.decode(token), "UTF-8")).toOption
+      .filter(_.startsWith(PREFIX))
+      .flatMap(sx => Try(sx.stripPrefix(PREFIX).toInt).toOption)
+
+  /**
+    * Token of the next page, None if this is the last page
+    *
+    * @param limit Page size
+    * @param ids   Ids of the page
+    */
+  def next(limit: Int, ids: Seq[Int]): Option[String] =
+    if (ids.nonEmpty && ids.length >= limit) Some(encode(ids.min)) else None
+}
+
 trait SearchCriteriaBase {
   val isActive: Option[Boolean]
   val limit: Int
   val marker: Option[Int]
+  val pageToken: Option[String]
+
+  /**
+    * Id of the last record of the previous page (keyset pagination)
+    */
+  def pageAfterId: Option[Int] = pageToken.flatMap(KeysetPageToken.decode)
 
   def operators: Map[String, Option[String]]
 
@@ -1178,7 +1394,8 @@ trait SearchCriteriaBase {
       Map(
         "limit" -> Some(limit.toString),
         "isActive" -> isActive.map(_.toString),
-        "marker" -> marker.map(_.toString)
+        "marker" -> marker.map(_.toString),
+        "pageToken" -> pageToken
       )
 
     val ms = Seq(operators, m2).map(flattenMap).reduce(_ ++ _)
@@ -1209,7 +1426,8 @@ case class DataSetSearchCriteria(
     jobId: Option[QueryOperators.IntQueryOperator] = None,
     parentUuid: Option[QueryOperators.UUIDOptionQueryOperator] = None,
     projectId: Option[QueryOperators.IntQueryOperator] = None,
-    numChildren: Option[QueryOperators.IntQueryOperator] = None)
+    numChildren: Option[QueryOperators.IntQueryOperator] = None,
+    pageToken: Option[String] = None)
     extends SearchCriteriaBase {
 
   /**
@@ -1271,7 +1489,8 @@ case class JobSearchCriteria(
     parentMultiJobId: Option[QueryOperators.IntQueryOperator] = None,
     importedAt: Option[QueryOperators.DateTimeQueryOperator] = None,
     tags: Option[QueryOperators.StringQueryOperator] = None,
-    subJobTypeId: Option[QueryOperators.StringQueryOperator] = None)
+    subJobTypeId: Option[QueryOperators.StringQueryOperator] = None,
+    pageToken: Option[String] = None)
     extends SearchCriteriaBase {
 
   def withProject(projectId: Int) =
@@ -1323,6 +1542,23 @@ object JobSearchCriteria {
       isActive = None)
 }
 
+/**
+  * Routing of the (read only) searches and listings of a request. The reads are made from
+  * the read replica (if configured), unless the client made a write within the
+  * read-your-writes window.
+  *
+  * @param clientLastWriteAt Time (ms) of the last write of the client, 0 if the client
+  *                          hasn't made a write. None if the reads aren't made for a client
+  *                          request, these are always made from the primary.
+  */
+case class ReadRouting(clientLastWriteAt: Option[Long])
+
+object ReadRouting {
+  val PRIMARY = ReadRouting(None)
+
+  def fromClient(lastWriteAt: Long) = ReadRouting(Some(lastWriteAt))
+}
+
 // Options used for Merging Datasets
 // FIXME. This should use a DataSetMetaType, not String!
 case class DataSetMergeServiceOptions(datasetType: String,
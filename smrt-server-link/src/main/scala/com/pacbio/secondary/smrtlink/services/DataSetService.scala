@@ -9,12 +9,14 @@ import scala.language.postfixOps
 import scala.reflect.ClassTag
 //import shapeless.HNil
 
+import akka.NotUsed
 import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport
 import akka.http.scaladsl.marshalling.Marshaller
 import akka.http.scaladsl.server.Route
 import akka.actor.ActorRef
 import akka.http.scaladsl.marshalling.ToEntityMarshaller
 import akka.pattern.ask
+import akka.stream.scaladsl.Source
 import spray.json._
 import SprayJsonSupport._
 
@@ -43,7 +45,7 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.{
 }
 import com.pacbio.secondary.smrtlink.analysis.bio.FastaIterator
 import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes
-import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetLoader
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetCache
 
 //
 import collection.JavaConverters._
@@ -72,6 +74,17 @@ trait SearchQueryUtils {
     }
   }
 
+  /**
+    * Validate the (opaque) keyset pagination token
+    */
+  protected def parsePageToken(sx: Option[String]): Future[Option[String]] = {
+    sx match {
+      case Some(token) if KeysetPageToken.decode(token).isEmpty =>
+        Future.failed(UnprocessableEntityError(s"Invalid pageToken `$token`"))
+      case _ => Future.successful(sx)
+    }
+  }
+
   // - If a projectId is provided, return only that Id.
   // - If a projectId is not provided, but a user is logged in, return all projectIds associated with
   // that user, plus the general project id.
@@ -124,7 +137,8 @@ class DataSetService(dao: JobsDao)
     */
   def loadBarcodeNames(barcodeSet: Path): Seq[String] = {
 
-    val bs = DataSetLoader.loadAndResolveBarcodeSet(barcodeSet)
+    val bs = DataSetCache.default.getAndResolve(DataSetMetaTypes.Barcode,
+                                                barcodeSet)
 
     bs.getExternalResources.getExternalResource.asScala
       .find(_.getMetaType == FileTypes.FASTA_BC.fileTypeId)
@@ -158,8 +172,13 @@ class DataSetService(dao: JobsDao)
 
   // SubreadSet
   def getSubreadSet(
-      c: DataSetSearchCriteria): Future[Seq[SubreadServiceDataSet]] =
-    dao.getSubreadDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[SubreadServiceDataSet]] =
+    dao.getSubreadDataSets(c, routing)
+  def streamSubreadSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[SubreadServiceDataSet, NotUsed] =
+    dao.streamSubreadDataSets(c, routing)
   def getSubreadSetById(i: IdAble): Future[SubreadServiceDataSet] =
     dao.getSubreadDataSetById(i)
   def getSubreadSetDetailsById(i: IdAble): Future[String] =
@@ -167,8 +186,13 @@ class DataSetService(dao: JobsDao)
 
   // HdfSubreadSet
   def getHdfSubreadSet(
-      c: DataSetSearchCriteria): Future[Seq[HdfSubreadServiceDataSet]] =
-    dao.getHdfDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[HdfSubreadServiceDataSet]] =
+    dao.getHdfDataSets(c, routing)
+  def streamHdfSubreadSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[HdfSubreadServiceDataSet, NotUsed] =
+    dao.streamHdfDataSets(c, routing)
   def getHdfSubreadById(i: IdAble): Future[HdfSubreadServiceDataSet] =
     dao.getHdfDataSetById(i)
   def getHdfSubreadDetailsById(i: IdAble): Future[String] =
@@ -176,8 +200,13 @@ class DataSetService(dao: JobsDao)
 
   // AlignmentSets
   def getAlignmentSet(
-      c: DataSetSearchCriteria): Future[Seq[AlignmentServiceDataSet]] =
-    dao.getAlignmentDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[AlignmentServiceDataSet]] =
+    dao.getAlignmentDataSets(c, routing)
+  def streamAlignmentSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[AlignmentServiceDataSet, NotUsed] =
+    dao.streamAlignmentDataSets(c, routing)
   def getAlignmentSetById(i: IdAble): Future[AlignmentServiceDataSet] =
     dao.getAlignmentDataSetById(i)
   def getAlignmentSetDetails(i: IdAble): Future[String] =
@@ -185,8 +214,13 @@ class DataSetService(dao: JobsDao)
 
   // ReferenceSets
   def getReferenceSet(
-      c: DataSetSearchCriteria): Future[Seq[ReferenceServiceDataSet]] =
-    dao.getReferenceDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ReferenceServiceDataSet]] =
+    dao.getReferenceDataSets(c, routing)
+  def streamReferenceSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ReferenceServiceDataSet, NotUsed] =
+    dao.streamReferenceDataSets(c, routing)
   def getReferenceSetById(i: IdAble): Future[ReferenceServiceDataSet] =
     dao.getReferenceDataSetById(i)
   def getReferenceSetDetails(i: IdAble): Future[String] =
@@ -194,8 +228,13 @@ class DataSetService(dao: JobsDao)
 
   // GmapReferenceSet
   def getGmapReferenceSet(
-      c: DataSetSearchCriteria): Future[Seq[GmapReferenceServiceDataSet]] =
-    dao.getGmapReferenceDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[GmapReferenceServiceDataSet]] =
+    dao.getGmapReferenceDataSets(c, routing)
+  def streamGmapReferenceSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[GmapReferenceServiceDataSet, NotUsed] =
+    dao.streamGmapReferenceDataSets(c, routing)
   def getGmapReferenceSetById(i: IdAble): Future[GmapReferenceServiceDataSet] =
     dao.getGmapReferenceDataSetById(i)
   def getGmapReferenceSetDetails(i: IdAble): Future[String] =
@@ -203,8 +242,13 @@ class DataSetService(dao: JobsDao)
 
   /// BarcodeSet
   def getBarcodeSet(
-      c: DataSetSearchCriteria): Future[Seq[BarcodeServiceDataSet]] =
-    dao.getBarcodeDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[BarcodeServiceDataSet]] =
+    dao.getBarcodeDataSets(c, routing)
+  def streamBarcodeSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[BarcodeServiceDataSet, NotUsed] =
+    dao.streamBarcodeDataSets(c, routing)
   def getBarcodeSetById(i: IdAble): Future[BarcodeServiceDataSet] =
     dao.getBarcodeDataSetById(i)
   def getBarcodeSetDetails(i: IdAble): Future[String] =
@@ -212,17 +256,27 @@ class DataSetService(dao: JobsDao)
 
   // Consensus Reads
   def getConsensusReadSet(
-      c: DataSetSearchCriteria): Future[Seq[ConsensusReadServiceDataSet]] =
-    dao.getConsensusReadDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ConsensusReadServiceDataSet]] =
+    dao.getConsensusReadDataSets(c, routing)
+  def streamConsensusReadSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ConsensusReadServiceDataSet, NotUsed] =
+    dao.streamConsensusReadDataSets(c, routing)
   def getConsensusReadSetById(i: IdAble): Future[ConsensusReadServiceDataSet] =
     dao.getConsensusReadDataSetById(i)
   def getConsensusReadSetDetails(i: IdAble): Future[String] =
     dao.getConsensusReadDataSetDetailsById(i)
 
   // Consensus AlignmentSets
-  def getConsensusAlignmentSet(c: DataSetSearchCriteria)
-    : Future[Seq[ConsensusAlignmentServiceDataSet]] =
-    dao.getConsensusAlignmentDataSets(c)
+  def getConsensusAlignmentSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ConsensusAlignmentServiceDataSet]] =
+    dao.getConsensusAlignmentDataSets(c, routing)
+  def streamConsensusAlignmentSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ConsensusAlignmentServiceDataSet, NotUsed] =
+    dao.streamConsensusAlignmentDataSets(c, routing)
   def getConsensusAlignmentSetById(
       i: IdAble): Future[ConsensusAlignmentServiceDataSet] =
     dao.getConsensusAlignmentDataSetById(i)
@@ -231,8 +285,13 @@ class DataSetService(dao: JobsDao)
 
   // ContigSets
   def getContigDataSet(
-      c: DataSetSearchCriteria): Future[Seq[ContigServiceDataSet]] =
-    dao.getContigDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[ContigServiceDataSet]] =
+    dao.getContigDataSets(c, routing)
+  def streamContigDataSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[ContigServiceDataSet, NotUsed] =
+    dao.streamContigDataSets(c, routing)
   def getContigDataSetById(i: IdAble): Future[ContigServiceDataSet] =
     dao.getContigDataSetById(i)
   def getContigDataSetDetails(i: IdAble): Future[String] =
@@ -240,8 +299,13 @@ class DataSetService(dao: JobsDao)
 
   // TranscriptSets
   def getTranscriptSet(
-      c: DataSetSearchCriteria): Future[Seq[TranscriptServiceDataSet]] =
-    dao.getTranscriptDataSets(c)
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Future[Seq[TranscriptServiceDataSet]] =
+    dao.getTranscriptDataSets(c, routing)
+  def streamTranscriptSet(
+      c: DataSetSearchCriteria,
+      routing: ReadRouting = ReadRouting.PRIMARY): Source[TranscriptServiceDataSet, NotUsed] =
+    dao.streamTranscriptDataSets(c, routing)
 
   def getTranscriptSetById(i: IdAble): Future[TranscriptServiceDataSet] =
     dao.getTranscriptDataSetById(i)
@@ -293,6 +357,7 @@ class DataSetService(dao: JobsDao)
       isActive: Option[Boolean],
       limit: Int,
       marker: Option[Int],
+      pageToken: Option[String],
       id: Option[String],
       path: Option[String],
       uuid: Option[String],
@@ -315,6 +380,7 @@ class DataSetService(dao: JobsDao)
                             marker = marker)
 
     for {
+      qPageToken <- parsePageToken(pageToken)
       qId <- parseQueryOperator[IntQueryOperator](id,
                                                   IntQueryOperator.fromString)
       qUUID <- parseQueryOperator[UUIDQueryOperator](
@@ -371,19 +437,23 @@ class DataSetService(dao: JobsDao)
         jobId = qJobId,
         parentUuid = qParentUuid,
         projectId = qProjectId,
-        numChildren = qNumChildren
+        numChildren = qNumChildren,
+        pageToken = qPageToken
       )
 
   }
 
   def datasetRoutes[R <: ServiceDataSetMetadata](
       shortName: String,
-      GetDataSets: (DataSetSearchCriteria) => Future[Seq[R]],
+      GetDataSets: (DataSetSearchCriteria, ReadRouting) => Future[Seq[R]],
+      StreamDataSets: (DataSetSearchCriteria,
+                       ReadRouting) => Source[R, NotUsed],
       GetDataSetById: IdAble => Future[R],
       GetDetailsById: IdAble => Future[String])(
       implicit ct: ClassTag[R],
       ma: ToEntityMarshaller[R],
-      sm: ToEntityMarshaller[Seq[R]]): Route =
+      sm: ToEntityMarshaller[Seq[R]],
+      writer: JsonWriter[R]): Route =
     SmrtDirectives.extractOptionalUserRecord { user =>
       pathPrefix(shortName) {
         pathEnd {
@@ -392,6 +462,7 @@ class DataSetService(dao: JobsDao)
               'isActive.as[Boolean].?,
               'limit.as[Int].?,
               'marker.as[Int].?,
+              'pageToken.?,
               'id.?,
               'uuid.?,
               'path.?,
@@ -410,6 +481,7 @@ class DataSetService(dao: JobsDao)
               (isActive,
                limit,
                marker,
+               pageToken,
                id,
                uuid,
                path,
@@ -424,34 +496,56 @@ class DataSetService(dao: JobsDao)
                parentUuid,
                projectId,
                numChildren) =>
+                val fxSearchCriteria = for {
+                  // workaround for this project id oddness in the API
+                  ids <- getProjectIds(dao, projectId.map(_.toInt), user)
+                  searchCriteria <- parseDataSetSearchCriteria(
+                    ids.toSet,
+                    Some(isActive.getOrElse(true)),
+                    limit.getOrElse(
+                      DataSetSearchCriteria.DEFAULT_MAX_DATASETS),
+                    marker,
+                    pageToken,
+                    id,
+                    path,
+                    uuid,
+                    name,
+                    createdAt,
+                    updatedAt,
+                    importedAt,
+                    numRecords,
+                    totalLength,
+                    version,
+                    jobId,
+                    parentUuid,
+                    projectId,
+                    numChildren
+                  )
+                } yield searchCriteria
+
                 encodeResponse {
-                  complete {
-                    for {
-                      // workaround for this project id oddness in the API
-                      ids <- getProjectIds(dao, projectId.map(_.toInt), user)
-                      searchCriteria <- parseDataSetSearchCriteria(
-                        ids.toSet,
-                        Some(isActive.getOrElse(true)),
-                        limit.getOrElse(
-                          DataSetSearchCriteria.DEFAULT_MAX_DATASETS),
-                        marker,
-                        id,
-                        path,
-                        uuid,
-                        name,
-                        createdAt,
-                        updatedAt,
-                        importedAt,
-                        numRecords,
-                        totalLength,
-                        version,
-                        jobId,
-                        parentUuid,
-                        projectId,
-                        numChildren
-                      )
-                      datasets <- GetDataSets(searchCriteria)
-                    } yield datasets
+                  (SmrtDirectives.acceptsNdJson &
+                    SmrtDirectives.extractReadRouting) {
+                    (isStreaming, routing) =>
+                      if (isStreaming) {
+                        onSuccess(fxSearchCriteria) { searchCriteria =>
+                          complete(
+                            SmrtDirectives.toNdJsonEntity(
+                              StreamDataSets(searchCriteria, routing)))
+                        }
+                      } else {
+                        onSuccess(for {
+                          searchCriteria <- fxSearchCriteria
+                          datasets <- GetDataSets(searchCriteria, routing)
+                        } yield (searchCriteria, datasets)) {
+                          (searchCriteria, datasets) =>
+                            SmrtDirectives.withNextPageToken(
+                              searchCriteria.limit,
+                              datasets.map(_.id)) {
+                              complete(datasets)
+                            }
+                        }
+                      }
                   }
                 }
             }
@@ -550,51 +644,61 @@ class DataSetService(dao: JobsDao)
           datasetRoutes[SubreadServiceDataSet](
             DataSetMetaTypes.Subread.shortName,
             getSubreadSet,
+            streamSubreadSet,
             getSubreadSetById,
             getSubreadSetDetailsById) ~
           datasetRoutes[HdfSubreadServiceDataSet](
             DataSetMetaTypes.HdfSubread.shortName,
             getHdfSubreadSet,
+            streamHdfSubreadSet,
             getHdfSubreadById,
             getHdfSubreadDetailsById) ~
           datasetRoutes[AlignmentServiceDataSet](
             DataSetMetaTypes.Alignment.shortName,
             getAlignmentSet,
+            streamAlignmentSet,
             getAlignmentSetById,
             getAlignmentSetDetails) ~
           datasetRoutes[ReferenceServiceDataSet](
             DataSetMetaTypes.Reference.shortName,
             getReferenceSet,
+            streamReferenceSet,
             getReferenceSetById,
             getReferenceSetDetails) ~
           datasetRoutes[GmapReferenceServiceDataSet](
             DataSetMetaTypes.GmapReference.shortName,
             getGmapReferenceSet,
+            streamGmapReferenceSet,
             getGmapReferenceSetById,
             getGmapReferenceSetDetails) ~
           datasetRoutes[BarcodeServiceDataSet](
             DataSetMetaTypes.Barcode.shortName,
             getBarcodeSet,
+            streamBarcodeSet,
             getBarcodeSetById,
             getBarcodeSetDetails) ~
           datasetRoutes[ConsensusReadServiceDataSet](
             DataSetMetaTypes.CCS.shortName,
             getConsensusReadSet,
+            streamConsensusReadSet,
             getConsensusReadSetById,
             getConsensusReadSetDetails) ~
           datasetRoutes[ConsensusAlignmentServiceDataSet](
             DataSetMetaTypes.AlignmentCCS.shortName,
             getConsensusAlignmentSet,
+            streamConsensusAlignmentSet,
             getConsensusAlignmentSetById,
             getConsensusAlignmentSetDetails) ~
           datasetRoutes[ContigServiceDataSet](
             DataSetMetaTypes.Contig.shortName,
             getContigDataSet,
+            streamContigDataSet,
             getContigDataSetById,
             getContigDataSetDetails) ~
           datasetRoutes[TranscriptServiceDataSet](
             DataSetMetaTypes.Transcript.shortName,
             getTranscriptSet,
+            streamTranscriptSet,
             getTranscriptSetById,
             getTranscriptSetDetails)
       }
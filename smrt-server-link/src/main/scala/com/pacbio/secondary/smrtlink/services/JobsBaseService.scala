@@ -36,6 +36,9 @@ import com.pacbio.common.models.CommonModelSpraySupport.IdAbleMatcher
 import com.pacbio.secondary.smrtlink.actors.{
   ActorRefFactoryProvider,
   ActorSystemProvider,
+  EngineExecutionContexts,
+  EngineExecutionContextsProvider,
+  JobQueueEstimator,
   JobsDao,
   JobsDaoProvider
 }
@@ -49,6 +52,7 @@ import com.pacbio.secondary.smrtlink.services.PacBioServiceErrors.{
 import com.pacbio.secondary.smrtlink.JobServiceConstants
 import com.pacbio.secondary.smrtlink.actors.CommonMessages.MessageResponse
 import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetFileUtils
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetCache
 import com.pacbio.secondary.smrtlink.analysis.jobs.AnalysisJobStates
 import com.pacbio.secondary.smrtlink.jobtypes.PbsmrtpipeJobUtils
 import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
@@ -256,6 +260,7 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
       isActive: Option[Boolean],
       limit: Int,
       marker: Option[Int],
+      pageToken: Option[String],
       id: Option[String],
       uuid: Option[String],
       name: Option[String],
@@ -282,6 +287,7 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
                                      Some(StringEqQueryOperator(jobTypeId.id)))
 
     for {
+      qPageToken <- parsePageToken(pageToken)
       qId <- parseQueryOperator[IntQueryOperator](id,
                                                   IntQueryOperator.fromString)
       qUUID <- parseQueryOperator[UUIDQueryOperator](
@@ -355,7 +361,8 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
         parentMultiJobId = qParentMultiJobId,
         importedAt = qImportedAt,
         tags = qTags,
-        subJobTypeId = qSubJobTypeId
+        subJobTypeId = qSubJobTypeId,
+        pageToken = qPageToken
       )
   }
 
@@ -375,6 +382,7 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
               'isActive.as[Boolean].?,
               'limit.as[Int].?,
               'marker.as[Int].?,
+              'pageToken.?,
               'id.?,
               'uuid.?,
               'name.?,
@@ -397,6 +405,7 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
               (isActive,
                limit,
                marker,
+               pageToken,
                id,
                uuid,
                name,
@@ -415,37 +424,57 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
                tags,
                subJobTypeId,
                projectId) =>
+                val fxSearchCriteria = for {
+                  ids <- getProjectIds(dao, projectId.map(_.toInt), user)
+                  searchCriteria <- parseJobSearchCriteria(
+                    ids.toSet,
+                    // default to isActive=true
+                    Some(isActive.getOrElse(true)),
+                    limit.getOrElse(JobSearchCriteria.DEFAULT_MAX_JOBS),
+                    marker,
+                    pageToken,
+                    id,
+                    uuid,
+                    name,
+                    comment,
+                    createdAt,
+                    updatedAt,
+                    jobUpdatedAt,
+                    state,
+                    path,
+                    createdBy,
+                    createdByEmail,
+                    smrtlinkVersion,
+                    errorMessage,
+                    projectId,
+                    parentMultiJobId,
+                    importedAt,
+                    tags,
+                    subJobTypeId
+                  )
+                } yield searchCriteria
+
                 encodeResponse {
-                  complete {
-                    for {
-                      ids <- getProjectIds(dao, projectId.map(_.toInt), user)
-                      searchCriteria <- parseJobSearchCriteria(
-                        ids.toSet,
-                        // default to isActive=true
-                        Some(isActive.getOrElse(true)),
-                        limit.getOrElse(JobSearchCriteria.DEFAULT_MAX_JOBS),
-                        marker,
-                        id,
-                        uuid,
-                        name,
-                        comment,
-                        createdAt,
-                        updatedAt,
-                        jobUpdatedAt,
-                        state,
-                        path,
-                        createdBy,
-                        createdByEmail,
-                        smrtlinkVersion,
-                        errorMessage,
-                        projectId,
-                        parentMultiJobId,
-                        importedAt,
-                        tags,
-                        subJobTypeId
-                      )
-                      jobs <- dao.getJobs(searchCriteria)
-                    } yield jobs
+                  (SmrtDirectives.acceptsNdJson &
+                    SmrtDirectives.extractReadRouting) {
+                    (isStreaming, routing) =>
+                      if (isStreaming) {
+                        onSuccess(fxSearchCriteria) { searchCriteria =>
+                          complete(
+                            SmrtDirectives.toNdJsonEntity(
+                              dao.streamJobs(searchCriteria, routing)))
+                        }
+                      } else {
+                        onSuccess(for {
+                          searchCriteria <- fxSearchCriteria
+                          jobs <- dao.getJobs(searchCriteria, routing)
+                        } yield (searchCriteria, jobs)) { (searchCriteria, jobs) =>
+                          SmrtDirectives.withNextPageToken(searchCriteria.limit,
+                                                           jobs.map(_.id)) {
+                            complete(jobs)
+                          }
+                        }
+                      }
                   }
                 }
             }
@@ -478,7 +507,11 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
     put {
       entity(as[UpdateJobRecord]) { update =>
         complete {
-          dao.updateJob(jobId, update.name, update.comment, update.tags)
+          dao.updateJob(jobId,
+                        update.name,
+                        update.comment,
+                        update.tags,
+                        update.priority)
         }
       }
     }
@@ -580,7 +613,7 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
         path(JOB_TASK_PREFIX / JavaUUID) { taskUUID =>
           get {
             complete {
-              dao.getJobTask(taskUUID)
+              dao.getJobTask(jobId, taskUUID)
             }
           } ~
             put {
@@ -692,21 +725,24 @@ trait CommonJobsRoutes[T <: ServiceJobOptions]
         } ~
         path(JOB_DATASTORE_PREFIX) {
           post {
-            entity(as[DataStoreFile]) { dsf =>
-              complete {
-                StatusCodes.Created -> {
-                  if (dsf.isChunked) {
-                    Future.successful(MessageResponse(
-                      s"Chunked Files are not importable. Skipping Importing of DataStoreFile uuid:${dsf.uniqueId} path:${dsf.path}"))
-                  } else {
-                    dao
-                      .getJobById(jobId)
-                      .flatMap { engineJob =>
-                        dao.importDataStoreFile(dsf, engineJob.uuid)
-                      }(ec)
+            (entity(as[DataStoreFile]) & SmrtDirectives.extractJobLeaseFence) {
+              (dsf, fence) =>
+                complete {
+                  StatusCodes.Created -> {
+                    if (dsf.isChunked) {
+                      Future.successful(MessageResponse(
+                        s"Chunked Files are not importable. Skipping Importing of DataStoreFile uuid:${dsf.uniqueId} path:${dsf.path}"))
+                    } else {
+                      dao
+                        .getJobById(jobId)
+                        .flatMap { engineJob =>
+                          dao.importDataStoreFile(dsf,
+                                                  engineJob.uuid,
+                                                  fence = fence)
+                        }(ec)
+                    }
                   }
                 }
-              }
             }
           }
         } ~
@@ -1104,8 +1140,11 @@ class MultiAnalysisJobService(override val dao: JobsDao,
   * This has all the job related endpoints and a few misc routes.
   *
   * @param dao JobDao
+  * @param pools Dedicated pools of the Engine (only used for the pool metrics)
   */
-class JobsServiceUtils(dao: JobsDao, config: SystemJobConfig)(
+class JobsServiceUtils(dao: JobsDao,
+                       config: SystemJobConfig,
+                       pools: EngineExecutionContexts)(
     implicit val actorSystem: ActorSystem)
     extends PacBioService
     with JobServiceConstants
@@ -1209,6 +1248,78 @@ class JobsServiceUtils(dao: JobsDao, config: SystemJobConfig)(
     }
   }
 
+  def getJobQueue(): Future[Seq[JobQueueEntry]] =
+    for {
+      queue <- dao.getJobQueue()
+      running <- dao.getRunningJobs()
+      runTimes <- dao.getJobTypeRunTimes()
+    } yield
+      JobQueueEstimator.estimate(queue,
+                                 running,
+                                 runTimes,
+                                 config.numGeneralWorkers,
+                                 config.numQuickWorkers)
+
+  def getJobQueueRoute(): Route = {
+    pathPrefix(JOB_QUEUE_PREFIX) {
+      pathEndOrSingleSlash {
+        get {
+          complete {
+            getJobQueue()
+          }
+        }
+      }
+    }
+  }
+
+  def getExecutionPoolsRoute(): Route = {
+    pathPrefix(JOB_POOLS_PREFIX) {
+      pathEndOrSingleSlash {
+        get {
+          complete {
+            pools.metrics
+          }
+        }
+      }
+    }
+  }
+
+  def getEntityCachesRoute(): Route = {
+    pathPrefix(JOB_CACHES_PREFIX) {
+      pathEndOrSingleSlash {
+        get {
+          complete {
+            dao.entityCaches.metrics :+ DataSetCache.default.metrics
+          }
+        }
+      }
+    }
+  }
+
+  def getDbPoolsRoute(): Route = {
+    pathPrefix(JOB_DB_POOLS_PREFIX) {
+      pathEndOrSingleSlash {
+        get {
+          complete {
+            dao.dbPools.map(_.metrics).getOrElse(Seq.empty[DbPoolMetrics])
+          }
+        }
+      }
+    }
+  }
+
+  def getSystemSummaryRoute(): Route = {
+    pathPrefix(JOB_SYSTEM_SUMMARY_PREFIX) {
+      pathEndOrSingleSlash {
+        get {
+          complete {
+            dao.getSystemSummaryCounts()
+          }
+        }
+      }
+    }
+  }
+
   /**
     * This is a bit sloppy and could be cleaned up. The model is to have a single factory-ish func to return
     * a complete list of routes that already prefixed correctly.
@@ -1229,7 +1340,9 @@ class JobsServiceUtils(dao: JobsDao, config: SystemJobConfig)(
     /** Job Type Endpoints **/
     // Total List (core+multi jobs) of JobTypeEndPoints
     // Unprefix Job (Meta) Type routes for each registered Job type
-    val jobTypeRoutes: Route = getJobTypesRoute(allJobTypeIds)
+    val jobTypeRoutes: Route = getJobTypesRoute(allJobTypeIds) ~ getJobQueueRoute() ~
+      getExecutionPoolsRoute() ~ getEntityCachesRoute() ~ getDbPoolsRoute() ~
+      getSystemSummaryRoute()
     val prefixedJobTypeRoutes = pathPrefix(ROOT_SA_PREFIX / JOB_MANAGER_PREFIX) {
       jobTypeRoutes
     } ~ pathPrefix(ROOT_SL_PREFIX / JOB_MANAGER_PREFIX) { jobTypeRoutes }
@@ -1290,12 +1403,15 @@ trait JobsServiceProvider {
     with ActorSystemProvider
     with ServiceComposer
     with JobsDaoProvider
+    with EngineExecutionContextsProvider
     with SmrtLinkConfigProvider =>
 
   //FIXME(mpkocher)(8-27-2017) Rename this to something sensible
   val newJobService: Singleton[JobsServiceUtils] = Singleton { () =>
     implicit val system = actorSystem()
-    new JobsServiceUtils(jobsDao(), systemJobConfig())
+    new JobsServiceUtils(jobsDao(),
+                         systemJobConfig(),
+                         engineExecutionContexts())
   }
 
   addService(newJobService)
@@ -107,10 +107,14 @@ class ProjectService(jobsDao: JobsDao)
           }
         } ~
           get {
-            SmrtDirectives.extractRequiredUserRecord { user =>
-              complete {
-                jobsDao.getUserProjects(user.userId).map(_.map(_.project))
-              }
+            (SmrtDirectives.extractRequiredUserRecord &
+              SmrtDirectives.extractReadRouting) {
+              (user, routing) =>
+                complete {
+                  jobsDao
+                    .getUserProjects(user.userId, routing)
+                    .map(_.map(_.project))
+                }
             }
           }
       } ~
@@ -159,19 +163,23 @@ class ProjectService(jobsDao: JobsDao)
     } ~
       path("projects-datasets" / Segment) { login =>
         get {
-          SmrtDirectives.extractRequiredUserRecord { user =>
-            complete {
-              jobsDao.getUserProjectsDatasets(login)
-            }
+          (SmrtDirectives.extractRequiredUserRecord &
+            SmrtDirectives.extractReadRouting) {
+            (user, routing) =>
+              complete {
+                jobsDao.getUserProjectsDatasets(login, routing)
+              }
           }
         }
       } ~
       path("user-projects" / Segment) { login =>
         get {
-          SmrtDirectives.extractRequiredUserRecord { user =>
-            complete {
-              jobsDao.getUserProjects(login)
-            }
+          (SmrtDirectives.extractRequiredUserRecord &
+            SmrtDirectives.extractReadRouting) {
+            (user, routing) =>
+              complete {
+                jobsDao.getUserProjects(login, routing)
+              }
           }
         }
       }
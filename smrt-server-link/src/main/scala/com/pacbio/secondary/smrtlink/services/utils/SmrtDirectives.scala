@@ -1,7 +1,8 @@
 package com.pacbio.secondary.smrtlink.services.utils
 
-import akka.http.scaladsl.model.HttpHeader
-import akka.http.scaladsl.model.headers.HttpChallenge
+import akka.NotUsed
+import akka.http.scaladsl.model._
+import akka.http.scaladsl.model.headers.{Accept, HttpChallenge, RawHeader}
 import akka.http.scaladsl.server.AuthenticationFailedRejection.{
   CredentialsMissing,
   CredentialsRejected
@@ -9,10 +10,27 @@ import akka.http.scaladsl.server.AuthenticationFailedRejection.{
 import akka.http.scaladsl.server.{
   AuthenticationFailedRejection,
   Directive,
+  Directive0,
   ValidationRejection
 }
+import akka.http.scaladsl.server.Directives.respondWithHeaders
 import com.pacbio.secondary.smrtlink.auth.JwtUtilsImpl
-import com.pacbio.secondary.smrtlink.models.UserRecord
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.pacbio.secondary.smrtlink.SmrtLinkConstants.{
+  JOB_LEASE_EPOCH_HEADER,
+  LAST_WRITE_COOKIE,
+  LAST_WRITE_HEADER
+}
+import com.pacbio.secondary.smrtlink.models.{
+  JobLeaseFence,
+  KeysetPageToken,
+  ReadRouting,
+  UserRecord
+}
+import spray.json._
+
+import scala.util.Try
 
 object SmrtDirectives {
 
@@ -48,4 +66,85 @@ object SmrtDirectives {
       }
     }
 
+  /**
+    * Read routing of the searches and listings of a client request. The client sends the
+    * time of its last write (returned by the write requests) back as a cookie or a header,
+    * the reads are made from the primary db within the read-your-writes window of it.
+    *
+    * The routing is passed explicitly to the DAO reads, these usually run in a Future
+    * continuation (i.e., not on the thread that evaluates the route).
+    */
+  def extractReadRouting: Directive[Tuple1[ReadRouting]] =
+    Directive[Tuple1[ReadRouting]] { inner => ctx =>
+      def toMillis(value: Option[String]): Option[Long] =
+        value.flatMap(v => Try(v.toLong).toOption)
+
+      val cookie = ctx.request.cookies
+        .find(_.name == LAST_WRITE_COOKIE)
+        .map(_.value)
+      val header = ctx.request.headers
+        .find(_.is(LAST_WRITE_HEADER.toLowerCase))
+        .map(_.value())
+      val lastWriteAt =
+        (toMillis(cookie) ++ toMillis(header)).foldLeft(0L)(_ max _)
+      inner(Tuple1(ReadRouting.fromClient(lastWriteAt)))(ctx)
+    }
+
+  /**
+    * Fence of the job updates of a client against the lease of the job. A client running
+    * the job sends the epoch of the lease as a header. Without the header, the update is
+    * only rejected if the job was requeued.
+    */
+  def extractJobLeaseFence: Directive[Tuple1[JobLeaseFence]] =
+    Directive[Tuple1[JobLeaseFence]] { inner => ctx =>
+      val leaseEpoch = ctx.request.headers
+        .find(_.is(JOB_LEASE_EPOCH_HEADER.toLowerCase))
+        .flatMap(h => Try(h.value().toInt).toOption)
+      inner(Tuple1(JobLeaseFence.fromEpoch(leaseEpoch)))(ctx)
+    }
+
+  /**
+    * Add the next page token header of a keyset paginated listing (if there is a next page)
+    *
+    * @param limit Page size
+    * @param ids   Ids of the records of the page
+    */
+  def withNextPageToken(limit: Int, ids: Seq[Int]): Directive0 =
+    respondWithHeaders(
+      KeysetPageToken
+        .next(limit, ids)
+        .map(t => RawHeader(KeysetPageToken.HEADER, t))
+        .toList)
+
+  /**
+    * Newline delimited JSON (one record per line) of the streamed listings
+    */
+  val `application/x-ndjson`: MediaType.WithFixedCharset =
+    MediaType.applicationWithFixedCharset("x-ndjson", HttpCharsets.`UTF-8`)
+
+  /**
+    * True if the client explicitly accepts a newline delimited JSON response. Wildcard
+    * media ranges don't count, the default response of the listings is a JSON array.
+    */
+  def acceptsNdJson: Directive[Tuple1[Boolean]] =
+    Directive[Tuple1[Boolean]] { inner => ctx =>
+      val isNdJson = ctx.request.header[Accept].exists(_.mediaRanges.exists {
+        case MediaRange.One(mediaType, _) =>
+          mediaType.value == `application/x-ndjson`.value
+        case _ => false
+      })
+      inner(Tuple1(isNdJson))(ctx)
+    }
+
+  /**
+    * Chunked newline delimited JSON response of the records. The records are
+    * serialized as the client consumes the response (i.e., with backpressure), they're
+    * never materialized as a whole.
+    */
+  def toNdJsonEntity[T](records: Source[T, NotUsed])(
+      implicit writer: JsonWriter[T]): HttpEntity.Chunked =
+    HttpEntity(
+      ContentType(`application/x-ndjson`),
+      records.map(r => ByteString(r.toJson.compactPrint + "\n")))
+
 }
@@ -701,6 +701,8 @@ class PbService(val sal: SmrtLinkServiceClient, val maxTime: FiniteDuration)
 
   // the is the default for timeout for common tasks
   protected val TIMEOUT = 30 seconds
+  // Page size of the job and dataset listings
+  protected val PAGE_SIZE = 500
   private lazy val defaultPresets = PipelineTemplatePreset(
     "default",
     "any",
@@ -839,58 +841,35 @@ class PbService(val sal: SmrtLinkServiceClient, val maxTime: FiniteDuration)
                      asJson: Boolean = false,
                      searchName: Option[String] = None,
                      searchPath: Option[String] = None): Future[String] = {
-
-    DataSetSearchCriteria.default.copy(limit = maxItems)
+    import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
 
     val qName = searchName.flatMap(StringQueryOperator.fromString)
     val qPath = searchPath.flatMap(StringQueryOperator.fromString)
 
     val searchCriteria =
-      DataSetSearchCriteria.default.copy(limit = maxItems,
+      DataSetSearchCriteria.default.copy(limit = Seq(maxItems, PAGE_SIZE).min,
                                          name = qName,
                                          path = qPath)
 
+    def getAll[T <: ServiceDataSetMetadata](
+        implicit fmt: RootJsonFormat[T]): Future[Seq[(T, JsValue)]] =
+      sal
+        .getAllDataSets[T](dsType, searchCriteria, maxItems)
+        .map(_.map(ds => (ds, ds.toJson)))
+
     def fx: Future[Seq[(ServiceDataSetMetadata, JsValue)]] = dsType match {
-      case DataSetMetaTypes.Subread =>
-        sal
-          .getSubreadSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.HdfSubread =>
-        sal
-          .getHdfSubreadSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.Barcode =>
-        sal
-          .getBarcodeSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.Reference =>
-        sal
-          .getReferenceSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
+      case DataSetMetaTypes.Subread => getAll[SubreadServiceDataSet]
+      case DataSetMetaTypes.HdfSubread => getAll[HdfSubreadServiceDataSet]
+      case DataSetMetaTypes.Barcode => getAll[BarcodeServiceDataSet]
+      case DataSetMetaTypes.Reference => getAll[ReferenceServiceDataSet]
       case DataSetMetaTypes.GmapReference =>
-        sal
-          .getGmapReferenceSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.Contig =>
-        sal
-          .getContigSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.Alignment =>
-        sal
-          .getAlignmentSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
+        getAll[GmapReferenceServiceDataSet]
+      case DataSetMetaTypes.Contig => getAll[ContigServiceDataSet]
+      case DataSetMetaTypes.Alignment => getAll[AlignmentServiceDataSet]
       case DataSetMetaTypes.AlignmentCCS =>
-        sal
-          .getConsensusAlignmentSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.CCS =>
-        sal
-          .getConsensusReadSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
-      case DataSetMetaTypes.Transcript =>
-        sal
-          .getTranscriptSets(Some(searchCriteria))
-          .map(_.map(ds => (ds, ds.toJson)))
+        getAll[ConsensusAlignmentServiceDataSet]
+      case DataSetMetaTypes.CCS => getAll[ConsensusReadServiceDataSet]
+      case DataSetMetaTypes.Transcript => getAll[TranscriptServiceDataSet]
     }
 
     def jsonPrinter(records: Seq[JsValue]): String =
@@ -954,12 +933,12 @@ class PbService(val sal: SmrtLinkServiceClient, val maxTime: FiniteDuration)
     val qSubJobType = searchSubJobType.flatMap(StringQueryOperator.fromString)
 
     val searchCriteria =
-      JobSearchCriteria.default.copy(limit = maxItems,
+      JobSearchCriteria.default.copy(limit = Seq(maxItems, PAGE_SIZE).min,
                                      name = qName,
                                      state = qJobState,
                                      subJobTypeId = qSubJobType)
     sal
-      .getJobsByType(jobType, Some(searchCriteria))
+      .getAllJobsByType(jobType, searchCriteria, maxItems)
       .map(jobs => toJobsSummary(jobs, asJson))
   }
 
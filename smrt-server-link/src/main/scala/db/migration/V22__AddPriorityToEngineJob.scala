@@ -0,0 +1,24 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+class V22__AddPriorityToEngineJob
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""ALTER TABLE engine_jobs ADD COLUMN priority INTEGER NOT NULL DEFAULT 0""",
+        // Only the (small) set of SUBMITTED jobs is ordered when claiming jobs to run
+        sqlu"""CREATE INDEX engine_jobs_submitted_priority ON engine_jobs (priority DESC, job_id) WHERE state = 'SUBMITTED'"""
+      ))
+  }
+
+}
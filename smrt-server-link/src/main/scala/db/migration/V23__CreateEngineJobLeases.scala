@@ -0,0 +1,31 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+class V23__CreateEngineJobLeases
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE TABLE engine_job_leases(
+                 job_id INTEGER NOT NULL PRIMARY KEY,
+                 node_id VARCHAR NOT NULL,
+                 acquired_at TIMESTAMP NOT NULL,
+                 expires_at TIMESTAMP DEFAULT NULL,
+                 attempts INTEGER NOT NULL,
+                 CONSTRAINT job_fk FOREIGN KEY (job_id) REFERENCES engine_jobs(job_id) ON DELETE CASCADE)""",
+        sqlu"""CREATE INDEX engine_job_leases_node_id ON engine_job_leases (node_id)""",
+        // Only the held leases are checked for expiration
+        sqlu"""CREATE INDEX engine_job_leases_expires_at ON engine_job_leases (expires_at) WHERE expires_at IS NOT NULL"""
+      ))
+  }
+
+}
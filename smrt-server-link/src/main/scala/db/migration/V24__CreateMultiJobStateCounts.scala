@@ -0,0 +1,33 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+class V24__CreateMultiJobStateCounts
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE TABLE engine_multi_job_state_counts(
+                 multi_job_id INTEGER NOT NULL,
+                 state VARCHAR NOT NULL,
+                 num_jobs INTEGER NOT NULL,
+                 CONSTRAINT engine_multi_job_state_counts_pk PRIMARY KEY (multi_job_id, state),
+                 CONSTRAINT multi_job_fk FOREIGN KEY (multi_job_id) REFERENCES engine_jobs(job_id) ON DELETE CASCADE)""",
+        // Backfill the counts of the existing MultiJobs
+        sqlu"""INSERT INTO engine_multi_job_state_counts (multi_job_id, state, num_jobs)
+               SELECT c.parent_multi_job_id, c.state, COUNT(*)
+               FROM engine_jobs c
+               JOIN engine_jobs p ON p.job_id = c.parent_multi_job_id
+               GROUP BY c.parent_multi_job_id, c.state"""
+      ))
+  }
+
+}
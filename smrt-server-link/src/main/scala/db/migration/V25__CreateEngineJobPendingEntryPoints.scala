@@ -0,0 +1,34 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+class V25__CreateEngineJobPendingEntryPoints
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE TABLE engine_job_pending_entry_points(
+                 job_id INTEGER NOT NULL,
+                 dataset_uuid UUID NOT NULL,
+                 CONSTRAINT engine_job_pending_entry_points_pk PRIMARY KEY (job_id, dataset_uuid),
+                 CONSTRAINT pending_job_fk FOREIGN KEY (job_id) REFERENCES engine_jobs(job_id) ON DELETE CASCADE)""",
+        sqlu"""CREATE INDEX engine_job_pending_entry_points_dataset_uuid ON engine_job_pending_entry_points (dataset_uuid)""",
+        // Backfill the unresolved entry points of the CREATED children jobs
+        sqlu"""INSERT INTO engine_job_pending_entry_points (job_id, dataset_uuid)
+               SELECT DISTINCT e.job_id, e.dataset_uuid
+               FROM engine_jobs_datasets e
+               JOIN engine_jobs j ON j.job_id = e.job_id
+               WHERE j.state = 'CREATED' AND j.parent_multi_job_id IS NOT NULL
+               AND NOT EXISTS (SELECT 1 FROM dataset_metadata d WHERE d.uuid = e.dataset_uuid)"""
+      ))
+  }
+
+}
@@ -0,0 +1,49 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+/**
+  * Trigram (GIN) indexes of the columns used in the substring searches (LIKE '%x%') of
+  * the jobs, datasets and runs.
+  *
+  * The pg_trgm extension is shipped in the postgres contrib package and creating it
+  * might not be allowed for the db user. If the extension can't be created, the indexes
+  * are skipped and the substring searches are sequential scans (as before).
+  *
+  * Note, $$ is the escape of $ in the interpolated sql, the DO block is quoted with $$.
+  */
+class V26__AddTrigramSearchIndexes
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""DO $$$$
+               BEGIN
+                 BEGIN
+                   CREATE EXTENSION IF NOT EXISTS pg_trgm;
+                 EXCEPTION WHEN OTHERS THEN
+                   RAISE NOTICE 'Unable to create the pg_trgm extension (%). Substring searches are not indexed.', SQLERRM;
+                 END;
+                 IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+                   CREATE INDEX engine_jobs_name_trgm ON engine_jobs USING gin (name gin_trgm_ops);
+                   CREATE INDEX engine_jobs_comment_trgm ON engine_jobs USING gin (comment gin_trgm_ops);
+                   CREATE INDEX engine_jobs_path_trgm ON engine_jobs USING gin (path gin_trgm_ops);
+                   CREATE INDEX dataset_metadata_name_trgm ON dataset_metadata USING gin (name gin_trgm_ops);
+                   CREATE INDEX dataset_metadata_path_trgm ON dataset_metadata USING gin (path gin_trgm_ops);
+                   CREATE INDEX run_summaries_name_trgm ON run_summaries USING gin (name gin_trgm_ops);
+                   CREATE INDEX run_summaries_summary_trgm ON run_summaries USING gin (summary gin_trgm_ops);
+                 END IF;
+               END
+               $$$$"""
+      ))
+  }
+
+}
@@ -0,0 +1,116 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+/**
+  * Row counts of the datasets (by type), jobs (by job type and state), job events, datastore
+  * files and entry points maintained by triggers. These are used by the system summary
+  * instead of counting the (large) tables.
+  *
+  * Each count is split into several slots (by the backend pid) to avoid serializing
+  * the concurrent inserts of job events (for example) on a single row. The count is the
+  * sum of the slots.
+  *
+  * The functions are replaced (not created) since dropping the tables (e.g., in the tests)
+  * doesn't drop the functions.
+  *
+  * Note, $$ is the escape of $ in the interpolated sql, the functions are quoted with $$.
+  */
+class V27__CreateSystemCounts
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  // (table, counter, key) of the tables that are only counted
+  val countedTables = Seq(
+    ("dataset_subreads", "datasets", "subreads"),
+    ("dataset_hdfsubreads", "datasets", "hdfsubreads"),
+    ("dataset_references", "datasets", "references"),
+    ("dataset_gmapreferences", "datasets", "gmapreferences"),
+    ("datasets_alignments", "datasets", "alignments"),
+    ("datasets_barcodes", "datasets", "barcodes"),
+    ("datasets_ccsreads", "datasets", "ccsreads"),
+    ("datasets_ccsalignments", "datasets", "ccsalignments"),
+    ("datasets_contigs", "datasets", "contigs"),
+    ("datasets_transcripts", "datasets", "transcripts"),
+    ("job_events", "job_events", ""),
+    ("datastore_files", "datastore_files", ""),
+    ("engine_jobs_datasets", "entry_points", "")
+  )
+
+  private def createRowCountTrigger(table: String,
+                                    counter: String,
+                                    key: String) =
+    DBIO.seq(
+      sqlu"""CREATE TRIGGER #${table}_system_counts
+             AFTER INSERT OR DELETE ON #$table
+             FOR EACH ROW EXECUTE PROCEDURE system_counts_rows('#$counter', '#$key')""",
+      sqlu"""INSERT INTO system_counts (counter, key, sub_key, slot, num)
+             SELECT '#$counter', '#$key', '', 0, COUNT(*) FROM #$table"""
+    )
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE TABLE system_counts(
+                 counter VARCHAR NOT NULL,
+                 key VARCHAR NOT NULL,
+                 sub_key VARCHAR NOT NULL,
+                 slot INTEGER NOT NULL,
+                 num BIGINT NOT NULL,
+                 CONSTRAINT system_counts_pk PRIMARY KEY (counter, key, sub_key, slot))""",
+        sqlu"""CREATE OR REPLACE FUNCTION system_counts_add(p_counter VARCHAR, p_key VARCHAR, p_sub_key VARCHAR, p_delta BIGINT)
+               RETURNS void AS $$$$
+               BEGIN
+                 INSERT INTO system_counts AS c (counter, key, sub_key, slot, num)
+                 VALUES (p_counter, p_key, p_sub_key, pg_backend_pid() % 16, p_delta)
+                 ON CONFLICT (counter, key, sub_key, slot) DO UPDATE SET num = c.num + EXCLUDED.num;
+               END
+               $$$$ LANGUAGE plpgsql""",
+        sqlu"""CREATE OR REPLACE FUNCTION system_counts_rows() RETURNS trigger AS $$$$
+               BEGIN
+                 IF TG_OP = 'INSERT' THEN
+                   PERFORM system_counts_add(TG_ARGV[0], TG_ARGV[1], '', 1);
+                 ELSIF TG_OP = 'DELETE' THEN
+                   PERFORM system_counts_add(TG_ARGV[0], TG_ARGV[1], '', -1);
+                 END IF;
+                 RETURN NULL;
+               END
+               $$$$ LANGUAGE plpgsql""",
+        sqlu"""CREATE OR REPLACE FUNCTION system_counts_engine_jobs() RETURNS trigger AS $$$$
+               BEGIN
+                 IF TG_OP IN ('UPDATE', 'DELETE') THEN
+                   PERFORM system_counts_add('jobs', OLD.job_type_id, OLD.state, -1);
+                 END IF;
+                 IF TG_OP IN ('INSERT', 'UPDATE') THEN
+                   PERFORM system_counts_add('jobs', NEW.job_type_id, NEW.state, 1);
+                 END IF;
+                 RETURN NULL;
+               END
+               $$$$ LANGUAGE plpgsql""",
+        sqlu"""CREATE TRIGGER engine_jobs_system_counts
+               AFTER INSERT OR DELETE ON engine_jobs
+               FOR EACH ROW EXECUTE PROCEDURE system_counts_engine_jobs()""",
+        sqlu"""CREATE TRIGGER engine_jobs_state_system_counts
+               AFTER UPDATE OF job_type_id, state ON engine_jobs
+               FOR EACH ROW
+               WHEN (OLD.job_type_id IS DISTINCT FROM NEW.job_type_id OR OLD.state IS DISTINCT FROM NEW.state)
+               EXECUTE PROCEDURE system_counts_engine_jobs()""",
+        // Backfill the counts of the existing rows
+        sqlu"""INSERT INTO system_counts (counter, key, sub_key, slot, num)
+               SELECT 'jobs', job_type_id, state, 0, COUNT(*)
+               FROM engine_jobs
+               GROUP BY job_type_id, state""",
+        DBIO.seq(countedTables.map {
+          case (table, counter, key) =>
+            createRowCountTrigger(table, counter, key)
+        }: _*)
+      ))
+  }
+
+}
@@ -0,0 +1,34 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+/**
+  * Archived job events and job tasks of the (long) completed jobs. Each job is a single
+  * row with the events and tasks as JSON arrays. The large values are compressed by
+  * postgres (TOAST) and the table only has the primary key index.
+  */
+class V28__CreateJobArchives
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE TABLE job_archives(
+                 job_id INTEGER NOT NULL PRIMARY KEY,
+                 events VARCHAR NOT NULL,
+                 tasks VARCHAR NOT NULL,
+                 num_events INTEGER NOT NULL,
+                 num_tasks INTEGER NOT NULL,
+                 archived_at TIMESTAMP NOT NULL,
+                 CONSTRAINT job_fk FOREIGN KEY (job_id) REFERENCES engine_jobs(job_id) ON DELETE CASCADE)"""
+      ))
+  }
+
+}
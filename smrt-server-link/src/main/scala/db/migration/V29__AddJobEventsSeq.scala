@@ -0,0 +1,40 @@
+package db.migration
+
+import com.typesafe.scalalogging.LazyLogging
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration
+import slick.jdbc.JdbcBackend.DatabaseDef
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Future
+
+/**
+  * Monotonic ordering key of the job events. The events of a job written in the same
+  * (write-behind) batch can have the same created_at, the events of a job are ordered
+  * by the event_seq.
+  *
+  * The existing events are numbered by created_at.
+  */
+class V29__AddJobEventsSeq
+    extends JdbcMigration
+    with SlickMigration
+    with LazyLogging {
+
+  override def slickMigrate(db: DatabaseDef): Future[Any] = {
+    db.run(
+      DBIO.seq(
+        sqlu"""CREATE SEQUENCE job_events_event_seq_seq""",
+        sqlu"""ALTER TABLE job_events ADD COLUMN event_seq BIGINT""",
+        sqlu"""UPDATE job_events e SET event_seq = o.seq
+               FROM (SELECT job_event_id, row_number() OVER (ORDER BY created_at, job_event_id) AS seq
+                     FROM job_events) o
+               WHERE e.job_event_id = o.job_event_id""",
+        sql"""SELECT setval('job_events_event_seq_seq', COALESCE(MAX(event_seq), 0) + 1, false)
+              FROM job_events""".as[Long],
+        sqlu"""ALTER TABLE job_events
+               ALTER COLUMN event_seq SET DEFAULT nextval('job_events_event_seq_seq'),
+               ALTER COLUMN event_seq SET NOT NULL""",
+        sqlu"""ALTER SEQUENCE job_events_event_seq_seq OWNED BY job_events.event_seq""",
+        sqlu"""CREATE INDEX job_events_job_id_event_seq ON job_events (job_id, event_seq)"""
+      ))
+  }
+}
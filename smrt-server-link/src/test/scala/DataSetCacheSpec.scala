@@ -0,0 +1,73 @@
+import java.nio.file.{Files, Paths, StandardCopyOption}
+import java.util.UUID
+
+import com.pacbio.secondary.smrtlink.analysis.datasets.DataSetMetaTypes
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetCache,
+  DataSetWriter
+}
+import com.pacificbiosciences.pacbiodatasets.SubreadSet
+import org.specs2.mutable.Specification
+
+class DataSetCacheSpec extends Specification {
+
+  sequential
+
+  val srcPath = Paths.get(
+    getClass
+      .getResource("/dataset-subreads/m54008_160215_180009.subreadset.xml")
+      .getPath)
+
+  def toTmp() = {
+    val path =
+      Files.createTempDirectory("dataset-cache").resolve(srcPath.getFileName)
+    Files.copy(srcPath, path, StandardCopyOption.REPLACE_EXISTING)
+  }
+
+  "Parsed DataSet cache" should {
+    "Parse the dataset once" in {
+      val cache = new DataSetCache(true, 10 * 1024 * 1024)
+      val path = toTmp()
+      val ds1 = cache.getReadOnly(DataSetMetaTypes.Subread, path)
+      val ds2 = cache.getReadOnly(DataSetMetaTypes.Subread, path)
+      ds1 must be(ds2)
+      val m = cache.metrics
+      m.hits === 1
+      m.misses === 1
+      m.size === Files.size(path)
+    }
+    "Return copies that can be modified" in {
+      val cache = new DataSetCache(true, 10 * 1024 * 1024)
+      val path = toTmp()
+      val ds = cache.getReadOnlyAs[SubreadSet](DataSetMetaTypes.Subread, path)
+      val copy = cache.getAs[SubreadSet](DataSetMetaTypes.Subread, path)
+      copy must not(be(ds))
+      copy.getUniqueId === ds.getUniqueId
+      copy.getDataSetMetadata.getNumRecords === ds.getDataSetMetadata
+        .getNumRecords
+      copy.setName("Updated")
+      cache.getReadOnly(DataSetMetaTypes.Subread, path).getName === ds.getName
+    }
+    "Reload a modified dataset" in {
+      val cache = new DataSetCache(true, 10 * 1024 * 1024)
+      val path = toTmp()
+      val ds = cache.getAs[SubreadSet](DataSetMetaTypes.Subread, path)
+      DataSetWriter.writeSubreadSet(ds, path)
+      val originalUuid = ds.getUniqueId
+      cache.getReadOnly(DataSetMetaTypes.Subread, path).getUniqueId === originalUuid
+
+      // Rewritten right away with the same size, the modification time can be the
+      // same (e.g., 1 sec resolution)
+      val uuid = UUID.randomUUID().toString
+      ds.setUniqueId(uuid)
+      DataSetWriter.writeSubreadSet(ds, path)
+      cache.getReadOnly(DataSetMetaTypes.Subread, path).getUniqueId === uuid
+    }
+    "Load the dataset each time if disabled" in {
+      val cache = new DataSetCache(false, 10 * 1024 * 1024)
+      val path = toTmp()
+      cache.getReadOnly(DataSetMetaTypes.Subread, path) must not(
+        be(cache.getReadOnly(DataSetMetaTypes.Subread, path)))
+    }
+  }
+}
@@ -11,6 +11,7 @@ import org.specs2.mutable._
 import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes
 import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
   DataSetWriter,
+  DataSetMergeBuilder,
   DataSetMerger,
   DataSetLoader
 }
@@ -30,6 +31,7 @@ import com.pacbio.secondary.smrtlink.analysis.tools.{
   DataSetMergerTool,
   timeUtils
 }
+import com.pacificbiosciences.pacbiodatasets.SubreadSet
 
 /**
   *
@@ -77,6 +79,61 @@ class DataSetMergerSpec extends Specification with LazyLogging {
         DataSetMetaTypes.HdfSubread.toString)
     }
   }
+  "Streaming merge of datasets" should {
+    val subreadSetPath = Paths.get(
+      getClass
+        .getResource("/dataset-subreads/m54008_160215_180009.subreadset.xml")
+        .toURI)
+
+    "Merge duplicate SubreadSet paths" in {
+      val ds = DataSetLoader.loadAndResolveSubreadSet(subreadSetPath)
+      val numResources = ds.getExternalResources.getExternalResource.size
+      val numCollections =
+        ds.getDataSetMetadata.getCollections.getCollectionMetadata.size
+
+      val outputPath = Files.createTempFile("merged", ".subreadset.xml")
+      val merged = DataSetMerger.mergeSubreadSetPathsTo(
+        Seq.fill(3)(subreadSetPath),
+        "ds-name",
+        outputPath)
+
+      merged.getExternalResources.getExternalResource.size === numResources
+      merged.getDataSetMetadata.getCollections.getCollectionMetadata.size === numCollections
+      merged.getDataSetMetadata.getTotalLength === 44032862L
+      merged.getDataSetMetadata.getNumRecords === 5029
+      merged.getTags.split(",").toSeq must contain(DataSetMerger.TAG_MERGED)
+
+      // The nested DataSets are summaries of the inputs
+      val nested = merged.getDataSets.getDataSet.asScala
+      nested.length === 3
+      nested.map(_.getUniqueId).toSet === Set(ds.getUniqueId)
+      nested
+        .map(_.asInstanceOf[SubreadSet].getDataSetMetadata.getCollections)
+        .forall(_ == null) must beTrue
+
+      val written = DataSetLoader.loadSubreadSet(outputPath)
+      written.getUniqueId === merged.getUniqueId
+      written.getDataSetMetadata.getTotalLength === 44032862L
+    }
+    "Sum the counts of the unique SubreadSets" in {
+      val d1 = DataSetLoader.loadAndResolveSubreadSet(subreadSetPath)
+      val d2 = DataSetLoader.loadAndResolveSubreadSet(subreadSetPath)
+      d2.setUniqueId(UUID.randomUUID().toString)
+      val numResources = d1.getExternalResources.getExternalResource.size
+
+      val builder =
+        new DataSetMergeBuilder[SubreadSet](() => new SubreadSet())
+      Seq(d1, d2, d1).foreach(builder.add)
+      val merged = builder.result("ds-name")
+
+      builder.numDataSets === 3
+      builder.numUniqueDataSets === 2
+      builder.numExternalResources === numResources
+      merged.getDataSetMetadata.getTotalLength === 2 * 44032862L
+      merged.getDataSetMetadata.getNumRecords === 2 * 5029
+      merged.getDescription must contain("from 2 files from 3 original files")
+    }
+  }
   "Merge dataset tool smoke test" should {
     "Simple HdfSubread merge" in {
       val paths = examplePaths.map(_.toFile)
@@ -16,12 +16,15 @@ import com.pacbio.secondary.smrtlink.services.{
   DataSetServiceProvider,
   ServiceComposer
 }
+import com.pacbio.secondary.smrtlink.services.utils.SmrtDirectives
 import com.pacbio.secondary.smrtlink.testkit.TestUtils
 import com.pacbio.secondary.smrtlink.tools.SetupMockData
 import org.specs2.mutable.Specification
 import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
-import akka.http.scaladsl.model.headers.RawHeader
+import akka.http.scaladsl.model.{MediaRange, MediaRanges, MediaTypes}
+import akka.http.scaladsl.model.headers.{Accept, RawHeader}
 import akka.http.scaladsl.testkit.{RouteTestTimeout, Specs2RouteTest}
+import akka.stream.scaladsl.Sink
 import com.pacbio.secondary.smrtlink.models.QueryOperators.IntQueryOperator
 import spray.json._
 import slick.jdbc.PostgresProfile.api._
@@ -110,6 +113,64 @@ class DataSetServiceSpec
         subreads.size === 2
       }
     }
+    "Secondary analysis Stream SubreadSet list as newline delimited JSON" in {
+      val url = s"/$ROOT_SA_PREFIX/datasets/subreads"
+      val subreads = Get(url) ~> totalRoutes ~> check {
+        responseAs[Seq[SubreadServiceDataSet]]
+      }
+
+      Get(url) ~> addHeader(
+        Accept(MediaRange(SmrtDirectives.`application/x-ndjson`))) ~> totalRoutes ~> check {
+        status.isSuccess must beTrue
+        contentType.mediaType === SmrtDirectives.`application/x-ndjson`
+        val lines = responseAs[String].split("\n").toSeq
+        lines.map(_.parseJson) must contain(beAnInstanceOf[JsObject]).forall
+        lines.length === subreads.length
+        lines.map(_.parseJson.convertTo[SubreadServiceDataSet].id) === subreads
+          .map(_.id)
+      }
+    }
+    "Secondary analysis Stream ReferenceSet list as newline delimited JSON" in {
+      val url = s"/$ROOT_SA_PREFIX/datasets/references"
+      val references = Get(url) ~> totalRoutes ~> check {
+        responseAs[Seq[ReferenceServiceDataSet]]
+      }
+
+      Get(url) ~> addHeader(
+        Accept(MediaRange(SmrtDirectives.`application/x-ndjson`))) ~> totalRoutes ~> check {
+        status.isSuccess must beTrue
+        contentType.mediaType === SmrtDirectives.`application/x-ndjson`
+        val lines = responseAs[String].split("\n").toSeq
+        lines.map(_.parseJson) must contain(beAnInstanceOf[JsObject]).forall
+        lines.map(_.parseJson.convertTo[ReferenceServiceDataSet].id) === references
+          .map(_.id)
+      }
+    }
+    "Stream the SubreadSet list in keyset pages" in {
+      val timeout = 10.seconds
+      val pagedDao = new JobsDao(dao.db, dao.resolver) {
+        override val STREAM_PAGE_SIZE = 1
+      }
+      val c = DataSetSearchCriteria.default
+      val subreads = Await.result(dao.getSubreadDataSets(c), timeout)
+      subreads.length === 2
+
+      def streamIds(c: DataSetSearchCriteria) =
+        Await
+          .result(pagedDao.streamSubreadDataSets(c).runWith(Sink.seq), timeout)
+          .map(_.id)
+
+      streamIds(c) === subreads.map(_.id)
+      streamIds(c.copy(limit = 1)) === subreads.take(1).map(_.id)
+    }
+    "Secondary analysis wildcard Accept lists SubreadSets as a JSON array" in {
+      Get(s"/$ROOT_SA_PREFIX/datasets/subreads") ~> addHeader(
+        Accept(MediaRange(MediaTypes.`application/json`), MediaRanges.`*/*`)) ~> totalRoutes ~> check {
+        status.isSuccess must beTrue
+        contentType.mediaType === MediaTypes.`application/json`
+        responseAs[Seq[SubreadServiceDataSet]].size === 2
+      }
+    }
     "Secondary analysis Get SubreadSet list by name" in {
       Get(
         s"/$ROOT_SA_PREFIX/datasets/subreads?name=DataSet_SubreadSet&id=gte:2") ~> totalRoutes ~> check {
@@ -14,6 +14,8 @@ import com.pacificbiosciences.pacbiobasedatamodel.{
 import com.pacbio.secondary.smrtlink.analysis.constants.FileTypes
 import com.pacbio.secondary.smrtlink.analysis.datasets.io.DataSetLoader
 import com.pacbio.secondary.smrtlink.analysis.datasets.{
+  DataSetFileUtils,
+  DataSetMetaTypes,
   DataSetMetadataUtils,
   DataSetUpdateUtils,
   DataSetFilterUtils,
@@ -271,4 +273,27 @@ class DataSetUtilsSpec
       (ds2.getTags.split(',').toSet contains "copied") must beTrue
     }
   }
+  "DataSet header reader" should {
+    "Read the header without loading the DataSet" in {
+      val path =
+        getResourcePath("/dataset-subreads/m54008_160215_180009.subreadset.xml")
+      val ds = DataSetLoader.loadSubreadSet(path)
+      val header = DataSetFileUtils.getDataSetHeader(path)
+
+      header.uuid.toString === ds.getUniqueId
+      header.metatype === DataSetMetaTypes.Subread
+      header.name === Some(ds.getName)
+      header.createdAt must beSome
+      header.numRecords === Some(ds.getDataSetMetadata.getNumRecords.toLong)
+      header.totalLength === Some(ds.getDataSetMetadata.getTotalLength)
+      DataSetFileUtils.getDataSetMiniMeta(path) === header.toMiniMeta
+      DataSetMetaTypes.fromPath(path) === Some(DataSetMetaTypes.Subread)
+    }
+    "Fail to read the mini metadata of a non DataSet XML" in {
+      val path = Files.createTempFile("not-a-dataset", ".xml")
+      Files.write(path, "<Metadata><Run/></Metadata>".getBytes)
+      Try(DataSetFileUtils.getDataSetMiniMeta(path)).isFailure must beTrue
+      DataSetMetaTypes.fromPath(path) must beNone
+    }
+  }
 }
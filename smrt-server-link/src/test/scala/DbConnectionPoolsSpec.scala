@@ -0,0 +1,64 @@
+import org.specs2.mutable.Specification
+
+import com.pacbio.secondary.smrtlink.actors.SmrtLinkTestDalProvider
+import com.pacbio.secondary.smrtlink.database.{
+  AcquireTimeHistogram,
+  DbConnectionPools
+}
+import com.pacbio.secondary.smrtlink.models.ConfigModels.DbPoolConfig
+import slick.jdbc.PostgresProfile.api._
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class DbConnectionPoolsSpec extends Specification {
+
+  sequential
+
+  object TestProviders extends SmrtLinkTestDalProvider {}
+
+  "Db connection pools" should {
+    "Count the connection acquire times by bucket" in {
+      val histogram = new AcquireTimeHistogram(Seq(1L, 10L))
+      Seq(0L, 5L, 10L, 20L).foreach(ms => histogram.record(ms * 1000000L))
+
+      histogram.count === 4
+      histogram.maxMs === 20L
+      histogram.meanMs === 8.75
+      histogram.buckets === Map("<=1ms" -> 1L, "<=10ms" -> 2L, ">10ms" -> 1L)
+    }
+    "Export the metrics of each pool" in {
+      val pools = DbConnectionPools(TestProviders.dbConfig,
+                                    DbPoolConfig("engine", 2),
+                                    DbPoolConfig("api", 2),
+                                    DbPoolConfig("maintenance", 1))
+      try {
+        val fx = pools.api.db.run(sql"SELECT 1".as[Int].head)
+        Await.result(fx, 10.seconds) === 1
+
+        val metrics = pools.metrics
+        metrics.map(_.name) === Seq("engine", "api", "maintenance")
+        metrics.map(_.maxConnections) === Seq(2, 2, 1)
+        metrics.map(_.numAcquired) === Seq(0L, 1L, 0L)
+        metrics(1).acquireMsHistogram.values.sum === 1L
+      } finally {
+        pools.close()
+      }
+    }
+    "Copy the db properties to each pool" in {
+      val pools = DbConnectionPools(
+        TestProviders.dbConfig,
+        DbPoolConfig("engine", 1),
+        DbPoolConfig("api", 1),
+        DbPoolConfig("maintenance", 1),
+        Map("ApplicationName" -> "smrtlink-pools-spec"))
+      try {
+        val fx = pools.engine.db.run(
+          sql"SELECT current_setting('application_name')".as[String].head)
+        Await.result(fx, 10.seconds) === "smrtlink-pools-spec"
+      } finally {
+        pools.close()
+      }
+    }
+  }
+}
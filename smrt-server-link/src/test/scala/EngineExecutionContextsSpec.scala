@@ -0,0 +1,70 @@
+import java.util.concurrent.CountDownLatch
+
+import org.specs2.mutable.Specification
+
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.{
+  QuickWorkType,
+  StandardWorkType
+}
+import com.pacbio.secondary.smrtlink.actors.{
+  EngineExecutionContexts,
+  InstrumentedExecutionContext
+}
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.JobTypeIds
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+
+class EngineExecutionContextsSpec extends Specification {
+
+  sequential
+
+  "Instrumented execution context" should {
+    "Queue tasks when all the threads are busy" in {
+      val ec = new InstrumentedExecutionContext("test-pool", 2)
+      val latch = new CountDownLatch(1)
+
+      val fxs = (0 until 5).map(_ => Future(latch.await())(ec))
+
+      // Wait until the 2 threads are blocked
+      Thread.sleep(200)
+      val m = ec.metrics
+      m.maxThreads === 2
+      m.activeThreads === 2
+      m.saturation === 1.0
+      m.queueDepth === 3
+
+      latch.countDown()
+      Await.result(Future.sequence(fxs)(implicitly, ec), 5.seconds)
+      // the completed counter is updated after the Future is completed
+      Thread.sleep(100)
+
+      val completed = ec.metrics
+      ec.shutdown()
+
+      completed.queueDepth === 0
+      completed.completedTasks must beGreaterThanOrEqualTo(5L)
+      completed.maxQueueWaitMs must beGreaterThan(0L)
+    }
+  }
+  "Engine execution contexts" should {
+    "Run import jobs on the import pool" in {
+      val pools = new EngineExecutionContexts(
+        new InstrumentedExecutionContext("q", 1),
+        new InstrumentedExecutionContext("g", 1),
+        new InstrumentedExecutionContext("i", 1),
+        new InstrumentedExecutionContext("d", 1))
+
+      val importId = JobTypeIds.IMPORT_DATASET.id
+      val pipelineId = JobTypeIds.PBSMRTPIPE.id
+
+      val names = Seq(pools.forJob(QuickWorkType, importId),
+                      pools.forJob(StandardWorkType, importId),
+                      pools.forJob(QuickWorkType, pipelineId),
+                      pools.forJob(StandardWorkType, pipelineId)).map(_.name)
+      pools.shutdown()
+
+      names === Seq("i", "i", "q", "g")
+    }
+  }
+}
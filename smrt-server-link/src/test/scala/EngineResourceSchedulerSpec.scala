@@ -0,0 +1,113 @@
+import org.joda.time.{DateTime => JodaDateTime}
+import org.specs2.mutable.Specification
+
+import scala.concurrent.duration._
+
+import com.pacbio.secondary.smrtlink.actors.{
+  EngineResourceScheduler,
+  JobResources,
+  RunnableJobCandidate
+}
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.JobTypeIds
+import com.pacbio.secondary.smrtlink.analysis.pbsmrtpipe.PbsmrtpipeEngineOptions
+import com.pacbio.secondary.smrtlink.models.ConfigModels.EngineResourceConfig
+
+class EngineResourceSchedulerSpec extends Specification {
+
+  // Non-distributed pbsmrtpipe jobs require 4 * 2 = 8 procs
+  val pbsmrtpipeOptions = PbsmrtpipeEngineOptions(maxNproc = 4,
+                                                  maxTotalNproc = 8,
+                                                  distributedMode = false,
+                                                  maxNWorkers = 2)
+  val config = EngineResourceConfig(10, 10 * 1024, 1024)
+
+  def toScheduler = new EngineResourceScheduler(config, pbsmrtpipeOptions)
+
+  val pipelineId = JobTypeIds.PBSMRTPIPE.id
+  val importId = JobTypeIds.IMPORT_DATASET.id
+
+  "Engine resource scheduler" should {
+    "Compute requirements from the pbsmrtpipe engine options" in {
+      val s = toScheduler
+      s.total === JobResources(10, 10 * 1024)
+      s.requirement(pipelineId) === JobResources(8, 8 * 1024)
+      s.requirement(importId) === JobResources(1, 1024)
+    }
+    "Clamp the requirement to the total budget" in {
+      val opts = pbsmrtpipeOptions.copy(maxTotalNproc = 64)
+      val s = new EngineResourceScheduler(config, opts)
+      s.requirement(pipelineId) === s.total
+    }
+    "Distributed pbsmrtpipe jobs only require the master process" in {
+      val opts = pbsmrtpipeOptions.copy(distributedMode = true)
+      val s = new EngineResourceScheduler(config, opts)
+      s.requirement(pipelineId) === JobResources(1, 1024)
+    }
+    "Backfill small jobs around jobs that don't fit" in {
+      val s = toScheduler
+      val candidates = Seq(RunnableJobCandidate(1, pipelineId),
+                           RunnableJobCandidate(2, pipelineId),
+                           RunnableJobCandidate(3, importId),
+                           RunnableJobCandidate(4, importId),
+                           RunnableJobCandidate(5, importId))
+      s.select(s.total, 10)(candidates).map(_.jobId) === Seq(1, 3, 4)
+    }
+    "Compute requirements from the max nproc of the job" in {
+      val s = toScheduler
+      val settings =
+        """{"pipelineId": "p", "workflowOptions": [{"id": "pbsmrtpipe.options.max_nproc", "value": 1, "optionTypeId": "integer"}]}"""
+      val maxNproc = EngineResourceScheduler.toMaxNproc(pipelineId, settings)
+      maxNproc must beSome(1)
+      EngineResourceScheduler.toMaxNproc(importId, settings) must beNone
+      EngineResourceScheduler.toMaxNproc(pipelineId, "{}") must beNone
+      val candidate = RunnableJobCandidate(1, pipelineId, maxNproc)
+      s.requirement(pipelineId, maxNproc) === JobResources(2, 2 * 1024)
+      s.requirement(candidate) === JobResources(2, 2 * 1024)
+    }
+    "Stop backfilling around a job that waited longer than the max backfill wait" in {
+      val s = toScheduler
+      val now = JodaDateTime.now()
+      def candidates(submittedAt: JodaDateTime) =
+        Seq(RunnableJobCandidate(1, pipelineId, submittedAt = Some(submittedAt)),
+            RunnableJobCandidate(2, importId))
+      val budget = JobResources(4, 4 * 1024)
+
+      s.select(budget, 10, now)(candidates(now)).map(_.jobId) === Seq(2)
+      s.select(budget, 10, now)(candidates(now.minusHours(2))) must beEmpty
+    }
+    "Use the configured max backfill wait" in {
+      val s = new EngineResourceScheduler(
+        config.copy(maxBackfillWait = 10.minutes),
+        pbsmrtpipeOptions)
+      val now = JodaDateTime.now()
+      def candidates(waited: FiniteDuration) =
+        Seq(RunnableJobCandidate(1,
+                                 pipelineId,
+                                 submittedAt =
+                                   Some(now.minus(waited.toMillis))),
+            RunnableJobCandidate(2, importId))
+      val budget = JobResources(4, 4 * 1024)
+
+      s.select(budget, 10, now)(candidates(5.minutes)).map(_.jobId) === Seq(2)
+      s.select(budget, 10, now)(candidates(20.minutes)) must beEmpty
+      // A job without a submitted time never reserves the resources
+      s.select(budget, 10, now)(Seq(RunnableJobCandidate(1, pipelineId),
+                                    RunnableJobCandidate(2, importId)))
+        .map(_.jobId) === Seq(2)
+    }
+    "Respect the max number of jobs" in {
+      val s = toScheduler
+      val candidates = (1 to 5).map(i => RunnableJobCandidate(i, importId))
+      s.select(s.total, 2)(candidates).map(_.jobId) === Seq(1, 2)
+    }
+    "Track reserved and released resources" in {
+      val s = toScheduler
+      val r = s.requirement(pipelineId)
+      s.reserve(r)
+      s.getAvailable === JobResources(2, 2 * 1024)
+      s.select(s.getAvailable, 10)(Seq(RunnableJobCandidate(1, pipelineId))) must beEmpty
+      s.release(r)
+      s.getAvailable === s.total
+    }
+  }
+}
@@ -0,0 +1,44 @@
+import java.nio.file.Paths
+
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetLoader,
+  JaxbContexts
+}
+import com.pacificbiosciences.pacbiodatasets.SubreadSet
+import org.specs2.mutable.Specification
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+
+class JaxbContextsSpec extends Specification {
+
+  sequential
+
+  val path = Paths.get(
+    getClass
+      .getResource("/dataset-subreads/m54008_160215_180009.subreadset.xml")
+      .getPath)
+
+  "JAXB contexts" should {
+    "Create a single context per class" in {
+      JaxbContexts.context(classOf[SubreadSet]) must be(
+        JaxbContexts.context(classOf[SubreadSet]))
+    }
+    "Use a separate Unmarshaller per thread" in {
+      val u1 = JaxbContexts.unmarshaller(classOf[SubreadSet])
+      val u2 = Await.result(
+        Future(JaxbContexts.unmarshaller(classOf[SubreadSet])),
+        10.seconds)
+      u1 must be(JaxbContexts.unmarshaller(classOf[SubreadSet]))
+      u1 must not(be(u2))
+    }
+    "Load a dataset concurrently from several threads" in {
+      val expected = DataSetLoader.loadSubreadSet(path).getUniqueId
+      val fx = Future.sequence(
+        (0 until 16).map(_ =>
+          Future(DataSetLoader.loadSubreadSet(path).getUniqueId)))
+      Await.result(fx, 30.seconds).toSet === Set(expected)
+    }
+  }
+}
@@ -79,6 +79,7 @@ class JobExecutorSpec
       with JobsDaoProvider
       with SmrtLinkTestDalProvider
       with SmrtLinkConfigProvider
+      with EngineExecutionContextsProvider
       with JobsServiceProvider
       with PbsmrtpipeConfigLoader
       with EngineCoreConfigLoader
@@ -0,0 +1,96 @@
+import java.nio.file.Files
+import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+
+import akka.actor.{Actor, ActorSystem, Props}
+import org.specs2.mutable.Specification
+import com.pacbio.secondary.smrtlink.actors.CommonMessages.CheckForRunnableJob
+import com.pacbio.secondary.smrtlink.actors.{
+  JobStateNotifyListenerActor,
+  JobsDao,
+  SmrtLinkTestDalProvider
+}
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.JobTypeIds
+import com.pacbio.secondary.smrtlink.analysis.jobs.{
+  AnalysisJobStates,
+  PacBioIntJobResolver
+}
+import com.pacbio.secondary.smrtlink.models.ConfigModels.EntityCacheConfig
+import com.pacbio.secondary.smrtlink.testkit.{MockFileUtils, TestUtils}
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class JobStateNotifyListenerSpec extends Specification with TestUtils {
+
+  sequential
+
+  object TestProviders extends SmrtLinkTestDalProvider {}
+
+  // Stand in for the EngineManager, records the received messages
+  class RecordingActor(received: LinkedBlockingQueue[Any]) extends Actor {
+    override def receive: Receive = { case x => received.put(x) }
+  }
+
+  val timeout = 10.seconds
+  val jobResolver = new PacBioIntJobResolver(
+    Files.createTempDirectory("job-notify-listener-spec"))
+  val db = TestProviders.dbConfig.toDatabase
+
+  // The dao of the listener and the dao of a different process (e.g., an Engine node)
+  val cachedDao =
+    new JobsDao(db, jobResolver, entityCacheConfig = EntityCacheConfig())
+  val otherDao = new JobsDao(db, jobResolver)
+
+  val system = ActorSystem("job-notify-listener-spec")
+  val received = new LinkedBlockingQueue[Any]()
+
+  step(setupDb(TestProviders.dbConfig))
+
+  "Job state notify listener" should {
+    "Dispatch the NOTIFY of the job state changes of other processes" in {
+      val manager = system.actorOf(Props(new RecordingActor(received)))
+      system.actorOf(
+        JobStateNotifyListenerActor.props(TestProviders.dbConfig,
+                                          cachedDao,
+                                          manager,
+                                          50.millis))
+
+      // The listener triggers a check for work when the LISTEN connection is opened
+      received.poll(5, TimeUnit.SECONDS) === CheckForRunnableJob
+
+      val rawJob = MockFileUtils.toTestRawEngineJob("notify-test",
+                                                    None,
+                                                    Some(JobTypeIds.SIMPLE),
+                                                    None)
+      val job =
+        Await.result(otherDao.importRawEngineJob(rawJob, rawJob), timeout)
+      Await.result(cachedDao.getJobById(job.id), timeout).state === AnalysisJobStates.CREATED
+
+      // SUBMITTED jobs are dispatched, the cached job is invalidated before the dispatch
+      Await.result(otherDao.updateJobState(job.id,
+                                           AnalysisJobStates.SUBMITTED,
+                                           "notify-test-submitted"),
+                   timeout)
+      received.poll(5, TimeUnit.SECONDS) === CheckForRunnableJob
+      Await.result(cachedDao.getJobById(job.id), timeout).state === AnalysisJobStates.SUBMITTED
+
+      // Other state changes only invalidate the cached job
+      val invalidations = cachedDao.entityCaches.jobs.metrics.invalidations
+      Await.result(otherDao.updateJobState(job.id,
+                                           AnalysisJobStates.RUNNING,
+                                           "notify-test-running"),
+                   timeout)
+      val deadline = 5.seconds.fromNow
+      def isInvalidated =
+        cachedDao.entityCaches.jobs.metrics.invalidations > invalidations
+      while (!isInvalidated && deadline.hasTimeLeft()) {
+        Thread.sleep(50)
+      }
+      isInvalidated must beTrue
+      Await.result(cachedDao.getJobById(job.id), timeout).state === AnalysisJobStates.RUNNING
+      received.poll(200, TimeUnit.MILLISECONDS) must beNull
+    }
+  }
+
+  step(Await.result(system.terminate(), timeout))
+}
@@ -19,6 +19,8 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.{
   DataStoreFile,
   EngineJob,
   JobConstants,
+  JobEvent,
+  JobTask,
   JobTypeIds
 }
 import com.pacbio.secondary.smrtlink.analysis.jobs.{
@@ -27,7 +29,15 @@ import com.pacbio.secondary.smrtlink.analysis.jobs.{
 }
 import com.pacbio.secondary.smrtlink.jobtypes.MultiAnalysisJobOptions
 import com.pacbio.secondary.smrtlink.jsonprotocols.ServiceJobTypeJsonProtocols
+import com.pacbio.secondary.smrtlink.services.PacBioServiceErrors.{
+  ConflictError,
+  UnprocessableEntityError
+}
 import com.pacbio.secondary.smrtlink.models._
+import com.pacbio.secondary.smrtlink.models.ConfigModels.{
+  EntityCacheConfig,
+  JobLeaseConfig
+}
 import com.pacbio.secondary.smrtlink.testkit.{MockFileUtils, TestUtils}
 import com.pacbio.secondary.smrtlink.tools.SetupMockData
 import spray.json._
@@ -152,6 +162,87 @@ class JobsDaoSpec extends Specification with TestUtils with SetupMockData {
       rSetFile.jobId === importedJob.id
     }
 
+    "Bulk import of DataStore files skips the imported and duplicated files" in {
+      val fastaFiles = (0 until 3).map { _ =>
+        MockFileUtils.writeMockFastaDataStoreFile(
+          100,
+          Files.createTempFile(tmpJobDir, "mock", ".fasta"))
+      }
+
+      val rsetPath = Files.createTempFile(tmpJobDir, "reference", "set.xml")
+      val rset = DataSetLoader.loadAndResolveReferenceSet(
+        PacBioTestUtils.getResourcePath("dataset-references/example_01.xml"))
+      val rsetUUID = UUID.randomUUID()
+      rset.setUniqueId(rsetUUID.toString)
+      DataSetWriter.writeReferenceSet(rset, rsetPath)
+      val rsetFile = MockFileUtils.toTestDataStoreFile(rsetUUID,
+                                                       FileTypes.DS_REFERENCE,
+                                                       rsetPath)
+
+      val files = fastaFiles ++ Seq(rsetFile, fastaFiles.head)
+
+      val jobUUID = UUID.randomUUID()
+      val rawEngineJob = MockFileUtils.toTestRawEngineJob("bulk-import-test",
+                                                          Some(jobUUID),
+                                                          None,
+                                                          None)
+
+      val fx = for {
+        _ <- dao.importRawEngineJob(rawEngineJob, rawEngineJob)
+        messages <- dao.importDataStoreFiles(files, jobUUID)
+        reImportMessages <- dao.importDataStoreFiles(files, jobUUID)
+        importedFiles <- dao.getDataStoreServiceFilesByJobId(jobUUID)
+        rSetFile <- dao.getReferenceDataSetById(rsetUUID)
+      } yield (messages, reImportMessages, importedFiles, rSetFile)
+
+      val (messages, reImportMessages, importedFiles, rSetFile) =
+        Await.result(fx, timeout)
+
+      messages.length === files.length
+      messages.last.message must contain("already exists")
+      reImportMessages.forall(_.message.contains("already exists")) must beTrue
+      importedFiles.map(_.uuid).toSet === files
+        .map(_.uniqueId)
+        .toSet
+      rSetFile.path === rsetFile.path
+    }
+
+    "System summary counts match the table counts" in {
+      import com.pacbio.secondary.smrtlink.database.TableModels._
+
+      val fx = for {
+        summary <- dao.getSystemSummaryCounts()
+        numSubreads <- db.run(dsSubread2.length.result)
+        numReferences <- db.run(dsReference2.length.result)
+        numJobs <- db.run(engineJobs.length.result)
+        numJobEvents <- db.run(jobEvents.length.result)
+        numEntryPoints <- db.run(engineJobsDataSets.length.result)
+        numFiles <- db.run(datastoreServiceFiles.length.result)
+      } yield
+        (summary,
+         numSubreads,
+         numReferences,
+         numJobs,
+         numJobEvents,
+         numEntryPoints,
+         numFiles)
+
+      val (summary,
+           numSubreads,
+           numReferences,
+           numJobs,
+           numJobEvents,
+           numEntryPoints,
+           numFiles) = Await.result(fx, timeout)
+
+      summary.numDataSets("subreads") === numSubreads.toLong
+      summary.numDataSets("references") === numReferences.toLong
+      summary.jobs.map(_.numJobs).sum === numJobs.toLong
+      summary.numJobEvents === numJobEvents.toLong
+      summary.numEntryPoints === numEntryPoints.toLong
+      summary.numDataStoreFiles === numFiles.toLong
+    }
+
     "Job search API" in {
       val prefix = Random.alphanumeric.take(10).mkString("")
       def toJobName(x: Int) = s"${prefix}-job$x"
@@ -208,6 +299,487 @@ class JobsDaoSpec extends Specification with TestUtils with SetupMockData {
       }
     }
 
+    "Job name substring search matches LIKE wildcards literally" in {
+      val prefix = Random.alphanumeric.take(10).mkString("")
+      val job1 = MockFileUtils
+        .toTestRawEngineJob(s"$prefix-50%-done",
+                            None,
+                            Some(JobTypeIds.PBSMRTPIPE),
+                            None)
+      val job2 = job1.copy(name = s"$prefix-500-done", uuid = UUID.randomUUID())
+      val job3 = job1.copy(name = s"$prefix-a_b", uuid = UUID.randomUUID())
+      val job4 = job1.copy(name = s"$prefix-axb", uuid = UUID.randomUUID())
+
+      def search(sx: String) =
+        dao.getJobs(
+          JobSearchCriteria.allAnalysisJobs.copy(
+            name = Some(QueryOperators.StringMatchQueryOperator(sx))))
+
+      val fx = for {
+        _ <- Future.sequence(Seq(job1, job2, job3, job4).map { job =>
+          dao.importRawEngineJob(job, job)
+        })
+        r1 <- search(s"$prefix-50%")
+        r2 <- search(s"$prefix-a_b")
+        r3 <- search(prefix)
+      } yield (r1.map(_.name), r2.map(_.name), r3.length)
+
+      val (names1, names2, numJobs) = Await.result(fx, timeout)
+      names1 === Seq(job1.name)
+      names2 === Seq(job3.name)
+      numJobs === 4
+    }
+
+    "Job search keyset pagination" in {
+      val prefix = Random.alphanumeric.take(10).mkString("")
+      val rawJobs = (1 to 5).map { i =>
+        MockFileUtils
+          .toTestRawEngineJob(s"$prefix-page-job$i",
+                              None,
+                              Some(JobTypeIds.PBSMRTPIPE),
+                              None)
+      }
+      val c1 = JobSearchCriteria.allAnalysisJobs.copy(
+        limit = 2,
+        name = Some(QueryOperators.StringMatchQueryOperator(s"$prefix-page")))
+
+      def getPages(pageToken: Option[String],
+                   pages: Seq[Seq[Int]]): Future[Seq[Seq[Int]]] =
+        dao.getJobs(c1.copy(pageToken = pageToken)).flatMap { jobs =>
+          val ids = jobs.map(_.id)
+          val acc = pages :+ ids
+          KeysetPageToken.next(c1.limit, ids) match {
+            case Some(token) => getPages(Some(token), acc)
+            case None => Future.successful(acc)
+          }
+        }
+
+      val fx = for {
+        jobs <- Future.sequence(rawJobs.map { job =>
+          dao.importRawEngineJob(job, job)
+        })
+        pages <- getPages(None, Nil)
+      } yield (jobs.map(_.id), pages)
+
+      val (jobIds, pages) = Await.result(fx, timeout)
+
+      pages.map(_.length) === Seq(2, 2, 1)
+      pages.flatten === jobIds.sorted.reverse
+      KeysetPageToken.decode(KeysetPageToken.encode(42)) must beSome(42)
+      KeysetPageToken.decode("not-a-token") must beNone
+    }
+
+    "Concurrent claims of runnable jobs are disjoint" in {
+      val prefix = Random.alphanumeric.take(10).mkString("")
+      val numJobs = 6
+      val rawJobs = (1 to numJobs).map { i =>
+        MockFileUtils
+          .toTestRawEngineJob(s"$prefix-claim-job$i",
+                              None,
+                              Some(JobTypeIds.PBSMRTPIPE),
+                              None)
+          .copy(state = AnalysisJobStates.SUBMITTED)
+      }
+
+      val fx = for {
+        jobs <- Future.sequence(rawJobs.map(j => dao.importRawEngineJob(j, j)))
+        claims <- Future.sequence(
+          (1 to 4).map(_ => dao.claimRunnableEngineCoreJobs(numJobs)))
+        remaining <- dao.claimRunnableEngineCoreJobs(numJobs * 10)
+      } yield (jobs, claims, remaining)
+
+      val (createdJobs, claims, remaining) = Await.result(fx, timeout)
+      val claimedIds = claims.flatten.map(_.id) ++ remaining.map(_.id)
+
+      claimedIds.distinct.length === claimedIds.length
+      claims.flatten.map(_.state).toSet === Set(AnalysisJobStates.RUNNING)
+      createdJobs.map(_.id).toSet.subsetOf(claimedIds.toSet) must beTrue
+    }
+
+    "Job queue is ordered by priority and fair-share across users" in {
+      def toJob(name: String, user: String) =
+        MockFileUtils
+          .toTestRawEngineJob(name, None, Some(JobTypeIds.PBSMRTPIPE), None)
+          .copy(state = AnalysisJobStates.SUBMITTED, createdBy = Some(user))
+
+      val rawJobs = Seq(toJob("a1", "alice"),
+                        toJob("a2", "alice"),
+                        toJob("a3", "alice"),
+                        toJob("b1", "bob"),
+                        toJob("a4", "alice"))
+
+      val fx = for {
+        // Import sequentially, the job id defines the order within a user's share
+        jobs <- rawJobs.foldLeft(Future.successful(Seq.empty[EngineJob])) {
+          (acc, j) =>
+            acc.flatMap(xs => dao.importRawEngineJob(j, j).map(xs :+ _))
+        }
+        _ <- dao.updateJobPriority(jobs.last.id, 10)
+        queue <- dao.getJobQueue()
+        claimed <- dao.claimRunnableEngineCoreJobs(2)
+        _ <- dao.claimRunnableEngineCoreJobs(rawJobs.length)
+      } yield (queue, claimed)
+
+      val (queue, claimed) = Await.result(fx, timeout)
+
+      queue.map(_.name) === Seq("a4", "a1", "b1", "a2", "a3")
+      queue.head.priority === 10
+      claimed.map(_.name).toSet === Set("a4", "a1")
+    }
+
+    "Job metadata and priority are updated in a single transaction" in {
+      def toJob(name: String, state: AnalysisJobStates.JobStates) =
+        MockFileUtils
+          .toTestRawEngineJob(name, None, Some(JobTypeIds.PBSMRTPIPE), None)
+          .copy(state = state)
+
+      val submittedJob =
+        toJob("priority-update", AnalysisJobStates.SUBMITTED)
+      val runningJob =
+        toJob("priority-update-running", AnalysisJobStates.RUNNING)
+
+      val fx = for {
+        submitted <- dao.importRawEngineJob(submittedJob, submittedJob)
+        running <- dao.importRawEngineJob(runningJob, runningJob)
+        updated <- dao.updateJob(submitted.id,
+                                 Some("priority-update-renamed"),
+                                 None,
+                                 None,
+                                 Some(5))
+      } yield (updated, running)
+
+      val (updated, running) = Await.result(fx, timeout)
+      updated.name === "priority-update-renamed"
+      updated.priority === 5
+
+      // The priority of a RUNNING job can't be updated, the name isn't updated either
+      Await.result(dao.updateJob(running.id,
+                                 Some("priority-update-running-renamed"),
+                                 None,
+                                 None,
+                                 Some(5)),
+                   timeout) must throwA[UnprocessableEntityError]
+      Await.result(dao.getJobById(running.id), timeout).name === "priority-update-running"
+    }
+
+    "Jobs with an expired lease are requeued and then failed" in {
+      val lease = JobLeaseConfig("test-node", 1.minute, maxAttempts = 2)
+      val rawJob = MockFileUtils
+        .toTestRawEngineJob("lease-test", None, Some(JobTypeIds.SIMPLE), None)
+        .copy(state = AnalysisJobStates.SUBMITTED)
+      val expiredAt = JodaDateTime.now().plusHours(1)
+
+      def claim(jobId: Int) =
+        dao.claimRunnableEngineCoreJobs(
+          1,
+          select = _.filter(_.jobId == jobId),
+          lease = Some(lease))
+
+      val fx = for {
+        job <- dao.importRawEngineJob(rawJob, rawJob)
+        _ <- claim(job.id)
+        lease1 <- dao.getJobLease(job.id)
+        renewed <- dao.renewJobLeases(lease)
+        requeued <- dao.reapExpiredJobLeases(lease.maxAttempts, expiredAt)
+        _ <- claim(job.id)
+        lease2 <- dao.getJobLease(job.id)
+        failed <- dao.reapExpiredJobLeases(lease.maxAttempts, expiredAt)
+        lease3 <- dao.getJobLease(job.id)
+      } yield (job, lease1, renewed, requeued, lease2, failed, lease3)
+
+      val (job, lease1, renewed, requeued, lease2, failed, lease3) =
+        Await.result(fx, timeout)
+
+      lease1.map(_.nodeId) must beSome("test-node")
+      lease1.map(_.attempts) must beSome(1)
+      renewed must beGreaterThanOrEqualTo(1)
+      requeued.map(j => (j.id, j.state)) === Seq(
+        (job.id, AnalysisJobStates.SUBMITTED))
+      lease2.map(_.attempts) must beSome(2)
+      failed.map(j => (j.id, j.state)) === Seq(
+        (job.id, AnalysisJobStates.FAILED))
+      lease3 must beNone
+    }
+
+    "State updates of a job with a lost lease are rejected" in {
+      val lease = JobLeaseConfig("test-node", 1.minute, maxAttempts = 3)
+      val rawJob = MockFileUtils
+        .toTestRawEngineJob("lease-fence-test",
+                            None,
+                            Some(JobTypeIds.SIMPLE),
+                            None)
+        .copy(state = AnalysisJobStates.SUBMITTED)
+      val expiredAt = JodaDateTime.now().plusHours(1)
+
+      // Claimed by the same Engine node each time
+      def claim(jobId: Int): Int = {
+        val claimed = Await.result(
+          dao.claimRunnableEngineCoreJobsWithLeases(
+            1,
+            select = _.filter(_.jobId == jobId),
+            lease = Some(lease)),
+          timeout)
+        claimed.map(_._1.id) === Seq(jobId)
+        claimed.flatMap(_._2).map(_.attempts).head
+      }
+
+      def update(jobId: Int,
+                 state: AnalysisJobStates.JobStates,
+                 fence: JobLeaseFence) =
+        Await.result(dao.updateJobState(jobId,
+                                        state,
+                                        s"Update with $fence",
+                                        fence = fence),
+                     timeout)
+
+      val job = Await.result(dao.importRawEngineJob(rawJob, rawJob), timeout)
+      val epoch1 = claim(job.id)
+
+      // The lease expires and the job is requeued, the run of the first claim is stale
+      Await.result(dao.reapExpiredJobLeases(lease.maxAttempts, expiredAt),
+                   timeout)
+      update(job.id,
+             AnalysisJobStates.SUCCESSFUL,
+             JobLeaseFence.Epoch(epoch1)) must throwA[ConflictError]
+      // Clients without the epoch (e.g., the http API) can't update the requeued job
+      update(job.id,
+             AnalysisJobStates.SUCCESSFUL,
+             JobLeaseFence.LeaseHeld) must throwA[ConflictError]
+      Await.result(dao.getJobById(job.id), timeout).state === AnalysisJobStates.SUBMITTED
+
+      // Claimed again by the same node, the stale run is still rejected
+      val epoch2 = claim(job.id)
+      epoch2 === epoch1 + 1
+      update(job.id,
+             AnalysisJobStates.FAILED,
+             JobLeaseFence.Epoch(epoch1)) must throwA[ConflictError]
+      Await.result(dao.getJobById(job.id), timeout).state === AnalysisJobStates.RUNNING
+
+      // Updates with the current lease (or without the epoch) are accepted while it is held
+      update(job.id,
+             AnalysisJobStates.RUNNING,
+             JobLeaseFence.LeaseHeld).state === AnalysisJobStates.RUNNING
+      update(job.id,
+             AnalysisJobStates.SUCCESSFUL,
+             JobLeaseFence.Epoch(epoch2)).state === AnalysisJobStates.SUCCESSFUL
+      Await.result(dao.getJobLease(job.id), timeout) must beNone
+
+      // The lease is deleted with the completed job
+      update(job.id,
+             AnalysisJobStates.FAILED,
+             JobLeaseFence.Epoch(epoch2)) must throwA[ConflictError]
+    }
+
+    "Runnable job candidates wait from when the job was submitted" in {
+      val createdAt = JodaDateTime.now().minusHours(5)
+      val settings =
+        """{"workflowOptions": [{"id": "pbsmrtpipe.options.max_nproc", "value": 3}]}"""
+      val rawJob = MockFileUtils
+        .toTestRawEngineJob("backfill-wait-test",
+                            None,
+                            Some(JobTypeIds.PBSMRTPIPE),
+                            None)
+        .copy(createdAt = createdAt,
+              updatedAt = createdAt,
+              jsonSettings = settings)
+
+      val fx = for {
+        job <- dao.importRawEngineJob(rawJob, rawJob)
+        _ <- dao.updateJobState(job.id,
+                                AnalysisJobStates.SUBMITTED,
+                                "backfill-wait-submitted")
+        candidates <- dao.getRunnableJobCandidates()
+        // Don't leave a runnable job to the other specs
+        _ <- dao.updateJobState(job.id,
+                                AnalysisJobStates.FAILED,
+                                "backfill-wait-done")
+      } yield candidates.find(_.jobId == job.id)
+
+      val candidate = Await.result(fx, timeout)
+
+      candidate.flatMap(_.maxNproc) must beSome(3)
+      candidate
+        .flatMap(_.submittedAt)
+        .map(_.isAfter(createdAt.plusHours(4))) must beSome(true)
+    }
+
+    "Last activity of a running job includes the job events" in {
+      val rawJob = MockFileUtils
+        .toTestRawEngineJob("watchdog-test",
+                            None,
+                            Some(JobTypeIds.SIMPLE),
+                            None)
+        .copy(state = AnalysisJobStates.RUNNING)
+      val eventAt = JodaDateTime.now().plusHours(1)
+
+      val fx = for {
+        job <- dao.importRawEngineJob(rawJob, rawJob)
+        a1 <- dao.getJobsLastActivity(Seq(job.id))
+        _ <- dao.addJobEvent(
+          JobEvent(UUID.randomUUID(),
+                   job.id,
+                   AnalysisJobStates.RUNNING,
+                   "watchdog-event",
+                   eventAt))
+        a2 <- dao.getJobsLastActivity(Seq(job.id))
+        requeued <- dao.requeueJob(job.id, "Requeuing stale job")
+      } yield (job, a1, a2, requeued)
+
+      val (job, a1, a2, requeued) = Await.result(fx, timeout)
+
+      a1.get(job.id).map(_.getMillis) must beSome(job.updatedAt.getMillis)
+      a2.get(job.id).map(_.getMillis) must beSome(eventAt.getMillis)
+      requeued.state === AnalysisJobStates.SUBMITTED
+    }
+
+    "Batched job state updates are written in order" in {
+      val rawJob = MockFileUtils.toTestRawEngineJob("batch-state-updates",
+                                                    None,
+                                                    Some(JobTypeIds.SIMPLE),
+                                                    None)
+      val states = Seq(AnalysisJobStates.SUBMITTED,
+                       AnalysisJobStates.RUNNING,
+                       AnalysisJobStates.SUCCESSFUL)
+
+      val fx = for {
+        job <- dao.importRawEngineJob(rawJob, rawJob)
+        // Submitted without waiting, these will be written in the same batch
+        updates <- Future.sequence(states.map(s =>
+          dao.updateJobState(job.id, s, s"batch-update-$s")))
+        // A bad update can't fail the other updates of the batch
+        failed <- Future
+          .sequence(
+            Seq(dao.updateJobState(-1, AnalysisJobStates.FAILED, "bad"),
+                dao.addJobEvent(
+                  JobEvent(UUID.randomUUID(),
+                           job.id,
+                           AnalysisJobStates.SUCCESSFUL,
+                           "batch-event",
+                           JodaDateTime.now()))))
+          .map(_ => false)
+          .recover { case _ => true }
+        events <- dao.getJobEventsByJobId(job.id)
+        updatedJob <- dao.getJobById(job.id)
+      } yield (updates, failed, events, updatedJob)
+
+      val (updates, failed, events, updatedJob) = Await.result(fx, timeout)
+
+      updates.map(_.state) === states
+      failed must beTrue
+      updatedJob.state === AnalysisJobStates.SUCCESSFUL
+      // The events of a batch can have the same createdAt, these are ordered by the
+      // (db assigned) event seq
+      val expectedMessages = states.map(s => s"batch-update-$s") :+ "batch-event"
+      events
+        .map(_.message)
+        .filter(_.startsWith("batch-")) === expectedMessages
+    }
+
+    "Cached job lookups are invalidated by job state updates" in {
+      val cachedDao = new JobsDao(db,
+                                  jobResolver,
+                                  entityCacheConfig = EntityCacheConfig())
+      val rawJob = MockFileUtils.toTestRawEngineJob("cached-job",
+                                                    None,
+                                                    Some(JobTypeIds.SIMPLE),
+                                                    None)
+
+      def jobsCache = cachedDao.entityCaches.jobs.metrics
+
+      val fx = for {
+        job <- cachedDao.importRawEngineJob(rawJob, rawJob)
+        j1 <- cachedDao.getJobById(job.id)
+        j2 <- cachedDao.getJobById(job.id)
+        m1 <- Future.successful(jobsCache)
+        _ <- cachedDao.updateJobState(job.id,
+                                      AnalysisJobStates.SUBMITTED,
+                                      "cached-job-update")
+        j3 <- cachedDao.getJobById(job.id)
+        // Lookups of missing jobs are not cached
+        missing <- cachedDao
+          .getJobById(-1)
+          .map(_ => false)
+          .recover { case _ => true }
+      } yield (j1, j2, m1, j3, missing)
+
+      val (j1, j2, m1, j3, missing) = Await.result(fx, timeout)
+
+      j2 === j1
+      m1.hits === 1L
+      m1.misses === 1L
+      j3.state === AnalysisJobStates.SUBMITTED
+      missing must beTrue
+      jobsCache.invalidations must beGreaterThanOrEqualTo(1L)
+    }
+
+    "Archived job events and tasks are returned with the job" in {
+      import com.pacbio.secondary.smrtlink.database.TableModels._
+
+      val rawJob = MockFileUtils
+        .toTestRawEngineJob("archive-test",
+                            None,
+                            Some(JobTypeIds.SIMPLE),
+                            None)
+        .copy(state = AnalysisJobStates.SUCCESSFUL)
+      val completedAt = JodaDateTime.now().minusYears(10)
+
+      def toTask(jobId: Int) =
+        JobTask(UUID.randomUUID(),
+                jobId,
+                "archive-task",
+                "pbsmrtpipe.tasks.dev_01",
+                "Archive Task",
+                AnalysisJobStates.SUCCESSFUL.toString,
+                completedAt,
+                completedAt,
+                None)
+
+      val fx = for {
+        job <- dao.importRawEngineJob(rawJob, rawJob)
+        task <- dao.addJobTask(toTask(job.id))
+        _ <- dao.addJobEvent(
+          JobEvent(UUID.randomUUID(),
+                   job.id,
+                   AnalysisJobStates.SUCCESSFUL,
+                   "archive-event",
+                   completedAt))
+        events <- dao.getJobEventsByJobId(job.id)
+        // Completed (i.e., terminal state event) before the cutoff, but recently updated
+        _ <- dao.updateJob(job.id, Some("archive-test-renamed"), None, None)
+        numArchived <- dao.archiveJobs(completedAt.plusYears(1), 100)
+        archivedEvents <- dao.getJobEventsByJobId(job.id)
+        archivedTasks <- dao.getJobTasks(job.id)
+        archivedTask <- dao.getJobTask(job.id, task.uuid)
+        allEvents <- dao.getJobEvents
+        numLiveEvents <- db.run(
+          jobEvents.filter(_.jobId === job.id).length.result)
+      } yield
+        (task,
+         events,
+         numArchived,
+         archivedEvents,
+         archivedTasks,
+         archivedTask,
+         allEvents,
+         numLiveEvents)
+
+      val (task,
+           events,
+           numArchived,
+           archivedEvents,
+           archivedTasks,
+           archivedTask,
+           allEvents,
+           numLiveEvents) = Await.result(fx, timeout)
+
+      numArchived must beGreaterThanOrEqualTo(1)
+      numLiveEvents === 0
+      archivedEvents.map(_.eventId) === events.map(_.eventId)
+      archivedTasks.map(_.uuid) === Seq(task.uuid)
+      archivedTask.uuid === task.uuid
+      allEvents.map(_.eventId) must containAllOf(events.map(_.eventId))
+    }
+
     "Validate Creating and Updating MultiJob" in {
 
       def runBlock[T](fx: => Future[T]): T = Await.result(fx, timeout)
@@ -307,6 +879,70 @@ class JobsDaoSpec extends Specification with TestUtils with SetupMockData {
       val updatedCreatedEntryPoints =
         runBlock(dao.getJobEntryPoints(createdMultiJob.id))
       updatedCreatedEntryPoints.length === updatedEntryPoints.toSet.toList.length
+
+      // The state counts are recomputed when the children jobs are replaced
+      runBlock(dao.getMultiJobStateCounts(updatedJob.id)) === Map(
+        AnalysisJobStates.CREATED -> updateChildJobNames.length)
+
+      // and updated with each child job transition
+      runBlock(
+        dao.updateJobState(updatedChildren.head.id,
+                           AnalysisJobStates.SUBMITTED,
+                           "Submitting child job"))
+      runBlock(dao.getMultiJobStateCounts(updatedJob.id))
+        .filter(_._2 > 0) === Map(AnalysisJobStates.CREATED -> 1,
+                                  AnalysisJobStates.SUBMITTED -> 1)
+
+      // The entry points haven't been imported, the child job is waiting on them
+      val waitingChild = updatedChildren.last
+      runBlock(dao.checkCreatedChildJobForResolvedEntryPoints(waitingChild.id)) must startWith(
+        "Cannot Submit")
+      runBlock(
+        dao.checkCreatedChildrenJobsForNewlyEnteredDataSet(
+          deferredEntryPoints.head.uuid)) must startWith("Cannot Submit")
+      runBlock(
+        dao.checkCreatedChildrenJobsForNewlyEnteredDataSet(UUID.randomUUID())) must startWith(
+        "No Updates")
+      runBlock(dao.getJobById(waitingChild.id)).state === AnalysisJobStates.CREATED
+
+      // Import the awaited SubreadSets, the child job is submitted when the last one is imported
+      val subreadSetPx = PacBioTestUtils.getResourcePath(
+        "dataset-subreads/m54008_160215_180009.subreadset.xml")
+      val subreadSetFiles = deferredEntryPoints.map { ep =>
+        val px = Files.createTempFile(tmpJobDir, "subreads", "set.xml")
+        val sset = DataSetLoader.loadAndResolveSubreadSet(subreadSetPx)
+        sset.setUniqueId(ep.uuid.toString)
+        DataSetWriter.writeSubreadSet(sset, px)
+        MockFileUtils.toTestDataStoreFile(ep.uuid, FileTypes.DS_SUBREADS, px)
+      }
+
+      val importJobUUID = UUID.randomUUID()
+      val rawImportJob =
+        MockFileUtils.toTestRawEngineJob("multi-job-entry-points-import",
+                                         Some(importJobUUID),
+                                         None,
+                                         None)
+      runBlock(dao.importRawEngineJob(rawImportJob, rawImportJob))
+
+      runBlock(dao.importDataStoreFiles(subreadSetFiles.init, importJobUUID))
+      runBlock(
+        dao.checkCreatedChildrenJobsForNewlyEnteredDataSet(
+          deferredEntryPoints.head.uuid)) must not(
+        contain(s"Submitting Child Job ${waitingChild.id}"))
+      runBlock(dao.getJobById(waitingChild.id)).state === AnalysisJobStates.CREATED
+
+      runBlock(
+        dao.importDataStoreFiles(Seq(subreadSetFiles.last), importJobUUID))
+      runBlock(
+        dao.checkCreatedChildrenJobsForNewlyEnteredDataSet(
+          deferredEntryPoints.last.uuid)) must contain(
+        s"Submitting Child Job ${waitingChild.id}")
+      runBlock(dao.getJobById(waitingChild.id)).state === AnalysisJobStates.SUBMITTED
+
+      // The resolved entry points are no longer pending
+      runBlock(
+        dao.checkCreatedChildrenJobsForNewlyEnteredDataSet(
+          deferredEntryPoints.last.uuid)) must startWith("No Updates")
     }
   }
 
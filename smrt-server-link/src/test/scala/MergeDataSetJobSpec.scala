@@ -0,0 +1,106 @@
+import java.nio.file.{Files, Path, Paths}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.concurrent.{CountDownLatch, TimeUnit, TimeoutException}
+
+import scala.collection.mutable
+import scala.concurrent.duration._
+
+import org.specs2.mutable.Specification
+
+import com.pacbio.secondary.smrtlink.actors.InstrumentedExecutionContext
+import com.pacbio.secondary.smrtlink.analysis.datasets.io.{
+  DataSetLoader,
+  DataSetMergeBuilder
+}
+import com.pacbio.secondary.smrtlink.jobtypes.MergeDataSetJob
+import com.pacificbiosciences.pacbiodatasets.SubreadSet
+
+class MergeDataSetJobSpec extends Specification {
+
+  sequential
+
+  val src = Paths.get(
+    getClass
+      .getResource("/dataset-subreads/m54008_160215_180009.subreadset.xml")
+      .toURI)
+
+  def copyInputs(n: Int): Seq[Path] = {
+    val dir = Files.createTempDirectory("merge-inputs")
+    (0 until n).map { i =>
+      Files.copy(src, dir.resolve(s"input-$i.subreadset.xml"))
+    }
+  }
+
+  def newBuilder = new DataSetMergeBuilder[SubreadSet](() => new SubreadSet())
+
+  "Parallel loading of the merge-datasets job" should {
+    "Load the datasets concurrently and merge them in order" in {
+      val parallelism = 3
+      val paths = copyInputs(8)
+
+      // The first loads wait until parallelism loads are running
+      val allStarted = new CountDownLatch(parallelism)
+      val wereConcurrent = new AtomicBoolean(true)
+      val running = new AtomicInteger(0)
+      val maxRunning = new AtomicInteger(0)
+
+      def loader(path: Path): SubreadSet = {
+        maxRunning.accumulateAndGet(running.incrementAndGet(),
+                                    (a: Int, b: Int) => Math.max(a, b))
+        try {
+          allStarted.countDown()
+          if (!allStarted.await(5, TimeUnit.SECONDS)) wereConcurrent.set(false)
+          DataSetLoader.loadAndResolveSubreadSet(path)
+        } finally {
+          running.decrementAndGet()
+        }
+      }
+
+      val loaded = mutable.ArrayBuffer.empty[Path]
+      val ec = new InstrumentedExecutionContext("test-merge-io", parallelism)
+      val builder = try {
+        MergeDataSetJob.loadAndMerge(paths,
+                                     loader,
+                                     newBuilder,
+                                     parallelism,
+                                     1.minute,
+                                     (path: Path, _: Long) => loaded += path)(ec)
+      } finally {
+        ec.shutdown()
+      }
+
+      wereConcurrent.get must beTrue
+      maxRunning.get === parallelism
+      loaded === paths
+      builder.numDataSets === 8
+      builder.numUniqueDataSets === 1
+      builder
+        .result("ds-name")
+        .getDataSetMetadata
+        .getTotalLength === 44032862L
+    }
+    "Fail the merge if a dataset isn't loaded within the timeout" in {
+      val paths = copyInputs(2)
+      val stalled = new CountDownLatch(1)
+
+      def loader(path: Path): SubreadSet = {
+        if (path == paths.head) stalled.await(1, TimeUnit.MINUTES)
+        DataSetLoader.loadAndResolveSubreadSet(path)
+      }
+
+      val ec = new InstrumentedExecutionContext("test-merge-io-timeout", 2)
+      try {
+        MergeDataSetJob.loadAndMerge(paths,
+                                     loader,
+                                     newBuilder,
+                                     2,
+                                     100.millis,
+                                     (_: Path, _: Long) => ())(ec) must throwA[
+          TimeoutException]
+      } finally {
+        stalled.countDown()
+        ec.shutdown()
+      }
+    }
+  }
+}
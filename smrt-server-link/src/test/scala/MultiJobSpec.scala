@@ -1,6 +1,9 @@
 import java.util.UUID
 
-import com.pacbio.secondary.smrtlink.analysis.jobs.AnalysisJobStates
+import com.pacbio.secondary.smrtlink.analysis.jobs.{
+  AnalysisJobStates,
+  JobUtils
+}
 import com.typesafe.scalalogging.LazyLogging
 import org.specs2.mutable.Specification
 import org.joda.time.{DateTime => JodaDateTime}
@@ -253,4 +256,29 @@ class MultiJobSpec extends Specification {
       r2.state must beEqualTo(AnalysisJobStates.SUCCESSFUL)
     }
   }
+
+  "MultiJob state from the children state counts" should {
+    import AnalysisJobStates._
+
+    def toState(counts: Map[JobStates, Int]) =
+      JobUtils.determineMultiJobStateFromCounts(counts, CREATED)
+
+    "Use the default state without children jobs" in {
+      toState(Map.empty[JobStates, Int]) must beEqualTo(CREATED)
+      toState(Map(SUBMITTED -> 0)) must beEqualTo(CREATED)
+    }
+    "Map a single CREATED or SUBMITTED child job to RUNNING" in {
+      toState(Map(CREATED -> 1)) must beEqualTo(RUNNING)
+      toState(Map(SUBMITTED -> 1, CREATED -> 0)) must beEqualTo(RUNNING)
+      toState(Map(SUCCESSFUL -> 1)) must beEqualTo(SUCCESSFUL)
+      toState(Map(TERMINATED -> 1)) must beEqualTo(FAILED)
+    }
+    "Reduce several children jobs" in {
+      toState(Map(CREATED -> 2)) must beEqualTo(CREATED)
+      toState(Map(SUBMITTED -> 1, SUCCESSFUL -> 1)) must beEqualTo(SUBMITTED)
+      toState(Map(CREATED -> 1, SUBMITTED -> 1)) must beEqualTo(RUNNING)
+      toState(Map(RUNNING -> 1, FAILED -> 1)) must beEqualTo(FAILED)
+      toState(Map(SUCCESSFUL -> 3)) must beEqualTo(SUCCESSFUL)
+    }
+  }
 }
@@ -90,6 +90,7 @@ class ProjectSpec
       extends ServiceComposer
       with ActorSystemProvider
       with ConfigProvider
+      with EngineExecutionContextsProvider
       with JobsServiceProvider
       with ProjectServiceProvider
       with SmrtLinkTestDalProvider
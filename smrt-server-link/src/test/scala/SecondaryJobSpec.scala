@@ -44,6 +44,7 @@ class SecondaryJobSpec
 
   object TestProviders
       extends ServiceComposer
+      with EngineExecutionContextsProvider
       with JobsServiceProvider
       with StatusGeneratorProvider
       with EventManagerActorProvider
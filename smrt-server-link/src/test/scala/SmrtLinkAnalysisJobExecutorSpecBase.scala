@@ -56,6 +56,7 @@ abstract class SmrtLinkAnalysisJobExecutorSpecBase
 
   object TestProviders
       extends ServiceComposer
+      with EngineExecutionContextsProvider
       with JobsServiceProvider
       with StatusGeneratorProvider
       with EventManagerActorProvider
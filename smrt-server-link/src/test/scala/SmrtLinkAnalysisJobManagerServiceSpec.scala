@@ -1,3 +1,6 @@
+import java.sql.Connection
+import java.util.concurrent.atomic.AtomicInteger
+
 import akka.actor.{ActorRefFactory, ActorSystem}
 import com.pacbio.secondary.smrtlink.actors._
 import com.pacbio.secondary.smrtlink.auth._
@@ -7,15 +10,23 @@ import com.pacbio.secondary.smrtlink.dependency.{
   Singleton
 }
 import com.pacbio.secondary.smrtlink.models.UserRecord
-import com.pacbio.secondary.smrtlink.services.utils.StatusGeneratorProvider
+import com.pacbio.secondary.smrtlink.services.utils.{
+  SmrtDirectives,
+  StatusGeneratorProvider
+}
 import com.pacbio.secondary.smrtlink.time.FakeClockProvider
 import com.pacbio.secondary.smrtlink.analysis.configloaders.{
   EngineCoreConfigLoader,
   PbsmrtpipeConfigLoader
 }
 import com.pacbio.secondary.smrtlink.JobServiceConstants
+import com.pacbio.secondary.smrtlink.SmrtLinkConstants.{
+  LAST_WRITE_COOKIE,
+  LAST_WRITE_HEADER
+}
 import com.pacbio.secondary.smrtlink.actors._
 import com.pacbio.secondary.smrtlink.app.SmrtLinkConfigProvider
+import com.pacbio.secondary.smrtlink.analysis.jobs.JobModels.EngineJob
 import com.pacbio.secondary.smrtlink.jobtypes.SimpleJobOptions
 import com.pacbio.secondary.smrtlink.services.{
   JobsServiceProvider,
@@ -24,11 +35,15 @@ import com.pacbio.secondary.smrtlink.services.{
 import com.pacbio.secondary.smrtlink.testkit.TestUtils
 import com.pacbio.secondary.smrtlink.tools.SetupMockData
 import com.typesafe.config.Config
+import org.postgresql.ds.PGSimpleDataSource
 import org.specs2.mutable.Specification
 import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
+import akka.http.scaladsl.model.MediaRange
+import akka.http.scaladsl.model.headers.{Accept, Cookie, RawHeader}
 import akka.http.scaladsl.testkit.{RouteTestTimeout, Specs2RouteTest}
+import spray.json._
 
-import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.duration._
 import slick.jdbc.PostgresProfile.api._
 
 class SmrtLinkAnalysisJobManagerServiceSpec
@@ -46,8 +61,35 @@ class SmrtLinkAnalysisJobManagerServiceSpec
 
   val INVALID_JWT = "invalid.jwt"
 
+  // "Replica" of the test db that counts the reads made from it
+  class CountingDataSource extends PGSimpleDataSource {
+    val connections = new AtomicInteger(0)
+
+    override def getConnection(): Connection = {
+      connections.incrementAndGet()
+      super.getConnection()
+    }
+
+    override def getConnection(user: String, password: String): Connection = {
+      connections.incrementAndGet()
+      super.getConnection(user, password)
+    }
+  }
+
+  lazy val replicaDataSource: CountingDataSource = {
+    val dbConfig = TestProviders.dbConfig
+    val source = new CountingDataSource
+    source.setServerName(dbConfig.server)
+    source.setPortNumber(dbConfig.port)
+    source.setDatabaseName(dbConfig.dbName)
+    source.setUser(dbConfig.username)
+    source.setPassword(dbConfig.password)
+    source
+  }
+
   object TestProviders
       extends ServiceComposer
+      with EngineExecutionContextsProvider
       with JobsServiceProvider
       with StatusGeneratorProvider
       with EventManagerActorProvider
@@ -69,6 +111,10 @@ class SmrtLinkAnalysisJobManagerServiceSpec
     })
 
     override val config: Singleton[Config] = Singleton(testConfig)
+    override val replicaDb: Singleton[Option[Database]] = Singleton(
+      () => Some(Database.forDataSource(replicaDataSource, Some(2))))
+    override val replicaReadYourWritesWindow: Singleton[FiniteDuration] =
+      Singleton(() => 1.hour)
     override val actorSystem: Singleton[ActorSystem] = Singleton(system)
     override val actorRefFactory: Singleton[ActorRefFactory] = actorSystem
     override val baseServiceId: Singleton[String] = Singleton("test-service")
@@ -99,6 +145,55 @@ class SmrtLinkAnalysisJobManagerServiceSpec
         status.isSuccess must beTrue
       }
     }
+    "Stream Simple jobs as newline delimited JSON" in {
+      val url = s"/$ROOT_SA_PREFIX/job-manager/jobs/simple"
+      val jobs = Get(url) ~> totalRoutes ~> check {
+        responseAs[Seq[EngineJob]]
+      }
+      jobs must not be empty
+
+      Get(url) ~> addHeader(
+        Accept(MediaRange(SmrtDirectives.`application/x-ndjson`))) ~> totalRoutes ~> check {
+        status.isSuccess must beTrue
+        contentType.mediaType === SmrtDirectives.`application/x-ndjson`
+        val lines = responseAs[String].split("\n").toSeq
+        lines.map(_.parseJson) must contain(beAnInstanceOf[JsObject]).forall
+        lines.map(_.parseJson.convertTo[EngineJob].id) === jobs.map(_.id)
+      }
+    }
+    "Job listings are read from the primary db after a write of the client" in {
+      val url = s"/$ROOT_SA_PREFIX/job-manager/jobs/simple"
+      def replicaReads = replicaDataSource.connections.get()
+
+      // The listing is read in a Future continuation of the project lookup
+      val r0 = replicaReads
+      Get(url) ~> addHeader(Cookie(LAST_WRITE_COOKIE, "0")) ~> totalRoutes ~> check {
+        status.isSuccess must beTrue
+      }
+      val r1 = replicaReads
+      Get(url) ~> addHeader(
+        Cookie(LAST_WRITE_COOKIE, System.currentTimeMillis().toString)) ~> totalRoutes ~> check {
+        responseAs[Seq[EngineJob]] must not be empty
+      }
+      val r2 = replicaReads
+      Get(url) ~> addHeader(
+        RawHeader(LAST_WRITE_HEADER, System.currentTimeMillis().toString)) ~> addHeader(
+        Accept(MediaRange(SmrtDirectives.`application/x-ndjson`))) ~> totalRoutes ~> check {
+        responseAs[String].split("\n").toSeq must not be empty
+      }
+      val r3 = replicaReads
+      // A client that hasn't made a write (i.e., without the cookie) reads from the replica
+      Get(url) ~> addHeader(
+        Accept(MediaRange(SmrtDirectives.`application/x-ndjson`))) ~> totalRoutes ~> check {
+        responseAs[String].split("\n").toSeq must not be empty
+      }
+      val r4 = replicaReads
+
+      r1 must beGreaterThan(r0)
+      r2 === r1
+      r3 === r2
+      r4 must beGreaterThan(r3)
+    }
   }
   step(cleanUpJobDir(TestProviders.engineConfig.pbRootJobDir))
 }